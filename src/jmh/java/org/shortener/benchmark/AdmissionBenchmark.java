@@ -0,0 +1,99 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.admission.AdmissionControl;
+import org.shortener.config.AppConfig;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.service.LinkService;
+import org.shortener.service.RedirectResult;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Переход через ограничение частоты (admission=on) против перехода без него (off).
+// honest — клиенты из clients адресов, их лимит не достигается: цена допуска. Адресов больше, чем
+// admission.keys.max (100 000), — часть клиентов идёт через общую корзину и фоновую чистку таблицы.
+// abusive — один клиент далеко за своим лимитом: цена отказа (без ограничения это обычный переход).
+// Время в перцентилях (SampleTime): отказ не должен ухудшать хвост допущенных переходов.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdmissionBenchmark {
+
+    private static final int LINKS = 100_000;
+    private static final String ABUSIVE_CLIENT = "203.0.113.7";
+
+    @Param({"off", "on"})
+    public String admission;
+
+    @Param({"1000", "1000000"})
+    public int clients;
+
+    private LinkService linkService;
+    private String[] shortUrls;
+    private String[] clientKeys;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        // Лимиты задаются так же, как при запуске: системными свойствами поверх config.properties.
+        // Лимит клиента с запасом выше частоты честного клиента и намного ниже частоты abusive;
+        // владельцы и создание ссылок не ограничены
+        System.setProperty("admission.redirect.client.rate", "100000");
+        System.setProperty("admission.redirect.client.burst", "1000");
+        System.setProperty("admission.redirect.owner.rate", "0");
+        System.setProperty("admission.create.user.rate", "0");
+        AppConfig config = new AppConfig();
+        linkService = new LinkService(config, new InMemoryLinkRepository(), new InMemoryUserRepository());
+        if ("on".equals(admission)) {
+            linkService.setAdmissionControl(new AdmissionControl(config));
+        }
+        UUID user = UUID.randomUUID();
+        shortUrls = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            shortUrls[i] = linkService.createShortLink(user, "https://example.com/articles/" + i,
+                    ServiceState.LIFETIME_HOURS, ServiceState.UNLIMITED_CLICKS).getShortUrl();
+        }
+        clientKeys = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            clientKeys[i] = "10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public RedirectResult honest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return linkService.resolve(shortUrls[random.nextInt(LINKS)], clientKeys[random.nextInt(clients)]);
+    }
+
+    @Benchmark
+    public RedirectResult abusive() {
+        return linkService.resolve(shortUrls[ThreadLocalRandom.current().nextInt(LINKS)], ABUSIVE_CLIENT);
+    }
+}
@@ -0,0 +1,28 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Точка входа benchmarks.jar: прогоняет выбранные бенчмарки (аргументы — обычные опции JMH)
+// для каждого числа потоков из -Dbench.threads (по умолчанию 1,2,4,8) и всегда с профилировщиком GC,
+// чтобы рядом со временем операции была видна скорость выделения памяти (gc.alloc.rate.norm).
+//
+// Пример: java -Dbench.threads=1,4 -jar target/benchmarks.jar Redirect -p size=1000000
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        for (String threads : System.getProperty("bench.threads", "1,2,4,8").split(",")) {
+            new Runner(new OptionsBuilder()
+                    .parent(options)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .addProfiler(GCProfiler.class)
+                    .build())
+                    .run();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Один проход фоновой очистки. Перед итерацией в хранилище добавляется expiredPercent % от size
+// истёкших ссылок; при 0 % измеряется холостой проход, который не должен зависеть от size.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CleanupBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Expired {
+
+        @Param({"0", "1", "10"})
+        public int expiredPercent;
+
+        @Setup(Level.Iteration)
+        public void prepare(ServiceState state) {
+            long count = (long) state.size * expiredPercent / 100;
+            for (int i = 0; i < count; i++) {
+                state.createExpiredLink(state.users[i % state.users.length], i);
+            }
+        }
+    }
+
+    @Benchmark
+    public int cleanupExpiredLinks(ServiceState state, Expired expired) {
+        return state.linkService.cleanupExpiredLinks();
+    }
+}
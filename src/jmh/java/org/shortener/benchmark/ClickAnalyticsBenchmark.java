@@ -0,0 +1,96 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.analytics.ClickAnalytics;
+import org.shortener.clicks.ClickDelta;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.InMemoryUserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость обновления аналитики горячих ссылок: отдельный переход (record) и пачка дельт из ClickPipeline
+// (onClicks, время в пересчёте на один переход). Переходы распределены по Ципфу между links ссылками.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClickAnalyticsBenchmark {
+
+    static final int CLICKS = 65_536;
+
+    @Param({"1000", "100000"})
+    public int links;
+
+    private ClickAnalytics analytics;
+    private String[] clicks;
+    private List<ClickDelta> batch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        analytics = new ClickAnalytics(1, 60, 4096, 4, 256, new InMemoryUserRepository());
+        String[] shortUrls = new String[links];
+        double[] cdf = new double[links];
+        double total = 0;
+        for (int i = 0; i < links; i++) {
+            shortUrls[i] = "test.ru/" + Integer.toString(60_466_176 + i * 7919, 36);
+            total += 1 / Math.pow(i + 1, 1.1);
+            cdf[i] = total;
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        clicks = new String[CLICKS];
+        int[] perLink = new int[links];
+        for (int i = 0; i < CLICKS; i++) {
+            int found = Arrays.binarySearch(cdf, random.nextDouble() * total);
+            int link = found < 0 ? -found - 1 : found;
+            clicks[i] = shortUrls[Math.min(link, links - 1)];
+            perLink[Math.min(link, links - 1)]++;
+        }
+        // Те же переходы, свёрнутые по ссылкам, как их отдаёт конвейер
+        batch = new ArrayList<>();
+        UUID user = UUID.randomUUID();
+        for (int i = 0; i < links; i++) {
+            if (perLink[i] > 0) {
+                ShortLink link = new ShortLink("https://example.com/", shortUrls[i], user,
+                        Instant.EPOCH, Instant.EPOCH, ServiceState.UNLIMITED_CLICKS);
+                batch.add(new ClickDelta(link, perLink[i], 0, 0));
+            }
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        analytics.record(clicks[next++ & (CLICKS - 1)], 1, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLICKS)
+    public void onClicks() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            ClickDelta delta = batch.get(i);
+            batch.set(i, new ClickDelta(delta.link(), delta.clicks(), now, now));
+        }
+        analytics.onClicks(batch);
+    }
+}
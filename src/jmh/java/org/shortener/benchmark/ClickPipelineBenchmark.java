@@ -0,0 +1,103 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.clicks.BackpressurePolicy;
+import org.shortener.clicks.ClickPipeline;
+import org.shortener.config.AppConfig;
+import org.shortener.metrics.LinkMetrics;
+import org.shortener.persistence.FsyncPolicy;
+import org.shortener.persistence.LinkJournal;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.service.LinkListener;
+import org.shortener.service.LinkService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Переходы с журналом: запись на каждый переход (direct) против отложенной пачками (pipeline).
+// links — число ссылок, между которыми распределены переходы: чем их меньше, тем сильнее сворачивание.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClickPipelineBenchmark {
+
+    @Param({"direct", "pipeline"})
+    public String mode;
+
+    @Param({"100", "100000"})
+    public int links;
+
+    @Param({"INTERVAL"})
+    public FsyncPolicy fsync;
+
+    private Path dir;
+    private LinkJournal journal;
+    private ClickPipeline pipeline;
+    private LinkService linkService;
+    private String[] shortUrls;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        dir = Files.createTempDirectory("click-bench");
+        InMemoryLinkRepository linkRepository = new InMemoryLinkRepository();
+        InMemoryUserRepository userRepository = new InMemoryUserRepository();
+        journal = new LinkJournal(dir, fsync, 100);
+        journal.open(linkRepository, userRepository);
+        linkService = new LinkService(new AppConfig(), linkRepository, userRepository);
+        if ("pipeline".equals(mode)) {
+            pipeline = new ClickPipeline(65536, 100, BackpressurePolicy.BLOCK, new LinkMetrics(() -> 0));
+            pipeline.addSink(journal);
+            pipeline.start();
+            linkService.addListener(pipeline);
+            linkService.addListener(LinkListener.ignoringClicks(journal));
+        } else {
+            linkService.addListener(journal);
+        }
+        UUID user = UUID.randomUUID();
+        shortUrls = new String[links];
+        for (int i = 0; i < links; i++) {
+            shortUrls[i] = linkService.createShortLink(user, "https://example.com/articles/" + i,
+                    ServiceState.LIFETIME_HOURS, ServiceState.UNLIMITED_CLICKS).getShortUrl();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        journal.close();
+        JournalRecoveryBenchmark.deleteDirectory(dir);
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public Object redirect() {
+        return linkService.resolve(shortUrls[ThreadLocalRandom.current().nextInt(shortUrls.length)]);
+    }
+}
@@ -0,0 +1,54 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.model.ShortLink;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Создание ссылок пачкой. После итерации созданные ссылки удаляются, чтобы размер хранилища
+// оставался около size и не рос от итерации к итерации.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CreateShortLinkBenchmark.BATCH)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CreateShortLinkBenchmark {
+
+    static final int BATCH = 100_000;
+
+    @State(Scope.Thread)
+    public static class Created {
+
+        final UUID owner = UUID.randomUUID();
+        final ShortLink[] links = new ShortLink[BATCH];
+
+        @TearDown(Level.Iteration)
+        public void deleteCreated(ServiceState state) {
+            for (ShortLink link : links) {
+                state.linkService.deleteLink(link.getShortUrl(), owner);
+            }
+        }
+    }
+
+    @Benchmark
+    public ShortLink[] createShortLink(ServiceState state, Created created) {
+        ShortLink[] links = created.links;
+        for (int i = 0; i < BATCH; i++) {
+            links[i] = state.createLink(created.owner, i);
+        }
+        return links;
+    }
+}
@@ -0,0 +1,62 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Удаление ссылки владельцем. Перед каждой итерацией поток создаёт себе пачку ссылок для удаления
+// (живых и истёкших) и добавляет к ней несуществующие коды по заданной доле промахов.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(DeleteLinkBenchmark.BATCH)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class DeleteLinkBenchmark {
+
+    static final int BATCH = 100_000;
+
+    @State(Scope.Thread)
+    public static class Victims {
+
+        @Param({"100/0/0", "80/15/5", "50/25/25"})
+        public String mix;
+
+        final UUID owner = UUID.randomUUID();
+        final String[] shortUrls = new String[BATCH];
+        private final SplittableRandom random = new SplittableRandom();
+
+        @Setup(Level.Iteration)
+        public void prepare(ServiceState state) {
+            RequestMix requestMix = new RequestMix(mix);
+            for (int i = 0; i < BATCH; i++) {
+                shortUrls[i] = switch (requestMix.next(random)) {
+                    case HIT -> state.createLink(owner, i).getShortUrl();
+                    case MISS -> state.missingShortUrl();
+                    case EXPIRED -> state.createExpiredLink(owner, i).getShortUrl();
+                };
+            }
+        }
+    }
+
+    @Benchmark
+    public void deleteLink(ServiceState state, Victims victims) {
+        for (String shortUrl : victims.shortUrls) {
+            state.linkService.deleteLink(shortUrl, victims.owner);
+        }
+    }
+}
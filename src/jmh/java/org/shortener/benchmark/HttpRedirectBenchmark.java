@@ -0,0 +1,121 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.config.AppConfig;
+import org.shortener.server.RedirectServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Переходы через HTTP-сервер по keep-alive соединениям: у каждого потока JMH одно соединение, запросы идут
+// по нему друг за другом, как у браузера или прокси. Измеряется пропускная способность всего пути: разбор
+// запроса JDK-сервером, виртуальный поток на запрос, resolve и ответ 302 — то, что стоит за числом переходов
+// в секунду у сервера. Ограничение частоты выключено, иначе один клиент упрётся в 429.
+//
+// Пример: java -Dbench.threads=1,8,32 -jar target/benchmarks.jar HttpRedirect -p size=100000
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpRedirectBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        RedirectServer server;
+
+        @Setup(Level.Trial)
+        public void start(ServiceState state) throws IOException {
+            // Свободный порт и без ограничения частоты; системные свойства читает AppConfig
+            System.setProperty("server.port", "0");
+            System.setProperty("admission.enabled", "false");
+            server = new RedirectServer(new AppConfig(), state.linkService);
+            server.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            server.close();
+        }
+    }
+
+    // Соединение потока: запрос пишется целиком, ответ без тела читается до пустой строки после заголовков
+    @State(Scope.Thread)
+    public static class Connection {
+
+        private final SplittableRandom random = new SplittableRandom();
+        private Socket socket;
+        private OutputStream out;
+        private InputStream in;
+        private byte[][] requests;
+
+        @Setup(Level.Trial)
+        public void open(Server server, ServiceState state) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.server.getPort());
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+            int domain = new AppConfig().getShortLinkDomain().length();
+            requests = new byte[state.shortUrls.length][];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = ("GET /" + state.shortUrls[i].substring(domain) + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        // Код ответа на запрос по случайной ссылке
+        int redirect() throws IOException {
+            out.write(requests[random.nextInt(requests.length)]);
+            out.flush();
+            int status = 0;
+            int digits = 0;
+            int spaces = 0;
+            int tail = 0;
+            while (tail != 0x0D0A0D0A) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("Сервер закрыл соединение");
+                }
+                tail = tail << 8 | b;
+                // Код — три цифры после первого пробела строки статуса
+                if (spaces == 0 && b == ' ') {
+                    spaces = 1;
+                } else if (spaces == 1 && digits < 3) {
+                    status = status * 10 + (b - '0');
+                    digits++;
+                }
+            }
+            return status;
+        }
+    }
+
+    @Benchmark
+    public int redirect(Connection connection) throws IOException {
+        return connection.redirect();
+    }
+}
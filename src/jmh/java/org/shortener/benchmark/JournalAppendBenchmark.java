@@ -0,0 +1,72 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.model.ShortLink;
+import org.shortener.persistence.FsyncPolicy;
+import org.shortener.persistence.LinkJournal;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность записи в журнал при разных политиках fsync.
+// Записи перехода — самые частые, записи создания — самые длинные.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalAppendBenchmark {
+
+    @Param({"NEVER", "INTERVAL", "ALWAYS"})
+    public FsyncPolicy fsync;
+
+    private Path dir;
+    private LinkJournal journal;
+    private ShortLink link;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal-bench");
+        journal = new LinkJournal(dir, fsync, 100);
+        journal.open(new InMemoryLinkRepository(), new InMemoryUserRepository());
+        Instant now = Instant.now();
+        link = new ShortLink("https://example.com/articles/42", "test.ru/AbCdE1", UUID.randomUUID(),
+                now, now.plus(Duration.ofHours(24)), ServiceState.UNLIMITED_CLICKS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        JournalRecoveryBenchmark.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void appendClick() {
+        journal.onClick(link);
+    }
+
+    @Benchmark
+    public void appendCreate() {
+        journal.onCreate(link);
+    }
+}
@@ -0,0 +1,108 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.config.AppConfig;
+import org.shortener.model.ShortLink;
+import org.shortener.persistence.FsyncPolicy;
+import org.shortener.persistence.LinkJournal;
+import org.shortener.repository.CompactLinkStore;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Восстановление size ссылок при старте: только из сегментов журнала или из снимка.
+// Каталог журнала готовится один раз на прогон, каждая итерация восстанавливает его в пустое хранилище.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class JournalRecoveryBenchmark {
+
+    @Param({"memory", "compact"})
+    public String store;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"journal", "snapshot"})
+    public String source;
+
+    private Path dir;
+    private String domain;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal-bench");
+        domain = new AppConfig().getShortLinkDomain();
+        SequentialCodeGenerator codes = new SequentialCodeGenerator(domain, new CodeSequence(null), 1024, null);
+        InMemoryLinkRepository links = new InMemoryLinkRepository();
+        try (LinkJournal journal = new LinkJournal(dir, FsyncPolicy.NEVER, 100)) {
+            journal.open(links, new InMemoryUserRepository());
+            UUID[] users = new UUID[Math.max(1, size / ServiceState.LINKS_PER_USER)];
+            for (int i = 0; i < users.length; i++) {
+                users[i] = UUID.randomUUID();
+            }
+            Instant now = Instant.now();
+            for (int i = 0; i < size; i++) {
+                ShortLink link = new ShortLink("https://example.com/articles/" + i, codes.nextShortUrl(),
+                        users[i % users.length], now, now.plus(Duration.ofHours(24)), ServiceState.UNLIMITED_CLICKS);
+                links.save(link);
+                journal.onCreate(link);
+            }
+            if ("snapshot".equals(source)) {
+                journal.checkpoint(links.findAll());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public int recover() throws IOException {
+        try (LinkJournal journal = new LinkJournal(dir, FsyncPolicy.NEVER, 100)) {
+            if ("compact".equals(store)) {
+                CompactLinkStore compact = new CompactLinkStore(domain, false);
+                return journal.open(compact, compact);
+            }
+            return journal.open(new InMemoryLinkRepository(), new InMemoryUserRepository());
+        }
+    }
+
+    static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Просмотр списка ссылок пользователя (около ServiceState.LINKS_PER_USER ссылок на пользователя).
+// Промах — неизвестный пользователь; "истёкший" запрос — пользователь, у которого перед итерацией
+// появилась истёкшая ссылка: listUserLinks её пропускает, удаляет её фоновая очистка.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ListUserLinksBenchmark.BATCH)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ListUserLinksBenchmark {
+
+    static final int BATCH = 1_000;
+
+    @State(Scope.Thread)
+    public static class Lookups {
+
+        @Param({"100/0/0", "80/15/5", "50/25/25"})
+        public String mix;
+
+        final UUID[] users = new UUID[BATCH];
+        private final SplittableRandom random = new SplittableRandom();
+
+        @Setup(Level.Iteration)
+        public void prepare(ServiceState state) {
+            RequestMix requestMix = new RequestMix(mix);
+            for (int i = 0; i < BATCH; i++) {
+                UUID user = state.users[random.nextInt(state.users.length)];
+                switch (requestMix.next(random)) {
+                    case HIT -> users[i] = user;
+                    case MISS -> users[i] = UUID.randomUUID();
+                    case EXPIRED -> {
+                        state.createExpiredLink(user, i);
+                        users[i] = user;
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void listUserLinks(ServiceState state, Lookups lookups) {
+        for (UUID user : lookups.users) {
+            state.linkService.listUserLinks(user);
+        }
+    }
+}
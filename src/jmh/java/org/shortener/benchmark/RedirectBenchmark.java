@@ -0,0 +1,71 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Переход по короткой ссылке: консольный путь (redirectToOriginalUrl с заглушкой браузера)
+// и путь HTTP-сервера (resolve). Истёкшая ссылка удаляется при первом же обращении, поэтому
+// каждая итерация готовит свою пачку запросов со свежими истёкшими ссылками.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(RedirectBenchmark.BATCH)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class RedirectBenchmark {
+
+    static final int BATCH = 100_000;
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        @Param({"100/0/0", "80/15/5", "50/25/25"})
+        public String mix;
+
+        final String[] shortUrls = new String[BATCH];
+        private final SplittableRandom random = new SplittableRandom();
+        private final UUID owner = UUID.randomUUID();
+
+        @Setup(Level.Iteration)
+        public void prepare(ServiceState state) {
+            RequestMix requestMix = new RequestMix(mix);
+            for (int i = 0; i < BATCH; i++) {
+                shortUrls[i] = switch (requestMix.next(random)) {
+                    case HIT -> state.shortUrls[random.nextInt(state.shortUrls.length)];
+                    case MISS -> state.missingShortUrl();
+                    case EXPIRED -> state.createExpiredLink(owner, i).getShortUrl();
+                };
+            }
+        }
+    }
+
+    @Benchmark
+    public void redirect(ServiceState state, Requests requests) {
+        for (String shortUrl : requests.shortUrls) {
+            state.linkService.redirectToOriginalUrl(shortUrl);
+        }
+    }
+
+    @Benchmark
+    public void resolve(ServiceState state, Requests requests, Blackhole blackhole) {
+        for (String shortUrl : requests.shortUrls) {
+            blackhole.consume(state.linkService.resolve(shortUrl));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.shortener.benchmark;
+
+import java.util.SplittableRandom;
+
+// Доли попаданий, промахов и истёкших ссылок в пачке запросов, в процентах: "hit/miss/expired"
+final class RequestMix {
+
+    enum Kind { HIT, MISS, EXPIRED }
+
+    private final int hitPercent;
+    private final int missPercent;
+
+    RequestMix(String mix) {
+        String[] parts = mix.split("/");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Ожидается hit/miss/expired: " + mix);
+        }
+        hitPercent = Integer.parseInt(parts[0]);
+        missPercent = Integer.parseInt(parts[1]);
+        if (hitPercent + missPercent + Integer.parseInt(parts[2]) != 100) {
+            throw new IllegalArgumentException("Сумма долей должна быть 100: " + mix);
+        }
+    }
+
+    Kind next(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        if (roll < hitPercent) {
+            return Kind.HIT;
+        }
+        return roll < hitPercent + missPercent ? Kind.MISS : Kind.EXPIRED;
+    }
+}
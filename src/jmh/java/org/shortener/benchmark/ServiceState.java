@@ -0,0 +1,117 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.RandomCodeGenerator;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.codegen.ShortCodeGenerator;
+import org.shortener.config.AppConfig;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.CompactLinkStore;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.repository.LinkRepository;
+import org.shortener.repository.UserRepository;
+import org.shortener.service.LinkService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+// Общее состояние бенчмарков: сервис поверх выбранного хранилища, заполненный size живыми ссылками.
+// Журнал не подключается; консольный вывод сервиса на время прогона уходит в никуда,
+// браузер заменён заглушкой.
+@State(Scope.Benchmark)
+public class ServiceState {
+
+    // Ссылок на одного пользователя при заполнении
+    static final int LINKS_PER_USER = 100;
+    // Ссылки бенчмарков не должны упираться в лимит кликов
+    static final int UNLIMITED_CLICKS = Integer.MAX_VALUE;
+    static final int LIFETIME_HOURS = 24;
+
+    @Param({"memory", "compact"})
+    public String store;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    LinkService linkService;
+    LinkRepository linkRepository;
+    UserRepository userRepository;
+    UUID[] users;
+    String[] shortUrls;
+
+    private ShortCodeGenerator codeGenerator;
+    private ShortCodeGenerator missGenerator;
+    private String domain;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        AppConfig config = new AppConfig();
+        domain = config.getShortLinkDomain();
+        if ("compact".equals(store)) {
+            CompactLinkStore compact = new CompactLinkStore(domain, false);
+            linkRepository = compact;
+            userRepository = compact;
+        } else {
+            linkRepository = new InMemoryLinkRepository();
+            userRepository = new InMemoryUserRepository();
+        }
+        Long scrambleKey = config.getCodeScrambleKey();
+        if (scrambleKey == null && config.isCodeScrambleEnabled()) {
+            scrambleKey = CodeSequence.scrambleKey(null);
+        }
+        codeGenerator = new SequentialCodeGenerator(domain, new CodeSequence(null),
+                config.getCodeBlockSize(), scrambleKey);
+        // Случайные 6-символьные коды почти никогда не совпадают с выданными — ими моделируем промахи
+        missGenerator = new RandomCodeGenerator(domain);
+        linkService = new LinkService(config, linkRepository, userRepository, codeGenerator);
+        linkService.setUrlOpener(uri -> { });
+
+        users = new UUID[Math.max(1, size / LINKS_PER_USER)];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = UUID.randomUUID();
+        }
+        shortUrls = new String[size];
+        for (int i = 0; i < size; i++) {
+            shortUrls[i] = createLink(users[i % users.length], i).getShortUrl();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    ShortLink createLink(UUID userId, int i) {
+        return linkService.createShortLink(userId, "https://example.com/articles/" + i, LIFETIME_HOURS, UNLIMITED_CLICKS);
+    }
+
+    // Ссылка, срок которой уже истёк, но которую ещё не сняла очистка.
+    // Через сервис такую не создать (он сразу удаляет истёкшие), поэтому кладём её в хранилище напрямую.
+    ShortLink createExpiredLink(UUID userId, int i) {
+        Instant created = Instant.now().minus(Duration.ofHours(LIFETIME_HOURS + 1));
+        ShortLink link = new ShortLink("https://example.com/expired/" + i, codeGenerator.nextShortUrl(), userId,
+                created, created.plus(Duration.ofHours(LIFETIME_HOURS)), UNLIMITED_CLICKS);
+        linkRepository.save(link);
+        userRepository.addLinkToUser(userId, link);
+        return link;
+    }
+
+    String missingShortUrl() {
+        return missGenerator.nextShortUrl();
+    }
+}
@@ -0,0 +1,87 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shortener.persistence.FsyncPolicy;
+import org.shortener.persistence.LinkJournal;
+import org.shortener.service.RedirectResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Переход (resolve) во время снимка: snapshot=on — фоновый поток без перерыва пишет снимок всех ссылок
+// (LinkJournal.checkpoint), off — снимков нет. Переходы засчитываются, поэтому первые переходы по ссылкам,
+// до которых снимок ещё не дошёл, идут медленным путём с копией ссылки. Время в перцентилях (SampleTime):
+// хвост переходов не должен расти из-за снимка. Для size=10000000 нужна большая куча: -jvmArgsAppend -Xmx8g.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Snapshots {
+
+        @Param({"off", "on"})
+        public String snapshot;
+
+        private Path dir;
+        private LinkJournal journal;
+        private Thread writer;
+        private volatile boolean stopped;
+        private int written;
+
+        @Setup(Level.Trial)
+        public void setUp(ServiceState state) throws IOException {
+            dir = Files.createTempDirectory("snapshot-bench");
+            journal = new LinkJournal(dir, FsyncPolicy.NEVER, 100);
+            journal.open(state.linkRepository, state.userRepository);
+            if (!"on".equals(snapshot)) {
+                return;
+            }
+            writer = new Thread(() -> {
+                while (!stopped) {
+                    try {
+                        journal.checkpoint(state.linkRepository.findAll());
+                        written++;
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }, "snapshot-bench");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException, InterruptedException {
+            stopped = true;
+            if (writer != null) {
+                writer.join();
+                System.err.println("Снимков за прогон: " + written);
+            }
+            journal.close();
+            JournalRecoveryBenchmark.deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    public RedirectResult resolve(ServiceState state, Snapshots snapshots) {
+        return state.linkService.resolve(state.shortUrls[ThreadLocalRandom.current().nextInt(state.shortUrls.length)]);
+    }
+}
@@ -0,0 +1,147 @@
+package org.shortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.config.AppConfig;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.LinkRepository;
+import org.shortener.repository.TieredLinkStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Поиск ссылки и чтение её счётчика в двухуровневом хранилище против обычного: hot — обращения только
+// к ссылкам, помещающимся в горячий уровень; cold — равномерно по всем ссылкам, почти все в сегментах;
+// zipf — популярность по закону Ципфа (s = 1), как у реальных переходов.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(TieredStoreBenchmark.BATCH)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class TieredStoreBenchmark {
+
+    static final int BATCH = 100_000;
+    // Горячий уровень держит такую долю ссылок
+    static final int HOT_FRACTION = 100;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+
+        @Param({"memory", "tiered"})
+        public String store;
+
+        @Param({"1000000"})
+        public int size;
+
+        LinkRepository repository;
+        String[] shortUrls;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            String domain = new AppConfig().getShortLinkDomain();
+            if ("tiered".equals(store)) {
+                repository = new TieredLinkStore(domain, size / HOT_FRACTION,
+                        Files.createTempDirectory("cold-segments"), 65536);
+            } else {
+                repository = new InMemoryLinkRepository();
+            }
+            SequentialCodeGenerator codes = new SequentialCodeGenerator(domain, new CodeSequence(null), 1024, null);
+            UUID owner = UUID.randomUUID();
+            Instant now = Instant.now();
+            shortUrls = new String[size];
+            for (int i = 0; i < size; i++) {
+                shortUrls[i] = codes.nextShortUrl();
+                repository.save(new ShortLink("https://example.com/articles/" + i, shortUrls[i], owner,
+                        now, now.plus(Duration.ofDays(1)), Integer.MAX_VALUE));
+            }
+            if (repository instanceof TieredLinkStore tiered) {
+                tiered.flush();
+                tiered.compact();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (repository instanceof TieredLinkStore tiered) {
+                tiered.close();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lookups {
+
+        @Param({"hot", "cold", "zipf"})
+        public String access;
+
+        final String[] shortUrls = new String[BATCH];
+        private final SplittableRandom random = new SplittableRandom(42);
+        private double[] zipf;
+
+        @Setup(Level.Iteration)
+        public void prepare(Store store) {
+            int size = store.shortUrls.length;
+            if (zipf == null) {
+                // Накопленные вероятности рангов; ранги раскиданы по ссылкам перестановкой ниже
+                zipf = new double[size];
+                double sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += 1.0 / (i + 1);
+                    zipf[i] = sum;
+                }
+            }
+            for (int i = 0; i < BATCH; i++) {
+                int index = switch (access) {
+                    case "hot" -> random.nextInt(size / HOT_FRACTION / 2);
+                    case "cold" -> random.nextInt(size);
+                    default -> rank(random.nextDouble() * zipf[size - 1]);
+                };
+                // Ранг не совпадает с порядком создания: популярны не только первые ссылки
+                shortUrls[i] = store.shortUrls[(int) ((index * 0x9E3779B1L) % size)];
+            }
+        }
+
+        private int rank(double point) {
+            int low = 0;
+            int high = zipf.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (zipf[mid] < point) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    @Benchmark
+    public void find(Store store, Lookups lookups, Blackhole blackhole) {
+        for (String shortUrl : lookups.shortUrls) {
+            blackhole.consume(store.repository.findByShortUrl(shortUrl).getClickCount());
+        }
+    }
+}
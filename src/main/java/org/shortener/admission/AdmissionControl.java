@@ -0,0 +1,88 @@
+package org.shortener.admission;
+
+import org.shortener.config.AppConfig;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ограничение частоты переходов и создания ссылок перед LinkService (admission.* в config.properties).
+// Переход проверяется лимитом клиента, затем общим лимитом процесса, а после поиска ссылки — лимитом её
+// владельца; создание — лимитом пользователя и общим. Лимит с нулевой частотой не проверяется.
+// Методы возвращают отклонивший лимит или null, если запрос допущен; now — System.nanoTime().
+public class AdmissionControl {
+
+    private final KeyedRateLimiter<String> redirectClients;
+    private final KeyedRateLimiter<UUID> redirectOwners;
+    private final Gcra redirectGlobal;
+    private final KeyedRateLimiter<UUID> createUsers;
+    private final Gcra createGlobal;
+    // TAT общих лимитов: один CAS на допущенный запрос всего процесса
+    private final AtomicLong redirectGlobalTat = new AtomicLong(System.nanoTime());
+    private final AtomicLong createGlobalTat = new AtomicLong(System.nanoTime());
+
+    public AdmissionControl(AppConfig config) {
+        int maxKeys = config.getAdmissionKeysMax();
+        redirectClients = config.getAdmissionRedirectClientRate() > 0
+                ? new KeyedRateLimiter<>(config.getAdmissionRedirectClientRate(),
+                        config.getAdmissionRedirectClientBurst(), maxKeys)
+                : null;
+        redirectOwners = config.getAdmissionRedirectOwnerRate() > 0
+                ? new KeyedRateLimiter<>(config.getAdmissionRedirectOwnerRate(),
+                        config.getAdmissionRedirectOwnerBurst(), maxKeys)
+                : null;
+        redirectGlobal = config.getAdmissionRedirectGlobalRate() > 0
+                ? new Gcra(config.getAdmissionRedirectGlobalRate(), config.getAdmissionRedirectGlobalBurst())
+                : null;
+        createUsers = config.getAdmissionCreateUserRate() > 0
+                ? new KeyedRateLimiter<>(config.getAdmissionCreateUserRate(),
+                        config.getAdmissionCreateUserBurst(), maxKeys)
+                : null;
+        createGlobal = config.getAdmissionCreateGlobalRate() > 0
+                ? new Gcra(config.getAdmissionCreateGlobalRate(), config.getAdmissionCreateGlobalBurst())
+                : null;
+    }
+
+    // Первым проверяется лимит клиента: лишние запросы одного клиента отклоняются его собственной
+    // корзиной и не тратят общий лимит. clientKey null — клиент неизвестен, проверяется только общий лимит.
+    public AdmissionLimit admitRedirect(String clientKey, long now) {
+        if (redirectClients != null && clientKey != null && !redirectClients.tryAcquire(clientKey, now)) {
+            return AdmissionLimit.REDIRECT_CLIENT;
+        }
+        if (redirectGlobal != null && !redirectGlobal.tryAcquire(redirectGlobalTat, now)) {
+            return AdmissionLimit.REDIRECT_GLOBAL;
+        }
+        return null;
+    }
+
+    public AdmissionLimit admitRedirectToOwner(UUID ownerId, long now) {
+        if (redirectOwners != null && !redirectOwners.tryAcquire(ownerId, now)) {
+            return AdmissionLimit.REDIRECT_OWNER;
+        }
+        return null;
+    }
+
+    public AdmissionLimit admitCreate(UUID userId, long now) {
+        if (createUsers != null && !createUsers.tryAcquire(userId, now)) {
+            return AdmissionLimit.CREATE_USER;
+        }
+        if (createGlobal != null && !createGlobal.tryAcquire(createGlobalTat, now)) {
+            return AdmissionLimit.CREATE_GLOBAL;
+        }
+        return null;
+    }
+
+    // Ключи (клиенты, владельцы, пользователи) во всех таблицах лимитов
+    public int trackedKeys() {
+        int keys = 0;
+        if (redirectClients != null) {
+            keys += redirectClients.size();
+        }
+        if (redirectOwners != null) {
+            keys += redirectOwners.size();
+        }
+        if (createUsers != null) {
+            keys += createUsers.size();
+        }
+        return keys;
+    }
+}
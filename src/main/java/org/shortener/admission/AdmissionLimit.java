@@ -0,0 +1,10 @@
+package org.shortener.admission;
+
+// Лимит AdmissionControl, отклонивший запрос
+public enum AdmissionLimit {
+    REDIRECT_CLIENT,  // переходы одного клиента (адрес или заголовок admission.client.header)
+    REDIRECT_OWNER,   // переходы по ссылкам одного владельца
+    REDIRECT_GLOBAL,  // все переходы процесса
+    CREATE_USER,      // создание ссылок одним пользователем
+    CREATE_GLOBAL     // всё создание ссылок в процессе
+}
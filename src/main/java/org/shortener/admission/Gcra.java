@@ -0,0 +1,44 @@
+package org.shortener.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// GCRA (generic cell rate algorithm) — корзина токенов, сведённая к одному числу: теоретическому времени
+// прихода следующего запроса (TAT, наносекунды System.nanoTime). Запрос проходит, если TAT опережает текущее
+// время не больше чем на burst интервалов, и сдвигает TAT на один интервал. Проверка и сдвиг — один CAS;
+// отклонённый запрос только читает TAT, поэтому поток отказов не мешает пропускаемым запросам.
+final class Gcra {
+
+    private final long interval;   // наносекунд на один запрос
+    private final long capacity;   // burst * interval: насколько TAT может опережать время
+
+    Gcra(double perSecond, int burst) {
+        if (!(perSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Неверный лимит частоты: " + perSecond + " в секунду, запас " + burst);
+        }
+        this.interval = Math.max(1, Math.round(1_000_000_000.0 / perSecond));
+        this.capacity = burst > Long.MAX_VALUE / 4 / interval ? Long.MAX_VALUE / 4 : interval * burst;
+    }
+
+    boolean tryAcquire(AtomicLong tat, long now) {
+        while (true) {
+            long current = tat.get();
+            long next = (current - now > 0 ? current : now) + interval;
+            if (next - now > capacity) {
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    // Время, за которое пустая корзина наполняется целиком
+    long refillNanos() {
+        return capacity;
+    }
+
+    // Корзина полна: ключ с таким TAT ничем не отличается от нового
+    static boolean isIdle(long tat, long now) {
+        return tat - now <= 0;
+    }
+}
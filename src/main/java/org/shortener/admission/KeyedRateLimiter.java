@@ -0,0 +1,79 @@
+package org.shortener.admission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Лимит частоты для каждого ключа (клиента, пользователя) в таблице не больше maxKeys записей.
+// Ключ с полной корзиной ничем не отличается от ключа, которого в таблице нет, поэтому такие записи можно
+// удалять в любой момент — таблица «истекает» сама, без сроков жизни. Когда она заполнена на три четверти,
+// фоновый обход (не чаще раза за время наполнения корзины) удаляет простаивающие ключи. Если места всё же
+// нет, новые ключи делят одну общую корзину: память ограничена при любом числе ключей, а ключи, уже
+// попавшие в таблицу (постоянные клиенты), лимит с ними не делят.
+final class KeyedRateLimiter<K> {
+
+    private static final long MIN_SWEEP_INTERVAL_NANOS = 100_000_000L;
+    private static final long MAX_SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Gcra gcra;
+    private final int maxKeys;
+    private final int sweepThreshold;
+    private final long sweepInterval;
+    private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    // Общая корзина ключей, не поместившихся в таблицу
+    private final AtomicLong overflow;
+    private final AtomicLong nextSweep;
+    private final Executor sweeper;
+
+    KeyedRateLimiter(double perSecond, int burst, int maxKeys) {
+        // Обход таблицы занимает миллисекунды — не на пути запроса
+        this(perSecond, burst, maxKeys, System.nanoTime(), Thread::startVirtualThread);
+    }
+
+    // now — текущее время в тех же единицах, что и у tryAcquire; sweeper запускает обход таблицы
+    KeyedRateLimiter(double perSecond, int burst, int maxKeys, long now, Executor sweeper) {
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("Число ключей лимита должно быть положительным: " + maxKeys);
+        }
+        this.gcra = new Gcra(perSecond, burst);
+        this.maxKeys = maxKeys;
+        this.sweepThreshold = Math.max(1, maxKeys - maxKeys / 4);
+        this.sweepInterval = Math.min(MAX_SWEEP_INTERVAL_NANOS,
+                Math.max(MIN_SWEEP_INTERVAL_NANOS, gcra.refillNanos()));
+        this.overflow = new AtomicLong(now);
+        this.nextSweep = new AtomicLong(now);
+        this.sweeper = sweeper;
+    }
+
+    boolean tryAcquire(K key, long now) {
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) {
+            tat = track(key, now);
+        }
+        return gcra.tryAcquire(tat, now);
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong track(K key, long now) {
+        int size = buckets.size();
+        if (size >= sweepThreshold) {
+            long sweepAt = nextSweep.get();
+            if (now - sweepAt >= 0 && nextSweep.compareAndSet(sweepAt, now + sweepInterval)) {
+                sweeper.execute(() -> sweep(now));
+                // Обход мог уже закончиться и освободить место
+                size = buckets.size();
+            }
+        }
+        // Несколько потоков могут одновременно пройти проверку: таблица превысит maxKeys на их число
+        return size < maxKeys ? buckets.computeIfAbsent(key, k -> new AtomicLong(now)) : overflow;
+    }
+
+    // Удаляет ключи, простаивающие к моменту now (время запроса, запустившего обход). Запрос, успевший
+    // взять удаляемую корзину, сдвинет уже забытый TAT — ключ получит самое большее один лишний запрос.
+    private void sweep(long now) {
+        buckets.values().removeIf(tat -> Gcra.isIdle(tat.get(), now));
+    }
+}
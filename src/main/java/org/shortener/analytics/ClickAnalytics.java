@@ -0,0 +1,178 @@
+package org.shortener.analytics;
+
+import org.shortener.clicks.ClickDelta;
+import org.shortener.clicks.ClickSink;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Аналитика горячих ссылок в памяти фиксированного размера, не зависящего от числа ссылок.
+//
+// Время разбито на корзины по bucketSeconds, хранятся последние buckets корзин (кольцо). В каждой корзине —
+// Count-Min sketch переходов по ссылкам и куча самых частых ссылок этой корзины по оценкам sketch.
+// Частота ссылки за окно — сумма оценок sketch по корзинам окна (оценка бывает только завышенной);
+// глобальный топ — объединение куч корзин окна, упорядоченное по тем же оценкам.
+//
+// Переходы приходят дельтами из ClickPipeline, поэтому на один переход приходится доля одного
+// обновления sketch: за окно конвейера все переходы по ссылке сворачиваются в одну дельту.
+public class ClickAnalytics implements ClickSink {
+
+    private static final Comparator<HotLink> HOTTEST_FIRST = Comparator.comparingLong(HotLink::clicks).reversed()
+            .thenComparing(HotLink::shortUrl);
+
+    private final long bucketMillis;
+    private final Bucket[] ring;
+    private final UserRepository userRepository;
+
+    public ClickAnalytics(int bucketSeconds, int buckets, int sketchWidth, int sketchDepth, int topCapacity,
+                          UserRepository userRepository) {
+        this.bucketMillis = bucketSeconds * 1000L;
+        this.ring = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            ring[i] = new Bucket(sketchWidth, sketchDepth, topCapacity);
+        }
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public void onClicks(List<ClickDelta> batch) {
+        for (ClickDelta delta : batch) {
+            record(delta.link().getShortUrl(), delta.clicks(), delta.lastClickMillis());
+        }
+    }
+
+    public void record(String shortUrl, int clicks, long timeMillis) {
+        long epoch = timeMillis / bucketMillis;
+        Bucket bucket = ring[(int) (epoch % ring.length)];
+        long hash = hash(shortUrl);
+        synchronized (bucket) {
+            if (bucket.epoch != epoch) {
+                if (bucket.epoch > epoch) {
+                    // Дельта старше всего окна: её корзину уже заняли более свежие переходы
+                    return;
+                }
+                bucket.reset(epoch);
+            }
+            bucket.top.offer(shortUrl, bucket.sketch.add(hash, clicks));
+        }
+    }
+
+    // Длина окна, которое покрывают хранимые корзины, в секундах
+    public int getWindowSeconds() {
+        return (int) (ring.length * bucketMillis / 1000);
+    }
+
+    // Переходы по ссылке в каждой из хранимых корзин, от старой к текущей
+    public long[] clickSeries(String shortUrl) {
+        long hash = hash(shortUrl);
+        long current = System.currentTimeMillis() / bucketMillis;
+        long[] series = new long[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            series[i] = estimate(current - ring.length + 1 + i, hash);
+        }
+        return series;
+    }
+
+    public HotLink linkClicks(String shortUrl, int windowSeconds) {
+        int buckets = bucketsIn(windowSeconds);
+        return hotLink(shortUrl, sum(hash(shortUrl), System.currentTimeMillis() / bucketMillis, buckets), buckets);
+    }
+
+    // Самые частые ссылки за последние windowSeconds
+    public List<HotLink> topLinks(int k, int windowSeconds) {
+        int buckets = bucketsIn(windowSeconds);
+        long current = System.currentTimeMillis() / bucketMillis;
+        Set<String> candidates = new HashSet<>();
+        for (long epoch = current - buckets + 1; epoch <= current; epoch++) {
+            Bucket bucket = ring[Math.floorMod(epoch, ring.length)];
+            synchronized (bucket) {
+                if (bucket.epoch == epoch) {
+                    bucket.top.forEachKey(candidates::add);
+                }
+            }
+        }
+        List<HotLink> hot = new ArrayList<>(candidates.size());
+        for (String shortUrl : candidates) {
+            hot.add(hotLink(shortUrl, sum(hash(shortUrl), current, buckets), buckets));
+        }
+        hot.sort(HOTTEST_FIRST);
+        return hot.size() > k ? new ArrayList<>(hot.subList(0, k)) : hot;
+    }
+
+    // Ссылки пользователя с переходами за окно, самые частые первыми. Список пользователя обходится лениво.
+    public List<HotLink> userLinks(UUID userId, int windowSeconds) {
+        int buckets = bucketsIn(windowSeconds);
+        long current = System.currentTimeMillis() / bucketMillis;
+        List<HotLink> hot = new ArrayList<>();
+        Iterator<ShortLink> links = userRepository.iterateUserLinks(userId, null);
+        while (links.hasNext()) {
+            String shortUrl = links.next().getShortUrl();
+            long clicks = sum(hash(shortUrl), current, buckets);
+            if (clicks > 0) {
+                hot.add(hotLink(shortUrl, clicks, buckets));
+            }
+        }
+        hot.sort(HOTTEST_FIRST);
+        return hot;
+    }
+
+    private HotLink hotLink(String shortUrl, long clicks, int buckets) {
+        return new HotLink(shortUrl, clicks, clicks * 1000.0 / (buckets * bucketMillis));
+    }
+
+    private int bucketsIn(int windowSeconds) {
+        long buckets = (windowSeconds * 1000L + bucketMillis - 1) / bucketMillis;
+        return (int) Math.max(1, Math.min(ring.length, buckets));
+    }
+
+    private long sum(long hash, long current, int buckets) {
+        long clicks = 0;
+        for (long epoch = current - buckets + 1; epoch <= current; epoch++) {
+            clicks += estimate(epoch, hash);
+        }
+        return clicks;
+    }
+
+    private long estimate(long epoch, long hash) {
+        Bucket bucket = ring[Math.floorMod(epoch, ring.length)];
+        synchronized (bucket) {
+            return bucket.epoch == epoch ? bucket.sketch.estimate(hash) : 0;
+        }
+    }
+
+    // FNV-1a по символам кода с финальным перемешиванием. String.hashCode не годится: у кодов одной длины
+    // с общим префиксом он легко совпадает ("...fls" и "...fn5"), и такие ссылки сливаются во всех строках sketch.
+    private static long hash(String shortUrl) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < shortUrl.length(); i++) {
+            h = (h ^ shortUrl.charAt(i)) * 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static final class Bucket {
+        final CountMinSketch sketch;
+        final HeavyHitters top;
+        long epoch = Long.MIN_VALUE;
+
+        Bucket(int sketchWidth, int sketchDepth, int topCapacity) {
+            this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+            this.top = new HeavyHitters(topCapacity);
+        }
+
+        void reset(long newEpoch) {
+            sketch.clear();
+            top.clear();
+            epoch = newEpoch;
+        }
+    }
+}
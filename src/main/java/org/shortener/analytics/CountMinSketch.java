@@ -0,0 +1,50 @@
+package org.shortener.analytics;
+
+import java.util.Arrays;
+
+// Count-Min sketch: depth строк по width счётчиков, оценка — минимум по строкам.
+// Обновление консервативное: счётчик поднимается не выше новой оценки, это заметно уменьшает завышение.
+// Не потокобезопасен, синхронизацию обеспечивает владелец.
+final class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final int[] counters;
+
+    // width округляется вверх до степени двойки
+    CountMinSketch(int width, int depth) {
+        int size = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counters = new int[size * depth];
+    }
+
+    // Возвращает новую оценку
+    int add(long hash, int count) {
+        int estimate = estimate(hash);
+        int target = (int) Math.min(Integer.MAX_VALUE, (long) estimate + count);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            int index = row * (mask + 1) + ((h1 + row * h2) & mask);
+            if (counters[index] < target) {
+                counters[index] = target;
+            }
+        }
+        return target;
+    }
+
+    int estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * (mask + 1) + ((h1 + row * h2) & mask)]);
+        }
+        return min;
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0);
+    }
+}
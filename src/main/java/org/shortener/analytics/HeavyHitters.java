@@ -0,0 +1,100 @@
+package org.shortener.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Самые частые ключи по оценкам Count-Min sketch: min-куча из не более чем capacity ключей.
+// Ключ попадает в кучу, если его оценка больше наименьшей в ней, и вытесняет наименьший. Для ключей хвоста,
+// оценка которых не дотягивает до минимума кучи, обновление — одно сравнение, без поиска в таблице.
+// Не потокобезопасен, синхронизацию обеспечивает владелец.
+final class HeavyHitters {
+
+    private final String[] keys;
+    private final long[] counts;
+    private final Map<String, Integer> positions;
+    private int size;
+
+    HeavyHitters(int capacity) {
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    // estimate — текущая оценка ключа; оценки Count-Min только растут, поэтому позиция ключа уходит вниз кучи
+    void offer(String key, long estimate) {
+        if (size == keys.length && estimate <= counts[0]) {
+            // Если ключ в куче, его счётчик не больше estimate и не меньше минимума, то есть уже равен estimate
+            return;
+        }
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] = estimate;
+            siftDown(position);
+        } else if (size < keys.length) {
+            keys[size] = key;
+            counts[size] = estimate;
+            positions.put(key, size);
+            siftUp(size++);
+        } else {
+            positions.remove(keys[0]);
+            keys[0] = key;
+            counts[0] = estimate;
+            positions.put(key, 0);
+            siftDown(0);
+        }
+    }
+
+    void forEachKey(Consumer<String> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i]);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0, size, null);
+        positions.clear();
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[parent] <= counts[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (left + 1 < size && counts[left + 1] < counts[smallest]) {
+                smallest = left + 1;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String key = keys[i];
+        long count = counts[i];
+        keys[i] = keys[j];
+        counts[i] = counts[j];
+        keys[j] = key;
+        counts[j] = count;
+        positions.put(keys[i], i);
+        positions.put(keys[j], j);
+    }
+}
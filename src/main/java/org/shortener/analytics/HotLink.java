@@ -0,0 +1,5 @@
+package org.shortener.analytics;
+
+// Оценка числа переходов по ссылке за окно; clicksPerSecond — то же число, делённое на длину окна
+public record HotLink(String shortUrl, long clicks, double clicksPerSecond) {
+}
@@ -0,0 +1,48 @@
+package org.shortener.bulk;
+
+import org.shortener.model.ShortLink;
+import org.shortener.repository.LinkRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Выгрузка всех ссылок хранилища в CSV/NDJSON. Хранилище обходится итератором без копирования,
+// ссылки пишутся по одной, поэтому память не зависит от числа ссылок. Выгрузка идёт без остановки
+// сервиса: ссылки, созданные или удалённые во время обхода, могут попасть в файл, а могут и нет.
+public class BulkExporter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final LinkRepository linkRepository;
+
+    public BulkExporter(LinkRepository linkRepository) {
+        this.linkRepository = linkRepository;
+    }
+
+    // Возвращает число выгруженных ссылок
+    public long exportLinks(Path output) throws IOException {
+        BulkFormat format = BulkFormat.of(output);
+        long exported = 0;
+        StringBuilder line = new StringBuilder(256);
+        try (BufferedWriter writer = new BufferedWriter(
+                Files.newBufferedWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            if (format == BulkFormat.CSV) {
+                writer.write(BulkRecords.EXPORT_HEADER);
+                writer.newLine();
+            }
+            for (ShortLink link : linkRepository.findAll()) {
+                if (link.isRemoved()) {
+                    continue;
+                }
+                line.setLength(0);
+                BulkRecords.appendExport(line, link, format);
+                writer.append(line);
+                exported++;
+            }
+        }
+        return exported;
+    }
+}
@@ -0,0 +1,21 @@
+package org.shortener.bulk;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Формат файла массовой загрузки/выгрузки, определяется по расширению
+public enum BulkFormat {
+    CSV,
+    NDJSON;
+
+    public static BulkFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return NDJSON;
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        throw new IllegalArgumentException("Неизвестный формат файла (ожидается .csv или .ndjson): " + file);
+    }
+}
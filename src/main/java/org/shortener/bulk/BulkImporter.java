@@ -0,0 +1,201 @@
+package org.shortener.bulk;
+
+import org.shortener.model.ShortLink;
+import org.shortener.service.LinkRequest;
+import org.shortener.service.LinkService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// Массовое создание ссылок из CSV/NDJSON-файла с записями (userId, originalUrl, hours, clicks).
+//
+// Конвейер: текущий поток читает файл пачками строк и отдаёт их пулу обработчиков (по числу ядер);
+// обработчик разбирает строки и создаёт ссылки пачки одним вызовом LinkService.createShortLinks: URL
+// нормализуются, коды генерируются, метрики обновляются так же, как при создании из меню, а журнал
+// пишет всю пачку одним group commit вместо fsync на каждую ссылку.
+// Отдельный поток пишет результаты пачек в выходной файл в исходном порядке строк.
+// Очередь пачек ограничена, поэтому память не зависит от размера файла.
+public class BulkImporter {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final LinkService linkService;
+    private final int threads;
+
+    // Итог загрузки
+    public record Summary(long created, long failed) {
+    }
+
+    // Результат обработки пачки: готовый текст для выходного файла
+    private record BatchResult(String text, int created, int failed) {
+    }
+
+    private static final BatchResult END = new BatchResult("", 0, 0);
+
+    public BulkImporter(LinkService linkService, int threads) {
+        this.linkService = linkService;
+        this.threads = Math.max(1, threads);
+    }
+
+    public Summary importLinks(Path input, Path output) throws IOException {
+        BulkFormat inputFormat = BulkFormat.of(input);
+        BulkFormat outputFormat = BulkFormat.of(output);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, daemon("bulk-import"));
+        ExecutorService writerThread = Executors.newSingleThreadExecutor(daemon("bulk-import-writer"));
+        BlockingQueue<Future<BatchResult>> pending = new ArrayBlockingQueue<>(threads * 2);
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = new BufferedWriter(
+                     Files.newBufferedWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            if (outputFormat == BulkFormat.CSV) {
+                writer.write(BulkRecords.RESULT_HEADER);
+                writer.newLine();
+            }
+            Future<Summary> writing = writerThread.submit(() -> writeResults(pending, writer));
+
+            long lineNumber = 0;
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            long batchStart = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && inputFormat == BulkFormat.CSV && BulkRecords.isImportHeader(line)) {
+                    batchStart = 2;
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(batch, batchStart, inputFormat, outputFormat, workers, pending, writing);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    batchStart = lineNumber + 1;
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batch, batchStart, inputFormat, outputFormat, workers, pending, writing);
+            }
+            enqueue(CompletableFuture.completedFuture(END), pending, writing);
+            return writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Ошибка записи результатов: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            workers.shutdownNow();
+            writerThread.shutdownNow();
+        }
+    }
+
+    private void submit(List<String> lines, long firstLine, BulkFormat inputFormat, BulkFormat outputFormat,
+                        ExecutorService workers, BlockingQueue<Future<BatchResult>> pending,
+                        Future<Summary> writing) throws InterruptedException, ExecutionException {
+        enqueue(workers.submit(() -> process(lines, firstLine, inputFormat, outputFormat)), pending, writing);
+    }
+
+    // Ждёт места в очереди; если писатель уже упал, не блокируется навсегда, а пробрасывает его ошибку
+    private static void enqueue(Future<BatchResult> batch, BlockingQueue<Future<BatchResult>> pending,
+                                Future<Summary> writing) throws InterruptedException, ExecutionException {
+        while (!pending.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (writing.isDone()) {
+                writing.get();
+                throw new IllegalStateException("Поток записи результатов завершился раньше времени");
+            }
+        }
+    }
+
+    private BatchResult process(List<String> lines, long firstLine, BulkFormat inputFormat, BulkFormat outputFormat) {
+        // Разбор: у каждой строки либо номер запроса в пачке, либо ошибка разбора (пустые строки пропускаются)
+        List<LinkRequest> requests = new ArrayList<>(lines.size());
+        int[] requestOf = new int[lines.size()];
+        String[] errors = new String[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            requestOf[i] = -1;
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                requests.add(BulkRecords.parse(line, inputFormat));
+                requestOf[i] = requests.size() - 1;
+            } catch (RuntimeException e) {
+                errors[i] = String.valueOf(e.getMessage());
+            }
+        }
+
+        String[] requestErrors = new String[requests.size()];
+        List<ShortLink> links;
+        try {
+            links = linkService.createShortLinks(requests, (e, i) -> requestErrors[i] = String.valueOf(e.getMessage()));
+        } catch (RuntimeException e) {
+            // Сбой всей пачки (например, журнал недоступен): ошибка у каждой её строки
+            links = Collections.nCopies(requests.size(), null);
+            Arrays.fill(requestErrors, String.valueOf(e.getMessage()));
+        }
+
+        StringBuilder out = new StringBuilder(lines.size() * 128);
+        int created = 0;
+        int failed = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            long lineNumber = firstLine + i;
+            String error = errors[i];
+            if (requestOf[i] >= 0) {
+                ShortLink link = links.get(requestOf[i]);
+                if (link != null) {
+                    BulkRecords.appendResult(out, link, outputFormat);
+                    created++;
+                    continue;
+                }
+                error = requestErrors[requestOf[i]];
+            }
+            if (error != null) {
+                BulkRecords.appendError(out, lineNumber, error, outputFormat);
+                failed++;
+            }
+        }
+        return new BatchResult(out.toString(), created, failed);
+    }
+
+    private static Summary writeResults(BlockingQueue<Future<BatchResult>> pending, BufferedWriter writer)
+            throws IOException, InterruptedException, ExecutionException {
+        long created = 0;
+        long failed = 0;
+        while (true) {
+            BatchResult result = pending.take().get();
+            if (result == END) {
+                writer.flush();
+                return new Summary(created, failed);
+            }
+            writer.write(result.text());
+            created += result.created();
+            failed += result.failed();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,287 @@
+package org.shortener.bulk;
+
+import org.shortener.model.ShortLink;
+import org.shortener.service.LinkRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Разбор и запись строк файлов массовой загрузки. Полноценные CSV/JSON-библиотеки не нужны:
+// строка CSV — поля через запятую, в кавычках по RFC 4180 (без переносов строк внутри поля);
+// строка NDJSON — плоский объект со строками и числами.
+final class BulkRecords {
+
+    static final String IMPORT_HEADER = "userId,originalUrl,hours,clicks";
+    static final String RESULT_HEADER = "userId,originalUrl,shortUrl,expiresAt,error";
+    static final String EXPORT_HEADER = "userId,originalUrl,shortUrl,createdAt,expiresAt,clickLimit,clickCount";
+
+    private BulkRecords() {
+    }
+
+    static boolean isImportHeader(String line) {
+        return line.startsWith("userId,");
+    }
+
+    static LinkRequest parse(String line, BulkFormat format) {
+        if (format == BulkFormat.CSV) {
+            List<String> fields = splitCsv(line);
+            if (fields.size() != 4) {
+                throw new IllegalArgumentException("ожидается 4 поля (" + IMPORT_HEADER + "), получено " + fields.size());
+            }
+            return request(fields.get(0), fields.get(1), fields.get(2), fields.get(3));
+        }
+        Map<String, String> object = parseJsonObject(line);
+        return request(object.get("userId"), object.get("originalUrl"), object.get("hours"), object.get("clicks"));
+    }
+
+    private static LinkRequest request(String userId, String originalUrl, String hours, String clicks) {
+        if (userId == null || originalUrl == null || hours == null || clicks == null) {
+            throw new IllegalArgumentException("нужны поля userId, originalUrl, hours, clicks");
+        }
+        String url = originalUrl.trim();
+        if (url.isEmpty()) {
+            throw new IllegalArgumentException("пустой originalUrl");
+        }
+        return new LinkRequest(UUID.fromString(userId.trim()), url,
+                Integer.parseInt(hours.trim()), Integer.parseInt(clicks.trim()));
+    }
+
+    static void appendResult(StringBuilder out, ShortLink link, BulkFormat format) {
+        if (format == BulkFormat.CSV) {
+            out.append(link.getUserId()).append(',');
+            appendCsv(out, link.getOriginalUrl());
+            out.append(',').append(link.getShortUrl())
+                    .append(',').append(link.getExpirationTime())
+                    .append(",\n");
+            return;
+        }
+        out.append("{\"userId\":\"").append(link.getUserId()).append("\",\"originalUrl\":");
+        appendJson(out, link.getOriginalUrl());
+        out.append(",\"shortUrl\":");
+        appendJson(out, link.getShortUrl());
+        out.append(",\"expiresAt\":\"").append(link.getExpirationTime()).append("\"}\n");
+    }
+
+    static void appendError(StringBuilder out, long lineNumber, String message, BulkFormat format) {
+        String error = "строка " + lineNumber + ": " + message;
+        if (format == BulkFormat.CSV) {
+            out.append(",,,,");
+            appendCsv(out, error);
+            out.append('\n');
+            return;
+        }
+        out.append("{\"line\":").append(lineNumber).append(",\"error\":");
+        appendJson(out, error);
+        out.append("}\n");
+    }
+
+    static void appendExport(StringBuilder out, ShortLink link, BulkFormat format) {
+        if (format == BulkFormat.CSV) {
+            out.append(link.getUserId()).append(',');
+            appendCsv(out, link.getOriginalUrl());
+            out.append(',').append(link.getShortUrl())
+                    .append(',').append(link.getCreationTime())
+                    .append(',').append(link.getExpirationTime())
+                    .append(',').append(link.getClickLimit())
+                    .append(',').append(link.getClickCount())
+                    .append('\n');
+            return;
+        }
+        out.append("{\"userId\":\"").append(link.getUserId()).append("\",\"originalUrl\":");
+        appendJson(out, link.getOriginalUrl());
+        out.append(",\"shortUrl\":");
+        appendJson(out, link.getShortUrl());
+        out.append(",\"createdAt\":\"").append(link.getCreationTime())
+                .append("\",\"expiresAt\":\"").append(link.getExpirationTime())
+                .append("\",\"clickLimit\":").append(link.getClickLimit())
+                .append(",\"clickCount\":").append(link.getClickCount())
+                .append("}\n");
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("незакрытая кавычка");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void appendCsv(StringBuilder out, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    // Плоский JSON-объект: значения — строки, числа, true/false/null (как текст)
+    static Map<String, String> parseJsonObject(String line) {
+        JsonCursor cursor = new JsonCursor(line);
+        Map<String, String> object = new HashMap<>();
+        cursor.expect('{');
+        if (cursor.peek() == '}') {
+            cursor.next();
+        } else {
+            do {
+                String key = cursor.string();
+                cursor.expect(':');
+                object.put(key, cursor.value());
+            } while (cursor.nextIs(','));
+            cursor.expect('}');
+        }
+        if (cursor.peek() != 0) {
+            throw new IllegalArgumentException("лишние символы после объекта");
+        }
+        return object;
+    }
+
+    private static void appendJson(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static final class JsonCursor {
+        private final String text;
+        private int pos;
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        // Следующий значимый символ или 0 в конце строки
+        char peek() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        char next() {
+            char c = peek();
+            if (c == 0) {
+                throw new IllegalArgumentException("неожиданный конец JSON");
+            }
+            pos++;
+            return c;
+        }
+
+        void expect(char expected) {
+            char c = next();
+            if (c != expected) {
+                throw new IllegalArgumentException("ожидался '" + expected + "', а не '" + c + "'");
+            }
+        }
+
+        boolean nextIs(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        String value() {
+            if (peek() == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && ",}] \t".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("ожидалось значение");
+            }
+            String literal = text.substring(start, pos);
+            return "null".equals(literal) ? null : literal;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("незакрытая строка");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    throw new IllegalArgumentException("незакрытая строка");
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> out.append(escaped);
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("обрезанный \\u");
+                        }
+                        out.append((char) Integer.parseInt(text, pos, pos + 4, 16));
+                        pos += 4;
+                    }
+                    default -> throw new IllegalArgumentException("неизвестная escape-последовательность \\" + escaped);
+                }
+            }
+        }
+    }
+}
@@ -1,34 +1,236 @@
 package org.shortener.cli;
 
+import org.shortener.admission.AdmissionControl;
+import org.shortener.analytics.ClickAnalytics;
+import org.shortener.bulk.BulkExporter;
+import org.shortener.bulk.BulkImporter;
+import org.shortener.clicks.ClickPipeline;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.PartitionedCodeGenerator;
+import org.shortener.codegen.RandomCodeGenerator;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.codegen.ShortCodeGenerator;
 import org.shortener.config.AppConfig;
+import org.shortener.load.LoadGenerator;
+import org.shortener.metrics.LinkMetrics;
+import org.shortener.model.LinkCursor;
 import org.shortener.model.ShortLink;
+import org.shortener.persistence.LinkJournal;
+import org.shortener.persistence.ReplicaClient;
+import org.shortener.persistence.ReplicationSource;
+import org.shortener.persistence.SnapshotScheduler;
+import org.shortener.repository.CompactLinkStore;
+import org.shortener.repository.FilteredLinkRepository;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
 import org.shortener.repository.LinkRepository;
+import org.shortener.repository.PartitionedLinkStore;
+import org.shortener.repository.TieredLinkStore;
 import org.shortener.repository.UserRepository;
+import org.shortener.server.PartitionLinks;
+import org.shortener.server.RedirectServer;
+import org.shortener.service.CleanupScheduler;
+import org.shortener.service.LinkListener;
 import org.shortener.service.LinkService;
 import org.shortener.service.UserService;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 public class Main {
 
     public static void main(String[] args) {
+        // Нагрузочный прогон (java ... Main load) не трогает настоящие данные: журнал, счётчик кодов
+        // и сегменты холодного уровня пишутся во временный каталог
+        if (args.length > 0 && "load".equals(args[0]) && !useTemporaryDataDirs()) {
+            return;
+        }
+
         // 1) Создаём объект конфигурации
         AppConfig appConfig = new AppConfig();
 
         // 2) Создаём репозитории и сервисы
-        LinkRepository linkRepository = new LinkRepository();
-        UserRepository userRepository = new UserRepository();
-        LinkService linkService = new LinkService(appConfig, linkRepository, userRepository);
+        LinkRepository linkRepository;
+        UserRepository userRepository;
+        boolean primary = "primary".equalsIgnoreCase(appConfig.getReplicationRole());
+        boolean replica = "replica".equalsIgnoreCase(appConfig.getReplicationRole());
+        // Реплике на той же машине нужен свой каталог сегментов: при запуске он очищается
+        Path tieredDir = replica
+                ? Path.of(appConfig.getTieredDir(), "replica-" + appConfig.getServerPort())
+                : Path.of(appConfig.getTieredDir());
+        int partitions = partitionCount(appConfig);
+        // Хранилища секций (или одно) — для метрик их таблиц URL
+        List<LinkRepository> baseStores = new ArrayList<>();
+        if (partitions > 1 && appConfig.getPartitionId() < 0) {
+            // Все секции в одном процессе: у каждой своё хранилище со своими индексами
+            LinkRepository[] partitionLinks = new LinkRepository[partitions];
+            UserRepository[] partitionUsers = new UserRepository[partitions];
+            for (int i = 0; i < partitions; i++) {
+                Stores stores = createStores(appConfig, tieredDir.resolve("p" + i));
+                partitionLinks[i] = stores.links();
+                partitionUsers[i] = stores.users();
+                baseStores.add(stores.links());
+            }
+            PartitionedLinkStore store = new PartitionedLinkStore(appConfig.getShortLinkDomain(),
+                    partitionLinks, partitionUsers);
+            linkRepository = store;
+            userRepository = store;
+        } else {
+            Stores stores = createStores(appConfig, tieredDir);
+            linkRepository = stores.links();
+            userRepository = stores.users();
+            baseStores.add(stores.links());
+        }
+        // Фильтр Блума перед хранилищем отсекает поиск несуществующих кодов
+        FilteredLinkRepository filteredRepository = null;
+        if (appConfig.isLinkFilterEnabled()) {
+            filteredRepository = new FilteredLinkRepository(linkRepository, appConfig.getLinkFilterExpectedLinks(),
+                    appConfig.getLinkFilterFalsePositiveRate(), appConfig.getLinkFilterRebuildIntervalSeconds());
+            linkRepository = filteredRepository;
+        }
+        // Восстанавливаем состояние из журнала до создания сервиса, чтобы ссылки попали в индекс истечения.
+        // Реплика получает состояние от первичного узла, своего журнала у неё нет.
+        LinkJournal journal = appConfig.isJournalEnabled() && !replica
+                ? openJournal(appConfig, linkRepository, userRepository)
+                : null;
+        if (journal == null && appConfig.isJournalEnabled() && !replica) {
+            // Хранилище могло загрузиться частично: без журнала новые изменения потерялись бы
+            System.exit(1);
+        }
+        LinkService linkService = new LinkService(appConfig, linkRepository, userRepository,
+                createCodeGenerator(appConfig, partitions));
         UserService userService = new UserService(userRepository);
+        if (filteredRepository != null) {
+            linkService.getMetrics().setLinkFilter(filteredRepository::getRejectedLookups,
+                    filteredRepository::getFill, filteredRepository::getEstimatedFalsePositiveRate);
+        }
+        registerUrlMetrics(linkService.getMetrics(), baseStores);
+        registerMetrics(linkService.getMetrics());
+        // Первичный узел засчитывает переходы, пересланные репликами, так же, как свои
+        ReplicationSource replicationSource = primary
+                ? new ReplicationSource(appConfig.getReplicationBind(), appConfig.getReplicationPort(),
+                        appConfig.getReplicationBacklogMb() * (1L << 20), appConfig.getReplicationHeartbeatMillis(),
+                        linkRepository, shortUrl -> linkService.resolve(shortUrl).outcome())
+                : null;
+        ReplicaClient replicaClient = replica
+                ? startReplica(appConfig, linkService, linkRepository, userRepository)
+                : null;
+        // Отложенная запись переходов: кормит журнал и аналитику пачками из фонового потока
+        ClickAnalytics analytics = appConfig.isAnalyticsEnabled() && appConfig.isClickPipelineEnabled()
+                ? new ClickAnalytics(appConfig.getAnalyticsBucketSeconds(), appConfig.getAnalyticsBuckets(),
+                        appConfig.getAnalyticsSketchWidth(), appConfig.getAnalyticsSketchDepth(),
+                        appConfig.getAnalyticsTopCapacity(), userRepository)
+                : null;
+        ClickPipeline clickPipeline = null;
+        if (appConfig.isClickPipelineEnabled() && (journal != null || analytics != null || replicationSource != null)) {
+            clickPipeline = new ClickPipeline(appConfig.getClickBufferCapacity(),
+                    appConfig.getClickFlushIntervalMillis(), appConfig.getClickBackpressure(),
+                    linkService.getMetrics());
+            linkService.addListener(clickPipeline);
+            if (analytics != null) {
+                clickPipeline.addSink(analytics);
+            }
+        }
+        SnapshotScheduler snapshotScheduler = null;
+        if (journal != null) {
+            if (clickPipeline != null) {
+                // Переходы пишутся в журнал через конвейер, остальные изменения — сразу
+                clickPipeline.addSink(journal);
+                linkService.addListener(LinkListener.ignoringClicks(journal));
+            } else {
+                linkService.addListener(journal);
+            }
+            snapshotScheduler = new SnapshotScheduler(journal, linkRepository, appConfig.getSnapshotIntervalSeconds());
+            // Дописываем журнал и при завершении процесса по Ctrl+C
+            ClickPipeline pipeline = clickPipeline;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (pipeline != null) {
+                    pipeline.close();
+                }
+                journal.close();
+            }));
+        }
 
-        // 3) Запускаем консольный интерфейс
-        System.out.println("Добро пожаловать в консольный URL-шортенер!");
+        if (replicationSource != null) {
+            if (clickPipeline != null) {
+                clickPipeline.addSink(replicationSource);
+                linkService.addListener(LinkListener.ignoringClicks(replicationSource));
+            } else {
+                linkService.addListener(replicationSource);
+            }
+            startReplicationSource(replicationSource);
+        }
+        if (clickPipeline != null) {
+            // Все получатели переходов добавлены
+            clickPipeline.start();
+        }
+
+        // Фоновая очистка просроченных ссылок
+        CleanupScheduler cleanupScheduler = new CleanupScheduler(linkService, appConfig.getCleanupIntervalSeconds());
+
+        // Пакетный режим (java ... Main import links.csv result.csv | export links.ndjson): без меню
+        boolean bulkMode = !replica && args.length > 0 && ("import".equals(args[0]) || "export".equals(args[0]));
+        // Нагрузочный прогон тоже без меню. Ссылки заполняются до включения лимитов частоты:
+        // это подготовка, а не нагрузка
+        boolean loadMode = !replica && args.length > 0 && "load".equals(args[0]);
+        LoadGenerator loadGenerator = loadMode
+                ? prepareLoad(appConfig, linkService, linkRepository, userRepository)
+                : null;
+        // Лимиты частоты защищают меню и HTTP-сервер; пакетная загрузка идёт без них
+        if (appConfig.isAdmissionEnabled() && !bulkMode) {
+            try {
+                linkService.setAdmissionControl(new AdmissionControl(appConfig));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Неверные настройки admission.* (" + e.getMessage()
+                        + "), работаем без лимитов частоты.");
+            }
+        }
+
+        // Режим HTTP-сервера переходов (java ... Main server): сервер работает параллельно с меню.
+        // Реплика только обслуживает переходы, поэтому сервер у неё есть всегда, а меню нет.
+        RedirectServer server = null;
+        if (replica || args.length > 0 && "server".equals(args[0])
+                || loadGenerator != null && "http".equalsIgnoreCase(appConfig.getLoadTarget())) {
+            server = startServer(appConfig, linkService, analytics);
+        }
+
+        if (bulkMode) {
+            runBulk(args, linkService, linkRepository);
+        } else if (loadMode) {
+            if (loadGenerator != null) {
+                loadGenerator.run(server != null ? "http://localhost:" + server.getPort() : null);
+            }
+        } else if (replica) {
+            System.out.println("Реплика обслуживает переходы. Enter — завершение работы.");
+        } else {
+            // 3) Запускаем консольный интерфейс
+            System.out.println("Добро пожаловать в консольный URL-шортенер!");
+        }
 
         UUID currentUserId = null;
-        boolean exit = false;
+        boolean exit = bulkMode || loadMode || replica;
+        // Секции в разных процессах: список ссылок пользователя собирается со всех узлов, как в /_links
+        PartitionLinks partitionLinks = !exit && hasRemoteNodes(appConfig, partitions)
+                ? new PartitionLinks(appConfig.getPartitionNodes(), appConfig.getPartitionId(), linkService,
+                        LinkService.PAGE_SIZE, null)
+                : null;
 
         try (Scanner scanner = new Scanner(System.in)) {
+            if (replica && !scanner.hasNextLine()) {
+                // Без консоли (stdin закрыт) реплика работает, пока процесс не остановят
+                return;
+            }
             while (!exit) {
                 System.out.println("\nМеню:");
                 System.out.println("1. Авторизация (ввести существующий UUID или сгенерировать новый)");
@@ -53,37 +255,306 @@ public class Main {
                     case "3" -> {
                         System.out.print("Введите короткую ссылку (test.ru/AbCdE1): ");
                         String shortUrlInput = scanner.nextLine();
+                        if (isForeign(appConfig, partitions, shortUrlInput)) break;
                         linkService.redirectToOriginalUrl(shortUrlInput);
                     }
                     case "4" -> {
                         if (!userService.checkUserLoggedIn(currentUserId)) break;
                         System.out.print("Введите короткую ссылку (test.ru/AbCdE1) для удаления: ");
                         String shortUrlInput = scanner.nextLine();
+                        if (isForeign(appConfig, partitions, shortUrlInput)) break;
                         linkService.deleteLink(shortUrlInput, currentUserId);
                     }
                     case "5" -> {
                         if (!userService.checkUserLoggedIn(currentUserId)) break;
                         System.out.print("Введите короткую ссылку (test.ru/AbCdE1) для изменения лимита: ");
                         String shortUrlInput = scanner.nextLine();
+                        if (isForeign(appConfig, partitions, shortUrlInput)) break;
                         System.out.print("Введите новый лимит кликов: ");
                         int newLimit = readIntValue(scanner, 1);
                         linkService.editClickLimit(shortUrlInput, currentUserId, newLimit);
                     }
                     case "6" -> {
                         if (!userService.checkUserLoggedIn(currentUserId)) break;
-                        linkService.listUserLinks(currentUserId);
+                        if (partitionLinks != null) {
+                            listPartitionLinksFlow(scanner, currentUserId, partitionLinks);
+                        } else {
+                            listUserLinksFlow(scanner, currentUserId, linkService);
+                        }
                     }
                     case "7" -> exit = true;
                     default -> System.out.println("Некорректный ввод, повторите.");
                 }
-
-                // Автоматическая очистка просроченных ссылок
-                linkService.cleanupExpiredLinks();
             }
         }
+        if (partitionLinks != null) {
+            partitionLinks.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        if (replicaClient != null) {
+            replicaClient.close();
+        }
+        if (replicationSource != null) {
+            replicationSource.close();
+        }
+        cleanupScheduler.close();
+        if (filteredRepository != null) {
+            filteredRepository.close();
+        }
+        if (clickPipeline != null) {
+            clickPipeline.close();
+        }
+        if (journal != null) {
+            snapshotScheduler.close();
+            journal.close();
+        }
         System.out.println("Работа приложения завершена.");
     }
 
+    // Хранилище ссылок и индекс пользователей одной секции (или всего процесса без секций)
+    private record Stores(LinkRepository links, UserRepository users) {
+    }
+
+    private static Stores createStores(AppConfig appConfig, Path tieredDir) {
+        if ("compact".equalsIgnoreCase(appConfig.getLinkStore())) {
+            // Одно компактное хранилище держит и ссылки, и списки ссылок пользователей
+            CompactLinkStore store = new CompactLinkStore(appConfig.getShortLinkDomain(), appConfig.isLinkStoreOffHeap());
+            return new Stores(store, store);
+        }
+        if ("tiered".equalsIgnoreCase(appConfig.getLinkStore())) {
+            // Горячие ссылки на куче, остальные — в файлах-сегментах, отображённых в память
+            TieredLinkStore store = openTieredStore(appConfig, tieredDir);
+            if (store != null) {
+                return new Stores(store, store);
+            }
+        }
+        return new Stores(new InMemoryLinkRepository(), new InMemoryUserRepository());
+    }
+
+    // Число секций из настроек; при неверных настройках секции отключаются
+    private static int partitionCount(AppConfig appConfig) {
+        int count = appConfig.getPartitionCount();
+        int id = appConfig.getPartitionId();
+        int nodes = appConfig.getPartitionNodes().size();
+        if (count < 1 || count > PartitionedCodeGenerator.MAX_PARTITIONS || id >= count
+                || nodes > 0 && nodes != count) {
+            System.out.println("Неверные настройки секций (partition.*), работаем без секций.");
+            return 1;
+        }
+        return count;
+    }
+
+    // Секции разнесены по процессам (partition.nodes): консоль видит только хранилище своей секции
+    private static boolean hasRemoteNodes(AppConfig appConfig, int partitions) {
+        return partitions > 1 && appConfig.getPartitionId() >= 0 && !appConfig.getPartitionNodes().isEmpty();
+    }
+
+    // Ссылка чужой секции: консоль не пересылает команды на другие узлы, а называет узел-владельца
+    private static boolean isForeign(AppConfig appConfig, int partitions, String shortUrl) {
+        if (!hasRemoteNodes(appConfig, partitions)) {
+            return false;
+        }
+        int partition = PartitionedCodeGenerator.partitionOf(shortUrl.trim(), appConfig.getShortLinkDomain(), partitions);
+        if (partition < 0 || partition == appConfig.getPartitionId()) {
+            return false;
+        }
+        System.out.println("Ссылка принадлежит секции " + partition + ": выполните действие в консоли узла "
+                + appConfig.getPartitionNodes().get(partition) + ".");
+        return true;
+    }
+
+    private static ShortCodeGenerator createCodeGenerator(AppConfig appConfig, int partitions) {
+        ShortCodeGenerator generator = createCodeGenerator(appConfig);
+        if (partitions == 1) {
+            return generator;
+        }
+        // Процесс создаёт ссылки в своей секции или, если держит все, по очереди во всех
+        int[] owned = appConfig.getPartitionId() >= 0
+                ? new int[]{appConfig.getPartitionId()}
+                : IntStream.range(0, partitions).toArray();
+        return new PartitionedCodeGenerator(appConfig.getShortLinkDomain(), owned, generator);
+    }
+
+    private static ShortCodeGenerator createCodeGenerator(AppConfig appConfig) {
+        if ("random".equals(appConfig.getCodeGenerator())) {
+            return new RandomCodeGenerator(appConfig.getShortLinkDomain());
+        }
+        // Счётчик кодов сохраняем рядом с журналом, иначе после перезапуска коды пошли бы по второму кругу;
+        // там же ключ перестановки, если он не задан в настройках
+        Path dir = appConfig.isJournalEnabled() ? Path.of(appConfig.getJournalDir()) : null;
+        try {
+            Long scrambleKey = appConfig.getCodeScrambleKey();
+            if (scrambleKey == null && appConfig.isCodeScrambleEnabled()) {
+                scrambleKey = CodeSequence.scrambleKey(dir == null ? null : dir.resolve("code-scramble-key"));
+            }
+            return new SequentialCodeGenerator(appConfig.getShortLinkDomain(),
+                    new CodeSequence(dir == null ? null : dir.resolve("code-sequence")),
+                    appConfig.getCodeBlockSize(), scrambleKey);
+        } catch (IOException e) {
+            System.out.println("Не удалось прочитать счётчик кодов, используем случайные коды: " + e.getMessage());
+            return new RandomCodeGenerator(appConfig.getShortLinkDomain());
+        }
+    }
+
+    private static TieredLinkStore openTieredStore(AppConfig appConfig, Path dir) {
+        try {
+            TieredLinkStore store = new TieredLinkStore(appConfig.getShortLinkDomain(),
+                    appConfig.getTieredHotCapacity(), dir, appConfig.getTieredSegmentLinks());
+            // Файлы сегментов нужны только работающему процессу
+            Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+            return store;
+        } catch (IOException e) {
+            System.out.println("Не удалось открыть каталог холодного уровня, ссылки хранятся в памяти: "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    // null — журнал не открылся или прочитан не полностью; запускаться дальше нельзя
+    private static LinkJournal openJournal(AppConfig appConfig, LinkRepository linkRepository,
+                                           UserRepository userRepository) {
+        LinkJournal journal = new LinkJournal(Path.of(appConfig.getJournalDir()),
+                appConfig.getJournalFsyncPolicy(), appConfig.getJournalFsyncIntervalMillis());
+        try {
+            int restored = journal.open(linkRepository, userRepository);
+            System.out.println("Восстановлено ссылок из журнала: " + restored);
+            return journal;
+        } catch (IOException e) {
+            System.out.println("Не удалось восстановить ссылки из журнала: " + e.getMessage());
+            System.out.println("Запуск прерван. Восстановите каталог " + appConfig.getJournalDir()
+                    + " из резервной копии или отключите сохранение (journal.enabled=false).");
+            return null;
+        }
+    }
+
+    private static ReplicaClient startReplica(AppConfig appConfig, LinkService linkService,
+                                              LinkRepository linkRepository, UserRepository userRepository) {
+        ReplicaClient client = new ReplicaClient(appConfig.getReplicationPrimary(), linkRepository, userRepository,
+                appConfig.getReplicationHeartbeatMillis(), appConfig.getReplicationClickTimeoutMillis());
+        linkService.setClickAuthority(client);
+        linkService.getMetrics().setReplicationLag(client::getLagRecords, client::getLagMillis);
+        client.start();
+        return client;
+    }
+
+    private static void startReplicationSource(ReplicationSource source) {
+        try {
+            source.start();
+            System.out.println("Первичный узел репликации: реплики подключаются к " + source.getBindAddress()
+                    + ":" + source.getPort());
+        } catch (IOException e) {
+            System.out.println("Не удалось открыть порт репликации, реплики не подключатся: " + e.getMessage());
+        }
+    }
+
+    // Различные URL и их байты — сумма по секциям (URL, общий для двух секций, хранится в каждой).
+    // Многоуровневое хранилище держит URL в каждой записи и общей таблицы не имеет — с ним метрики
+    // не выводятся; байты считает только компактное хранилище.
+    private static void registerUrlMetrics(LinkMetrics metrics, List<LinkRepository> stores) {
+        boolean counted = true;
+        boolean compact = true;
+        for (LinkRepository store : stores) {
+            counted &= store instanceof CompactLinkStore || store instanceof InMemoryLinkRepository;
+            compact &= store instanceof CompactLinkStore;
+        }
+        if (!counted) {
+            return;
+        }
+        metrics.setUrlTable(() -> {
+            int distinct = 0;
+            for (LinkRepository store : stores) {
+                distinct += store instanceof CompactLinkStore c ? c.distinctUrls()
+                        : ((InMemoryLinkRepository) store).distinctUrls();
+            }
+            return distinct;
+        }, compact ? () -> {
+            long bytes = 0;
+            for (LinkRepository store : stores) {
+                bytes += ((CompactLinkStore) store).urlBytes();
+            }
+            return bytes;
+        } : null);
+    }
+
+    // Метрики доступны в JMX (jconsole, VisualVM) как org.shortener:type=LinkMetrics
+    private static void registerMetrics(LinkMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(LinkMetrics.OBJECT_NAME));
+        } catch (JMException e) {
+            System.out.println("Не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+        }
+    }
+
+    private static void runBulk(String[] args, LinkService linkService, LinkRepository linkRepository) {
+        long started = System.nanoTime();
+        try {
+            if ("import".equals(args[0])) {
+                if (args.length < 3) {
+                    System.out.println("Использование: import <файл.csv|файл.ndjson> <файл результатов>");
+                    return;
+                }
+                BulkImporter.Summary summary = new BulkImporter(linkService, Runtime.getRuntime().availableProcessors())
+                        .importLinks(Path.of(args[1]), Path.of(args[2]));
+                System.out.printf("Создано ссылок: %d, ошибок: %d, за %d мс. Результаты: %s%n",
+                        summary.created(), summary.failed(), (System.nanoTime() - started) / 1_000_000, args[2]);
+            } else {
+                if (args.length < 2) {
+                    System.out.println("Использование: export <файл.csv|файл.ndjson>");
+                    return;
+                }
+                long exported = new BulkExporter(linkRepository).exportLinks(Path.of(args[1]));
+                System.out.printf("Выгружено ссылок: %d, за %d мс%n", exported, (System.nanoTime() - started) / 1_000_000);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Ошибка пакетной операции: " + e.getMessage());
+        }
+    }
+
+    private static boolean useTemporaryDataDirs() {
+        try {
+            Path dir = Files.createTempDirectory("shortener-load");
+            System.setProperty("journal.dir", dir.resolve("journal").toString());
+            System.setProperty("link.store.tiered.dir", dir.resolve("cold").toString());
+            System.out.println("Данные нагрузочного прогона: " + dir);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Не удалось создать временный каталог для нагрузочного прогона: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static LoadGenerator prepareLoad(AppConfig appConfig, LinkService linkService,
+                                             LinkRepository linkRepository, UserRepository userRepository) {
+        LoadGenerator generator;
+        try {
+            generator = new LoadGenerator(appConfig, linkService, linkRepository, userRepository);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Неверные настройки нагрузки (load.*): " + e.getMessage());
+            return null;
+        }
+        long started = System.nanoTime();
+        generator.prepare();
+        System.out.printf("Создано ссылок для нагрузки: %d, за %d мс%n",
+                appConfig.getLoadLinks(), (System.nanoTime() - started) / 1_000_000);
+        return generator;
+    }
+
+    private static RedirectServer startServer(AppConfig appConfig, LinkService linkService,
+                                              ClickAnalytics analytics) {
+        RedirectServer server = new RedirectServer(appConfig, linkService, analytics);
+        try {
+            server.start();
+        } catch (IOException e) {
+            System.out.println("Не удалось запустить сервер: " + e.getMessage());
+            return null;
+        }
+        System.out.println("Сервер переходов запущен: http://localhost:" + server.getPort()
+                + "/AbCdE1 -> " + appConfig.getShortLinkDomain() + "AbCdE1");
+        return server;
+    }
+
     private static void createShortLinkFlow(Scanner scanner, UUID userId, LinkService linkService) {
         System.out.print("Введите исходную длинную ссылку (originalUrl): ");
         String originalUrl = scanner.nextLine().trim();
@@ -95,7 +566,13 @@ public class Main {
         int userClicks = readIntValue(scanner, 1);
 
         // Создаём
-        ShortLink link = linkService.createShortLink(userId, originalUrl, userHours, userClicks);
+        ShortLink link;
+        try {
+            link = linkService.createShortLink(userId, originalUrl, userHours, userClicks);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
 
         // Выводим информацию
         System.out.println("\nКороткая ссылка успешно создана!");
@@ -105,6 +582,51 @@ public class Main {
         System.out.println("Лимит кликов: " + link.getClickLimit());
     }
 
+    // Список выводится страницами по LinkService.PAGE_SIZE, следующая — по запросу
+    // Ссылки пользователя со всех узлов секций страницами по PAGE_SIZE; узлы опрашиваются по мере листания
+    private static void listPartitionLinksFlow(Scanner scanner, UUID userId, PartitionLinks partitionLinks) {
+        try {
+            Iterator<String> lines = partitionLinks.userLinks(userId, null);
+            if (!lines.hasNext()) {
+                System.out.println("У вас нет созданных ссылок (или все уже удалены).");
+                return;
+            }
+            System.out.println("Ваши ссылки:");
+            while (true) {
+                for (int printed = 0; printed < LinkService.PAGE_SIZE && lines.hasNext(); printed++) {
+                    // "создана ссылка переходы/лимит истекает URL"
+                    String[] fields = lines.next().split(" ", 5);
+                    String[] clicks = fields[2].split("/");
+                    System.out.printf("ShortUrl: %s -> %s\n", fields[1], fields[4]);
+                    System.out.printf("  Лимит кликов: %s, Переходов: %s, Истекает: %s\n", clicks[1], clicks[0], fields[3]);
+                    System.out.println("  Доступна: да");
+                }
+                if (!lines.hasNext()) {
+                    return;
+                }
+                System.out.print("Показать следующую страницу? (д/н): ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("д")) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Не удалось получить ссылки со всех узлов: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.out.println("Не удалось получить ссылки со всех узлов: " + e.getCause().getMessage());
+        }
+    }
+
+    private static void listUserLinksFlow(Scanner scanner, UUID userId, LinkService linkService) {
+        LinkCursor cursor = linkService.listUserLinks(userId, null, LinkService.PAGE_SIZE);
+        while (cursor != null) {
+            System.out.print("Показать следующую страницу? (д/н): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("д")) {
+                return;
+            }
+            cursor = linkService.listUserLinks(userId, cursor, LinkService.PAGE_SIZE);
+        }
+    }
+
     private static int readIntValue(Scanner scanner, int defaultValue) {
         try {
             String input = scanner.nextLine();
@@ -0,0 +1,12 @@
+package org.shortener.clicks;
+
+// Что делать с переходом, если буфер событий переполнен
+public enum BackpressurePolicy {
+    // Поток перехода ждёт освобождения места
+    BLOCK,
+    // Событие теряется; число переходов в самой ссылке остаётся точным и попадёт в журнал
+    // со следующим переходом по ней или со снимком
+    DROP,
+    // Поток перехода сам отдаёт событие получателям, минуя буфер
+    CALLER_RUNS
+}
@@ -0,0 +1,8 @@
+package org.shortener.clicks;
+
+import org.shortener.model.ShortLink;
+
+// Переходы по одной ссылке, собранные за одно окно: сколько их было и когда были первый и последний
+// (epoch-миллисекунды). Актуальное общее число переходов — link.getClickCount().
+public record ClickDelta(ShortLink link, int clicks, long firstClickMillis, long lastClickMillis) {
+}
@@ -0,0 +1,246 @@
+package org.shortener.clicks;
+
+import org.shortener.metrics.LinkMetrics;
+import org.shortener.model.ShortLink;
+import org.shortener.service.LinkListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Отложенная запись переходов. Переход по-прежнему засчитывается CAS-ом в самой ссылке (лимит
+// соблюдается точно в момент перехода), а в onClick только публикуется событие в ClickRingBuffer.
+// Поток "click-pipeline" собирает события за окно flushInterval в одну дельту на ссылку и отдаёт
+// получателям пачкой: тысяча переходов по популярной ссылке за окно превращается в одну запись.
+//
+// Последняя дельта ссылки может прийти получателям после её удаления: журнал такие дельты
+// пропускает, аналитике они нужны.
+//
+// Поток-потребитель запускается методом start(), когда получатели уже добавлены; до этого события
+// копятся в буфере.
+public class ClickPipeline implements LinkListener, AutoCloseable {
+
+    private static final int DRAIN_BATCH = 4096;
+    // Дельт в одной пачке для получателя: журнал держит свой лок на время всей пачки
+    private static final int MAX_BATCH = 1024;
+    // Окно сбрасывается досрочно, если в нём набралось столько разных ссылок
+    private static final int MAX_WINDOW_LINKS = 16 * 1024;
+    // Сколько ждёт поток перехода при BLOCK, прежде чем снова попробовать
+    private static final long BLOCK_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // Как часто потребитель проверяет пустой буфер, пока в окне есть несброшенные дельты
+    private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Состояние потока-потребителя: работает, ждёт сброса окна с таймаутом, спит до первого события
+    private static final int RUNNING = 0;
+    private static final int POLLING = 1;
+    private static final int PARKED = 2;
+
+    private final ClickRingBuffer buffer;
+    // Пока окно не сброшено, потребитель проверяет буфер сам раз в IDLE_POLL_NANOS, а производители
+    // будят его только на каждой четверти ёмкости буфера — без unpark на каждый переход
+    private final long pollingWakeMask;
+    private final long flushIntervalNanos;
+    private final BackpressurePolicy backpressure;
+    private final LinkMetrics metrics;
+    private final List<ClickSink> sinks = new CopyOnWriteArrayList<>();
+    private volatile Thread consumer;
+    private volatile int consumerState = RUNNING;
+    private volatile boolean closed;
+
+    // Окно агрегации по короткому URL, а не по объекту: компактное и двухуровневое хранилища выдают
+    // на каждый поиск новое представление ссылки. Используется только потоком-потребителем.
+    private final Map<String, Pending> window = new HashMap<>();
+    private long windowStarted;
+    private int windowEvents;
+
+    public ClickPipeline(int capacity, long flushIntervalMillis, BackpressurePolicy backpressure, LinkMetrics metrics) {
+        this.buffer = new ClickRingBuffer(capacity);
+        this.pollingWakeMask = Math.max(1, buffer.capacity() / 4) - 1;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.backpressure = backpressure;
+        this.metrics = metrics;
+    }
+
+    public synchronized void start() {
+        if (consumer != null) {
+            throw new IllegalStateException("Конвейер переходов уже запущен");
+        }
+        Thread thread = new Thread(this::consumeLoop, "click-pipeline");
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+    }
+
+    public void addSink(ClickSink sink) {
+        sinks.add(sink);
+    }
+
+    @Override
+    public void onClick(ShortLink link) {
+        long now = System.currentTimeMillis();
+        if (closed) {
+            deliverNow(link, now);
+            return;
+        }
+        long position = buffer.offer(link, now);
+        if (position >= 0) {
+            wakeConsumer(position);
+            return;
+        }
+        switch (backpressure) {
+            case DROP -> metrics.recordClickDropped();
+            case CALLER_RUNS -> deliverNow(link, now);
+            case BLOCK -> {
+                do {
+                    if (consumerState != RUNNING) {
+                        LockSupport.unpark(consumer);
+                    }
+                    LockSupport.parkNanos(BLOCK_BACKOFF_NANOS);
+                    if (closed) {
+                        deliverNow(link, now);
+                        return;
+                    }
+                    position = buffer.offer(link, now);
+                } while (position < 0);
+                wakeConsumer(position);
+            }
+        }
+    }
+
+    private void wakeConsumer(long position) {
+        int state = consumerState;
+        if (state == PARKED || state == POLLING && (position & pollingWakeMask) == 0) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void deliverNow(ShortLink link, long timeMillis) {
+        deliver(List.of(new ClickDelta(link, 1, timeMillis, timeMillis)));
+    }
+
+    private void consumeLoop() {
+        while (true) {
+            int drained = buffer.drain(this::accumulate, DRAIN_BATCH);
+            if (!window.isEmpty() && (window.size() >= MAX_WINDOW_LINKS
+                    || System.nanoTime() - windowStarted >= flushIntervalNanos)) {
+                flush();
+            }
+            if (drained > 0) {
+                continue;
+            }
+            if (closed) {
+                // Дочитываем то, что успели опубликовать до закрытия
+                if (buffer.isEmpty()) {
+                    flush();
+                    return;
+                }
+                continue;
+            }
+            if (window.isEmpty()) {
+                // Состояние ставится до последней проверки буфера, а производитель читает его после публикации,
+                // поэтому хотя бы одна сторона увидит другую и событие не застрянет в буфере
+                consumerState = PARKED;
+                if (buffer.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+            } else {
+                consumerState = POLLING;
+                long remaining = flushIntervalNanos - (System.nanoTime() - windowStarted);
+                LockSupport.parkNanos(this, Math.min(Math.max(remaining, 0), IDLE_POLL_NANOS));
+            }
+            consumerState = RUNNING;
+        }
+    }
+
+    private void accumulate(ShortLink link, long timeMillis) {
+        if (window.isEmpty()) {
+            windowStarted = System.nanoTime();
+        }
+        windowEvents++;
+        Pending pending = window.get(link.getShortUrl());
+        if (pending == null) {
+            window.put(link.getShortUrl(), new Pending(link, timeMillis));
+        } else {
+            // Дельта несёт последнее представление: счётчик у всех представлений одной записи общий
+            pending.link = link;
+            // События разных потоков могут прийти не по порядку времени
+            pending.clicks++;
+            pending.first = Math.min(pending.first, timeMillis);
+            pending.last = Math.max(pending.last, timeMillis);
+        }
+    }
+
+    private void flush() {
+        if (window.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        List<ClickDelta> batch = new ArrayList<>(Math.min(window.size(), MAX_BATCH));
+        for (Pending pending : window.values()) {
+            batch.add(new ClickDelta(pending.link, pending.clicks, pending.first, pending.last));
+            if (batch.size() == MAX_BATCH) {
+                deliver(batch);
+                batch = new ArrayList<>(MAX_BATCH);
+            }
+        }
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+        metrics.recordClickFlush(windowEvents, window.size(), System.nanoTime() - started);
+        window.clear();
+        windowEvents = 0;
+    }
+
+    private void deliver(List<ClickDelta> batch) {
+        for (ClickSink sink : sinks) {
+            try {
+                sink.onClicks(batch);
+            } catch (RuntimeException e) {
+                // Сбой одного получателя не должен останавливать остальных и поток агрегации
+                System.out.println("Ошибка записи переходов: " + e.getMessage());
+            }
+        }
+    }
+
+    // Сбрасывает все опубликованные переходы получателям и останавливает поток.
+    // Переходы, пришедшие после закрытия, отдаются получателям сразу. Повторный вызов ничего не делает.
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Поток-потребитель завершён (или не запускался), дочитываем события производителей, не успевших заметить закрытие
+        while (buffer.drain(this::accumulate, DRAIN_BATCH) > 0) {
+            flush();
+        }
+        flush();
+    }
+
+    private static final class Pending {
+        ShortLink link;
+        long first;
+        long last;
+        int clicks = 1;
+
+        Pending(ShortLink link, long timeMillis) {
+            this.link = link;
+            this.first = timeMillis;
+            this.last = timeMillis;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.shortener.clicks;
+
+import org.shortener.model.ShortLink;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ObjLongConsumer;
+
+// Ограниченная очередь без локов: много производителей, один потребитель.
+// У каждой ячейки свой номер последовательности (схема Вьюкова): производитель занимает позицию CAS-ом
+// хвоста, пишет событие и публикует его номером ячейки; потребитель читает только опубликованные ячейки
+// и возвращает их производителям номером следующего круга. Событие — ссылка и время, без объекта-обёртки.
+final class ClickRingBuffer {
+
+    private final int mask;
+    private final ShortLink[] links;
+    private final long[] times;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Меняется только потоком-потребителем
+    private long head;
+
+    ClickRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        mask = size - 1;
+        links = new ShortLink[size];
+        times = new long[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return links.length;
+    }
+
+    // Номер занятой позиции или -1, если буфер полон
+    long offer(ShortLink link, long timeMillis) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.getAcquire(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    links[index] = link;
+                    times[index] = timeMillis;
+                    // Полный барьер: после публикации производитель читает флаг сна потребителя
+                    sequences.set(index, position + 1);
+                    return position;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    // Только для потребителя
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    // Передаёт потребителю до max опубликованных событий; только для потока-потребителя
+    int drain(ObjLongConsumer<ShortLink> consumer, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) head & mask;
+            if (sequences.getAcquire(index) != head + 1) {
+                break;
+            }
+            ShortLink link = links[index];
+            long time = times[index];
+            links[index] = null;
+            sequences.setRelease(index, head + links.length);
+            head++;
+            consumer.accept(link, time);
+            drained++;
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,11 @@
+package org.shortener.clicks;
+
+import java.util.List;
+
+// Получатель агрегированных переходов (журнал, аналитика).
+// Пачки приходят из потока ClickPipeline, а при политике CALLER_RUNS — и из потоков переходов,
+// поэтому реализация должна допускать параллельные вызовы.
+public interface ClickSink {
+
+    void onClicks(List<ClickDelta> batch);
+}
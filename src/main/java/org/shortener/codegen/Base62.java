@@ -0,0 +1,78 @@
+package org.shortener.codegen;
+
+import java.util.Arrays;
+
+// Кодирование чисел в base62 фиксированной длины (тот же алфавит, что и у случайных кодов).
+// Ключ кода — его номер среди всех кодов: коды длины 6 занимают [0, 62^6), коды длины 7 — следующие
+// 62^7 значений и т.д. Так любой код длины 6..10 биективно укладывается в неотрицательный long.
+public final class Base62 {
+
+    static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    static final int MIN_LENGTH = 6;
+    public static final int MAX_LENGTH = 10;
+
+    // POW[n] = 62^n для n <= MAX_LENGTH
+    static final long[] POW = new long[MAX_LENGTH + 1];
+
+    // Значение символа алфавита или -1
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        POW[0] = 1;
+        for (int i = 1; i <= MAX_LENGTH; i++) {
+            POW[i] = POW[i - 1] * 62;
+        }
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            DIGITS[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    // Значение символа алфавита или -1
+    static int digit(char c) {
+        return c < 128 ? DIGITS[c] : -1;
+    }
+
+    // Пишет value (0 <= value < 62^length) ровно length символами начиная с offset
+    static void encode(long value, int length, char[] out, int offset) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            out[i] = ALPHABET.charAt((int) (value % 62));
+            value /= 62;
+        }
+    }
+
+    // Ключ кода s.substring(from) или -1, если это не код длины 6..10 из символов алфавита
+    public static long toKey(String s, int from) {
+        int length = s.length() - from;
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int digit = c < 128 ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 62 + digit;
+        }
+        for (int l = MIN_LENGTH; l < length; l++) {
+            value += POW[l];
+        }
+        return value;
+    }
+
+    // Пишет код по ключу начиная с offset и возвращает его длину
+    public static int fromKey(long key, char[] out, int offset) {
+        int length = MIN_LENGTH;
+        while (key >= POW[length]) {
+            key -= POW[length];
+            length++;
+        }
+        encode(key, length, out, offset);
+        return length;
+    }
+}
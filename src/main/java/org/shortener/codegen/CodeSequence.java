@@ -0,0 +1,72 @@
+package org.shortener.codegen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+
+// Глобальный счётчик кодов, выдающий блоки значений. Если задан файл, в нём хранится отметка,
+// выше которой значения ещё не выдавались: после перезапуска счёт продолжается с неё.
+// Отметка пишется с запасом (RESERVE_AHEAD), поэтому fsync случается раз на много блоков.
+public class CodeSequence {
+
+    private static final long RESERVE_AHEAD = 1 << 20;
+
+    private final Path file;
+    private long next;
+    private long persistedUpTo;
+
+    // file может быть null — тогда счётчик живёт только в памяти
+    public CodeSequence(Path file) throws IOException {
+        this.file = file;
+        if (file != null && Files.exists(file)) {
+            next = ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+            persistedUpTo = next;
+        }
+    }
+
+    // Выдаёт блок [start, start + size) и возвращает start
+    public synchronized long lease(int size) {
+        long start = next;
+        next += size;
+        if (file != null && next > persistedUpTo) {
+            persist(next + RESERVE_AHEAD);
+            persistedUpTo = next + RESERVE_AHEAD;
+        }
+        return start;
+    }
+
+    // Ключ перестановки кодов из файла; если файла нет, создаёт случайный ключ и сохраняет его.
+    // file может быть null — тогда ключ новый на каждый запуск.
+    public static long scrambleKey(Path file) throws IOException {
+        if (file != null && Files.exists(file)) {
+            return ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+        }
+        long key = new SecureRandom().nextLong();
+        if (file != null) {
+            // Через временный файл: оборванная запись не оставит ключ, отличный от выданных кодам
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, key));
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return key;
+    }
+
+    private void persist(long mark) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, mark), 0);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить счётчик кодов", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.shortener.codegen;
+
+// Ключевая перестановка диапазона [0, 62^length) на основе сети Фейстеля.
+// Сеть переставляет ближайший сверху диапазон из чётного числа бит; значения, выпавшие за 62^length,
+// прогоняются через сеть повторно (cycle walking), что сохраняет биективность на исходном диапазоне.
+// Это не криптостойкое шифрование, а защита от перебора соседних кодов.
+final class FeistelPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long key;
+    private final int[] halfBits = new int[Base62.MAX_LENGTH + 1];
+
+    FeistelPermutation(long key) {
+        this.key = key;
+        for (int length = Base62.MIN_LENGTH; length <= Base62.MAX_LENGTH; length++) {
+            int bits = 64 - Long.numberOfLeadingZeros(Base62.POW[length] - 1);
+            halfBits[length] = (bits + 1) / 2;
+        }
+    }
+
+    long permute(long value, int length) {
+        long domain = Base62.POW[length];
+        int half = halfBits[length];
+        long mask = (1L << half) - 1;
+        do {
+            long left = value >>> half;
+            long right = value & mask;
+            for (int round = 0; round < ROUNDS; round++) {
+                long next = left ^ (mix(right, round) & mask);
+                left = right;
+                right = next;
+            }
+            value = (left << half) | right;
+        } while (value >= domain);
+        return value;
+    }
+
+    // Финализатор SplitMix64 от половины блока, ключа и номера раунда
+    private long mix(long half, int round) {
+        long z = half + key + (round + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,58 @@
+package org.shortener.codegen;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Коды секционированного режима: первый символ кода — номер секции (символ алфавита base62 с этим
+// номером), за ним код внутреннего генератора. Любой узел определяет секцию ссылки по самому коду,
+// ничего не ища. Коды внутреннего генератора уникальны, поэтому уникальны и коды с префиксом —
+// даже если у нескольких секций общий счётчик.
+public class PartitionedCodeGenerator implements ShortCodeGenerator {
+
+    public static final int MAX_PARTITIONS = 62;
+
+    private final String domain;
+    private final int[] partitions;
+    private final ShortCodeGenerator inner;
+    private final AtomicInteger next = new AtomicInteger();
+
+    // partitions — секции, в которых этот генератор создаёт ссылки (по очереди)
+    public PartitionedCodeGenerator(String domain, int[] partitions, ShortCodeGenerator inner) {
+        if (partitions.length == 0) {
+            throw new IllegalArgumentException("Нужна хотя бы одна секция");
+        }
+        for (int partition : partitions) {
+            if (partition < 0 || partition >= MAX_PARTITIONS) {
+                throw new IllegalArgumentException("Номер секции вне диапазона 0.." + (MAX_PARTITIONS - 1) + ": " + partition);
+            }
+        }
+        this.domain = domain;
+        this.partitions = partitions.clone();
+        this.inner = inner;
+    }
+
+    @Override
+    public String nextShortUrl() {
+        String code = inner.nextShortUrl();
+        int partition = partitions.length == 1
+                ? partitions[0]
+                : partitions[Math.floorMod(next.getAndIncrement(), partitions.length)];
+        char[] chars = new char[code.length() + 1];
+        domain.getChars(0, domain.length(), chars, 0);
+        chars[domain.length()] = Base62.ALPHABET.charAt(partition);
+        code.getChars(domain.length(), code.length(), chars, domain.length() + 1);
+        return new String(chars);
+    }
+
+    // Секция короткой ссылки из partitionCount секций. Коды, созданные до включения секций, тоже
+    // получают секцию по первому символу — маршрут определён для любого кода.
+    // Домен не сверяется (это заметная доля стоимости перехода): ссылка чужого домена просто не найдётся
+    // в своей секции. -1, если символа секции нет или он не из алфавита.
+    public static int partitionOf(String shortUrl, String domain, int partitionCount) {
+        if (shortUrl.length() <= domain.length()) {
+            return -1;
+        }
+        int digit = Base62.digit(shortUrl.charAt(domain.length()));
+        // Деление только для кодов, созданных до включения секций: у новых символ и есть номер секции
+        return digit < partitionCount ? digit : digit % partitionCount;
+    }
+}
@@ -0,0 +1,24 @@
+package org.shortener.codegen;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Случайный код из 6 символов. Уникальность не гарантируется: при совпадении LinkService повторяет попытку.
+public class RandomCodeGenerator implements ShortCodeGenerator {
+
+    private final String domain;
+
+    public RandomCodeGenerator(String domain) {
+        this.domain = domain;
+    }
+
+    @Override
+    public String nextShortUrl() {
+        char[] chars = new char[domain.length() + Base62.MIN_LENGTH];
+        domain.getChars(0, domain.length(), chars, 0);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = domain.length(); i < chars.length; i++) {
+            chars[i] = Base62.ALPHABET.charAt(random.nextInt(Base62.ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+}
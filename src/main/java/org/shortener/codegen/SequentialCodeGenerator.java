@@ -0,0 +1,73 @@
+package org.shortener.codegen;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Коды из счётчика: каждый поток берёт значения из блока своей полосы, арендованного у CodeSequence,
+// поэтому потоки почти не конкурируют, а коды не повторяются и проверка уникальности не нужна.
+// Значение счётчика кодируется биективно в base62: сначала все коды длины 6, затем 7 и т.д.
+// Перестановка Фейстеля (если включена) делает соседние значения счётчика непохожими друг на друга.
+public class SequentialCodeGenerator implements ShortCodeGenerator {
+
+    private final String domain;
+    private final CodeSequence sequence;
+    private final int blockSize;
+    private final FeistelPermutation permutation;
+    private final Stripe[] stripes;
+
+    // Полоса: текущий блок значений и буфер под результат. Потоки делятся на полосы по id,
+    // что работает и для виртуальных потоков, которым невыгодно выдавать по блоку на каждый.
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final char[] buffer;
+        long next;
+        long end;
+
+        Stripe(String domain) {
+            buffer = new char[domain.length() + Base62.MAX_LENGTH];
+            domain.getChars(0, domain.length(), buffer, 0);
+        }
+    }
+
+    // scrambleKey == null — коды идут подряд, без перестановки
+    public SequentialCodeGenerator(String domain, CodeSequence sequence, int blockSize, Long scrambleKey) {
+        this.domain = domain;
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+        this.permutation = scrambleKey == null ? null : new FeistelPermutation(scrambleKey);
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(domain);
+        }
+    }
+
+    @Override
+    public String nextShortUrl() {
+        long id = Thread.currentThread().threadId();
+        Stripe stripe = stripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (stripes.length - 1)];
+        stripe.lock.lock();
+        try {
+            if (stripe.next == stripe.end) {
+                stripe.next = sequence.lease(blockSize);
+                stripe.end = stripe.next + blockSize;
+            }
+            long value = stripe.next++;
+
+            // Номер значения -> длина кода и позиция внутри кодов этой длины
+            int length = Base62.MIN_LENGTH;
+            while (value >= Base62.POW[length]) {
+                value -= Base62.POW[length];
+                if (++length > Base62.MAX_LENGTH) {
+                    throw new IllegalStateException("Пространство коротких кодов исчерпано");
+                }
+            }
+            if (permutation != null) {
+                value = permutation.permute(value, length);
+            }
+            Base62.encode(value, length, stripe.buffer, domain.length());
+            return new String(stripe.buffer, 0, domain.length() + length);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.shortener.codegen;
+
+// Стратегия генерации коротких ссылок (домен + код)
+public interface ShortCodeGenerator {
+
+    // Возвращает очередной короткий URL, например test.ru/AbCdE1
+    String nextShortUrl();
+}
@@ -1,7 +1,12 @@
 package org.shortener.config;
 
+import org.shortener.clicks.BackpressurePolicy;
+import org.shortener.persistence.FsyncPolicy;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 public class AppConfig {
@@ -12,6 +17,74 @@ public class AppConfig {
     private int defaultLinkLifetimeHours = 24;
     private int defaultClickLimit = 5;
     private String shortLinkDomain = "test.ru/";
+    private int serverPort = 8080;
+    private int serverRedirectStatus = 302;
+    private String serverUserEndpoints = "loopback";
+    private int cleanupIntervalSeconds = 1;
+    private boolean journalEnabled = false;
+    private String journalDir = "data";
+    private FsyncPolicy journalFsyncPolicy = FsyncPolicy.INTERVAL;
+    private int journalFsyncIntervalMillis = 100;
+    private int snapshotIntervalSeconds = 300;
+    private String codeGenerator = "sequence";
+    private int codeBlockSize = 1024;
+    private boolean codeScrambleEnabled = true;
+    private Long codeScrambleKey = null;
+    private String linkStore = "memory";
+    private boolean linkStoreOffHeap = false;
+    private int tieredHotCapacity = 100_000;
+    private String tieredDir = "data/cold";
+    private int tieredSegmentLinks = 65536;
+    private boolean linkFilterEnabled = false;
+    private int linkFilterExpectedLinks = 1_000_000;
+    private double linkFilterFalsePositiveRate = 0.01;
+    private int linkFilterRebuildIntervalSeconds = 3600;
+    private boolean linkReuseExisting = false;
+    private boolean clickPipelineEnabled = true;
+    private int clickBufferCapacity = 65536;
+    private int clickFlushIntervalMillis = 100;
+    private BackpressurePolicy clickBackpressure = BackpressurePolicy.BLOCK;
+    private boolean analyticsEnabled = true;
+    private int analyticsBucketSeconds = 1;
+    private int analyticsBuckets = 60;
+    private int analyticsSketchWidth = 4096;
+    private int analyticsSketchDepth = 4;
+    private int analyticsTopCapacity = 256;
+    private int partitionCount = 1;
+    private int partitionId = -1;
+    private List<String> partitionNodes = List.of();
+    private String replicationRole = "none";
+    private String replicationBind = "127.0.0.1";
+    private int replicationPort = 9090;
+    private String replicationPrimary = "localhost:9090";
+    private int replicationBacklogMb = 64;
+    private int replicationHeartbeatMillis = 100;
+    private int replicationClickTimeoutMillis = 1000;
+    private boolean admissionEnabled = false;
+    private double admissionRedirectClientRate = 20;
+    private int admissionRedirectClientBurst = 40;
+    private double admissionRedirectOwnerRate = 500;
+    private int admissionRedirectOwnerBurst = 1000;
+    private double admissionRedirectGlobalRate = 0;
+    private int admissionRedirectGlobalBurst = 1000;
+    private double admissionCreateUserRate = 2;
+    private int admissionCreateUserBurst = 20;
+    private double admissionCreateGlobalRate = 0;
+    private int admissionCreateGlobalBurst = 100;
+    private int admissionKeysMax = 100_000;
+    private String admissionClientHeader = "";
+    private String loadTarget = "service";
+    private String loadMode = "closed";
+    private int loadThreads = 64;
+    private double loadRate = 0;
+    private int loadDurationSeconds = 30;
+    private int loadWarmupSeconds = 5;
+    private int loadLinks = 100_000;
+    private int loadUsers = 1000;
+    private String loadMix = "5/90/2/3";
+    private double loadZipfExponent = 1.0;
+    private double loadExpiredFraction = 0.02;
+    private double loadUnknownFraction = 0.05;
 
     public AppConfig() {
         loadProperties();
@@ -25,6 +98,14 @@ public class AppConfig {
             }
             Properties props = new Properties();
             props.load(in);
+            // Ключ можно переопределить системным свойством (-Dserver.port=8081): так на одной машине
+            // запускаются несколько узлов с одним config.properties
+            for (String name : props.stringPropertyNames()) {
+                String override = System.getProperty(name);
+                if (override != null) {
+                    props.setProperty(name, override);
+                }
+            }
 
             // Чтение значений
             defaultLinkLifetimeHours = Integer.parseInt(
@@ -34,8 +115,186 @@ public class AppConfig {
                     props.getProperty("default.click.limit", "5")
             );
             shortLinkDomain = props.getProperty("short.link.domain", "test.ru/");
+            serverPort = Integer.parseInt(
+                    props.getProperty("server.port", "8080")
+            );
+            serverRedirectStatus = Integer.parseInt(
+                    props.getProperty("server.redirect.status", "302")
+            );
+            serverUserEndpoints = props.getProperty("server.user.endpoints", "loopback").trim();
+            cleanupIntervalSeconds = Integer.parseInt(
+                    props.getProperty("cleanup.interval.seconds", "1")
+            );
+            journalEnabled = Boolean.parseBoolean(
+                    props.getProperty("journal.enabled", "false")
+            );
+            journalDir = props.getProperty("journal.dir", "data");
+            journalFsyncPolicy = FsyncPolicy.valueOf(
+                    props.getProperty("journal.fsync", "interval").trim().toUpperCase()
+            );
+            journalFsyncIntervalMillis = Integer.parseInt(
+                    props.getProperty("journal.fsync.interval.ms", "100")
+            );
+            snapshotIntervalSeconds = Integer.parseInt(
+                    props.getProperty("journal.snapshot.interval.seconds", "300")
+            );
+            codeGenerator = props.getProperty("short.code.generator", "sequence").trim();
+            codeBlockSize = Integer.parseInt(
+                    props.getProperty("short.code.block.size", "1024")
+            );
+            String scrambleKey = props.getProperty("short.code.scramble.key", "").trim();
+            codeScrambleEnabled = !"none".equalsIgnoreCase(scrambleKey);
+            codeScrambleKey = scrambleKey.isEmpty() || !codeScrambleEnabled ? null : Long.decode(scrambleKey);
+            linkStore = props.getProperty("link.store", "memory").trim();
+            linkStoreOffHeap = Boolean.parseBoolean(
+                    props.getProperty("link.store.offheap", "false")
+            );
+            tieredHotCapacity = Integer.parseInt(
+                    props.getProperty("link.store.tiered.hot.capacity", "100000")
+            );
+            tieredDir = props.getProperty("link.store.tiered.dir", "data/cold").trim();
+            tieredSegmentLinks = Integer.parseInt(
+                    props.getProperty("link.store.tiered.segment.links", "65536")
+            );
+            linkFilterEnabled = Boolean.parseBoolean(
+                    props.getProperty("link.filter.enabled", "false")
+            );
+            linkFilterExpectedLinks = Integer.parseInt(
+                    props.getProperty("link.filter.expected.links", "1000000")
+            );
+            linkFilterFalsePositiveRate = Double.parseDouble(
+                    props.getProperty("link.filter.fpp", "0.01")
+            );
+            linkFilterRebuildIntervalSeconds = Integer.parseInt(
+                    props.getProperty("link.filter.rebuild.interval.seconds", "3600")
+            );
+            linkReuseExisting = Boolean.parseBoolean(
+                    props.getProperty("link.reuse.existing", "false")
+            );
+            clickPipelineEnabled = Boolean.parseBoolean(
+                    props.getProperty("clicks.pipeline.enabled", "true")
+            );
+            clickBufferCapacity = Integer.parseInt(
+                    props.getProperty("clicks.buffer.capacity", "65536")
+            );
+            clickFlushIntervalMillis = Integer.parseInt(
+                    props.getProperty("clicks.flush.interval.ms", "100")
+            );
+            clickBackpressure = BackpressurePolicy.valueOf(
+                    props.getProperty("clicks.backpressure", "block").trim().toUpperCase()
+            );
+            analyticsEnabled = Boolean.parseBoolean(
+                    props.getProperty("analytics.enabled", "true")
+            );
+            analyticsBucketSeconds = Integer.parseInt(
+                    props.getProperty("analytics.bucket.seconds", "1")
+            );
+            analyticsBuckets = Integer.parseInt(
+                    props.getProperty("analytics.buckets", "60")
+            );
+            analyticsSketchWidth = Integer.parseInt(
+                    props.getProperty("analytics.sketch.width", "4096")
+            );
+            analyticsSketchDepth = Integer.parseInt(
+                    props.getProperty("analytics.sketch.depth", "4")
+            );
+            analyticsTopCapacity = Integer.parseInt(
+                    props.getProperty("analytics.top.capacity", "256")
+            );
+            partitionCount = Integer.parseInt(
+                    props.getProperty("partition.count", "1")
+            );
+            partitionId = Integer.parseInt(
+                    props.getProperty("partition.id", "-1")
+            );
+            String nodes = props.getProperty("partition.nodes", "").trim();
+            partitionNodes = nodes.isEmpty()
+                    ? List.of()
+                    : Arrays.stream(nodes.split(",")).map(String::trim).toList();
+            replicationRole = props.getProperty("replication.role", "none").trim();
+            replicationBind = props.getProperty("replication.bind", "127.0.0.1").trim();
+            replicationPort = Integer.parseInt(
+                    props.getProperty("replication.port", "9090")
+            );
+            replicationPrimary = props.getProperty("replication.primary", "localhost:9090").trim();
+            replicationBacklogMb = Integer.parseInt(
+                    props.getProperty("replication.backlog.mb", "64")
+            );
+            replicationHeartbeatMillis = Integer.parseInt(
+                    props.getProperty("replication.heartbeat.ms", "100")
+            );
+            replicationClickTimeoutMillis = Integer.parseInt(
+                    props.getProperty("replication.click.timeout.ms", "1000")
+            );
+            admissionEnabled = Boolean.parseBoolean(
+                    props.getProperty("admission.enabled", "false")
+            );
+            admissionRedirectClientRate = Double.parseDouble(
+                    props.getProperty("admission.redirect.client.rate", "20")
+            );
+            admissionRedirectClientBurst = Integer.parseInt(
+                    props.getProperty("admission.redirect.client.burst", "40")
+            );
+            admissionRedirectOwnerRate = Double.parseDouble(
+                    props.getProperty("admission.redirect.owner.rate", "500")
+            );
+            admissionRedirectOwnerBurst = Integer.parseInt(
+                    props.getProperty("admission.redirect.owner.burst", "1000")
+            );
+            admissionRedirectGlobalRate = Double.parseDouble(
+                    props.getProperty("admission.redirect.global.rate", "0")
+            );
+            admissionRedirectGlobalBurst = Integer.parseInt(
+                    props.getProperty("admission.redirect.global.burst", "1000")
+            );
+            admissionCreateUserRate = Double.parseDouble(
+                    props.getProperty("admission.create.user.rate", "2")
+            );
+            admissionCreateUserBurst = Integer.parseInt(
+                    props.getProperty("admission.create.user.burst", "20")
+            );
+            admissionCreateGlobalRate = Double.parseDouble(
+                    props.getProperty("admission.create.global.rate", "0")
+            );
+            admissionCreateGlobalBurst = Integer.parseInt(
+                    props.getProperty("admission.create.global.burst", "100")
+            );
+            admissionKeysMax = Integer.parseInt(
+                    props.getProperty("admission.keys.max", "100000")
+            );
+            admissionClientHeader = props.getProperty("admission.client.header", "").trim();
+            loadTarget = props.getProperty("load.target", "service").trim();
+            loadMode = props.getProperty("load.mode", "closed").trim();
+            loadThreads = Integer.parseInt(
+                    props.getProperty("load.threads", "64")
+            );
+            loadRate = Double.parseDouble(
+                    props.getProperty("load.rate", "0")
+            );
+            loadDurationSeconds = Integer.parseInt(
+                    props.getProperty("load.duration.seconds", "30")
+            );
+            loadWarmupSeconds = Integer.parseInt(
+                    props.getProperty("load.warmup.seconds", "5")
+            );
+            loadLinks = Integer.parseInt(
+                    props.getProperty("load.links", "100000")
+            );
+            loadUsers = Integer.parseInt(
+                    props.getProperty("load.users", "1000")
+            );
+            loadMix = props.getProperty("load.mix", "5/90/2/3").trim();
+            loadZipfExponent = Double.parseDouble(
+                    props.getProperty("load.zipf.exponent", "1.0")
+            );
+            loadExpiredFraction = Double.parseDouble(
+                    props.getProperty("load.expired.fraction", "0.02")
+            );
+            loadUnknownFraction = Double.parseDouble(
+                    props.getProperty("load.unknown.fraction", "0.05")
+            );
 
-        } catch (IOException | NumberFormatException e) {
+        } catch (IOException | IllegalArgumentException e) {
             System.out.println("Ошибка чтения config.properties: " + e.getMessage());
         }
     }
@@ -51,4 +310,286 @@ public class AppConfig {
     public String getShortLinkDomain() {
         return shortLinkDomain;
     }
-}
\ No newline at end of file
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public int getServerRedirectStatus() {
+        return serverRedirectStatus;
+    }
+
+    public String getServerUserEndpoints() {
+        return serverUserEndpoints;
+    }
+
+    public int getCleanupIntervalSeconds() {
+        return cleanupIntervalSeconds;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public FsyncPolicy getJournalFsyncPolicy() {
+        return journalFsyncPolicy;
+    }
+
+    public int getJournalFsyncIntervalMillis() {
+        return journalFsyncIntervalMillis;
+    }
+
+    public int getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public String getCodeGenerator() {
+        return codeGenerator;
+    }
+
+    public int getCodeBlockSize() {
+        return codeBlockSize;
+    }
+
+    // null — перестановка кодов отключена
+    public boolean isCodeScrambleEnabled() {
+        return codeScrambleEnabled;
+    }
+
+    // null — ключ не задан: при включённой перестановке он создаётся при первом запуске
+    public Long getCodeScrambleKey() {
+        return codeScrambleKey;
+    }
+
+    public String getLinkStore() {
+        return linkStore;
+    }
+
+    public boolean isLinkStoreOffHeap() {
+        return linkStoreOffHeap;
+    }
+
+    public boolean isLinkFilterEnabled() {
+        return linkFilterEnabled;
+    }
+
+    public int getLinkFilterExpectedLinks() {
+        return linkFilterExpectedLinks;
+    }
+
+    public double getLinkFilterFalsePositiveRate() {
+        return linkFilterFalsePositiveRate;
+    }
+
+    public int getLinkFilterRebuildIntervalSeconds() {
+        return linkFilterRebuildIntervalSeconds;
+    }
+
+    public boolean isClickPipelineEnabled() {
+        return clickPipelineEnabled;
+    }
+
+    public int getClickBufferCapacity() {
+        return clickBufferCapacity;
+    }
+
+    public int getClickFlushIntervalMillis() {
+        return clickFlushIntervalMillis;
+    }
+
+    public BackpressurePolicy getClickBackpressure() {
+        return clickBackpressure;
+    }
+
+    public boolean isAnalyticsEnabled() {
+        return analyticsEnabled;
+    }
+
+    public int getAnalyticsBucketSeconds() {
+        return analyticsBucketSeconds;
+    }
+
+    public int getAnalyticsBuckets() {
+        return analyticsBuckets;
+    }
+
+    public int getAnalyticsSketchWidth() {
+        return analyticsSketchWidth;
+    }
+
+    public int getAnalyticsSketchDepth() {
+        return analyticsSketchDepth;
+    }
+
+    public int getAnalyticsTopCapacity() {
+        return analyticsTopCapacity;
+    }
+
+    public boolean isLinkReuseExisting() {
+        return linkReuseExisting;
+    }
+
+    public int getTieredHotCapacity() {
+        return tieredHotCapacity;
+    }
+
+    public String getTieredDir() {
+        return tieredDir;
+    }
+
+    public int getTieredSegmentLinks() {
+        return tieredSegmentLinks;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public int getPartitionId() {
+        return partitionId;
+    }
+
+    public List<String> getPartitionNodes() {
+        return partitionNodes;
+    }
+
+    // none, primary или replica
+    public String getReplicationRole() {
+        return replicationRole;
+    }
+
+    public String getReplicationBind() {
+        return replicationBind;
+    }
+
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    public String getReplicationPrimary() {
+        return replicationPrimary;
+    }
+
+    public int getReplicationBacklogMb() {
+        return replicationBacklogMb;
+    }
+
+    public int getReplicationHeartbeatMillis() {
+        return replicationHeartbeatMillis;
+    }
+
+    public int getReplicationClickTimeoutMillis() {
+        return replicationClickTimeoutMillis;
+    }
+
+    public boolean isAdmissionEnabled() {
+        return admissionEnabled;
+    }
+
+    // Лимиты частоты: запросов в секунду (0 — без лимита) и запас на всплеск
+    public double getAdmissionRedirectClientRate() {
+        return admissionRedirectClientRate;
+    }
+
+    public int getAdmissionRedirectClientBurst() {
+        return admissionRedirectClientBurst;
+    }
+
+    public double getAdmissionRedirectOwnerRate() {
+        return admissionRedirectOwnerRate;
+    }
+
+    public int getAdmissionRedirectOwnerBurst() {
+        return admissionRedirectOwnerBurst;
+    }
+
+    public double getAdmissionRedirectGlobalRate() {
+        return admissionRedirectGlobalRate;
+    }
+
+    public int getAdmissionRedirectGlobalBurst() {
+        return admissionRedirectGlobalBurst;
+    }
+
+    public double getAdmissionCreateUserRate() {
+        return admissionCreateUserRate;
+    }
+
+    public int getAdmissionCreateUserBurst() {
+        return admissionCreateUserBurst;
+    }
+
+    public double getAdmissionCreateGlobalRate() {
+        return admissionCreateGlobalRate;
+    }
+
+    public int getAdmissionCreateGlobalBurst() {
+        return admissionCreateGlobalBurst;
+    }
+
+    public int getAdmissionKeysMax() {
+        return admissionKeysMax;
+    }
+
+    // Заголовок с адресом клиента от своего прокси; пустая строка — адрес соединения
+    public String getAdmissionClientHeader() {
+        return admissionClientHeader;
+    }
+
+    // Нагрузочный прогон (java ... Main load): service — напрямую в LinkService, http — переходы через сервер
+    public String getLoadTarget() {
+        return loadTarget;
+    }
+
+    // closed — замкнутый цикл, open — операции с частотой load.rate
+    public String getLoadMode() {
+        return loadMode;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    // Операций в секунду; 0 — замкнутый цикл без расписания
+    public double getLoadRate() {
+        return loadRate;
+    }
+
+    public int getLoadDurationSeconds() {
+        return loadDurationSeconds;
+    }
+
+    public int getLoadWarmupSeconds() {
+        return loadWarmupSeconds;
+    }
+
+    public int getLoadLinks() {
+        return loadLinks;
+    }
+
+    public int getLoadUsers() {
+        return loadUsers;
+    }
+
+    // Доли операций в процентах: create/redirect/delete/edit
+    public String getLoadMix() {
+        return loadMix;
+    }
+
+    public double getLoadZipfExponent() {
+        return loadZipfExponent;
+    }
+
+    // Доли переходов по истёкшим и несуществующим кодам
+    public double getLoadExpiredFraction() {
+        return loadExpiredFraction;
+    }
+
+    public double getLoadUnknownFraction() {
+        return loadUnknownFraction;
+    }
+}
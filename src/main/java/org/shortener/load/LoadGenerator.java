@@ -0,0 +1,423 @@
+package org.shortener.load;
+
+import org.shortener.codegen.RandomCodeGenerator;
+import org.shortener.config.AppConfig;
+import org.shortener.metrics.LatencyHistogram;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.LinkRepository;
+import org.shortener.repository.UserRepository;
+import org.shortener.service.LinkService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Нагрузочный прогон без консоли (java ... Main load): операции create/redirect/delete/edit в долях
+// load.mix идут напрямую в LinkService, а при load.target=http переходы — через HTTP-сервер процесса.
+// Популярность ссылок — по закону Ципфа (load.zipf.exponent), часть переходов — по истёкшим
+// и несуществующим кодам.
+//
+// Замкнутый цикл (closed): load.threads виртуальных потоков выполняют операции одну за другой,
+// при load.rate > 0 — каждый по своему расписанию. Открытый цикл (open): операции приходят с частотой
+// load.rate независимо от того, успевает ли сервис; каждая — в своём виртуальном потоке, одновременно
+// не больше load.threads.
+//
+// Задержка считается от запланированного момента операции, а не от фактического начала: если сервис
+// притормозил и генератор из-за этого начал следующие операции позже, их ожидание входит в задержку
+// (поправка на coordinated omission). Без расписания (closed при load.rate=0) поправлять не от чего,
+// обе задержки совпадают.
+public class LoadGenerator {
+
+    private static final LoadMix.Operation[] OPERATIONS = LoadMix.Operation.values();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 0.9999};
+    private static final int UNKNOWN_CODES = 10_000;
+    // Переход по истёкшему коду выбирает одну из стольких последних истёкших ссылок
+    private static final int RECENT_EXPIRED = 16;
+    // Ссылки, созданные прогоном и ещё не удалённые операциями delete
+    private static final int MAX_CREATED = 1 << 16;
+    private static final int UNLIMITED_CLICKS = Integer.MAX_VALUE;
+
+    private record Created(String shortUrl, UUID owner) {
+    }
+
+    private final AppConfig config;
+    private final LinkService linkService;
+    private final LinkRepository linkRepository;
+    private final UserRepository userRepository;
+    private final String domain;
+    private final boolean open;
+    private final int threads;
+    private final double rate;
+    private final LoadMix mix;
+    private final double expiredFraction;
+    private final double unknownFraction;
+
+    private UUID[] users;
+    private String[] clientKeys;
+    // Ссылки в порядке популярности: ранг закона Ципфа -> ссылка и индекс её владельца
+    private String[] links;
+    private int[] linkOwners;
+    private ZipfSampler zipf;
+    // Ссылки, истекающие по очереди на протяжении прогона: i-я — в момент expiringFrom + i * expiringSpacing
+    private String[] expiringLinks;
+    private long expiringFrom;
+    private long expiringSpacing;
+    private String[] unknownLinks;
+    private final ConcurrentLinkedQueue<Created> created = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private final AtomicLong nextUrl = new AtomicLong();
+
+    // Цель прогона: null — LinkService, иначе адрес HTTP-сервера
+    private String serverUrl;
+    private HttpClient client;
+
+    // Окно измерения (System.nanoTime): записываются операции, запланированные в нём
+    private volatile long measureFrom;
+    private volatile long measureUntil;
+    private final LatencyHistogram[] corrected = new LatencyHistogram[OPERATIONS.length + 1];
+    private final LatencyHistogram[] raw = new LatencyHistogram[OPERATIONS.length + 1];
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    public LoadGenerator(AppConfig config, LinkService linkService, LinkRepository linkRepository,
+                         UserRepository userRepository) {
+        this.config = config;
+        this.linkService = linkService;
+        this.linkRepository = linkRepository;
+        this.userRepository = userRepository;
+        this.domain = config.getShortLinkDomain();
+        this.open = "open".equalsIgnoreCase(config.getLoadMode());
+        this.threads = config.getLoadThreads();
+        this.rate = config.getLoadRate();
+        this.mix = new LoadMix(config.getLoadMix());
+        this.expiredFraction = config.getLoadExpiredFraction();
+        this.unknownFraction = config.getLoadUnknownFraction();
+        if (!open && !"closed".equalsIgnoreCase(config.getLoadMode())) {
+            throw new IllegalArgumentException("Режим нагрузки — closed или open: " + config.getLoadMode());
+        }
+        if (open && !(rate > 0)) {
+            throw new IllegalArgumentException("Открытому циклу нужна частота load.rate > 0");
+        }
+        if (threads < 1 || config.getLoadLinks() < 1 || config.getLoadUsers() < 1
+                || config.getLoadDurationSeconds() < 1 || config.getLoadWarmupSeconds() < 0) {
+            throw new IllegalArgumentException(
+                    "Число потоков, ссылок, пользователей и длительность должны быть положительными");
+        }
+        if (expiredFraction < 0 || unknownFraction < 0 || expiredFraction + unknownFraction > 1) {
+            throw new IllegalArgumentException("Доли истёкших и несуществующих кодов — от 0 до 1 в сумме");
+        }
+        for (int i = 0; i < corrected.length; i++) {
+            corrected[i] = new LatencyHistogram();
+            raw[i] = new LatencyHistogram();
+        }
+    }
+
+    // Заполнение до начала нагрузки: load.links действующих ссылок load.users пользователей и коды, которых нет
+    public void prepare() {
+        users = new UUID[config.getLoadUsers()];
+        clientKeys = new String[users.length];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = UUID.randomUUID();
+            clientKeys[i] = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+        }
+        int hours = config.getDefaultLinkLifetimeHours();
+        links = new String[config.getLoadLinks()];
+        linkOwners = new int[links.length];
+        for (int i = 0; i < links.length; i++) {
+            linkOwners[i] = i % users.length;
+            links[i] = linkService.createShortLink(users[linkOwners[i]], "https://example.com/load/" + i,
+                    hours, UNLIMITED_CLICKS).getShortUrl();
+        }
+        // Популярность не совпадает с порядком создания: ранги раздаются перестановкой
+        Random random = new Random(42);
+        for (int i = links.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String link = links[i];
+            links[i] = links[j];
+            links[j] = link;
+            int owner = linkOwners[i];
+            linkOwners[i] = linkOwners[j];
+            linkOwners[j] = owner;
+        }
+        zipf = new ZipfSampler(links.length, config.getLoadZipfExponent());
+
+        // Случайные 6-символьные коды почти никогда не совпадают с выданными
+        RandomCodeGenerator codes = new RandomCodeGenerator(domain);
+        unknownLinks = new String[UNKNOWN_CODES];
+        for (int i = 0; i < unknownLinks.length; i++) {
+            unknownLinks[i] = codes.nextShortUrl();
+        }
+    }
+
+    // Прогон: разогрев load.warmup.seconds, затем измерение load.duration.seconds.
+    // serverUrl — адрес HTTP-сервера для переходов (http://host:port) или null — напрямую в LinkService.
+    // Консольный вывод сервиса на время прогона отключается, отчёт печатается после.
+    public void run(String serverUrl) {
+        this.serverUrl = serverUrl;
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        ExecutorService clientExecutor = null;
+        try {
+            if (serverUrl != null) {
+                clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+                client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .executor(clientExecutor)
+                        .build();
+            }
+            long start = System.nanoTime();
+            measureFrom = start + config.getLoadWarmupSeconds() * 1_000_000_000L;
+            measureUntil = measureFrom + config.getLoadDurationSeconds() * 1_000_000_000L;
+            createExpiringLinks(start, measureUntil);
+            if (open) {
+                runOpen(start, measureUntil);
+            } else {
+                runClosed(start, measureUntil);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (client != null) {
+                client.close();
+                clientExecutor.close();
+            }
+            System.setOut(stdout);
+        }
+        printReport(stdout);
+    }
+
+    // Истёкшая ссылка живёт в хранилище до ближайшей очистки (cleanup.interval.seconds) или до первого
+    // перехода по ней, поэтому такие ссылки истекают на протяжении всего прогона, а не до него.
+    // Через сервис их не создать (он не даёт задать время истечения), они кладутся в хранилище напрямую.
+    private void createExpiringLinks(long start, long end) {
+        int count = expiredFraction > 0 ? Math.max(1, (int) (links.length * expiredFraction)) : 0;
+        expiringLinks = new String[count];
+        if (count == 0) {
+            return;
+        }
+        expiringFrom = start;
+        expiringSpacing = Math.max(1, (end - start) / count);
+        RandomCodeGenerator codes = new RandomCodeGenerator(domain);
+        Instant startInstant = Instant.now().minusNanos(System.nanoTime() - start);
+        Instant createdAt = startInstant.minus(Duration.ofHours(1));
+        for (int i = 0; i < count; i++) {
+            UUID owner = users[i % users.length];
+            Instant expiresAt = startInstant.plusNanos(i * expiringSpacing);
+            ShortLink link;
+            do {
+                link = new ShortLink("https://example.com/expiring/" + i, codes.nextShortUrl(), owner,
+                        createdAt, expiresAt, UNLIMITED_CLICKS);
+            } while (!linkRepository.saveIfAbsent(link));
+            userRepository.addLinkToUser(owner, link);
+            expiringLinks[i] = link.getShortUrl();
+        }
+    }
+
+    private void runClosed(long start, long end) {
+        // Каждый поток со своим расписанием; расписания сдвинуты, чтобы операции не шли залпами
+        long interval = rate > 0 ? (long) (threads * 1e9 / rate) : 0;
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < threads; w++) {
+                long first = start + interval * w / threads;
+                workers.execute(() -> {
+                    long intended = first;
+                    while (true) {
+                        long now = System.nanoTime();
+                        if (interval == 0) {
+                            intended = now;
+                        } else if (intended - now > 0) {
+                            LockSupport.parkNanos(intended - now);
+                        }
+                        if (intended - end >= 0) {
+                            return;
+                        }
+                        execute(intended);
+                        intended += interval;
+                    }
+                });
+            }
+        }
+    }
+
+    // Отстав (сервис не отпускает потоки или не хватает процессора), планировщик отправляет накопившиеся
+    // операции сразу: их запланированное время уже прошло, и ожидание войдёт в задержку
+    private void runOpen(long start, long end) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(threads);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long intended = start + (long) (i * 1e9 / rate);
+                if (intended - end >= 0) {
+                    break;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        execute(intended);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void execute(long intended) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadMix.Operation operation = mix.next(random);
+        long started = System.nanoTime();
+        String outcome;
+        try {
+            outcome = perform(operation, random);
+        } catch (IOException | RuntimeException e) {
+            outcome = "ERROR";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long finished = System.nanoTime();
+        if (intended - measureFrom < 0 || intended - measureUntil >= 0) {
+            return;
+        }
+        corrected[operation.ordinal()].record(finished - intended);
+        corrected[OPERATIONS.length].record(finished - intended);
+        raw[operation.ordinal()].record(finished - started);
+        raw[OPERATIONS.length].record(finished - started);
+        outcomes.computeIfAbsent(operation.name().toLowerCase(Locale.ROOT) + " " + outcome, k -> new LongAdder())
+                .increment();
+    }
+
+    private String perform(LoadMix.Operation operation, ThreadLocalRandom random)
+            throws IOException, InterruptedException {
+        int user = random.nextInt(users.length);
+        switch (operation) {
+            case CREATE -> {
+                ShortLink link;
+                try {
+                    link = linkService.createShortLink(users[user],
+                            "https://example.com/new/" + nextUrl.incrementAndGet(),
+                            config.getDefaultLinkLifetimeHours(), UNLIMITED_CLICKS);
+                } catch (IllegalStateException e) {
+                    // Отклонено ограничением частоты
+                    return "THROTTLED";
+                }
+                if (createdCount.incrementAndGet() <= MAX_CREATED) {
+                    created.add(new Created(link.getShortUrl(), users[user]));
+                } else {
+                    createdCount.decrementAndGet();
+                }
+                return "OK";
+            }
+            case REDIRECT -> {
+                return redirect(pickRedirect(random), clientKeys[user]);
+            }
+            case DELETE -> {
+                // Удаляются ссылки, созданные прогоном, — популярные остаются; если таких нет — промах
+                Created link = created.poll();
+                if (link == null) {
+                    linkService.deleteLink(unknownLinks[random.nextInt(unknownLinks.length)], users[user]);
+                    return "MISSING";
+                }
+                createdCount.decrementAndGet();
+                linkService.deleteLink(link.shortUrl(), link.owner());
+                return "OK";
+            }
+            case EDIT -> {
+                int rank = random.nextInt(links.length);
+                linkService.editClickLimit(links[rank], users[linkOwners[rank]],
+                        UNLIMITED_CLICKS - random.nextInt(1000));
+                return "OK";
+            }
+        }
+        throw new IllegalStateException("Неизвестная операция " + operation);
+    }
+
+    private String pickRedirect(ThreadLocalRandom random) {
+        double roll = random.nextDouble();
+        if (roll < unknownFraction) {
+            return unknownLinks[random.nextInt(unknownLinks.length)];
+        }
+        if (roll < unknownFraction + expiredFraction && expiringLinks.length > 0) {
+            // Одна из недавно истёкших: первый переход по ней получает EXPIRED, следующие — промах
+            long expired = Math.min(expiringLinks.length, (System.nanoTime() - expiringFrom) / expiringSpacing + 1);
+            return expiringLinks[(int) expired - 1 - random.nextInt((int) Math.min(expired, RECENT_EXPIRED))];
+        }
+        return links[zipf.next(random)];
+    }
+
+    // Исход перехода: RedirectOutcome у LinkService, код ответа у HTTP-сервера. Клиент — один из
+    // адресов пользователей прогона (для HTTP — в заголовке admission.client.header, если он задан).
+    private String redirect(String shortUrl, String clientKey) throws IOException, InterruptedException {
+        if (serverUrl == null) {
+            return linkService.resolve(shortUrl, clientKey).outcome().name();
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create(serverUrl + "/" + shortUrl.substring(domain.length())));
+        if (!config.getAdmissionClientHeader().isEmpty()) {
+            request.header(config.getAdmissionClientHeader(), clientKey);
+        }
+        return "HTTP " + client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private void printReport(PrintStream out) {
+        double seconds = config.getLoadDurationSeconds();
+        LatencyHistogram.Snapshot all = corrected[OPERATIONS.length].snapshot();
+        out.printf(Locale.ROOT, "Нагрузка: %s цикл, %s, %d потоков, цель %s; %d ссылок, %d пользователей, "
+                        + "Ципф s=%.2f, смесь %s%n",
+                open ? "открытый" : "замкнутый",
+                rate > 0 ? String.format(Locale.ROOT, "%.0f оп/с", rate) : "без расписания",
+                threads, serverUrl == null ? "LinkService" : serverUrl, links.length, users.length,
+                config.getLoadZipfExponent(), config.getLoadMix());
+        out.printf(Locale.ROOT, "Выполнено операций: %d за %.0f с (после разогрева %d с): %.1f оп/с%n",
+                all.count(), seconds, config.getLoadWarmupSeconds(), all.count() / seconds);
+        out.println("Задержка от запланированного момента (с поправкой на coordinated omission), мкс:");
+        printLatencies(out, corrected);
+        out.println("Задержка от фактического начала операции (без поправки), мкс:");
+        printLatencies(out, raw);
+        out.println("Исходы:");
+        Map<String, Long> sorted = new TreeMap<>();
+        outcomes.forEach((name, count) -> sorted.put(name, count.sum()));
+        sorted.forEach((name, count) -> out.printf("  %-28s %d%n", name, count));
+    }
+
+    private static void printLatencies(PrintStream out, LatencyHistogram[] histograms) {
+        out.printf("  %-10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "операция", "число", "p50", "p90", "p99", "p99.9", "p99.99", "max");
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram.Snapshot snapshot = histograms[i].snapshot();
+            if (snapshot.count() == 0) {
+                continue;
+            }
+            String name = i < OPERATIONS.length ? OPERATIONS[i].name().toLowerCase(Locale.ROOT) : "все";
+            out.printf("  %-10s %10d", name, snapshot.count());
+            for (double q : QUANTILES) {
+                out.printf(Locale.ROOT, " %10.1f", snapshot.valueAtQuantile(q) / 1_000.0);
+            }
+            out.printf(Locale.ROOT, " %10.1f%n", snapshot.max() / 1_000.0);
+        }
+    }
+}
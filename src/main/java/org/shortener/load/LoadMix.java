@@ -0,0 +1,42 @@
+package org.shortener.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Доли операций нагрузки в процентах: "create/redirect/delete/edit"
+final class LoadMix {
+
+    enum Operation { CREATE, REDIRECT, DELETE, EDIT }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    // Накопленные доли: операция i выпадает, если бросок меньше bounds[i]
+    private final int[] bounds = new int[OPERATIONS.length];
+
+    LoadMix(String mix) {
+        String[] parts = mix.split("/");
+        if (parts.length != OPERATIONS.length) {
+            throw new IllegalArgumentException("Ожидается create/redirect/delete/edit: " + mix);
+        }
+        int sum = 0;
+        for (int i = 0; i < parts.length; i++) {
+            int percent = Integer.parseInt(parts[i].trim());
+            if (percent < 0) {
+                throw new IllegalArgumentException("Доля операции не может быть отрицательной: " + mix);
+            }
+            sum += percent;
+            bounds[i] = sum;
+        }
+        if (sum != 100) {
+            throw new IllegalArgumentException("Сумма долей должна быть 100: " + mix);
+        }
+    }
+
+    Operation next(ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+        int i = 0;
+        while (roll >= bounds[i]) {
+            i++;
+        }
+        return OPERATIONS[i];
+    }
+}
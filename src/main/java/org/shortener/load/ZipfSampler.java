@@ -0,0 +1,46 @@
+package org.shortener.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Ранги по закону Ципфа: ранг k (с нуля) выпадает с вероятностью, пропорциональной 1 / (k + 1)^s.
+// Накопленные веса считаются один раз, выбор — двоичный поиск по ним. s = 0 — равномерный выбор.
+final class ZipfSampler {
+
+    private final int size;
+    private final double[] cumulative;
+
+    ZipfSampler(int size, double exponent) {
+        if (size < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Неверные параметры закона Ципфа: " + size + " рангов, s = " + exponent);
+        }
+        this.size = size;
+        if (exponent == 0) {
+            cumulative = null;
+            return;
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += Math.pow(i + 1, -exponent);
+            cumulative[i] = sum;
+        }
+    }
+
+    int next(ThreadLocalRandom random) {
+        if (cumulative == null) {
+            return random.nextInt(size);
+        }
+        double point = random.nextDouble() * cumulative[size - 1];
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < point) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,42 @@
+package org.shortener.metrics;
+
+import javax.management.ConstructorParameters;
+
+// Сводка гистограммы для JMX (отображается в CompositeData); время — в микросекундах
+public final class LatencySummary {
+
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    @ConstructorParameters({"count", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros"})
+    public LatencySummary(long count, double meanMicros, double p50Micros, double p99Micros,
+                          double p999Micros, double maxMicros) {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    static LatencySummary ofNanos(LatencyHistogram histogram) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        return new LatencySummary(snapshot.count(),
+                snapshot.mean() / 1_000,
+                snapshot.valueAtQuantile(0.5) / 1_000.0,
+                snapshot.valueAtQuantile(0.99) / 1_000.0,
+                snapshot.valueAtQuantile(0.999) / 1_000.0,
+                snapshot.max() / 1_000.0);
+    }
+
+    public long getCount() { return count; }
+    public double getMeanMicros() { return meanMicros; }
+    public double getP50Micros() { return p50Micros; }
+    public double getP99Micros() { return p99Micros; }
+    public double getP999Micros() { return p999Micros; }
+    public double getMaxMicros() { return maxMicros; }
+}
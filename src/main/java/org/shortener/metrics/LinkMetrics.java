@@ -0,0 +1,353 @@
+package org.shortener.metrics;
+
+import org.shortener.admission.AdmissionLimit;
+import org.shortener.service.RedirectOutcome;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+// Метрики сервиса ссылок. Счётчики — LongAdder, длительности — LatencyHistogram в наносекундах:
+// запись не берёт локов и не выделяет память, поэтому её можно держать на горячем пути.
+// Наружу отдаются через JMX (LinkMetricsMXBean) и текстом в формате Prometheus.
+public class LinkMetrics implements LinkMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.shortener:type=LinkMetrics";
+
+    private static final RedirectOutcome[] OUTCOMES = RedirectOutcome.values();
+    private static final AdmissionLimit[] ADMISSION_LIMITS = AdmissionLimit.values();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final LongAdder[] redirects = new LongAdder[OUTCOMES.length];
+    private final LongAdder[] admissionRejected = new LongAdder[ADMISSION_LIMITS.length];
+    private final LongAdder linksCreated = new LongAdder();
+    private final LongAdder codeCollisions = new LongAdder();
+    private final LongAdder cleanupRemoved = new LongAdder();
+    private final LongAdder clickEventsFlushed = new LongAdder();
+    private final LongAdder clickDeltasFlushed = new LongAdder();
+    private final LongAdder clickEventsDropped = new LongAdder();
+    private final LatencyHistogram createLatency = new LatencyHistogram();
+    private final LatencyHistogram redirectLatency = new LatencyHistogram();
+    private final LatencyHistogram cleanupLatency = new LatencyHistogram();
+    private final LatencyHistogram cleanupBatch = new LatencyHistogram();
+    private final LatencyHistogram clickFlushLatency = new LatencyHistogram();
+    private final IntSupplier storeSize;
+    private volatile LongSupplier replicationLagRecords;
+    private volatile LongSupplier replicationLagMillis;
+    private volatile IntSupplier admissionTrackedKeys;
+    private volatile LongSupplier filterRejectedLookups;
+    private volatile DoubleSupplier filterFill;
+    private volatile DoubleSupplier filterFalsePositiveRate;
+    private volatile IntSupplier distinctUrls;
+    private volatile LongSupplier urlBytes;
+
+    public LinkMetrics(IntSupplier storeSize) {
+        this.storeSize = storeSize;
+        for (int i = 0; i < redirects.length; i++) {
+            redirects[i] = new LongAdder();
+        }
+        for (int i = 0; i < admissionRejected.length; i++) {
+            admissionRejected[i] = new LongAdder();
+        }
+    }
+
+    public void recordCreate(long nanos, int collisions) {
+        linksCreated.increment();
+        if (collisions > 0) {
+            codeCollisions.add(collisions);
+        }
+        createLatency.record(nanos);
+    }
+
+    public void recordRedirect(RedirectOutcome outcome, long nanos) {
+        redirects[outcome.ordinal()].increment();
+        redirectLatency.record(nanos);
+    }
+
+    public void recordCleanup(int removed, long nanos) {
+        cleanupRemoved.add(removed);
+        cleanupBatch.record(removed);
+        cleanupLatency.record(nanos);
+    }
+
+    // Окно ClickPipeline сброшено: events переходов свернулись в deltas записей
+    public void recordClickFlush(int events, int deltas, long nanos) {
+        clickEventsFlushed.add(events);
+        clickDeltasFlushed.add(deltas);
+        clickFlushLatency.record(nanos);
+    }
+
+    public void recordClickDropped() {
+        clickEventsDropped.increment();
+    }
+
+    public void recordAdmissionRejected(AdmissionLimit limit) {
+        admissionRejected[limit.ordinal()].increment();
+    }
+
+    public void setAdmissionTrackedKeys(IntSupplier trackedKeys) {
+        this.admissionTrackedKeys = trackedKeys;
+    }
+
+    // Общая таблица исходных URL хранилища: сколько различных URL и сколько байт они занимают
+    // (urlBytes — null, если хранилище их не считает)
+    public void setUrlTable(IntSupplier distinctUrls, LongSupplier urlBytes) {
+        this.distinctUrls = distinctUrls;
+        this.urlBytes = urlBytes;
+    }
+
+    // Фильтр Блума перед хранилищем: отсечённые поиски, заполнение и оценка доли ложных срабатываний
+    public void setLinkFilter(LongSupplier rejectedLookups, DoubleSupplier fill, DoubleSupplier falsePositiveRate) {
+        this.filterRejectedLookups = rejectedLookups;
+        this.filterFill = fill;
+        this.filterFalsePositiveRate = falsePositiveRate;
+    }
+
+    // Реплика отдаёт своё отставание от первичного узла
+    public void setReplicationLag(LongSupplier records, LongSupplier millis) {
+        this.replicationLagRecords = records;
+        this.replicationLagMillis = millis;
+    }
+
+    public long getRedirectCount(RedirectOutcome outcome) {
+        return redirects[outcome.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getRedirectCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (RedirectOutcome outcome : OUTCOMES) {
+            counts.put(outcome.name(), getRedirectCount(outcome));
+        }
+        return counts;
+    }
+
+    @Override
+    public long getLinksCreated() {
+        return linksCreated.sum();
+    }
+
+    @Override
+    public long getCodeCollisions() {
+        return codeCollisions.sum();
+    }
+
+    @Override
+    public int getStoredLinks() {
+        return storeSize.getAsInt();
+    }
+
+    @Override
+    public long getCleanupRuns() {
+        return cleanupLatency.snapshot().count();
+    }
+
+    @Override
+    public long getCleanupRemoved() {
+        return cleanupRemoved.sum();
+    }
+
+    @Override
+    public long getClickEventsFlushed() {
+        return clickEventsFlushed.sum();
+    }
+
+    @Override
+    public long getClickDeltasFlushed() {
+        return clickDeltasFlushed.sum();
+    }
+
+    @Override
+    public long getClickEventsDropped() {
+        return clickEventsDropped.sum();
+    }
+
+    @Override
+    public LatencySummary getClickFlushLatency() {
+        return LatencySummary.ofNanos(clickFlushLatency);
+    }
+
+    @Override
+    public long getReplicationLagRecords() {
+        LongSupplier lag = replicationLagRecords;
+        return lag == null ? -1 : lag.getAsLong();
+    }
+
+    @Override
+    public long getReplicationLagMillis() {
+        LongSupplier lag = replicationLagMillis;
+        return lag == null ? -1 : lag.getAsLong();
+    }
+
+    public long getAdmissionRejectedCount(AdmissionLimit limit) {
+        return admissionRejected[limit.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getAdmissionRejections() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (AdmissionLimit limit : ADMISSION_LIMITS) {
+            counts.put(limit.name(), getAdmissionRejectedCount(limit));
+        }
+        return counts;
+    }
+
+    @Override
+    public int getAdmissionTrackedKeys() {
+        IntSupplier trackedKeys = admissionTrackedKeys;
+        return trackedKeys == null ? -1 : trackedKeys.getAsInt();
+    }
+
+    @Override
+    public int getDistinctUrls() {
+        IntSupplier distinct = distinctUrls;
+        return distinct == null ? -1 : distinct.getAsInt();
+    }
+
+    @Override
+    public long getUrlBytes() {
+        LongSupplier bytes = urlBytes;
+        return bytes == null ? -1 : bytes.getAsLong();
+    }
+
+    @Override
+    public long getLinkFilterRejectedLookups() {
+        LongSupplier rejected = filterRejectedLookups;
+        return rejected == null ? -1 : rejected.getAsLong();
+    }
+
+    @Override
+    public double getLinkFilterFill() {
+        DoubleSupplier fill = filterFill;
+        return fill == null ? -1 : fill.getAsDouble();
+    }
+
+    @Override
+    public double getLinkFilterFalsePositiveRate() {
+        DoubleSupplier rate = filterFalsePositiveRate;
+        return rate == null ? -1 : rate.getAsDouble();
+    }
+
+    @Override
+    public LatencySummary getCreateLatency() {
+        return LatencySummary.ofNanos(createLatency);
+    }
+
+    @Override
+    public LatencySummary getRedirectLatency() {
+        return LatencySummary.ofNanos(redirectLatency);
+    }
+
+    @Override
+    public LatencySummary getCleanupLatency() {
+        return LatencySummary.ofNanos(cleanupLatency);
+    }
+
+    @Override
+    public long getCleanupBatchP99() {
+        return cleanupBatch.snapshot().valueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getCleanupBatchMax() {
+        return cleanupBatch.snapshot().max();
+    }
+
+    // Текстовый формат Prometheus (version 0.0.4); длительности — summary в секундах
+    @Override
+    public String getPrometheusText() {
+        StringBuilder out = new StringBuilder(2048);
+
+        header(out, "shortener_redirects_total", "counter", "Redirect attempts by outcome");
+        for (RedirectOutcome outcome : OUTCOMES) {
+            out.append("shortener_redirects_total{outcome=\"")
+                    .append(outcome.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(getRedirectCount(outcome)).append('\n');
+        }
+        counter(out, "shortener_links_created_total", "Short links created", getLinksCreated());
+        counter(out, "shortener_code_collisions_total", "Short code collisions retried on create", getCodeCollisions());
+        counter(out, "shortener_cleanup_removed_total", "Links removed by background cleanup", getCleanupRemoved());
+        counter(out, "shortener_click_events_flushed_total", "Click events aggregated by the click pipeline",
+                getClickEventsFlushed());
+        counter(out, "shortener_click_deltas_flushed_total", "Per-link click deltas written by the click pipeline",
+                getClickDeltasFlushed());
+        counter(out, "shortener_click_events_dropped_total", "Click events dropped on a full click buffer",
+                getClickEventsDropped());
+        header(out, "shortener_admission_rejected_total", "counter", "Requests rejected by admission control by limit");
+        for (AdmissionLimit limit : ADMISSION_LIMITS) {
+            out.append("shortener_admission_rejected_total{limit=\"")
+                    .append(limit.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(getAdmissionRejectedCount(limit)).append('\n');
+        }
+        if (admissionTrackedKeys != null) {
+            header(out, "shortener_admission_tracked_keys", "gauge", "Clients, owners and users in rate limit tables");
+            out.append("shortener_admission_tracked_keys ").append(getAdmissionTrackedKeys()).append('\n');
+        }
+        if (filterRejectedLookups != null) {
+            counter(out, "shortener_link_filter_rejected_total", "Lookups of unknown codes cut off by the Bloom filter",
+                    getLinkFilterRejectedLookups());
+            header(out, "shortener_link_filter_fill", "gauge", "Fraction of non-zero Bloom filter counters");
+            out.append("shortener_link_filter_fill ").append(getLinkFilterFill()).append('\n');
+            header(out, "shortener_link_filter_false_positive_rate", "gauge",
+                    "Estimated Bloom filter false positive rate at the current fill");
+            out.append("shortener_link_filter_false_positive_rate ").append(getLinkFilterFalsePositiveRate())
+                    .append('\n');
+        }
+        header(out, "shortener_links_stored", "gauge", "Links currently in the store");
+        out.append("shortener_links_stored ").append(getStoredLinks()).append('\n');
+        if (distinctUrls != null) {
+            header(out, "shortener_urls_distinct", "gauge", "Distinct original URLs shared by stored links");
+            out.append("shortener_urls_distinct ").append(getDistinctUrls()).append('\n');
+        }
+        if (urlBytes != null) {
+            header(out, "shortener_url_bytes", "gauge", "Bytes taken by distinct original URLs");
+            out.append("shortener_url_bytes ").append(getUrlBytes()).append('\n');
+        }
+        if (replicationLagRecords != null) {
+            header(out, "shortener_replication_lag_records", "gauge",
+                    "Change feed records not yet applied by this replica");
+            out.append("shortener_replication_lag_records ").append(getReplicationLagRecords()).append('\n');
+            header(out, "shortener_replication_lag_seconds", "gauge",
+                    "Time since this replica last caught up with the primary");
+            out.append("shortener_replication_lag_seconds ").append(getReplicationLagMillis() / 1000.0).append('\n');
+        }
+
+        summary(out, "shortener_create_duration_seconds", "createShortLink duration",
+                createLatency.snapshot(), NANOS_PER_SECOND);
+        summary(out, "shortener_redirect_duration_seconds", "Redirect resolution duration",
+                redirectLatency.snapshot(), NANOS_PER_SECOND);
+        summary(out, "shortener_cleanup_duration_seconds", "Cleanup pass duration",
+                cleanupLatency.snapshot(), NANOS_PER_SECOND);
+        summary(out, "shortener_click_flush_duration_seconds", "Click pipeline window flush duration",
+                clickFlushLatency.snapshot(), NANOS_PER_SECOND);
+        summary(out, "shortener_cleanup_batch_size", "Links removed per cleanup pass",
+                cleanupBatch.snapshot(), 1);
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String help,
+                                LatencyHistogram.Snapshot snapshot, double scale) {
+        header(out, name, "summary", help);
+        for (double q : QUANTILES) {
+            out.append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(snapshot.valueAtQuantile(q) / scale).append('\n');
+        }
+        out.append(name).append("_sum ").append(snapshot.sum() / scale).append('\n');
+        out.append(name).append("_count ").append(snapshot.count()).append('\n');
+    }
+}
@@ -0,0 +1,69 @@
+package org.shortener.metrics;
+
+import java.util.Map;
+
+// Метрики шортенера в JMX: org.shortener:type=LinkMetrics
+public interface LinkMetricsMXBean {
+
+    // Число переходов по исходу: HIT, LAST_HIT, NOT_FOUND, EXPIRED, LIMIT_REACHED, UNAVAILABLE, THROTTLED
+    Map<String, Long> getRedirectCounts();
+
+    long getLinksCreated();
+
+    long getCodeCollisions();
+
+    int getStoredLinks();
+
+    long getCleanupRuns();
+
+    long getCleanupRemoved();
+
+    // Переходы, прошедшие через ClickPipeline, и записи, в которые они свернулись
+    long getClickEventsFlushed();
+
+    long getClickDeltasFlushed();
+
+    // Переходы, потерянные при переполненном буфере (политика DROP)
+    long getClickEventsDropped();
+
+    LatencySummary getClickFlushLatency();
+
+    // Отставание реплики от первичного узла: записи потока, ещё не применённые репликой, и время с момента,
+    // когда она последний раз его догоняла. -1 — процесс не реплика или ещё не получил снимок.
+    long getReplicationLagRecords();
+
+    long getReplicationLagMillis();
+
+    // Запросы, отклонённые ограничением частоты, по лимиту: REDIRECT_CLIENT, REDIRECT_OWNER, ...
+    Map<String, Long> getAdmissionRejections();
+
+    // Ключи в таблицах лимитов; -1 — ограничение частоты выключено
+    int getAdmissionTrackedKeys();
+
+    // Различные исходные URL среди хранимых ссылок и байты, которые они занимают (одинаковые URL хранятся
+    // один раз). -1 — хранилище этого не считает.
+    int getDistinctUrls();
+
+    long getUrlBytes();
+
+    // Фильтр Блума перед хранилищем: поиски, отсечённые без обращения к хранилищу, доля занятых счётчиков
+    // и оценка доли ложных срабатываний. -1 — фильтр выключен.
+    long getLinkFilterRejectedLookups();
+
+    double getLinkFilterFill();
+
+    double getLinkFilterFalsePositiveRate();
+
+    LatencySummary getCreateLatency();
+
+    LatencySummary getRedirectLatency();
+
+    LatencySummary getCleanupLatency();
+
+    // Число ссылок, удалённых одним проходом очистки
+    long getCleanupBatchP99();
+
+    long getCleanupBatchMax();
+
+    String getPrometheusText();
+}
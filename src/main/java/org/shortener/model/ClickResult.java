@@ -0,0 +1,9 @@
+package org.shortener.model;
+
+// Результат атомарной попытки "потратить" один переход по ссылке
+public enum ClickResult {
+    CONSUMED,       // переход засчитан, лимит ещё не исчерпан
+    LAST_CLICK,     // переход засчитан, и он был последним доступным
+    LIMIT_REACHED,  // лимит уже исчерпан, переход не засчитан
+    REMOVED         // ссылка уже удалена, переход не засчитан
+}
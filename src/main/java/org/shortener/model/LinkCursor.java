@@ -0,0 +1,23 @@
+package org.shortener.model;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+// Позиция в списке ссылок пользователя. Ссылки упорядочены по времени создания, при равенстве —
+// по короткому URL, поэтому курсор остаётся корректным, даже если ссылку, на которой он стоит, удалили.
+public record LinkCursor(Instant creationTime, String shortUrl) {
+
+    public static final Comparator<ShortLink> LINK_ORDER = Comparator
+            .comparing(ShortLink::getCreationTime)
+            .thenComparing(ShortLink::getShortUrl);
+
+    public static LinkCursor of(ShortLink link) {
+        return new LinkCursor(link.getCreationTime(), link.getShortUrl());
+    }
+
+    // true, если ссылка стоит в списке строго после курсора
+    public boolean isBefore(ShortLink link) {
+        int byTime = link.getCreationTime().compareTo(creationTime);
+        return byTime > 0 || byTime == 0 && link.getShortUrl().compareTo(shortUrl) > 0;
+    }
+}
@@ -1,26 +1,49 @@
 package org.shortener.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.Instant;
 import java.util.UUID;
 
 public class ShortLink {
+    // Раскладка clickState: бит 63 — ссылка удалена, биты 32..62 — лимит кликов, бит 31 — эпоха снимка
+    // (SnapshotEpoch), биты 0..30 — число переходов (оно не превышает лимит).
+    // Лимит и счётчик лежат в одном слове, чтобы проверка лимита и инкремент выполнялись одним CAS.
+    private static final long REMOVED_BIT = 1L << 63;
+    private static final long EPOCH_BIT = SnapshotEpoch.BIT;
+    private static final long LIMIT_MASK = 0x7FFF_FFFFL;
+    private static final long COUNT_MASK = 0x7FFF_FFFFL;
+
+    private static final VarHandle CLICK_STATE;
+
+    static {
+        try {
+            CLICK_STATE = MethodHandles.lookup().findVarHandle(ShortLink.class, "clickState", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final String originalUrl;       // исходный URL
     private final String shortUrl;          // короткий URL (например, test.ru/AbCdE1)
     private final UUID userId;              // владелец ссылки (идентификатор пользователя)
     private final Instant creationTime;     // время создания
     private final Instant expirationTime;   // время истечения
-    private int clickLimit;                 // лимит кликов
-    private int clickCount;                 // текущее число переходов
+    private volatile long clickState;       // лимит кликов + текущее число переходов + признак удаления
 
     public ShortLink(String originalUrl, String shortUrl, UUID userId,
                      Instant creationTime, Instant expirationTime, int clickLimit) {
+        this(originalUrl, shortUrl, userId, creationTime, expirationTime, clickLimit, 0);
+    }
+
+    public ShortLink(String originalUrl, String shortUrl, UUID userId,
+                     Instant creationTime, Instant expirationTime, int clickLimit, int clickCount) {
         this.originalUrl = originalUrl;
         this.shortUrl = shortUrl;
         this.userId = userId;
         this.creationTime = creationTime;
         this.expirationTime = expirationTime;
-        this.clickLimit = clickLimit;
-        this.clickCount = 0;
+        this.clickState = packClickState(clickLimit, clickCount);
     }
 
     // Геттеры/сеттеры (где нужно)
@@ -29,15 +52,111 @@ public class ShortLink {
     public UUID getUserId() { return userId; }
     public Instant getCreationTime() { return creationTime; }
     public Instant getExpirationTime() { return expirationTime; }
-    public int getClickLimit() { return clickLimit; }
-    public int getClickCount() { return clickCount; }
+    public int getClickLimit() { return limitOf(loadClickState()); }
+    public int getClickCount() { return countOf(loadClickState()); }
+
+    // Атомарно меняет лимит, если ссылка ещё доступна по кликам и не удалена.
+    // Возвращает false, если ссылка уже удалена или её лимит исчерпан.
+    public boolean updateClickLimit(int clickLimit) {
+        while (true) {
+            long state = loadClickState();
+            if ((state & REMOVED_BIT) != 0 || countOf(state) >= limitOf(state)) {
+                return false;
+            }
+            if (changeClickState(state, packClickState(clickLimit, countOf(state)))) {
+                return true;
+            }
+        }
+    }
+
+    // Безусловно выставляет лимит и счётчик (восстановление состояния из журнала или снимка)
+    public void restoreClickState(int clickLimit, int clickCount) {
+        while (true) {
+            long state = loadClickState();
+            if (changeClickState(state, (state & REMOVED_BIT) | packClickState(clickLimit, clickCount))) {
+                return;
+            }
+        }
+    }
+
+    // Атомарно проверяет лимит и засчитывает один переход
+    public ClickResult tryConsumeClick() {
+        while (true) {
+            long state = loadClickState();
+            if ((state & REMOVED_BIT) != 0) {
+                return ClickResult.REMOVED;
+            }
+            int limit = limitOf(state);
+            int count = countOf(state);
+            if (count >= limit) {
+                return ClickResult.LIMIT_REACHED;
+            }
+            if (changeClickState(state, packClickState(limit, count + 1))) {
+                return count + 1 >= limit ? ClickResult.LAST_CLICK : ClickResult.CONSUMED;
+            }
+        }
+    }
+
+    // Помечает ссылку удалённой. Возвращает true только для того вызова, который реально её удалил,
+    // поэтому при гонке удаления с переходом/истечением очистку выполняет ровно один поток.
+    public boolean markRemoved() {
+        while (true) {
+            long state = loadClickState();
+            if ((state & REMOVED_BIT) != 0) {
+                return false;
+            }
+            if (changeClickState(state, state | REMOVED_BIT)) {
+                return true;
+            }
+        }
+    }
+
+    // Забирает ссылку в идущий снимок (SnapshotEpoch) и возвращает её состояние кликов на момент начала
+    // снимка; -1 — ссылка удалена или уже забрана: создана после начала снимка или изменена, и тогда её
+    // прежний вид сохранило само изменение
+    public long claimForSnapshot() {
+        long epoch = SnapshotEpoch.currentBit();
+        while (true) {
+            long state = loadClickState();
+            if ((state & REMOVED_BIT) != 0 || (state & EPOCH_BIT) == epoch) {
+                return -1;
+            }
+            if (compareAndSetClickState(state, state ^ EPOCH_BIT)) {
+                return state;
+            }
+        }
+    }
+
+    // Отмечает только что сохранённую ссылку текущей эпохой снимка. Бит, взятый при создании объекта, мог
+    // устареть: снимок, начавшийся между new ShortLink и сохранением, не видит ссылку, а следующий принял бы
+    // её за уже забранную. Хранилище вызывает это, когда ссылка уже видна его обходу (findAll), и до того,
+    // как о ней узнают получатели onCreate. Снимок, начатый раньше, найдёт ссылку с прежним битом и заберёт
+    // её; начатый позже её не увидит, но тогда и запись LINK попадёт в сегмент журнала после его поворота.
+    public void joinSnapshotEpoch() {
+        while (true) {
+            long state = loadClickState();
+            if ((state & EPOCH_BIT) == SnapshotEpoch.currentBit() || compareAndSetClickState(state, state ^ EPOCH_BIT)) {
+                return;
+            }
+        }
+    }
 
-    public void setClickLimit(int clickLimit) {
-        this.clickLimit = clickLimit;
+    public static int clickLimitOf(long state) {
+        return limitOf(state);
     }
 
-    public void incrementClickCount() {
-        this.clickCount++;
+    public static int clickCountOf(long state) {
+        return countOf(state);
+    }
+
+    // Отдельная от хранилища копия ссылки с заданным состоянием кликов (прежний вид для снимка)
+    ShortLink withClickState(long state) {
+        return new ShortLink(originalUrl, shortUrl, userId, creationTime, expirationTime,
+                limitOf(state), countOf(state));
+    }
+
+    public boolean isRemoved() {
+        return isRemovedState(loadClickState());
     }
 
     public boolean isExpired() {
@@ -45,10 +164,50 @@ public class ShortLink {
     }
 
     public boolean isClickLimitReached() {
-        return clickCount >= clickLimit;
+        long state = loadClickState();
+        return countOf(state) >= limitOf(state);
     }
 
     public boolean isAvailable() {
-        return !isExpired() && !isClickLimitReached();
+        return !isRemoved() && !isExpired() && !isClickLimitReached();
+    }
+
+    // Хранилища, которые держат состояние кликов вне объекта (например, в массивах),
+    // переопределяют эти два метода, а ShortLink служит лишь представлением записи
+    protected long loadClickState() {
+        return clickState;
+    }
+
+    protected boolean compareAndSetClickState(long expected, long updated) {
+        return CLICK_STATE.compareAndSet(this, expected, updated);
+    }
+
+    // Новое состояние несёт бит текущей эпохи; для ещё не сохранённой ссылки он предварительный —
+    // окончательный выставляет хранилище при публикации (joinSnapshotEpoch)
+    protected static long packClickState(int clickLimit, int clickCount) {
+        return ((clickLimit & LIMIT_MASK) << 32) | (clickCount & COUNT_MASK) | SnapshotEpoch.currentBit();
+    }
+
+    // CAS изменения состояния; заодно забирает ссылку в текущую эпоху снимка, а если её ещё не забрал
+    // идущий снимок — сохраняет для него прежний вид ссылки
+    private boolean changeClickState(long state, long updated) {
+        long epoch = SnapshotEpoch.currentBit();
+        updated = (updated & ~EPOCH_BIT) | epoch;
+        if ((state & EPOCH_BIT) == epoch) {
+            return compareAndSetClickState(state, updated);
+        }
+        return SnapshotEpoch.changeUnclaimed(this, state, updated);
+    }
+
+    protected static boolean isRemovedState(long state) {
+        return (state & REMOVED_BIT) != 0;
+    }
+
+    private static int limitOf(long state) {
+        return (int) ((state >>> 32) & LIMIT_MASK);
+    }
+
+    private static int countOf(long state) {
+        return (int) (state & COUNT_MASK);
     }
-}
\ No newline at end of file
+}
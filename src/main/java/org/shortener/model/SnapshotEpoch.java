@@ -0,0 +1,87 @@
+package org.shortener.model;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Эпоха снимка ссылок "на момент времени" без остановки переходов.
+//
+// В состоянии кликов каждой ссылки есть бит эпохи; ссылка "забрана" текущей эпохой, если её бит совпадает
+// с битом процесса. begin() переворачивает бит процесса — это и есть момент снимка: все существующие ссылки
+// становятся незабранными, а сохранённые позже получают новый бит при публикации в хранилище
+// (ShortLink.joinSnapshotEpoch) и в снимок не попадают. Писатель снимка
+// обходит хранилище и забирает ссылки по одной (ShortLink.claimForSnapshot). Изменение ещё не забранной
+// ссылки (переход, лимит, удаление) забирает её тем же CAS, что и меняет, и кладёт сюда копию её прежнего
+// вида. Так каждая ссылка попадает в снимок ровно один раз и такой, какой была в момент begin(), а лишняя
+// память — только копии ссылок, изменённых раньше, чем до них дошёл писатель, и не выбранные им из очереди.
+//
+// Бит общий для всех ShortLink процесса, поэтому снимок в процессе один: begin() ждёт окончания
+// предыдущего, а писатель обязан забрать все ссылки хранилища, даже если запись снимка не удалась.
+public final class SnapshotEpoch {
+
+    static final long BIT = 1L << 31;
+
+    private static final Semaphore SINGLE = new Semaphore(1);
+    private static volatile long currentBit;
+    private static volatile SnapshotEpoch active;
+
+    private final ConcurrentLinkedQueue<ShortLink> preImages = new ConcurrentLinkedQueue<>();
+    // Изменения, которые забирают ссылку прямо сейчас: их копия может ещё не лежать в очереди
+    private final AtomicInteger changing = new AtomicInteger();
+
+    private SnapshotEpoch() {
+    }
+
+    public static SnapshotEpoch begin() {
+        SINGLE.acquireUninterruptibly();
+        SnapshotEpoch epoch = new SnapshotEpoch();
+        // Сначала очередь, потом бит: изменение, увидевшее новый бит, найдёт и очередь
+        active = epoch;
+        currentBit ^= BIT;
+        return epoch;
+    }
+
+    // Передаёт в consumer накопленные копии ссылок, изменённых до того, как их забрал писатель
+    public void drain(Consumer<ShortLink> consumer) {
+        ShortLink preImage;
+        while ((preImage = preImages.poll()) != null) {
+            consumer.accept(preImage);
+        }
+    }
+
+    // Завершает эпоху; вызывается, когда писатель забрал все ссылки хранилища. Дожидается изменений,
+    // забравших ссылку раньше писателя, и отдаёт последние копии в consumer.
+    public void finish(Consumer<ShortLink> consumer) {
+        while (changing.get() > 0) {
+            Thread.onSpinWait();
+        }
+        drain(consumer);
+        active = null;
+        SINGLE.release();
+    }
+
+    static long currentBit() {
+        return currentBit;
+    }
+
+    // Медленный путь изменения ссылки, ещё не забранной текущей эпохой: тот же CAS плюс копия прежнего вида
+    static boolean changeUnclaimed(ShortLink link, long state, long updated) {
+        SnapshotEpoch epoch = active;
+        if (epoch == null) {
+            return link.compareAndSetClickState(state, updated);
+        }
+        epoch.changing.incrementAndGet();
+        try {
+            if (!link.compareAndSetClickState(state, updated)) {
+                return false;
+            }
+            if (!ShortLink.isRemovedState(state)) {
+                epoch.preImages.add(link.withClickState(state));
+            }
+            return true;
+        } finally {
+            epoch.changing.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.shortener.persistence;
+
+// Политика сброса журнала на диск
+public enum FsyncPolicy {
+    ALWAYS,     // запись возвращает управление только после fsync (fsync общий для пачки записей)
+    INTERVAL,   // fsync в фоне не чаще заданного интервала, при сбое теряется хвост за этот интервал
+    NEVER       // только запись в файл, сброс на диск остаётся на усмотрение ОС
+}
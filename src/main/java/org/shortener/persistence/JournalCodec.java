@@ -0,0 +1,205 @@
+package org.shortener.persistence;
+
+import org.shortener.model.ShortLink;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+// Бинарный формат записей журнала, снимков и потока репликации:
+// [int длина тела][int CRC32C тела][тело], тело начинается с байта типа записи.
+// Строки пишутся как varint-длина + UTF-8, числа кликов — как varint.
+final class JournalCodec {
+
+    static final byte END = 0;      // конец снимка
+    static final byte LINK = 1;     // ссылка целиком (создание или запись снимка)
+    static final byte CLICK = 2;    // новое число переходов
+    static final byte LIMIT = 3;    // новый лимит кликов
+    static final byte DELETE = 4;   // удаление ссылки
+
+    // Служебные записи потока репликации (ReplicationSource, ReplicaClient), в файлы не попадают
+    static final byte HELLO = 16;    // реплика -> первичный: поток и номер следующей нужной записи
+    static final byte SNAPSHOT = 17; // первичный -> реплика: начало снимка, за ним LINK... END
+    static final byte SYNC = 18;     // первичный -> реплика: позиция потока и время (заодно heartbeat)
+    static final byte CONSUME = 19;  // реплика -> первичный: засчитать переход по ссылке
+    static final byte REPLY = 20;    // первичный -> реплика: исход перехода
+
+    static final int HEADER_SIZE = 8;
+    static final int MAX_BODY_SIZE = 16 << 20;
+
+    private JournalCodec() {
+    }
+
+    static int recordSize(byte type, ShortLink link) {
+        if (type == LINK) {
+            return linkRecordSize(link, link.getClickLimit(), link.getClickCount());
+        }
+        int body = 1;
+        if (type != END) {
+            body += stringSize(link.getShortUrl());
+        }
+        switch (type) {
+            case CLICK -> body += varIntSize(link.getClickCount());
+            case LIMIT -> body += varIntSize(link.getClickLimit());
+            default -> { }
+        }
+        return HEADER_SIZE + body;
+    }
+
+    // Пишет запись в буфер; в буфере должно быть не меньше recordSize(type, link) свободных байт
+    static void encode(ByteBuffer buf, CRC32C crc, byte type, ShortLink link) {
+        if (type == LINK) {
+            encodeLink(buf, crc, link, link.getClickLimit(), link.getClickCount());
+            return;
+        }
+        int start = beginRecord(buf, type);
+        if (type != END) {
+            putString(buf, link.getShortUrl());
+        }
+        switch (type) {
+            case CLICK -> putVarInt(buf, link.getClickCount());
+            case LIMIT -> putVarInt(buf, link.getClickLimit());
+            default -> { }
+        }
+        finishRecord(buf, crc, start);
+    }
+
+    // Запись LINK с заданными лимитом и счётчиком, а не текущими (снимок пишет состояние на момент начала)
+    static int linkRecordSize(ShortLink link, int clickLimit, int clickCount) {
+        return HEADER_SIZE + 1 + stringSize(link.getShortUrl()) + stringSize(link.getOriginalUrl()) + 8 * 4
+                + varIntSize(clickLimit) + varIntSize(clickCount);
+    }
+
+    static void encodeLink(ByteBuffer buf, CRC32C crc, ShortLink link, int clickLimit, int clickCount) {
+        int start = beginRecord(buf, LINK);
+        putString(buf, link.getShortUrl());
+        putString(buf, link.getOriginalUrl());
+        buf.putLong(link.getUserId().getMostSignificantBits());
+        buf.putLong(link.getUserId().getLeastSignificantBits());
+        buf.putLong(link.getCreationTime().toEpochMilli());
+        buf.putLong(link.getExpirationTime().toEpochMilli());
+        putVarInt(buf, clickLimit);
+        putVarInt(buf, clickCount);
+        finishRecord(buf, crc, start);
+    }
+
+    // Начинает запись: пропускает место под заголовок и пишет тип. Возвращает начало записи для finishRecord.
+    static int beginRecord(ByteBuffer buf, byte type) {
+        int start = buf.position();
+        buf.position(start + HEADER_SIZE);
+        buf.put(type);
+        return start;
+    }
+
+    // Заполняет заголовок записи, тело которой дописано до текущей позиции буфера
+    static void finishRecord(ByteBuffer buf, CRC32C crc, int start) {
+        int end = buf.position();
+        crc.reset();
+        crc.update(buf.slice(start + HEADER_SIZE, end - start - HEADER_SIZE));
+        buf.putInt(start, end - start - HEADER_SIZE);
+        buf.putInt(start + 4, (int) crc.getValue());
+    }
+
+    static void encodeEnd(ByteBuffer buf, CRC32C crc) {
+        encode(buf, crc, END, null);
+    }
+
+    static int stringSize(String s) {
+        int length = utf8Length(s);
+        return varIntSize(length) + length;
+    }
+
+    static void putString(ByteBuffer buf, String s) {
+        putVarInt(buf, utf8Length(s));
+        // Кодируем вручную, чтобы не создавать промежуточный byte[] на каждую запись
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >>> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (!Character.isSurrogate(c)) {
+                buf.put((byte) (0xE0 | (c >>> 12)));
+                buf.put((byte) (0x80 | ((c >>> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (isSurrogatePair(s, i)) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >>> 18)));
+                buf.put((byte) (0x80 | ((cp >>> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                // Одиночный суррогат заменяем на '?', как это делает String.getBytes(UTF_8)
+                buf.put((byte) '?');
+            }
+        }
+    }
+
+    static String getString(ByteBuffer buf) {
+        int length = getVarInt(buf);
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.get(buf.position(), bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    static void putVarInt(ByteBuffer buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer buf) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (isSurrogatePair(s, i)) {
+                length += 4;
+                i++;
+            } else {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isSurrogatePair(String s, int i) {
+        return Character.isHighSurrogate(s.charAt(i)) && i + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(i + 1));
+    }
+}
@@ -0,0 +1,75 @@
+package org.shortener.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Последовательное чтение записей из файла журнала или снимка крупными блоками.
+// Чтение останавливается на первой неполной или повреждённой записи (оборванный хвост после сбоя).
+final class JournalReader {
+
+    private static final int BUFFER_SIZE = 4 << 20;
+
+    private JournalReader() {
+    }
+
+    // Передаёт тело каждой целой записи в consumer (позиция на байте типа, limit — конец тела).
+    // Возвращает смещение конца последней целой записи.
+    static long read(Path file, Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            buf.limit(0);
+            CRC32C crc = new CRC32C();
+            long validEnd = 0;
+            while (true) {
+                buf = fill(channel, buf, JournalCodec.HEADER_SIZE);
+                if (buf.remaining() < JournalCodec.HEADER_SIZE) {
+                    return validEnd;
+                }
+                int length = buf.getInt(buf.position());
+                int checksum = buf.getInt(buf.position() + 4);
+                if (length <= 0 || length > JournalCodec.MAX_BODY_SIZE) {
+                    return validEnd;
+                }
+                buf = fill(channel, buf, JournalCodec.HEADER_SIZE + length);
+                if (buf.remaining() < JournalCodec.HEADER_SIZE + length) {
+                    return validEnd;
+                }
+                ByteBuffer body = buf.slice(buf.position() + JournalCodec.HEADER_SIZE, length);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return validEnd;
+                }
+                consumer.accept(body);
+                buf.position(buf.position() + JournalCodec.HEADER_SIZE + length);
+                validEnd += JournalCodec.HEADER_SIZE + length;
+            }
+        }
+    }
+
+    // Дочитывает файл, пока в буфере не окажется хотя бы needed байт (или не кончится файл)
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buf, int needed) throws IOException {
+        if (buf.remaining() >= needed) {
+            return buf;
+        }
+        if (buf.capacity() < needed) {
+            ByteBuffer bigger = ByteBuffer.allocate(needed);
+            bigger.put(buf);
+            buf = bigger;
+        } else {
+            buf.compact();
+        }
+        while (buf.position() < needed) {
+            if (channel.read(buf) < 0) {
+                break;
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+}
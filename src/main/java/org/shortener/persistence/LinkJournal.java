@@ -0,0 +1,447 @@
+package org.shortener.persistence;
+
+import org.shortener.clicks.ClickDelta;
+import org.shortener.clicks.ClickSink;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.LinkRepository;
+import org.shortener.repository.UserRepository;
+import org.shortener.service.LinkListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Журнал изменений ссылок (write-ahead log) со снимками.
+//
+// Файлы в каталоге журнала:
+//   journal-<поколение>.log  — сегменты журнала, новые записи пишутся только в последний;
+//   snapshot-<поколение>.snap — снимок состояния, покрывающий все сегменты с меньшим поколением.
+//
+// Записи кодируются в общий буфер под коротким локом, отдельный поток сбрасывает накопленную пачку
+// в FileChannel одним write и (в зависимости от FsyncPolicy) одним force — так несколько
+// параллельных записей разделяют один fsync (group commit).
+//
+// Снимок пишется без остановки записей: сначала журнал переключается на новый сегмент, затем
+// ссылки записываются такими, какими были в момент начала снимка (SnapshotEpoch), — файл снимка
+// согласован сам по себе и годится как резервная копия. Записи журнала хранят абсолютные значения
+// (число переходов, лимит), поэтому повторное применение хвоста, часть которого снимок уже учёл,
+// даёт то же состояние. По той же причине переходы можно писать отложенно и свёрнутыми (onClicks):
+// запись CLICK несёт число переходов на момент записи, а не приращение.
+public class LinkJournal implements LinkListener, ClickSink, AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path dir;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+
+    // Поля ниже защищены lock
+    private ByteBuffer pending = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long appendedSeq;
+    private long durableSeq;
+    private long generation;
+    private boolean rotateRequested;
+    private boolean closed;
+    private IOException failure;
+
+    // Используется только потоком сброса (и при открытии/закрытии)
+    private FileChannel channel;
+    private Thread flusher;
+
+    public LinkJournal(Path dir, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.dir = dir;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+    }
+
+    // Восстанавливает репозитории из последнего снимка и хвоста журнала, затем открывает
+    // новый сегмент для записи. Возвращает число восстановленных ссылок.
+    public int open(LinkRepository linkRepository, UserRepository userRepository) throws IOException {
+        Files.createDirectories(dir);
+
+        long snapshotGeneration = 0;
+        List<Long> snapshots = listGenerations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (!snapshots.isEmpty()) {
+            snapshotGeneration = snapshots.get(snapshots.size() - 1);
+            Path snapshot = file(SNAPSHOT_PREFIX, snapshotGeneration, SNAPSHOT_SUFFIX);
+            boolean[] complete = new boolean[1];
+            JournalReader.read(snapshot, body -> {
+                if (body.get(0) == JournalCodec.END) {
+                    complete[0] = true;
+                } else {
+                    apply(body, linkRepository, userRepository);
+                }
+            });
+            if (!complete[0]) {
+                throw new IOException("Снимок повреждён: " + snapshot);
+            }
+        }
+
+        long lastGeneration = snapshotGeneration;
+        for (long segmentGeneration : listGenerations(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (segmentGeneration < snapshotGeneration) {
+                continue;
+            }
+            Path segment = file(SEGMENT_PREFIX, segmentGeneration, SEGMENT_SUFFIX);
+            long validEnd = JournalReader.read(segment, body -> apply(body, linkRepository, userRepository));
+            if (validEnd < Files.size(segment)) {
+                // Оборванный при сбое хвост: отрезаем, чтобы не споткнуться о него при следующем старте
+                try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    ch.truncate(validEnd);
+                }
+            }
+            lastGeneration = segmentGeneration;
+        }
+        deleteOlderThan(snapshotGeneration);
+
+        generation = lastGeneration + 1;
+        channel = openSegment(generation);
+        flusher = new Thread(this::flushLoop, "link-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+        return linkRepository.findAll().size();
+    }
+
+    @Override
+    public void onCreate(ShortLink link) {
+        append(JournalCodec.LINK, link);
+    }
+
+    // Пачка массовой загрузки: все записи LINK под одним захватом лока и одним ожиданием сброса
+    @Override
+    public void onCreateAll(List<ShortLink> links) {
+        lock.lock();
+        try {
+            checkOpen();
+            long seq = appendedSeq;
+            for (ShortLink link : links) {
+                seq = encode(JournalCodec.LINK, link);
+            }
+            awaitDurable(seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onClick(ShortLink link) {
+        append(JournalCodec.CLICK, link);
+    }
+
+    @Override
+    public void onLimitChange(ShortLink link) {
+        append(JournalCodec.LIMIT, link);
+    }
+
+    @Override
+    public void onDelete(ShortLink link) {
+        append(JournalCodec.DELETE, link);
+    }
+
+    // Пачка дельт от ClickPipeline: по одной записи CLICK с текущим числом переходов на ссылку,
+    // все под одним захватом лока. Удалённые ссылки пропускаются — их запись DELETE уже в журнале.
+    @Override
+    public void onClicks(List<ClickDelta> batch) {
+        lock.lock();
+        try {
+            checkOpen();
+            long seq = appendedSeq;
+            for (ClickDelta delta : batch) {
+                if (!delta.link().isRemoved()) {
+                    seq = encode(JournalCodec.CLICK, delta.link());
+                }
+            }
+            awaitDurable(seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(byte type, ShortLink link) {
+        lock.lock();
+        try {
+            checkOpen();
+            awaitDurable(encode(type, link));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Кодирует запись в буфер (при нехватке места ждёт сброса) и возвращает её номер; вызывается под lock
+    private long encode(byte type, ShortLink link) {
+        int size = JournalCodec.recordSize(type, link);
+        while (pending.remaining() < size) {
+            if (pending.position() == 0) {
+                // Запись больше буфера целиком — расширяем буфер под неё
+                pending = ByteBuffer.allocateDirect(size);
+                break;
+            }
+            dataAvailable.signal();
+            flushed.awaitUninterruptibly();
+            checkOpen();
+        }
+        JournalCodec.encode(pending, crc, type, link);
+        long seq = ++appendedSeq;
+        dataAvailable.signal();
+        return seq;
+    }
+
+    // При FsyncPolicy.ALWAYS ждёт, пока запись seq окажется на диске; вызывается под lock
+    private void awaitDurable(long seq) {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            while (durableSeq < seq) {
+                flushed.awaitUninterruptibly();
+                if (failure != null) {
+                    throw new UncheckedIOException("Журнал недоступен", failure);
+                }
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Журнал недоступен", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Журнал закрыт");
+        }
+    }
+
+    private void flushLoop() {
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        while (true) {
+            long batchSeq;
+            boolean rotate;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !rotateRequested && !closed) {
+                    if (unsynced && fsyncPolicy == FsyncPolicy.INTERVAL) {
+                        long wait = fsyncIntervalNanos - (System.nanoTime() - lastSync);
+                        if (wait <= 0) {
+                            break;
+                        }
+                        dataAvailable.awaitNanos(wait);
+                    } else {
+                        dataAvailable.await();
+                    }
+                }
+                if (closed && pending.position() == 0) {
+                    break;
+                }
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                batchSeq = appendedSeq;
+                rotate = rotateRequested;
+                // В освободившийся буфер уже можно писать
+                flushed.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                writing.clear();
+                unsynced = true;
+                boolean sync = fsyncPolicy == FsyncPolicy.ALWAYS || rotate
+                        || (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastSync >= fsyncIntervalNanos);
+                if (sync) {
+                    channel.force(false);
+                    lastSync = System.nanoTime();
+                    unsynced = false;
+                }
+                if (rotate) {
+                    channel.close();
+                    channel = openSegment(generation + 1);
+                }
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableSeq = batchSeq;
+                if (rotate) {
+                    generation++;
+                    rotateRequested = false;
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Переключает запись на новый сегмент и возвращает его поколение
+    private long rotate() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            long current = generation;
+            rotateRequested = true;
+            dataAvailable.signal();
+            while (generation == current) {
+                if (failure != null) {
+                    throw failure;
+                }
+                flushed.awaitUninterruptibly();
+            }
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Пишет снимок переданных ссылок на момент вызова (без остановки переходов, см. SnapshotWriter)
+    // и удаляет сегменты и снимки, которые он покрывает
+    public synchronized void checkpoint(Collection<ShortLink> links) throws IOException {
+        long snapshotGeneration = rotate();
+        Path target = file(SNAPSHOT_PREFIX, snapshotGeneration, SNAPSHOT_SUFFIX);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        SnapshotWriter.write(links, tmp, BUFFER_SIZE);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        deleteOlderThan(snapshotGeneration);
+    }
+
+    // Применяет запись журнала к репозиториям (восстановление при старте и поток репликации)
+    static void apply(ByteBuffer body, LinkRepository linkRepository, UserRepository userRepository) {
+        byte type = body.get();
+        String shortUrl = JournalCodec.getString(body);
+        ShortLink existing = linkRepository.findByShortUrl(shortUrl);
+        switch (type) {
+            case JournalCodec.LINK -> {
+                if (existing != null) {
+                    return;
+                }
+                // URL записан как есть (старые записи — до канонизации), только делим одинаковые
+                String originalUrl = linkRepository.internUrl(JournalCodec.getString(body));
+                UUID userId = new UUID(body.getLong(), body.getLong());
+                Instant creationTime = Instant.ofEpochMilli(body.getLong());
+                Instant expirationTime = Instant.ofEpochMilli(body.getLong());
+                int clickLimit = JournalCodec.getVarInt(body);
+                int clickCount = JournalCodec.getVarInt(body);
+                ShortLink link = new ShortLink(originalUrl, shortUrl, userId,
+                        creationTime, expirationTime, clickLimit, clickCount);
+                linkRepository.save(link);
+                userRepository.addLinkToUser(userId, link);
+            }
+            case JournalCodec.CLICK -> {
+                if (existing != null) {
+                    existing.restoreClickState(existing.getClickLimit(), JournalCodec.getVarInt(body));
+                }
+            }
+            case JournalCodec.LIMIT -> {
+                if (existing != null) {
+                    existing.restoreClickState(JournalCodec.getVarInt(body), existing.getClickCount());
+                }
+            }
+            case JournalCodec.DELETE -> {
+                if (existing != null && existing.markRemoved()) {
+                    linkRepository.delete(existing);
+                    userRepository.removeLinkFromUser(existing.getUserId(), existing);
+                }
+            }
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private FileChannel openSegment(long segmentGeneration) throws IOException {
+        return FileChannel.open(file(SEGMENT_PREFIX, segmentGeneration, SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path file(String prefix, long fileGeneration, String suffix) {
+        return dir.resolve(String.format("%s%016d%s", prefix, fileGeneration, suffix));
+    }
+
+    private List<Long> listGenerations(String prefix, String suffix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> generations.add(Long.parseLong(
+                            name.substring(prefix.length(), name.length() - suffix.length()))));
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private void deleteOlderThan(long snapshotGeneration) throws IOException {
+        for (long old : listGenerations(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (old < snapshotGeneration) {
+                Files.deleteIfExists(file(SEGMENT_PREFIX, old, SEGMENT_SUFFIX));
+            }
+        }
+        for (long old : listGenerations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (old < snapshotGeneration) {
+                Files.deleteIfExists(file(SNAPSHOT_PREFIX, old, SNAPSHOT_SUFFIX));
+            }
+        }
+    }
+
+    // Дописывает накопленные записи, сбрасывает их на диск и закрывает журнал. Повторный вызов ничего не делает.
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher == null) {
+            return;
+        }
+        try {
+            flusher.join();
+            channel.force(false);
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Ошибка закрытия журнала: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.shortener.persistence;
+
+import org.shortener.model.ShortLink;
+import org.shortener.repository.LinkRepository;
+import org.shortener.repository.UserRepository;
+import org.shortener.service.ClickAuthority;
+import org.shortener.service.RedirectOutcome;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Реплика: получает поток изменений от первичного узла (ReplicationSource) и применяет его к своим
+// репозиториям строго по порядку, а переходы пересылает ему — засчитывает их только первичный узел.
+//
+// При разрыве соединения реплика переподключается и просит продолжить поток с первой не полученной
+// записи; если первичный узел её уже не хранит (или это другой его запуск), он присылает снимок.
+// Снимок поверх уже заполненных репозиториев обновляет счётчики имеющихся ссылок, а ссылки, которых
+// в нём нет, удаляет — их удаления реплика пропустила.
+//
+// Отставание считается по записям SYNC: номер последней записи первичного узла минус номер следующей
+// ожидаемой, и время с последнего SYNC, после которого реплика была вровень с первичным узлом
+// (точность — heartbeat первичного узла).
+public class ReplicaClient implements ClickAuthority, AutoCloseable {
+
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    // Столько heartbeat без единой записи — и соединение считается потерянным
+    private static final int MISSED_HEARTBEATS = 10;
+
+    private final String host;
+    private final int port;
+    private final LinkRepository linkRepository;
+    private final UserRepository userRepository;
+    private final int readTimeoutMillis;
+    private final long clickTimeoutMillis;
+
+    private final Map<Long, CompletableFuture<RedirectOutcome>> pendingClicks = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    // null — нет соединения с первичным узлом
+    private volatile ReplicationChannel channel;
+    private volatile boolean closed;
+    private Thread thread;
+
+    // Позиция в потоке; пишет только поток репликации
+    private long streamId;
+    private volatile long appliedSeq = -1;  // номер следующей ожидаемой записи; -1 — снимка ещё не было
+    private volatile long primarySeq;
+    private volatile long caughtUpMillis;   // когда реплика последний раз была вровень (0 — ещё не была)
+    private boolean inSnapshot;
+    private long snapshotStreamId;
+    private long snapshotSeq;               // с какой записи поток продолжится после снимка
+    private Set<String> snapshotLinks;      // коды из снимка, если он пришёл поверх имеющихся ссылок
+    private int snapshotSize;
+
+    // primary — "хост:порт" первичного узла
+    public ReplicaClient(String primary, LinkRepository linkRepository, UserRepository userRepository,
+                         int heartbeatMillis, int clickTimeoutMillis) {
+        int colon = primary.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Адрес первичного узла должен быть вида хост:порт: " + primary);
+        }
+        this.host = primary.substring(0, colon);
+        this.port = Integer.parseInt(primary.substring(colon + 1));
+        this.linkRepository = linkRepository;
+        this.userRepository = userRepository;
+        this.readTimeoutMillis = Math.max(1000, MISSED_HEARTBEATS * heartbeatMillis);
+        this.clickTimeoutMillis = clickTimeoutMillis;
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "replica-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isConnected() {
+        return channel != null;
+    }
+
+    // Записи потока, ещё не применённые репликой; -1 — снимок ещё не получен или нет связи
+    // (сколько записей накопил первичный узел, пока её нет, неизвестно — растёт getLagMillis)
+    public long getLagRecords() {
+        long applied = appliedSeq;
+        return applied < 0 || channel == null ? -1 : Math.max(0, primarySeq - applied);
+    }
+
+    // Сколько миллисекунд реплика не была вровень с первичным узлом; -1 — ещё ни разу не была
+    public long getLagMillis() {
+        long caughtUp = caughtUpMillis;
+        if (caughtUp == 0) {
+            return -1;
+        }
+        if (channel != null && appliedSeq >= primarySeq) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - caughtUp);
+    }
+
+    // Пересылает переход первичному узлу и ждёт исхода не дольше clickTimeoutMillis
+    @Override
+    public RedirectOutcome consumeClick(String shortUrl) {
+        ReplicationChannel current = channel;
+        if (current == null) {
+            return RedirectOutcome.UNAVAILABLE;
+        }
+        long requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<RedirectOutcome> reply = new CompletableFuture<>();
+        pendingClicks.put(requestId, reply);
+        try {
+            current.send(JournalCodec.CONSUME, Long.BYTES + JournalCodec.stringSize(shortUrl), buf -> {
+                buf.putLong(requestId);
+                JournalCodec.putString(buf, shortUrl);
+            });
+            return reply.get(clickTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return RedirectOutcome.UNAVAILABLE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RedirectOutcome.UNAVAILABLE;
+        } finally {
+            pendingClicks.remove(requestId);
+        }
+    }
+
+    private void run() {
+        boolean reported = false;
+        while (!closed) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), readTimeoutMillis);
+                socket.setSoTimeout(readTimeoutMillis);
+                ReplicationChannel current = new ReplicationChannel(socket);
+                long stream = streamId;
+                long from = appliedSeq;
+                current.send(JournalCodec.HELLO, 2 * Long.BYTES, buf -> {
+                    buf.putLong(stream);
+                    buf.putLong(from);
+                });
+                channel = current;
+                inSnapshot = false;
+                System.out.println("Реплика подключена к первичному узлу " + host + ":" + port);
+                reported = false;
+                while (true) {
+                    handle(current.read());
+                }
+            } catch (IOException | RuntimeException e) {
+                channel = null;
+                // Ответов по этому соединению уже не будет
+                for (CompletableFuture<RedirectOutcome> reply : pendingClicks.values()) {
+                    reply.complete(RedirectOutcome.UNAVAILABLE);
+                }
+                if (closed) {
+                    return;
+                }
+                if (!reported) {
+                    System.out.println("Нет связи с первичным узлом " + host + ":" + port + " ("
+                            + (e.getMessage() != null ? e.getMessage() : "соединение закрыто") + "), переподключаемся");
+                    reported = true;
+                }
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(ByteBuffer body) throws IOException {
+        byte type = body.get(0);
+        switch (type) {
+            case JournalCodec.SNAPSHOT -> {
+                body.get();
+                // Позиция меняется только в конце снимка: после обрыва на середине продолжать с неё нельзя
+                snapshotStreamId = body.getLong();
+                snapshotSeq = body.getLong();
+                inSnapshot = true;
+                snapshotSize = 0;
+                snapshotLinks = linkRepository.findAll().isEmpty() ? null : new HashSet<>();
+            }
+            case JournalCodec.END -> finishSnapshot();
+            case JournalCodec.SYNC -> {
+                body.get();
+                long seq = body.getLong();
+                long head = body.getLong();
+                if (inSnapshot || seq != appliedSeq) {
+                    throw new IOException("Поток репликации рассинхронизирован: ожидалась запись " + appliedSeq
+                            + ", первичный узел отправил до " + seq);
+                }
+                primarySeq = head;
+                if (seq == head) {
+                    caughtUpMillis = System.currentTimeMillis();
+                }
+            }
+            case JournalCodec.REPLY -> {
+                body.get();
+                long requestId = body.getLong();
+                RedirectOutcome outcome = RedirectOutcome.values()[body.get()];
+                CompletableFuture<RedirectOutcome> reply = pendingClicks.get(requestId);
+                if (reply != null) {
+                    reply.complete(outcome);
+                }
+            }
+            default -> {
+                if (inSnapshot) {
+                    applySnapshotLink(body);
+                } else {
+                    LinkJournal.apply(body, linkRepository, userRepository);
+                    appliedSeq++;
+                }
+            }
+        }
+    }
+
+    // Ссылка из снимка: новая добавляется как при восстановлении из журнала, у имеющейся обновляется
+    // состояние кликов. Одноимённая ссылка другого владельца или с другим временем создания — уже другая
+    // ссылка (случайный код выдан повторно после удаления), прежняя удаляется. Время сравнивается
+    // с точностью до секунды: компактное хранилище миллисекунд не хранит.
+    private void applySnapshotLink(ByteBuffer body) {
+        snapshotSize++;
+        body.get();
+        String shortUrl = JournalCodec.getString(body);
+        if (snapshotLinks != null) {
+            snapshotLinks.add(shortUrl);
+        }
+        ShortLink existing = linkRepository.findByShortUrl(shortUrl);
+        if (existing != null) {
+            JournalCodec.getString(body);
+            UUID userId = new UUID(body.getLong(), body.getLong());
+            long creationSecond = Math.floorDiv(body.getLong(), 1000);
+            body.getLong();
+            int clickLimit = JournalCodec.getVarInt(body);
+            int clickCount = JournalCodec.getVarInt(body);
+            if (existing.getUserId().equals(userId) && existing.getCreationTime().getEpochSecond() == creationSecond) {
+                existing.restoreClickState(clickLimit, clickCount);
+                return;
+            }
+            remove(existing);
+        }
+        LinkJournal.apply(body.position(0), linkRepository, userRepository);
+    }
+
+    private void finishSnapshot() {
+        inSnapshot = false;
+        streamId = snapshotStreamId;
+        appliedSeq = snapshotSeq;
+        if (snapshotLinks != null) {
+            List<ShortLink> missing = new ArrayList<>();
+            for (ShortLink link : linkRepository.findAll()) {
+                if (!snapshotLinks.contains(link.getShortUrl())) {
+                    missing.add(link);
+                }
+            }
+            missing.forEach(this::remove);
+            snapshotLinks = null;
+        }
+        System.out.println("Получен снимок от первичного узла: " + snapshotSize + " ссылок");
+    }
+
+    private void remove(ShortLink link) {
+        if (link.markRemoved()) {
+            linkRepository.delete(link);
+            userRepository.removeLinkFromUser(link.getUserId(), link);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ReplicationChannel current = channel;
+        if (current != null) {
+            current.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.shortener.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// TCP-соединение репликации: в обе стороны идут записи в формате JournalCodec.
+// Читает один поток; писать можно из любых — каждый вызов send/sendEncoded уходит в сокет целиком,
+// не перемешиваясь с чужими записями.
+final class ReplicationChannel implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final CRC32C readCrc = new CRC32C();
+    private byte[] body = new byte[BUFFER_SIZE];
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Защищены writeLock
+    private final CRC32C writeCrc = new CRC32C();
+    private final ByteBuffer record = ByteBuffer.allocate(1024);
+
+    ReplicationChannel(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        this.out = socket.getOutputStream();
+    }
+
+    // Тело следующей записи (позиция на байте типа); буфер действителен до следующего вызова read
+    ByteBuffer read() throws IOException {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length <= 0 || length > JournalCodec.MAX_BODY_SIZE) {
+            throw new IOException("Неверная длина записи репликации: " + length);
+        }
+        if (body.length < length) {
+            body = new byte[Math.max(length, body.length * 2)];
+        }
+        in.readFully(body, 0, length);
+        readCrc.reset();
+        readCrc.update(body, 0, length);
+        if ((int) readCrc.getValue() != checksum) {
+            throw new IOException("Повреждена запись репликации");
+        }
+        return ByteBuffer.wrap(body, 0, length).slice();
+    }
+
+    // Служебная запись: payload дописывает тело после байта типа, не больше maxPayload байт
+    void send(byte type, int maxPayload, Consumer<ByteBuffer> payload) throws IOException {
+        writeLock.lock();
+        try {
+            ByteBuffer buf = JournalCodec.HEADER_SIZE + 1 + maxPayload <= record.capacity()
+                    ? record.clear()
+                    : ByteBuffer.allocate(JournalCodec.HEADER_SIZE + 1 + maxPayload);
+            int start = JournalCodec.beginRecord(buf, type);
+            payload.accept(buf);
+            JournalCodec.finishRecord(buf, writeCrc, start);
+            out.write(buf.array(), 0, buf.position());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Уже закодированные целые записи (блоки очереди первичного узла, страницы снимка)
+    void sendEncoded(byte[] data, int offset, int length) throws IOException {
+        writeLock.lock();
+        try {
+            out.write(data, offset, length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    String remoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Соединение и так разорвано
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package org.shortener.persistence;
+
+import org.shortener.clicks.ClickDelta;
+import org.shortener.clicks.ClickSink;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.LinkRepository;
+import org.shortener.service.ClickAuthority;
+import org.shortener.service.LinkListener;
+import org.shortener.service.RedirectOutcome;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Первичный узел репликации (log shipping): рассылает изменения ссылок репликам по TCP и засчитывает
+// переходы, которые они ему пересылают (ClickAuthority), — так лимит кликов не превышается, сколько бы
+// реплик ни обслуживало переходы.
+//
+// Поток изменений — записи журнала (JournalCodec): создание, удаление, новый лимит, новое число переходов.
+// Записи нумеруются и копятся в очереди фиксированного объёма из блоков по BLOCK_SIZE; поток отправки
+// каждой реплики копирует в сокет блоки как есть, начиная со своей позиции, без повторного кодирования.
+// Когда очередь переполняется, старые блоки вытесняются.
+//
+// Реплика, подключившаяся впервые или к другому запуску первичного узла, а также отставшая больше, чем
+// на объём очереди, получает снимок: все ссылки записями LINK, после чего поток продолжается с номера,
+// взятого до начала снимка. Блок, с которого поток продолжится, закреплён, пока снимок отправляется
+// и реплика не догонит очередь: иначе на большом хранилище он вытеснялся бы раньше конца снимка
+// и реплика получала бы снимки без конца. Записи несут абсолютные значения, поэтому, как и при восстановлении из журнала,
+// хвост поверх "нечёткого" снимка даёт то же состояние.
+//
+// Вслед за каждой отправленной пачкой и раз в heartbeat при простое реплика получает SYNC — номер, до
+// которого она получила поток, и номер последней записи первичного узла; по ним она считает отставание.
+public class ReplicationSource implements LinkListener, ClickSink, AutoCloseable {
+
+    private static final int BLOCK_SIZE = 256 << 10;
+    private static final int SNAPSHOT_PAGE_SIZE = 1 << 20;
+    private static final int SYNC_PAYLOAD = 2 * Long.BYTES;
+
+    private final String bindAddress;
+    private final int port;
+    private final long capacityBytes;
+    private final long heartbeatNanos;
+    private final LinkRepository linkRepository;
+    private final ClickAuthority clickAuthority;
+    // Отличает этот запуск: номера записей прежнего запуска реплике не подходят
+    private final long streamId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    // Поля ниже защищены lock
+    private Block oldest;
+    private Block tail;
+    private ByteBuffer tailBuffer;
+    private long retainedBytes;
+    private boolean closed;
+    // Номер следующей записи; читается без лока
+    private volatile long nextSeq;
+
+    private final Set<ReplicationChannel> replicas = ConcurrentHashMap.newKeySet();
+    // Переходы, пересланные репликами: каждый в своём виртуальном потоке, чтобы медленный (например,
+    // ждущий fsync журнала) не задерживал остальные
+    private final ExecutorService clickExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private ServerSocket serverSocket;
+
+    // Блок очереди: записи с номерами firstSeq и далее подряд. Дописывается только последний блок и только
+    // под lock; его заполнение публикуется одним volatile-словом, поэтому читать блок можно без лока.
+    private static final class Block {
+        final long firstSeq;
+        final byte[] data;
+        volatile long state;        // (число записей << 32) | занято байт
+        volatile Block next;
+        volatile boolean evicted;   // вытеснен из очереди: реплика, которая его читает, отстала
+        int pins;                   // потоки отправки снимков, которые с него продолжат; защищено lock
+
+        Block(long firstSeq, int size) {
+            this.firstSeq = firstSeq;
+            this.data = new byte[size];
+        }
+    }
+
+    // Позиция потока отправки одной реплики: смещение в блоке и номер следующей записи
+    private static final class Cursor {
+        Block block;
+        int offset;
+        long seq;
+
+        Cursor(Block block, int offset, long seq) {
+            this.block = block;
+            this.offset = offset;
+            this.seq = seq;
+        }
+    }
+
+    // bindAddress — адрес, на котором слушает порт репликации: реплика получает все ссылки с UUID владельцев
+    // и может засчитывать переходы, поэтому по умолчанию это 127.0.0.1
+    public ReplicationSource(String bindAddress, int port, long capacityBytes, int heartbeatMillis,
+                             LinkRepository linkRepository, ClickAuthority clickAuthority) {
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.capacityBytes = Math.max(capacityBytes, 2L * BLOCK_SIZE);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+        this.linkRepository = linkRepository;
+        this.clickAuthority = clickAuthority;
+        this.oldest = new Block(0, BLOCK_SIZE);
+        this.tail = oldest;
+        this.tailBuffer = ByteBuffer.wrap(tail.data);
+        this.retainedBytes = BLOCK_SIZE;
+    }
+
+    // Начинает принимать реплики. Подписать источник на изменения нужно до этого: иначе изменения,
+    // сделанные между снимком для первой реплики и подпиской, до неё не дойдут.
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        Thread acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int replicaCount() {
+        return replicas.size();
+    }
+
+    @Override
+    public void onCreate(ShortLink link) {
+        append(JournalCodec.LINK, link);
+    }
+
+    @Override
+    public void onCreateAll(List<ShortLink> links) {
+        lock.lock();
+        try {
+            for (ShortLink link : links) {
+                encode(JournalCodec.LINK, link);
+            }
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onClick(ShortLink link) {
+        append(JournalCodec.CLICK, link);
+    }
+
+    @Override
+    public void onLimitChange(ShortLink link) {
+        append(JournalCodec.LIMIT, link);
+    }
+
+    @Override
+    public void onDelete(ShortLink link) {
+        append(JournalCodec.DELETE, link);
+    }
+
+    // Пачка от ClickPipeline: как и в журнале, по записи CLICK с текущим числом переходов на ссылку
+    @Override
+    public void onClicks(List<ClickDelta> batch) {
+        lock.lock();
+        try {
+            for (ClickDelta delta : batch) {
+                if (!delta.link().isRemoved()) {
+                    encode(JournalCodec.CLICK, delta.link());
+                }
+            }
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(byte type, ShortLink link) {
+        lock.lock();
+        try {
+            encode(type, link);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Дописывает запись в последний блок очереди (при нехватке места — в новый); вызывается под lock
+    private void encode(byte type, ShortLink link) {
+        int size = JournalCodec.recordSize(type, link);
+        if (tailBuffer.remaining() < size) {
+            Block block = new Block(nextSeq, Math.max(BLOCK_SIZE, size));
+            tail.next = block;
+            tail = block;
+            tailBuffer = ByteBuffer.wrap(block.data);
+            retainedBytes += block.data.length;
+            // Закреплённый блок и всё после него остаются в очереди, даже сверх её объёма
+            while (retainedBytes > capacityBytes && oldest != tail && oldest.pins == 0) {
+                oldest.evicted = true;
+                retainedBytes -= oldest.data.length;
+                oldest = oldest.next;
+            }
+        }
+        JournalCodec.encode(tailBuffer, crc, type, link);
+        tail.state = ((tail.state >>> 32) + 1) << 32 | tailBuffer.position();
+        nextSeq++;
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // Сокет закрыт в close()
+                return;
+            }
+            Thread thread = new Thread(() -> serve(socket), "replication-replica");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // Соединение с одной репликой: этот поток читает пересланные переходы, отдельный — отправляет поток
+    private void serve(Socket socket) {
+        ReplicationChannel channel;
+        try {
+            channel = new ReplicationChannel(socket);
+        } catch (IOException e) {
+            closeQuietly(socket);
+            return;
+        }
+        Thread sender = null;
+        replicas.add(channel);
+        try {
+            ByteBuffer hello = channel.read();
+            if (hello.get() != JournalCodec.HELLO) {
+                throw new IOException("Ожидалось приветствие реплики");
+            }
+            long replicaStream = hello.getLong();
+            long from = replicaStream == streamId ? hello.getLong() : -1;
+            System.out.println("Подключена реплика " + channel.remoteAddress());
+            sender = new Thread(() -> stream(channel, from), "replication-sender");
+            sender.setDaemon(true);
+            sender.start();
+            while (true) {
+                ByteBuffer request = channel.read();
+                if (request.get() != JournalCodec.CONSUME) {
+                    throw new IOException("Неизвестная запись от реплики");
+                }
+                long requestId = request.getLong();
+                String shortUrl = JournalCodec.getString(request);
+                clickExecutor.execute(() -> consume(channel, requestId, shortUrl));
+            }
+        } catch (EOFException e) {
+            // Реплика закрыла соединение
+        } catch (IOException e) {
+            if (!isClosed()) {
+                System.out.println("Ошибка соединения с репликой " + channel.remoteAddress() + ": " + e.getMessage());
+            }
+        } finally {
+            replicas.remove(channel);
+            channel.close();
+            if (sender != null) {
+                sender.interrupt();
+            }
+        }
+        System.out.println("Реплика отключена: " + channel.remoteAddress());
+    }
+
+    private void consume(ReplicationChannel channel, long requestId, String shortUrl) {
+        RedirectOutcome outcome = clickAuthority.consumeClick(shortUrl);
+        try {
+            channel.send(JournalCodec.REPLY, Long.BYTES + 1, buf -> {
+                buf.putLong(requestId);
+                buf.put((byte) outcome.ordinal());
+            });
+        } catch (IOException e) {
+            // Соединение разорвано: реплика не дождётся ответа и вернёт UNAVAILABLE, хотя переход засчитан.
+            // В безопасную сторону — лимит не превышен.
+        }
+    }
+
+    // Поток отправки одной реплики: from — номер первой нужной ей записи, -1 — нужен снимок
+    private void stream(ReplicationChannel channel, long from) {
+        Block pinned = null;
+        try {
+            Cursor cursor = from >= 0 ? locate(from) : null;
+            long lastSync = System.nanoTime();
+            while (true) {
+                if (cursor == null || cursor.block.evicted) {
+                    cursor = snapshotCursor();
+                    pinned = cursor.block;
+                    sendSnapshot(channel, cursor.seq);
+                }
+                boolean sent = drain(channel, cursor);
+                // Реплика догнала очередь после снимка — дальше она отстаёт на общих основаниях
+                if (pinned != null) {
+                    unpin(pinned);
+                    pinned = null;
+                }
+                long now = System.nanoTime();
+                if (sent || now - lastSync >= heartbeatNanos) {
+                    long seq = cursor.seq;
+                    long head = nextSeq;
+                    channel.send(JournalCodec.SYNC, SYNC_PAYLOAD, buf -> {
+                        buf.putLong(seq);
+                        buf.putLong(head);
+                    });
+                    lastSync = now;
+                }
+                if (!awaitRecords(cursor.seq)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Соединение закрыто — поток чтения уже сообщил об этом
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (pinned != null) {
+                unpin(pinned);
+            }
+        }
+    }
+
+    private void unpin(Block block) {
+        lock.lock();
+        try {
+            block.pins--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Отправляет всё, что накопилось после позиции курсора; false — нечего было отправлять
+    private boolean drain(ReplicationChannel channel, Cursor cursor) throws IOException {
+        boolean sent = false;
+        while (!cursor.block.evicted) {
+            Block block = cursor.block;
+            long state = block.state;
+            int length = (int) state;
+            if (cursor.offset < length) {
+                channel.sendEncoded(block.data, cursor.offset, length - cursor.offset);
+                cursor.offset = length;
+                cursor.seq = block.firstSeq + (state >>> 32);
+                sent = true;
+            } else if (block.next != null && (int) block.state == cursor.offset) {
+                // next публикуется после последней записи блока: раз он есть, блок дочитан до конца
+                cursor.block = block.next;
+                cursor.offset = 0;
+            } else {
+                break;
+            }
+        }
+        return sent;
+    }
+
+    // Ждёт записей после seq не дольше heartbeat; false — источник закрыт
+    private boolean awaitRecords(long seq) throws InterruptedException {
+        lock.lock();
+        try {
+            if (nextSeq == seq && !closed) {
+                appended.awaitNanos(heartbeatNanos);
+            }
+            return !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Позиция записи from в очереди или null, если её там уже (или ещё) нет
+    private Cursor locate(long from) {
+        lock.lock();
+        try {
+            if (from > nextSeq) {
+                return null;
+            }
+            for (Block block = oldest; block != null; block = block.next) {
+                long state = block.state;
+                long count = state >>> 32;
+                if (from < block.firstSeq || from > block.firstSeq + count) {
+                    continue;
+                }
+                int offset = 0;
+                for (long seq = block.firstSeq; seq < from; seq++) {
+                    offset += JournalCodec.HEADER_SIZE + ByteBuffer.wrap(block.data).getInt(offset);
+                }
+                return new Cursor(block, offset, from);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Позиция, с которой поток продолжится после снимка; её блок закреплён, снять закрепление — unpin
+    private Cursor snapshotCursor() {
+        lock.lock();
+        try {
+            tail.pins++;
+            return new Cursor(tail, (int) tail.state, nextSeq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Снимок всех ссылок; поток после него продолжается с записи seq
+    private void sendSnapshot(ReplicationChannel channel, long seq) throws IOException {
+        channel.send(JournalCodec.SNAPSHOT, 2 * Long.BYTES, buf -> {
+            buf.putLong(streamId);
+            buf.putLong(seq);
+        });
+        ByteBuffer page = ByteBuffer.allocate(SNAPSHOT_PAGE_SIZE);
+        CRC32C pageCrc = new CRC32C();
+        int links = 0;
+        for (ShortLink link : linkRepository.findAll()) {
+            if (link.isRemoved()) {
+                continue;
+            }
+            int size = JournalCodec.recordSize(JournalCodec.LINK, link);
+            if (page.remaining() < size) {
+                channel.sendEncoded(page.array(), 0, page.position());
+                page = page.capacity() < size ? ByteBuffer.allocate(size) : page.clear();
+            }
+            JournalCodec.encode(page, pageCrc, JournalCodec.LINK, link);
+            links++;
+        }
+        if (page.remaining() < JournalCodec.HEADER_SIZE + 1) {
+            channel.sendEncoded(page.array(), 0, page.position());
+            page.clear();
+        }
+        JournalCodec.encodeEnd(page, pageCrc);
+        channel.sendEncoded(page.array(), 0, page.position());
+        System.out.println("Реплике " + channel.remoteAddress() + " отправлен снимок: " + links + " ссылок");
+    }
+
+    private boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Соединение и так разорвано
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                System.out.println("Ошибка закрытия порта репликации: " + e.getMessage());
+            }
+        }
+        for (ReplicationChannel channel : replicas) {
+            channel.close();
+        }
+        clickExecutor.close();
+    }
+}
@@ -0,0 +1,34 @@
+package org.shortener.persistence;
+
+import org.shortener.repository.LinkRepository;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Периодическое снятие снимка и сжатие журнала
+public class SnapshotScheduler implements AutoCloseable {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "link-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SnapshotScheduler(LinkJournal journal, LinkRepository linkRepository, int intervalSeconds) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                journal.checkpoint(linkRepository.findAll());
+            } catch (IOException | RuntimeException e) {
+                // Не даём исключению остановить периодическую задачу
+                System.out.println("Ошибка записи снимка: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
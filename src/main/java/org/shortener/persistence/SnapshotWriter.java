@@ -0,0 +1,112 @@
+package org.shortener.persistence;
+
+import org.shortener.model.ShortLink;
+import org.shortener.model.SnapshotEpoch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Снимок ссылок на момент начала (SnapshotEpoch) в файл снимка журнала: записи LINK ... END.
+// Записи копятся в буфере фиксированного размера и уходят в FileChannel целиком; после каждого сброса
+// из эпохи выбираются копии изменённых ссылок, поэтому лишняя память не растёт с размером хранилища.
+// Ошибка записи не прерывает обход: ссылки всё равно нужно забрать, иначе следующий снимок их пропустит.
+final class SnapshotWriter {
+
+    private final SnapshotEpoch epoch;
+    private final CRC32C crc = new CRC32C();
+    private FileChannel out;
+    private ByteBuffer buf;
+    private IOException failure;
+    private boolean draining;
+    private int links;
+
+    private SnapshotWriter(SnapshotEpoch epoch) {
+        this.epoch = epoch;
+    }
+
+    // Пишет в file ссылки links такими, какими они были в момент вызова, и возвращает их число
+    static int write(Iterable<ShortLink> links, Path file, int bufferSize) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(SnapshotEpoch.begin());
+        try {
+            writer.out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            writer.buf = ByteBuffer.allocateDirect(bufferSize);
+        } catch (IOException e) {
+            writer.failure = e;
+        }
+        try {
+            for (ShortLink link : links) {
+                long state = link.claimForSnapshot();
+                if (state != -1) {
+                    writer.append(link, ShortLink.clickLimitOf(state), ShortLink.clickCountOf(state));
+                }
+            }
+        } finally {
+            writer.epoch.finish(writer::appendPreImage);
+        }
+        return writer.finish();
+    }
+
+    private void appendPreImage(ShortLink preImage) {
+        append(preImage, preImage.getClickLimit(), preImage.getClickCount());
+    }
+
+    private void append(ShortLink link, int clickLimit, int clickCount) {
+        if (failure != null) {
+            return;
+        }
+        int size = JournalCodec.linkRecordSize(link, clickLimit, clickCount);
+        boolean flushed = false;
+        if (buf.remaining() < size) {
+            try {
+                flush();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            if (buf.capacity() < size) {
+                buf = ByteBuffer.allocateDirect(size);
+            }
+            flushed = true;
+        }
+        JournalCodec.encodeLink(buf, crc, link, clickLimit, clickCount);
+        links++;
+        // Копии, накопившиеся во время выборки, заберёт та же выборка
+        if (flushed && !draining) {
+            draining = true;
+            epoch.drain(this::appendPreImage);
+            draining = false;
+        }
+    }
+
+    private int finish() throws IOException {
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            if (buf.remaining() < JournalCodec.HEADER_SIZE + 1) {
+                flush();
+            }
+            JournalCodec.encodeEnd(buf, crc);
+            flush();
+            out.force(true);
+            return links;
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+}
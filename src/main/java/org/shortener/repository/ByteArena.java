@@ -0,0 +1,99 @@
+package org.shortener.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Непрерывная область байтов для строк записей (на куче или вне её).
+// Строки только дописываются; место удалённых учитывается как мусор и возвращается
+// при перепаковке, которую выполняет владелец. Не потокобезопасна — защищается локом владельца.
+final class ByteArena {
+
+    private static final int INITIAL_CAPACITY = 64 << 10;
+
+    private final boolean offHeap;
+    private ByteBuffer buffer;
+    private int wasted;
+
+    ByteArena(boolean offHeap) {
+        this(offHeap, INITIAL_CAPACITY);
+    }
+
+    private ByteArena(boolean offHeap, int capacity) {
+        this.offHeap = offHeap;
+        this.buffer = allocate(capacity);
+    }
+
+    // Дописывает байты и возвращает их смещение
+    int append(byte[] bytes) {
+        ensureRemaining(bytes.length);
+        int offset = buffer.position();
+        buffer.put(bytes);
+        return offset;
+    }
+
+    String read(int offset, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Совпадают ли хранящиеся байты с bytes
+    boolean matches(int offset, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+        if (buffer.hasArray()) {
+            int from = buffer.arrayOffset() + offset;
+            return Arrays.equals(buffer.array(), from, from + length, bytes, 0, length);
+        }
+        return buffer.slice(offset, length).mismatch(ByteBuffer.wrap(bytes)) < 0;
+    }
+
+    void release(int length) {
+        wasted += length;
+    }
+
+    // Перепаковка выгодна, когда мусора больше половины занятого места
+    boolean needsCompaction() {
+        return wasted > INITIAL_CAPACITY && wasted > buffer.position() / 2;
+    }
+
+    // Новая область под перепаковку: владелец переносит в неё живые строки через copyTo
+    ByteArena emptyCopy() {
+        return new ByteArena(offHeap, Math.max(INITIAL_CAPACITY, buffer.position() - wasted));
+    }
+
+    int copyTo(ByteArena target, int offset, int length) {
+        target.ensureRemaining(length);
+        int newOffset = target.buffer.position();
+        target.buffer.put(buffer.slice(offset, length));
+        return newOffset;
+    }
+
+    // Байты, занятые строками (включая ещё не перепакованный мусор)
+    long usedBytes() {
+        return buffer.position();
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + length);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Область строк переполнена");
+        }
+        ByteBuffer bigger = allocate((int) capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
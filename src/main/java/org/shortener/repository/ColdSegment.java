@@ -0,0 +1,281 @@
+package org.shortener.repository;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Сегмент холодного уровня TieredLinkStore: неизменяемый файл с записями, отсортированными по ключу кода,
+// отображённый в память. Раскладка (little-endian, секции выровнены на 8 байт):
+//
+//   заголовок  magic, число записей, число слов фильтра Блума
+//   keys       long[count]  ключи по возрастанию
+//   states     long[count]  состояние кликов — единственное изменяемое поле, меняется CAS-ом прямо в файле
+//   offsets    int[count]   смещения записей в data
+//   bloom      long[words]  фильтр Блума по ключам
+//   data       записи: userId (2 long), время создания и истечения (мс), длина URL, байты URL в UTF-8
+//
+// На куче остаётся только разреженный индекс — каждый SPARSE_STEP-й ключ. Поиск: фильтр Блума,
+// бинарный поиск по разреженному индексу и затем по блоку ключей в отображении; запись читается
+// из отображения напрямую, без копирования файла в кучу.
+final class ColdSegment {
+
+    private static final int MAGIC = 0x544C5331; // "TLS1"
+    private static final int HEADER_BYTES = 16;
+    private static final int SPARSE_STEP = 64;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_PROBES = 7;
+    private static final int BLOCK_WORDS = 8;
+    private static final int RECORD_HEADER_BYTES = 36;
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    final long id;
+    final int count;
+    // Записи, ставшие мёртвыми (удалены или перенесены в другое место) — по ним решается уплотнение
+    final AtomicInteger dead = new AtomicInteger();
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int statesOffset;
+    private final int offsetsOffset;
+    private final int bloomOffset;
+    private final int bloomBlockMask;
+    private final int dataOffset;
+    private final long[] sparseKeys;
+
+    private ColdSegment(long id, Path file, MappedByteBuffer buffer, int count, int bloomWords) {
+        this.id = id;
+        this.file = file;
+        this.buffer = buffer;
+        this.count = count;
+        this.statesOffset = HEADER_BYTES + 8 * count;
+        this.offsetsOffset = statesOffset + 8 * count;
+        this.bloomOffset = offsetsOffset + align(4 * count);
+        this.bloomBlockMask = bloomWords / BLOCK_WORDS - 1;
+        this.dataOffset = bloomOffset + 8 * bloomWords;
+        this.sparseKeys = new long[(count + SPARSE_STEP - 1) / SPARSE_STEP];
+    }
+
+    // Номер записи с ключом key или -1
+    int find(long key) {
+        if (count == 0 || !mightContain(key)) {
+            return -1;
+        }
+        // Последний блок, первый ключ которого не больше искомого
+        int low = 0;
+        int high = sparseKeys.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (sparseKeys[mid] <= key) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        low *= SPARSE_STEP;
+        high = Math.min(count, low + SPARSE_STEP) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = key(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    long key(int ordinal) {
+        return buffer.getLong(HEADER_BYTES + 8 * ordinal);
+    }
+
+    long state(int ordinal) {
+        return (long) LONGS.getVolatile(buffer, statesOffset + 8 * ordinal);
+    }
+
+    boolean compareAndSetState(int ordinal, long expected, long updated) {
+        return LONGS.compareAndSet(buffer, statesOffset + 8 * ordinal, expected, updated);
+    }
+
+    void setState(int ordinal, long state) {
+        LONGS.setVolatile(buffer, statesOffset + 8 * ordinal, state);
+    }
+
+    UUID userId(int ordinal) {
+        int record = record(ordinal);
+        return new UUID(buffer.getLong(record), buffer.getLong(record + 8));
+    }
+
+    boolean isOwnedBy(int ordinal, UUID userId, long creationMillis) {
+        int record = record(ordinal);
+        return buffer.getLong(record) == userId.getMostSignificantBits()
+                && buffer.getLong(record + 8) == userId.getLeastSignificantBits()
+                && buffer.getLong(record + 16) == creationMillis;
+    }
+
+    long creationMillis(int ordinal) {
+        return buffer.getLong(record(ordinal) + 16);
+    }
+
+    long expirationMillis(int ordinal) {
+        return buffer.getLong(record(ordinal) + 24);
+    }
+
+    String originalUrl(int ordinal) {
+        int record = record(ordinal);
+        byte[] url = new byte[buffer.getInt(record + 32)];
+        buffer.get(record + RECORD_HEADER_BYTES, url);
+        return new String(url, StandardCharsets.UTF_8);
+    }
+
+    int recordBytes(int ordinal) {
+        return recordSize(buffer.getInt(record(ordinal) + 32));
+    }
+
+    // Размер файла сегмента в байтах
+    long byteSize() {
+        return buffer.capacity();
+    }
+
+    // Размер записи с URL из urlLength байт
+    static int recordSize(int urlLength) {
+        return RECORD_HEADER_BYTES + urlLength;
+    }
+
+    // Файл удаляется сразу; отображение остаётся действительным, пока на буфер есть ссылки
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private int record(int ordinal) {
+        return dataOffset + buffer.getInt(offsetsOffset + 4 * ordinal);
+    }
+
+    // Фильтр блочный: все пробы ключа попадают в один блок из BLOCK_WORDS слов (одну строку кеша),
+    // поэтому проверка сегмента стоит одного промаха кеша, а не одного на пробу
+    private boolean mightContain(long key) {
+        long hash = mix(key);
+        int block = bloomOffset + 8 * BLOCK_WORDS * (int) (hash & bloomBlockMask);
+        // Номера битов в блоке — 9-битные куски второго хеша
+        long bits = hash * 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < BLOOM_PROBES; i++, bits >>>= 9) {
+            int bit = (int) bits & (BLOCK_WORDS * 64 - 1);
+            if ((buffer.getLong(block + 8 * (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    // Запись нового сегмента: размер известен заранее, файл сразу отображается и заполняется на месте.
+    // Ключи подаются строго по возрастанию; состояния всех записей — initialState, настоящие
+    // состояния владелец переносит после публикации сегмента.
+    static final class Writer {
+        private final MappedByteBuffer buffer;
+        private final ColdSegment segment;
+        private final long initialState;
+        private int added;
+        private int dataPosition;
+
+        Writer(Path dir, long id, int count, long dataBytes, long initialState) throws IOException {
+            int bloomBits = Math.max(64 * BLOCK_WORDS,
+                    Integer.highestOneBit(Math.max(1, count * BLOOM_BITS_PER_KEY - 1)) << 1);
+            int bloomWords = bloomBits / 64;
+            long size = HEADER_BYTES + 16L * count + align(4 * count) + 8L * bloomWords + dataBytes;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Сегмент холодного уровня больше 2 ГБ");
+            }
+            Path file = dir.resolve(String.format("cold-%08d.seg", id));
+            this.initialState = initialState;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, count);
+            buffer.putInt(8, bloomWords);
+            segment = new ColdSegment(id, file, buffer, count, bloomWords);
+        }
+
+        void add(long key, UUID userId, long creationMillis, long expirationMillis, byte[] url) {
+            int record = startRecord(key, RECORD_HEADER_BYTES + url.length);
+            buffer.putLong(record, userId.getMostSignificantBits());
+            buffer.putLong(record + 8, userId.getLeastSignificantBits());
+            buffer.putLong(record + 16, creationMillis);
+            buffer.putLong(record + 24, expirationMillis);
+            buffer.putInt(record + 32, url.length);
+            buffer.put(record + RECORD_HEADER_BYTES, url);
+        }
+
+        // Копирует запись из другого сегмента байт в байт
+        void copy(ColdSegment source, int ordinal) {
+            int length = source.recordBytes(ordinal);
+            int record = startRecord(source.key(ordinal), length);
+            buffer.put(record, source.buffer, source.record(ordinal), length);
+        }
+
+        ColdSegment finish() {
+            if (added != segment.count) {
+                throw new IllegalStateException("В сегмент записано " + added + " записей из " + segment.count);
+            }
+            return segment;
+        }
+
+        // Удаляет недописанный файл
+        void abort() {
+            segment.delete();
+        }
+
+        private int startRecord(long key, int length) {
+            int ordinal = added++;
+            if (ordinal > 0 && segment.key(ordinal - 1) >= key) {
+                throw new IllegalArgumentException("Ключи сегмента должны возрастать");
+            }
+            buffer.putLong(HEADER_BYTES + 8 * ordinal, key);
+            buffer.putLong(segment.statesOffset + 8 * ordinal, initialState);
+            buffer.putInt(segment.offsetsOffset + 4 * ordinal, dataPosition);
+            if (ordinal % SPARSE_STEP == 0) {
+                segment.sparseKeys[ordinal / SPARSE_STEP] = key;
+            }
+            long hash = mix(key);
+            int block = segment.bloomOffset + 8 * BLOCK_WORDS * (int) (hash & segment.bloomBlockMask);
+            long bits = hash * 0x9E3779B97F4A7C15L;
+            for (int i = 0; i < BLOOM_PROBES; i++, bits >>>= 9) {
+                int bit = (int) bits & (BLOCK_WORDS * 64 - 1);
+                int word = block + 8 * (bit >>> 6);
+                buffer.putLong(word, buffer.getLong(word) | (1L << bit));
+            }
+            int record = segment.dataOffset + dataPosition;
+            dataPosition += length;
+            return record;
+        }
+    }
+}
@@ -0,0 +1,907 @@
+package org.shortener.repository;
+
+import org.shortener.codegen.Base62;
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Компактное хранилище ссылок: без объекта на каждую ссылку.
+//
+// Код после домена (6..10 символов base62) превращается в long-ключ (Base62.toKey), ключ ищется
+// в таблице с открытой адресацией из примитивных массивов. Поля записи лежат по колонкам
+// (struct-of-arrays) в блоках по CHUNK_SIZE, время хранится в epoch-секундах, владелец — номером
+// в таблице пользователей, исходный URL — номером в общей UrlTable: байты UTF-8 каждой различной
+// страницы хранятся один раз (по желанию вне кучи), сколько бы ссылок на неё ни вело.
+// Ссылки пользователя перечислены в его записи UserEntry массивами (секунда создания, ключ, запись),
+// упорядоченными как LinkCursor.LINK_ORDER; колонка userSlots хранит место записи в этих массивах.
+//
+// Наружу выдаются представления ShortLink, собранные по записи; состояние кликов у них читается
+// и меняется CAS-ом прямо в колонке. Представление может жить сколько угодно (его держат поток
+// перехода, пакет ClickPipeline, генератор нагрузки), поэтому у записи есть поколение: удаление
+// увеличивает его, а представление сверяет своё поколение при каждом чтении и CAS и при расхождении
+// видит ссылку удалённой. Освобождённая запись переиспользуется не раньше чем через два цикла
+// drainExpired — это покрывает лишь промежуток между сверкой поколения и самим CAS.
+//
+// Ссылки с кодом, не укладывающимся в ключ (другой домен, иные символы), хранятся обычным образом.
+//
+// Хранилище разбито на сегменты по хешу ключа, у каждого свой ReadWriteLock. Порядок захвата:
+// лок сегмента, затем монитор пользователя; лок полосы UrlTable берётся последним.
+public class CompactLinkStore implements LinkRepository, UserRepository {
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int LOCAL_BITS = 27;
+    private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long EMPTY = -1;
+    private static final int NONE = -1;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final String domain;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final UrlTable urls;
+
+    // Пользователи: UUID -> запись со списком ссылок; номер -> запись
+    private final Map<UUID, UserEntry> usersById = new ConcurrentHashMap<>();
+    private volatile UserEntry[] users = new UserEntry[64];
+    private int userCount;
+
+    // Ссылки, код которых не укладывается в long-ключ
+    private final InMemoryLinkRepository overflowLinks = new InMemoryLinkRepository();
+    private final InMemoryUserRepository overflowUsers = new InMemoryUserRepository();
+
+    public CompactLinkStore(String domain, boolean offHeap) {
+        this.domain = domain;
+        this.urls = new UrlTable(offHeap);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(i);
+        }
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        put(link, true);
+    }
+
+    // Хранилище сохраняет копию полей ссылки: последующие изменения переданного объекта в него
+    // не попадают, для них нужно взять представление через findByShortUrl
+    @Override
+    public boolean saveIfAbsent(ShortLink link) {
+        return put(link, false);
+    }
+
+    private boolean put(ShortLink link, boolean replace) {
+        long key = keyOf(link.getShortUrl());
+        if (key < 0) {
+            if (replace) {
+                overflowLinks.save(link);
+                return true;
+            }
+            return overflowLinks.saveIfAbsent(link);
+        }
+        UserEntry user = userEntry(link.getUserId());
+        // URL занимаем до лока сегмента, чтобы не хешировать и не сравнивать байты под ним
+        int urlId = urls.acquire(link.getOriginalUrl().getBytes(StandardCharsets.UTF_8));
+        boolean inserted = false;
+        Segment segment = segmentFor(key);
+        segment.lock.writeLock().lock();
+        try {
+            int existing = segment.find(key);
+            if (existing != NONE) {
+                if (!replace) {
+                    return false;
+                }
+                segment.remove(existing);
+            }
+            segment.insert(key, link, user, urlId);
+            inserted = true;
+            return true;
+        } finally {
+            segment.lock.writeLock().unlock();
+            if (!inserted) {
+                urls.release(urlId);
+            }
+        }
+    }
+
+    @Override
+    public ShortLink findByShortUrl(String shortUrl) {
+        long key = keyOf(shortUrl);
+        if (key < 0) {
+            return overflowLinks.findByShortUrl(shortUrl);
+        }
+        Segment segment = segmentFor(key);
+        segment.lock.readLock().lock();
+        try {
+            int record = segment.find(key);
+            return record == NONE ? null : segment.view(record, shortUrl);
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    // Удаляет запись вместе с её местом в списке пользователя, поэтому removeLinkFromUser
+    // для компактных ссылок ничего не делает
+    @Override
+    public boolean delete(ShortLink link) {
+        long key = keyOf(link.getShortUrl());
+        if (key < 0) {
+            return overflowLinks.delete(link);
+        }
+        Segment segment = segmentFor(key);
+        segment.lock.writeLock().lock();
+        try {
+            int record = segment.find(key);
+            if (record == NONE) {
+                return false;
+            }
+            // Представление удаляет только свою запись, а не ту, что могла занять ключ после неё
+            if (link instanceof View view
+                    && (view.store != this || view.record != record || view.generation != segment.generation(record))) {
+                return false;
+            }
+            segment.remove(record);
+            return true;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<ShortLink> findAll() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<ShortLink> iterator() {
+                return new AllLinksIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactLinkStore.this.size();
+            }
+        };
+    }
+
+    public int size() {
+        int size = overflowLinks.findAll().size();
+        for (Segment segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                size += segment.live;
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int drainExpired(Instant now, Consumer<ShortLink> consumer) {
+        long nowSecond = now.getEpochSecond();
+        int drained = overflowLinks.drainExpired(now, consumer);
+        for (Segment segment : segments) {
+            List<ShortLink> expired;
+            segment.lock.writeLock().lock();
+            try {
+                segment.recycle();
+                expired = segment.pollExpired(nowSecond);
+            } finally {
+                segment.lock.writeLock().unlock();
+            }
+            for (ShortLink link : expired) {
+                consumer.accept(link);
+            }
+            drained += expired.size();
+        }
+        return drained;
+    }
+
+    @Override
+    public Collection<ShortLink> getUserLinks(UUID userId) {
+        Collection<ShortLink> overflow = overflowUsers.getUserLinks(userId);
+        UserEntry user = usersById.get(userId);
+        if (user == null) {
+            return overflow;
+        }
+        // Под монитором пользователя только собираем ссылки на записи, сами записи читаем под локами сегментов
+        int[] refs = user.refs();
+        List<ShortLink> links = new ArrayList<>(refs.length + overflow.size());
+        for (int ref : refs) {
+            ShortLink link = userView(user, ref);
+            if (link != null) {
+                links.add(link);
+            }
+        }
+        links.addAll(overflow);
+        return links;
+    }
+
+    @Override
+    public Iterator<ShortLink> iterateUserLinks(UUID userId, LinkCursor after) {
+        UserEntry user = usersById.get(userId);
+        if (user == null) {
+            return overflowUsers.iterateUserLinks(userId, after);
+        }
+        return new PagingIterator(after, (cursor, limit) -> userPage(user, cursor, limit));
+    }
+
+    // Страница списка пользователя: под монитором двоичным поиском находится место курсора и берутся
+    // limit следующих записей, затем каждая читается под локом своего сегмента. Если все выбранные
+    // успели удалить, выбор повторяется после последней из них.
+    private List<ShortLink> userPage(UserEntry user, LinkCursor cursor, int limit) {
+        CodeOrder order = new CodeOrder();
+        List<ShortLink> page = new ArrayList<>(limit);
+        int[] refs = new int[limit];
+        long[] seconds = new long[limit];
+        long[] keys = new long[limit];
+        // Компактные ссылки хранят время с точностью до секунды: курсор с дробной частью стоит после всей секунды
+        long fromSecond = cursor == null ? Long.MIN_VALUE : cursor.creationTime().getEpochSecond();
+        boolean afterWholeSecond = cursor != null && cursor.creationTime().getNano() != 0;
+        String fromShortUrl = cursor == null ? null : cursor.shortUrl();
+        while (true) {
+            int selected = user.select(fromSecond, afterWholeSecond, fromShortUrl, order, refs, seconds, keys);
+            for (int i = 0; i < selected; i++) {
+                ShortLink link = userView(user, refs[i]);
+                if (link != null) {
+                    page.add(link);
+                }
+            }
+            if (!page.isEmpty() || selected < limit) {
+                break;
+            }
+            fromSecond = seconds[selected - 1];
+            afterWholeSecond = false;
+            fromShortUrl = shortUrlOf(keys[selected - 1]);
+        }
+        // Ссылки вне компактного формата подмешиваем своей страницей и обрезаем общий результат
+        Iterator<ShortLink> overflow = overflowUsers.iterateUserLinks(user.id, cursor);
+        for (int i = 0; i < limit && overflow.hasNext(); i++) {
+            page.add(overflow.next());
+        }
+        page.sort(LinkCursor.LINK_ORDER);
+        return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+    }
+
+    // Представление записи из списка пользователя или null, если её уже удалили
+    private ShortLink userView(UserEntry user, int ref) {
+        Segment segment = segments[ref >>> LOCAL_BITS];
+        int record = ref & LOCAL_MASK;
+        segment.lock.readLock().lock();
+        try {
+            return segment.isLive(record) && segment.owner(record) == user.index ? segment.view(record, null) : null;
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addLinkToUser(UUID userId, ShortLink link) {
+        // Компактные ссылки попадают в список пользователя при сохранении
+        if (keyOf(link.getShortUrl()) < 0) {
+            overflowUsers.addLinkToUser(userId, link);
+        }
+    }
+
+    @Override
+    public void removeLinkFromUser(UUID userId, ShortLink link) {
+        if (keyOf(link.getShortUrl()) < 0) {
+            overflowUsers.removeLinkFromUser(userId, link);
+        }
+    }
+
+    // Байты, занятые исходными URL (для оценки расхода памяти)
+    public long urlBytes() {
+        return urls.usedBytes();
+    }
+
+    // Число различных исходных URL среди хранимых ссылок
+    public int distinctUrls() {
+        return urls.size() + overflowLinks.distinctUrls();
+    }
+
+    private long keyOf(String shortUrl) {
+        return shortUrl.startsWith(domain) ? Base62.toKey(shortUrl, domain.length()) : -1;
+    }
+
+    private String shortUrlOf(long key) {
+        char[] chars = new char[domain.length() + Base62.MAX_LENGTH];
+        domain.getChars(0, domain.length(), chars, 0);
+        int length = Base62.fromKey(key, chars, domain.length());
+        return new String(chars, 0, domain.length() + length);
+    }
+
+    private Segment segmentFor(long key) {
+        return segments[(int) (mix(key) >>> 60)];
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    private UserEntry userEntry(UUID userId) {
+        UserEntry user = usersById.get(userId);
+        return user != null ? user : usersById.computeIfAbsent(userId, this::registerUser);
+    }
+
+    private synchronized UserEntry registerUser(UUID userId) {
+        UserEntry user = new UserEntry(userCount, userId);
+        UserEntry[] current = users;
+        if (userCount == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[userCount++] = user;
+        users = current;
+        return user;
+    }
+
+    // Пользователь и его ссылки: массивы (секунда создания, ключ, глобальный номер записи
+    // сегмент << LOCAL_BITS | запись) в порядке LinkCursor.LINK_ORDER. Удалённая запись оставляет
+    // надгробие NONE до ближайшего уплотнения. Ссылки обычно добавляются по возрастанию времени и просто
+    // дописываются в конец; если порядок нарушен (восстановление из снимка, импорт), массивы сортируются
+    // при следующем чтении страницы. Поля и колонка userSlots записей пользователя защищены его монитором.
+    private final class UserEntry {
+        final int index;
+        final UUID id;
+        long[] seconds = new long[8];
+        long[] keys = new long[8];
+        int[] refs = new int[8];
+        int size;
+        int live;
+        boolean sorted = true;
+
+        UserEntry(int index, UUID id) {
+            this.index = index;
+            this.id = id;
+        }
+
+        synchronized void add(int ref, long second, long key) {
+            if (size == refs.length) {
+                // Перед ростом выбрасываем надгробия: если их много, места хватит и так
+                compact();
+                if (size == refs.length) {
+                    seconds = Arrays.copyOf(seconds, size * 2);
+                    keys = Arrays.copyOf(keys, size * 2);
+                    refs = Arrays.copyOf(refs, size * 2);
+                }
+            }
+            if (sorted && size > 0 && (second < seconds[size - 1]
+                    || second == seconds[size - 1] && new CodeOrder().compare(key, keys[size - 1]) < 0)) {
+                sorted = false;
+            }
+            place(size++, ref, second, key);
+            live++;
+        }
+
+        synchronized void remove(int ref) {
+            refs[segments[ref >>> LOCAL_BITS].userSlot(ref & LOCAL_MASK)] = NONE;
+            live--;
+            if (size - live > Math.max(32, live)) {
+                compact();
+            }
+        }
+
+        synchronized int[] refs() {
+            int[] result = new int[live];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (refs[i] != NONE) {
+                    result[count++] = refs[i];
+                }
+            }
+            return result;
+        }
+
+        // Заполняет out-массивы первыми записями строго после курсора (секунда, короткий URL; при
+        // afterWholeSecond — после всей секунды), возвращает их число
+        synchronized int select(long fromSecond, boolean afterWholeSecond, String fromShortUrl, CodeOrder order,
+                                int[] outRefs, long[] outSeconds, long[] outKeys) {
+            if (!sorted) {
+                sort(order);
+            }
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (seconds[mid] > fromSecond || seconds[mid] == fromSecond && !afterWholeSecond
+                        && (fromShortUrl == null || order.compare(keys[mid], fromShortUrl) > 0)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            int selected = 0;
+            for (int i = low; i < size && selected < outRefs.length; i++) {
+                if (refs[i] != NONE) {
+                    outRefs[selected] = refs[i];
+                    outSeconds[selected] = seconds[i];
+                    outKeys[selected] = keys[i];
+                    selected++;
+                }
+            }
+            return selected;
+        }
+
+        private int compare(long second, long key, int i, CodeOrder order) {
+            int bySecond = Long.compare(second, seconds[i]);
+            return bySecond != 0 ? bySecond : order.compare(key, keys[i]);
+        }
+
+        private void place(int slot, int ref, long second, long key) {
+            seconds[slot] = second;
+            keys[slot] = key;
+            refs[slot] = ref;
+            segments[ref >>> LOCAL_BITS].setUserSlot(ref & LOCAL_MASK, slot);
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (refs[i] != NONE) {
+                    place(kept++, refs[i], seconds[i], keys[i]);
+                }
+            }
+            size = kept;
+        }
+
+        // Сортировка слиянием по номерам позиций, затем перестановка массивов
+        private void sort(CodeOrder order) {
+            compact();
+            int[] positions = new int[size];
+            for (int i = 0; i < size; i++) {
+                positions[i] = i;
+            }
+            int[] buffer = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int low = 0; low < size - width; low += 2 * width) {
+                    int middle = low + width;
+                    int high = Math.min(low + 2 * width, size);
+                    int left = low;
+                    int right = middle;
+                    for (int i = low; i < high; i++) {
+                        if (right == high || left < middle
+                                && compare(seconds[positions[left]], keys[positions[left]], positions[right], order) <= 0) {
+                            buffer[i] = positions[left++];
+                        } else {
+                            buffer[i] = positions[right++];
+                        }
+                    }
+                    System.arraycopy(buffer, low, positions, low, high - low);
+                }
+            }
+            long[] sortedSeconds = new long[seconds.length];
+            long[] sortedKeys = new long[keys.length];
+            int[] sortedRefs = new int[refs.length];
+            for (int i = 0; i < size; i++) {
+                sortedSeconds[i] = seconds[positions[i]];
+                sortedKeys[i] = keys[positions[i]];
+                sortedRefs[i] = refs[positions[i]];
+            }
+            seconds = sortedSeconds;
+            keys = sortedKeys;
+            refs = sortedRefs;
+            for (int i = 0; i < size; i++) {
+                segments[refs[i] >>> LOCAL_BITS].setUserSlot(refs[i] & LOCAL_MASK, i);
+            }
+            sorted = true;
+        }
+    }
+
+    private final class Segment {
+        final int index;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // Таблица ключ -> номер записи, линейное пробирование, удаление сдвигом без надгробий
+        long[] tableKeys = newTable(1024);
+        int[] tableRecords = new int[1024];
+        int tableSize;
+
+        // Колонки записей; блоки не перемещаются, растёт только внешний массив
+        volatile long[][] keys = new long[0][];
+        volatile long[][] creationSeconds = new long[0][];
+        volatile long[][] expirationSeconds = new long[0][];
+        volatile long[][] clickStates = new long[0][];
+        volatile int[][] owners = new int[0][];
+        volatile int[][] urlIds = new int[0][];
+        // Место записи в массивах пользователя; меняется только под монитором пользователя
+        volatile int[][] userSlots = new int[0][];
+        // Поколение записи: растёт при каждом удалении, читается представлениями без лока
+        volatile int[][] generations = new int[0][];
+        int recordCount;
+        int live;
+
+        // Свободные записи; недавно освобождённые выдерживаются в limbo и cooling
+        IntList free = new IntList();
+        IntList cooling = new IntList();
+        IntList limbo = new IntList();
+
+        // Индекс истечения: секунда -> записи
+        final TreeMap<Long, IntList> expirations = new TreeMap<>();
+
+        Segment(int index) {
+            this.index = index;
+        }
+
+        int find(long key) {
+            int mask = tableKeys.length - 1;
+            for (int i = (int) mix(key) & mask; ; i = (i + 1) & mask) {
+                long k = tableKeys[i];
+                if (k == EMPTY) {
+                    return NONE;
+                }
+                if (k == key) {
+                    return tableRecords[i];
+                }
+            }
+        }
+
+        boolean isLive(int record) {
+            return record < recordCount && find(keys[record >>> CHUNK_BITS][record & CHUNK_MASK]) == record;
+        }
+
+        void insert(long key, ShortLink link, UserEntry user, int urlId) {
+            int record = allocate();
+            int chunk = record >>> CHUNK_BITS;
+            int offset = record & CHUNK_MASK;
+            keys[chunk][offset] = key;
+            creationSeconds[chunk][offset] = link.getCreationTime().getEpochSecond();
+            long expiration = link.getExpirationTime().getEpochSecond();
+            expirationSeconds[chunk][offset] = expiration;
+            // Бит эпохи снимка берётся под локом сегмента, который держит и обход findAll: снимок, начатый
+            // раньше, увидит запись с прежним битом, поэтому отдельный joinSnapshotEpoch здесь не нужен
+            LONGS.setVolatile(clickStates[chunk], offset,
+                    View.initialState(link.getClickLimit(), link.getClickCount()));
+            owners[chunk][offset] = user.index;
+            urlIds[chunk][offset] = urlId;
+            putKey(key, record);
+            expirations.computeIfAbsent(expiration, s -> new IntList()).add(record);
+            live++;
+
+            user.add((index << LOCAL_BITS) | record, creationSeconds[chunk][offset], key);
+        }
+
+        void remove(int record) {
+            int chunk = record >>> CHUNK_BITS;
+            int offset = record & CHUNK_MASK;
+            removeKey(keys[chunk][offset]);
+            // Помечаем удалённой на случай, если удаление пришло не через markRemoved представления
+            while (true) {
+                long state = (long) LONGS.getVolatile(clickStates[chunk], offset);
+                if (View.isRemoved(state)
+                        || LONGS.compareAndSet(clickStates[chunk], offset, state, View.removedState(state))) {
+                    break;
+                }
+            }
+
+            users[owners[chunk][offset]].remove((index << LOCAL_BITS) | record);
+
+            // Поколение меняется до того, как запись может быть занята снова: новое состояние в колонке
+            // записывается позже, и прочитавшее его представление увидит и новое поколение
+            INTS.setVolatile(generations[chunk], offset, generations[chunk][offset] + 1);
+            urls.release(urlIds[chunk][offset]);
+            // Запись в корзине истечения остаётся и отбрасывается при снятии корзины
+            limbo.add(record);
+            live--;
+        }
+
+        ShortLink view(int record, String shortUrl) {
+            int chunk = record >>> CHUNK_BITS;
+            int offset = record & CHUNK_MASK;
+            if (shortUrl == null) {
+                shortUrl = shortUrlOf(keys[chunk][offset]);
+            }
+            return new View(CompactLinkStore.this, record, clickStates[chunk], generations[chunk], offset,
+                    generations[chunk][offset],
+                    urls.read(urlIds[chunk][offset]),
+                    shortUrl,
+                    users[owners[chunk][offset]].id,
+                    Instant.ofEpochSecond(creationSeconds[chunk][offset]),
+                    Instant.ofEpochSecond(expirationSeconds[chunk][offset]));
+        }
+
+        int generation(int record) {
+            return generations[record >>> CHUNK_BITS][record & CHUNK_MASK];
+        }
+
+        int owner(int record) {
+            return owners[record >>> CHUNK_BITS][record & CHUNK_MASK];
+        }
+
+        // Вызываются под монитором пользователя-владельца записи
+        int userSlot(int record) {
+            return userSlots[record >>> CHUNK_BITS][record & CHUNK_MASK];
+        }
+
+        void setUserSlot(int record, int slot) {
+            userSlots[record >>> CHUNK_BITS][record & CHUNK_MASK] = slot;
+        }
+
+        // Записи, освобождённые два цикла назад, становятся доступны для повторного использования.
+        // Устаревшие представления отсекает поколение, выдержка лишь страхует их CAS сразу после сверки.
+        void recycle() {
+            free.addAll(cooling);
+            IntList drained = cooling;
+            drained.clear();
+            cooling = limbo;
+            limbo = drained;
+        }
+
+        List<ShortLink> pollExpired(long nowSecond) {
+            List<ShortLink> expired = new ArrayList<>();
+            while (!expirations.isEmpty() && expirations.firstKey() < nowSecond) {
+                IntList bucket = expirations.pollFirstEntry().getValue();
+                for (int i = 0; i < bucket.size; i++) {
+                    int record = bucket.values[i];
+                    // Запись могла быть удалена раньше срока или уже занята другой ссылкой
+                    if (isLive(record)
+                            && expirationSeconds[record >>> CHUNK_BITS][record & CHUNK_MASK] < nowSecond) {
+                        expired.add(view(record, null));
+                    }
+                }
+            }
+            return expired;
+        }
+
+        private int allocate() {
+            if (free.size > 0) {
+                return free.values[--free.size];
+            }
+            int record = recordCount;
+            if (record > LOCAL_MASK) {
+                throw new IllegalStateException("Сегмент хранилища переполнен");
+            }
+            int chunk = record >>> CHUNK_BITS;
+            if (chunk == keys.length) {
+                int chunks = chunk + 1;
+                keys = appendChunk(keys, new long[CHUNK_SIZE], chunks);
+                creationSeconds = appendChunk(creationSeconds, new long[CHUNK_SIZE], chunks);
+                expirationSeconds = appendChunk(expirationSeconds, new long[CHUNK_SIZE], chunks);
+                clickStates = appendChunk(clickStates, new long[CHUNK_SIZE], chunks);
+                owners = appendChunk(owners, new int[CHUNK_SIZE], chunks);
+                urlIds = appendChunk(urlIds, new int[CHUNK_SIZE], chunks);
+                userSlots = appendChunk(userSlots, new int[CHUNK_SIZE], chunks);
+                generations = appendChunk(generations, new int[CHUNK_SIZE], chunks);
+            }
+            recordCount++;
+            return record;
+        }
+
+        private void putKey(long key, int record) {
+            if ((tableSize + 1) * 4 > tableKeys.length * 3) {
+                resize(tableKeys.length * 2);
+            }
+            int mask = tableKeys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (tableKeys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            tableKeys[i] = key;
+            tableRecords[i] = record;
+            tableSize++;
+        }
+
+        private void removeKey(long key) {
+            int mask = tableKeys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (tableKeys[i] != key) {
+                if (tableKeys[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            // Сдвигаем назад следующие элементы цепочки, чтобы поиск не оборвался на дыре
+            int hole = i;
+            for (int j = (hole + 1) & mask; tableKeys[j] != EMPTY; j = (j + 1) & mask) {
+                int home = (int) mix(tableKeys[j]) & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    tableKeys[hole] = tableKeys[j];
+                    tableRecords[hole] = tableRecords[j];
+                    hole = j;
+                }
+            }
+            tableKeys[hole] = EMPTY;
+            tableSize--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = tableKeys;
+            int[] oldRecords = tableRecords;
+            tableKeys = newTable(capacity);
+            tableRecords = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int j = (int) mix(oldKeys[i]) & mask;
+                    while (tableKeys[j] != EMPTY) {
+                        j = (j + 1) & mask;
+                    }
+                    tableKeys[j] = oldKeys[i];
+                    tableRecords[j] = oldRecords[i];
+                }
+            }
+        }
+    }
+
+    // Итератор по всем ссылкам: записи читаются по одной под локом сегмента, представления создаются лениво
+    private final class AllLinksIterator implements Iterator<ShortLink> {
+        private final Iterator<ShortLink> overflow = overflowLinks.findAll().iterator();
+        private int segment;
+        private int record;
+        private ShortLink next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && segment < SEGMENT_COUNT) {
+                Segment current = segments[segment];
+                current.lock.readLock().lock();
+                try {
+                    while (record < current.recordCount && next == null) {
+                        if (current.isLive(record)) {
+                            next = current.view(record, null);
+                        }
+                        record++;
+                    }
+                    if (record >= current.recordCount) {
+                        segment++;
+                        record = 0;
+                    }
+                } finally {
+                    current.lock.readLock().unlock();
+                }
+            }
+            if (next == null && overflow.hasNext()) {
+                next = overflow.next();
+            }
+            return next != null;
+        }
+
+        @Override
+        public ShortLink next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ShortLink result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    // Представление записи: состояние кликов читается и меняется прямо в колонке хранилища,
+    // пока поколение записи совпадает с тем, при котором представление создано
+    private static final class View extends ShortLink {
+        // Состояние представления, чья запись уже удалена и, возможно, занята другой ссылкой
+        private static final long STALE = Long.MIN_VALUE;
+
+        final CompactLinkStore store;
+        final int record;
+        final int generation;
+        private final long[] stateChunk;
+        private final int[] generationChunk;
+        private final int stateOffset;
+
+        View(CompactLinkStore store, int record, long[] stateChunk, int[] generationChunk, int stateOffset,
+             int generation, String originalUrl, String shortUrl, UUID userId, Instant creationTime,
+             Instant expirationTime) {
+            super(originalUrl, shortUrl, userId, creationTime, expirationTime, 0);
+            this.store = store;
+            this.record = record;
+            this.generation = generation;
+            this.stateChunk = stateChunk;
+            this.generationChunk = generationChunk;
+            this.stateOffset = stateOffset;
+        }
+
+        // Поколение читается после состояния: состояние новой ссылки записано уже после смены поколения
+        @Override
+        protected long loadClickState() {
+            long state = (long) LONGS.getVolatile(stateChunk, stateOffset);
+            return isCurrent() ? state : STALE;
+        }
+
+        @Override
+        protected boolean compareAndSetClickState(long expected, long updated) {
+            return isCurrent() && LONGS.compareAndSet(stateChunk, stateOffset, expected, updated);
+        }
+
+        private boolean isCurrent() {
+            return (int) INTS.getVolatile(generationChunk, stateOffset) == generation;
+        }
+
+        static long initialState(int clickLimit, int clickCount) {
+            return packClickState(clickLimit, clickCount);
+        }
+
+        static boolean isRemoved(long state) {
+            return isRemovedState(state);
+        }
+
+        static long removedState(long state) {
+            return state | Long.MIN_VALUE;
+        }
+    }
+
+    // Сравнение коротких URL по ключам в строковом порядке (порядок ключей с ним не совпадает).
+    // Коды раскодируются в переиспользуемые буферы, без создания строк.
+    private final class CodeOrder {
+        private final char[] left = new char[domain.length() + Base62.MAX_LENGTH];
+        private final char[] right = new char[domain.length() + Base62.MAX_LENGTH];
+
+        CodeOrder() {
+            domain.getChars(0, domain.length(), left, 0);
+            domain.getChars(0, domain.length(), right, 0);
+        }
+
+        int compare(long leftKey, long rightKey) {
+            int leftLength = domain.length() + Base62.fromKey(leftKey, left, domain.length());
+            int rightLength = domain.length() + Base62.fromKey(rightKey, right, domain.length());
+            return Arrays.compare(left, 0, leftLength, right, 0, rightLength);
+        }
+
+        int compare(long key, String shortUrl) {
+            int length = domain.length() + Base62.fromKey(key, left, domain.length());
+            int common = Math.min(length, shortUrl.length());
+            for (int i = 0; i < common; i++) {
+                if (left[i] != shortUrl.charAt(i)) {
+                    return left[i] - shortUrl.charAt(i);
+                }
+            }
+            return length - shortUrl.length();
+        }
+    }
+
+    // Растущий массив int без упаковки
+    private static final class IntList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static <T> T[] appendChunk(T[] chunks, T chunk, int length) {
+        T[] grown = Arrays.copyOf(chunks, length);
+        grown[length - 1] = chunk;
+        return grown;
+    }
+}
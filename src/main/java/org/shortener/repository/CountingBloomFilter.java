@@ -0,0 +1,138 @@
+package org.shortener.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Счётный фильтр Блума: вместо битов — 4-битные счётчики (по 16 в одном long), поэтому элементы
+// можно не только добавлять, но и удалять. Счётчик, дошедший до максимума, "залипает" и больше
+// не уменьшается: это даёт лишние ложные срабатывания, но никогда — ложные отрицания.
+// Потокобезопасен без локов: каждый счётчик меняется CAS-ом своего слова.
+final class CountingBloomFilter {
+
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long COUNTER_MASK = 0xF;
+
+    private final AtomicLongArray words;
+    private final long counters;
+    private final int hashes;
+    private final long capacity;
+
+    // Размер подбирается под ожидаемое число элементов и долю ложных срабатываний:
+    // m = -n·ln(p) / ln²2 счётчиков, k = m/n·ln2 хешей
+    CountingBloomFilter(long capacity, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Доля ложных срабатываний должна быть в (0, 1): " + falsePositiveRate);
+        }
+        this.capacity = Math.max(1, capacity);
+        long m = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long wordCount = Math.min(Integer.MAX_VALUE, (m + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+        this.words = new AtomicLongArray((int) wordCount);
+        this.counters = wordCount * COUNTERS_PER_WORD;
+        this.hashes = Math.max(1, (int) Math.round((double) counters / this.capacity * Math.log(2)));
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    // Доля ненулевых счётчиков (обход всего фильтра). Вероятность ложного срабатывания — эта доля
+    // в степени числа хешей, включая счётчики, залипшие после удалений.
+    double fill() {
+        long occupied = 0;
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            // Младший бит каждого 4-битного счётчика — признак, что счётчик не ноль
+            word |= word >>> 1;
+            word |= word >>> 2;
+            occupied += Long.bitCount(word & 0x1111_1111_1111_1111L);
+        }
+        return (double) occupied / counters;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    void add(String key) {
+        long hash = hash(key);
+        long step = step(hash);
+        for (int i = 0; i < hashes; i++) {
+            increment(indexOf(hash + i * step));
+        }
+    }
+
+    // Удалять можно только то, что было добавлено, иначе появятся ложные отрицания
+    void remove(String key) {
+        long hash = hash(key);
+        long step = step(hash);
+        for (int i = 0; i < hashes; i++) {
+            decrement(indexOf(hash + i * step));
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        long step = step(hash);
+        for (int i = 0; i < hashes; i++) {
+            long index = indexOf(hash + i * step);
+            if (counterAt(words.get((int) (index / COUNTERS_PER_WORD)), index) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void increment(long index) {
+        int word = (int) (index / COUNTERS_PER_WORD);
+        while (true) {
+            long value = words.get(word);
+            if (counterAt(value, index) == COUNTER_MASK) {
+                return;
+            }
+            if (words.compareAndSet(word, value, value + (1L << shiftOf(index)))) {
+                return;
+            }
+        }
+    }
+
+    private void decrement(long index) {
+        int word = (int) (index / COUNTERS_PER_WORD);
+        while (true) {
+            long value = words.get(word);
+            long counter = counterAt(value, index);
+            if (counter == 0 || counter == COUNTER_MASK) {
+                return;
+            }
+            if (words.compareAndSet(word, value, value - (1L << shiftOf(index)))) {
+                return;
+            }
+        }
+    }
+
+    // Отображение хеша в [0, counters) умножением вместо деления (приём Лемира)
+    private long indexOf(long hash) {
+        return Math.unsignedMultiplyHigh(hash, counters);
+    }
+
+    private static long counterAt(long word, long index) {
+        return (word >>> shiftOf(index)) & COUNTER_MASK;
+    }
+
+    private static int shiftOf(long index) {
+        return (int) (index % COUNTERS_PER_WORD) * 4;
+    }
+
+    // 64-битный хеш строки (FNV-1a с финальным перемешиванием): String.hashCode слишком короткий
+    // для миллионов ключей. Позиции считаются двойным хешированием h1 + i·h2.
+    private static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    private static long step(long hash) {
+        return ((hash >>> 32) * 0xC4CEB9FE1A85EC53L) | 1;
+    }
+}
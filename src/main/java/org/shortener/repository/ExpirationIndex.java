@@ -0,0 +1,74 @@
+package org.shortener.repository;
+
+import org.shortener.model.ShortLink;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+// Индекс истечения: ссылки разложены по корзинам с шагом в одну секунду, корзины упорядочены по времени.
+// Очистка снимает только наступившие корзины, поэтому её стоимость пропорциональна числу истёкших ссылок,
+// а не общему числу ссылок. Ссылка, удалённая раньше срока (в том числе исчерпавшая лимит переходов),
+// сразу убирается из своей корзины, чтобы индекс не держал её объект до наступления срока.
+public class ExpirationIndex {
+
+    private final ConcurrentNavigableMap<Long, Set<ShortLink>> buckets = new ConcurrentSkipListMap<>();
+    // Ссылки, добавленные в уже снятую корзину: их заберёт следующая очистка
+    private final Queue<ShortLink> overdue = new ConcurrentLinkedQueue<>();
+    // Все корзины с ключом меньше этой отметки уже сняты (или снимаются прямо сейчас)
+    private volatile long drainedUpTo = Long.MIN_VALUE;
+
+    public void add(ShortLink link) {
+        long second = link.getExpirationTime().getEpochSecond();
+        buckets.computeIfAbsent(second, s -> ConcurrentHashMap.newKeySet()).add(link);
+        if (second < drainedUpTo) {
+            // Корзину могли снять до того, как в неё попала ссылка, — страхуемся
+            overdue.add(link);
+        }
+    }
+
+    // Убирает ссылку из её корзины. Пустая корзина остаётся до снятия: удалять её наперегонки с add нельзя.
+    // Ссылка из overdue так и будет передана следующей очистке — overdue живёт не дольше одного её прохода.
+    public void remove(ShortLink link) {
+        Set<ShortLink> bucket = buckets.get(link.getExpirationTime().getEpochSecond());
+        if (bucket != null) {
+            bucket.remove(link);
+        }
+    }
+
+    // Снимает все корзины, целиком оставшиеся в прошлом, и передаёт их ссылки в consumer.
+    // Ссылка может быть передана дважды (из корзины и из overdue), consumer должен это допускать.
+    // Возвращает число переданных ссылок.
+    public int drainExpired(Instant now, Consumer<ShortLink> consumer) {
+        long nowSecond = now.getEpochSecond();
+        drainedUpTo = nowSecond;
+        int drained = drain(overdue, consumer);
+        Map.Entry<Long, Set<ShortLink>> entry;
+        while ((entry = buckets.firstEntry()) != null && entry.getKey() < nowSecond) {
+            Set<ShortLink> bucket = buckets.remove(entry.getKey());
+            if (bucket != null) {
+                for (ShortLink link : bucket) {
+                    consumer.accept(link);
+                    drained++;
+                }
+            }
+        }
+        return drained;
+    }
+
+    private static int drain(Queue<ShortLink> queue, Consumer<ShortLink> consumer) {
+        int drained = 0;
+        ShortLink link;
+        while ((link = queue.poll()) != null) {
+            consumer.accept(link);
+            drained++;
+        }
+        return drained;
+    }
+}
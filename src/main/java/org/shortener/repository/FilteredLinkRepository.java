@@ -0,0 +1,234 @@
+package org.shortener.repository;
+
+import org.shortener.model.ShortLink;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Хранилище ссылок с фильтром Блума перед ним: поиск заведомо несуществующего кода
+// (боты, перебор) отсекается фильтром и не доходит до хранилища.
+//
+// Фильтр обновляется при save/delete. Удаления со временем оставляют в нём "залипшие" счётчики,
+// а рост числа ссылок сверх расчётного поднимает долю ложных срабатываний, поэтому фильтр
+// периодически (и при переполнении) перестраивается в фоне по содержимому хранилища.
+//
+// Во время перестройки новые ссылки попадают в оба фильтра, а удаления — только в старый:
+// новый фильтр может содержать лишнее, но не может потерять существующую ссылку.
+public class FilteredLinkRepository implements LinkRepository, AutoCloseable {
+
+    private final LinkRepository delegate;
+    private final double falsePositiveRate;
+    private final long minCapacity;
+
+    private volatile CountingBloomFilter filter;
+    private volatile CountingBloomFilter rebuilding;
+    // Запись в хранилище (под read-локом) не должна разойтись с началом перестройки (под write-локом):
+    // иначе ссылка, сохранённая в момент старта, не попала бы ни в обход хранилища, ни в новый фильтр
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private final AtomicLong members = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final LongAdder rejected = new LongAdder();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "link-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FilteredLinkRepository(LinkRepository delegate, long expectedLinks, double falsePositiveRate,
+                                  int rebuildIntervalSeconds) {
+        this.delegate = delegate;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minCapacity = expectedLinks;
+        this.filter = new CountingBloomFilter(expectedLinks, falsePositiveRate);
+        // В хранилище уже могут быть ссылки
+        rebuild();
+        if (rebuildIntervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::scheduleRebuild,
+                    rebuildIntervalSeconds, rebuildIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public String internUrl(String url) {
+        return delegate.internUrl(url);
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        rebuildLock.readLock().lock();
+        try {
+            // Сначала фильтр, потом хранилище: читатель, нашедший ссылку в хранилище, уже пройдёт фильтр
+            addToFilter(link.getShortUrl());
+            delegate.save(link);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        onAdded();
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortLink link) {
+        boolean saved;
+        rebuildLock.readLock().lock();
+        try {
+            addToFilter(link.getShortUrl());
+            saved = delegate.saveIfAbsent(link);
+            if (!saved) {
+                // Код занят другой ссылкой: снимаем только своё добавление, её счётчики остаются
+                filter.remove(link.getShortUrl());
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        if (saved) {
+            onAdded();
+        }
+        return saved;
+    }
+
+    @Override
+    public boolean[] saveAllIfAbsent(List<ShortLink> links) {
+        boolean[] saved;
+        int added = 0;
+        rebuildLock.readLock().lock();
+        try {
+            for (ShortLink link : links) {
+                addToFilter(link.getShortUrl());
+            }
+            saved = delegate.saveAllIfAbsent(links);
+            for (int i = 0; i < saved.length; i++) {
+                if (saved[i]) {
+                    added++;
+                } else {
+                    filter.remove(links.get(i).getShortUrl());
+                }
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        if (added > 0 && members.addAndGet(added) > filter.capacity()) {
+            scheduleRebuild();
+        }
+        return saved;
+    }
+
+    @Override
+    public ShortLink findByShortUrl(String shortUrl) {
+        if (!filter.mightContain(shortUrl)) {
+            rejected.increment();
+            return null;
+        }
+        return delegate.findByShortUrl(shortUrl);
+    }
+
+    @Override
+    public boolean delete(ShortLink link) {
+        rebuildLock.readLock().lock();
+        try {
+            // Сначала хранилище, потом фильтр: пока ссылка видна в хранилище, фильтр её пропускает.
+            // Счётчики снимаем, только если удалена именно эта ссылка, иначе задели бы живую с тем же кодом.
+            if (!delegate.delete(link)) {
+                return false;
+            }
+            filter.remove(link.getShortUrl());
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        members.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public Collection<ShortLink> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public int drainExpired(Instant now, Consumer<ShortLink> consumer) {
+        return delegate.drainExpired(now, consumer);
+    }
+
+    // Сколько поисков отсёк фильтр, не обращаясь к хранилищу
+    public long getRejectedLookups() {
+        return rejected.sum();
+    }
+
+    // Доля занятых счётчиков фильтра (обход всего фильтра — для метрик, не для горячего пути)
+    public double getFill() {
+        return filter.fill();
+    }
+
+    // Оценка доли ложных срабатываний по текущему заполнению
+    public double getEstimatedFalsePositiveRate() {
+        CountingBloomFilter current = filter;
+        return Math.pow(current.fill(), current.hashes());
+    }
+
+    // Перестраивает фильтр по текущему содержимому хранилища. Вызывается в фоне, но безопасна и напрямую.
+    public final synchronized void rebuild() {
+        rebuildScheduled.set(false);
+        int size = delegate.findAll().size();
+        CountingBloomFilter next = new CountingBloomFilter(Math.max(minCapacity, 2L * size), falsePositiveRate);
+        rebuildLock.writeLock().lock();
+        try {
+            rebuilding = next;
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+        long count = 0;
+        for (ShortLink link : delegate.findAll()) {
+            next.add(link.getShortUrl());
+            count++;
+        }
+        rebuildLock.writeLock().lock();
+        try {
+            filter = next;
+            rebuilding = null;
+            members.set(count);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void addToFilter(String shortUrl) {
+        filter.add(shortUrl);
+        CountingBloomFilter next = rebuilding;
+        if (next != null) {
+            next.add(shortUrl);
+        }
+    }
+
+    private void onAdded() {
+        if (members.incrementAndGet() > filter.capacity()) {
+            scheduleRebuild();
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    rebuildScheduled.set(false);
+                    System.out.println("Ошибка перестройки фильтра ссылок: " + e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.shortener.repository;
+
+// Частотный фильтр TinyLFU: Count-Min sketch из 4-битных счётчиков (по 16 в long), четыре строки.
+// После sampleSize увеличений все счётчики делятся пополам, поэтому оценка отражает недавнюю
+// популярность, а не всю историю. Обновления не синхронизированы: потерянный при гонке инкремент
+// лишь чуть занижает оценку, а на горячем пути это дешевле любого лока.
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    // capacity — сколько элементов держит кеш; счётчиков берётся не меньше 16 на каждый
+    FrequencySketch(int capacity) {
+        int words = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        this.table = new long[words];
+        this.mask = words - 1;
+        this.sampleSize = 10 * Math.max(16, capacity);
+    }
+
+    int frequency(long hash) {
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            long word = table[index(hash, row)];
+            min = Math.min(min, (int) (word >>> shift(hash, row)) & MAX_COUNT);
+        }
+        return min;
+    }
+
+    void increment(long hash) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            int shift = shift(hash, row);
+            if (((table[index] >>> shift) & MAX_COUNT) != MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    // Старение: все счётчики пополам
+    private void reset() {
+        additions = 0;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+    }
+
+    // Слово и счётчик в нём для строки row: хеш перемешивается со своей константой строки
+    private static long rowHash(long hash, int row) {
+        long h = (hash + SEEDS[row]) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private int index(long hash, int row) {
+        return (int) rowHash(hash, row) & mask;
+    }
+
+    private static int shift(long hash, int row) {
+        return ((int) (rowHash(hash, row) >>> 60)) << 2;
+    }
+}
@@ -0,0 +1,176 @@
+package org.shortener.repository;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+// Вытеснение из горячего уровня TieredLinkStore по схеме W-TinyLFU.
+//
+// Новые ссылки попадают в небольшое окно (1% ёмкости). Вытесненная из окна ссылка становится кандидатом
+// в основную часть и соревнуется с жертвой основной части: остаётся та, у которой выше оценка частоты
+// в FrequencySketch, проигравшая уходит в холодный уровень. Основная часть — SLRU: испытательный
+// сегмент (20%) и защищённый (80%), куда переходят ссылки, к которым обращались повторно.
+//
+// Порядок внутри сегментов — CLOCK вместо строгого LRU: чтение лишь выставляет флаг referenced и
+// увеличивает счётчик частоты, не трогая очередей и не беря лок, поэтому попадание в горячий уровень
+// стоит столько же, сколько поиск в обычной хеш-таблице. Флаг даёт ссылке второй шанс, когда она
+// доходит до головы очереди. Удалённые ссылки из очередей не вычищаются сразу, а пропускаются.
+final class HotTierPolicy {
+
+    static final byte NONE = 0;
+    static final byte WINDOW = 1;
+    static final byte PROBATION = 2;
+    static final byte PROTECTED = 3;
+
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final int mainCapacity;
+    private final FrequencySketch sketch;
+
+    private final ArrayDeque<TieredLinkStore.Resident> window = new ArrayDeque<>();
+    private final ArrayDeque<TieredLinkStore.Resident> probation = new ArrayDeque<>();
+    private final ArrayDeque<TieredLinkStore.Resident> protectedQueue = new ArrayDeque<>();
+    private int windowSize;
+    private int probationSize;
+    private int protectedSize;
+
+    HotTierPolicy(int capacity) {
+        capacity = Math.max(2, capacity);
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.mainCapacity = capacity - windowCapacity;
+        this.protectedCapacity = mainCapacity * 4 / 5;
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    // Обращение к ссылке (горячей или холодной): без лока
+    void recordAccess(long hash) {
+        sketch.increment(hash);
+    }
+
+    int frequency(long hash) {
+        return sketch.frequency(hash);
+    }
+
+    // Добавляет ссылку в окно; вытесненные из горячего уровня ссылки складываются в evicted
+    synchronized void add(TieredLinkStore.Resident resident, List<TieredLinkStore.Resident> evicted) {
+        resident.region = WINDOW;
+        window.addLast(resident);
+        windowSize++;
+        while (windowSize > windowCapacity) {
+            TieredLinkStore.Resident candidate = pollLive(window, WINDOW);
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                window.addLast(candidate);
+                continue;
+            }
+            windowSize--;
+            admit(candidate, evicted);
+        }
+        purgeIfStale(window, windowSize);
+    }
+
+    // Ссылка удалена из хранилища: освобождает её место, сама запись в очереди будет пропущена
+    synchronized void remove(TieredLinkStore.Resident resident) {
+        switch (resident.region) {
+            case WINDOW -> windowSize--;
+            case PROBATION -> probationSize--;
+            case PROTECTED -> protectedSize--;
+            default -> {
+                return;
+            }
+        }
+        resident.region = NONE;
+    }
+
+    synchronized int size() {
+        return windowSize + probationSize + protectedSize;
+    }
+
+    // Кандидат из окна против жертвы из испытательного сегмента
+    private void admit(TieredLinkStore.Resident candidate, List<TieredLinkStore.Resident> evicted) {
+        if (probationSize + protectedSize < mainCapacity) {
+            toProbation(candidate);
+            return;
+        }
+        TieredLinkStore.Resident victim = probationVictim();
+        if (victim != null && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+            probation.pollFirst();
+            probationSize--;
+            victim.region = NONE;
+            evicted.add(victim);
+            toProbation(candidate);
+        } else {
+            candidate.region = NONE;
+            evicted.add(candidate);
+        }
+    }
+
+    private void toProbation(TieredLinkStore.Resident resident) {
+        resident.region = PROBATION;
+        resident.referenced = false;
+        probation.addLast(resident);
+        probationSize++;
+        purgeIfStale(probation, probationSize);
+    }
+
+    // Голова испытательного сегмента после того, как ссылки со вторым шансом ушли в защищённый
+    private TieredLinkStore.Resident probationVictim() {
+        while (true) {
+            TieredLinkStore.Resident head = peekLive(probation, PROBATION);
+            if (head == null) {
+                if (protectedSize == 0) {
+                    return null;
+                }
+                // Всё в защищённом сегменте: разжалуем самую старую ссылку
+                TieredLinkStore.Resident demoted = pollLive(protectedQueue, PROTECTED);
+                protectedSize--;
+                toProbation(demoted);
+                continue;
+            }
+            if (!head.referenced) {
+                return head;
+            }
+            probation.pollFirst();
+            probationSize--;
+            head.referenced = false;
+            head.region = PROTECTED;
+            protectedQueue.addLast(head);
+            protectedSize++;
+            while (protectedSize > protectedCapacity) {
+                TieredLinkStore.Resident oldest = pollLive(protectedQueue, PROTECTED);
+                if (oldest.referenced) {
+                    oldest.referenced = false;
+                    protectedQueue.addLast(oldest);
+                } else {
+                    protectedSize--;
+                    toProbation(oldest);
+                }
+            }
+            purgeIfStale(protectedQueue, protectedSize);
+        }
+    }
+
+    // Первая живая ссылка очереди (мёртвые по пути выбрасываются); вызывается, только если такая есть
+    private static TieredLinkStore.Resident pollLive(ArrayDeque<TieredLinkStore.Resident> queue, byte region) {
+        while (true) {
+            TieredLinkStore.Resident resident = queue.pollFirst();
+            if (resident.region == region) {
+                return resident;
+            }
+        }
+    }
+
+    private static TieredLinkStore.Resident peekLive(ArrayDeque<TieredLinkStore.Resident> queue, byte region) {
+        TieredLinkStore.Resident resident;
+        while ((resident = queue.peekFirst()) != null && resident.region != region) {
+            queue.pollFirst();
+        }
+        return resident;
+    }
+
+    // Удалённые ссылки не должны копиться в очереди, где вытеснения долго не случается
+    private static void purgeIfStale(ArrayDeque<TieredLinkStore.Resident> queue, int live) {
+        if (queue.size() > 2 * live + 64) {
+            queue.removeIf(resident -> resident.region == NONE);
+        }
+    }
+}
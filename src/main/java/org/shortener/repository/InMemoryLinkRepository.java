@@ -0,0 +1,77 @@
+package org.shortener.repository;
+
+import org.shortener.model.ShortLink;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class InMemoryLinkRepository implements LinkRepository {
+    // ConcurrentHashMap блокирует только отдельные корзины при записи, чтение идёт без блокировок
+    private final Map<String, ShortLink> shortUrlMap = new ConcurrentHashMap<>();
+    private final ExpirationIndex expirationIndex = new ExpirationIndex();
+    // Одинаковые исходные URL хранятся одной строкой на все ссылки
+    private final UrlInterner urls = new UrlInterner();
+
+    @Override
+    public String internUrl(String url) {
+        return urls.canonical(url);
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        urls.acquire(link.getOriginalUrl());
+        ShortLink replaced = shortUrlMap.put(link.getShortUrl(), link);
+        if (replaced != null) {
+            urls.release(replaced.getOriginalUrl());
+            expirationIndex.remove(replaced);
+        }
+        expirationIndex.add(link);
+        link.joinSnapshotEpoch();
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortLink link) {
+        if (shortUrlMap.putIfAbsent(link.getShortUrl(), link) != null) {
+            return false;
+        }
+        urls.acquire(link.getOriginalUrl());
+        expirationIndex.add(link);
+        // Ссылка уже видна обходу findAll — теперь её бит эпохи снимка окончательный
+        link.joinSnapshotEpoch();
+        return true;
+    }
+
+    @Override
+    public ShortLink findByShortUrl(String shortUrl) {
+        return shortUrlMap.get(shortUrl);
+    }
+
+    @Override
+    public boolean delete(ShortLink link) {
+        if (!shortUrlMap.remove(link.getShortUrl(), link)) {
+            return false;
+        }
+        urls.release(link.getOriginalUrl());
+        expirationIndex.remove(link);
+        return true;
+    }
+
+    // Число различных исходных URL среди хранимых ссылок
+    public int distinctUrls() {
+        return urls.size();
+    }
+
+    @Override
+    public Collection<ShortLink> findAll() {
+        return Collections.unmodifiableCollection(shortUrlMap.values());
+    }
+
+    @Override
+    public int drainExpired(Instant now, Consumer<ShortLink> consumer) {
+        return expirationIndex.drainExpired(now, consumer);
+    }
+}
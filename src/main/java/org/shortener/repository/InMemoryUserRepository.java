@@ -0,0 +1,122 @@
+package org.shortener.repository;
+
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryUserRepository implements UserRepository {
+
+    private final Map<UUID, UserLinks> userLinksMap = new ConcurrentHashMap<>();
+
+    @Override
+    public Collection<ShortLink> getUserLinks(UUID userId) {
+        return linksOf(userId).copy();
+    }
+
+    @Override
+    public Iterator<ShortLink> iterateUserLinks(UUID userId, LinkCursor after) {
+        UserLinks links = userLinksMap.get(userId);
+        if (links == null) {
+            return Collections.emptyIterator();
+        }
+        return new PagingIterator(after, links::page);
+    }
+
+    @Override
+    public void addLinkToUser(UUID userId, ShortLink link) {
+        linksOf(userId).add(link);
+    }
+
+    @Override
+    public void removeLinkFromUser(UUID userId, ShortLink link) {
+        UserLinks links = userLinksMap.get(userId);
+        if (links != null) {
+            links.remove(link);
+        }
+    }
+
+    private UserLinks linksOf(UUID userId) {
+        return userLinksMap.computeIfAbsent(userId, id -> new UserLinks());
+    }
+
+    // Ссылки одного пользователя: массив в порядке LinkCursor.LINK_ORDER плюс множество живых ссылок.
+    // Удаление — O(1): ссылка убирается из множества, а в массиве остаётся "надгробием" до ближайшего
+    // уплотнения. Ссылки обычно добавляются по возрастанию времени создания и просто дописываются в конец;
+    // если порядок нарушен (например, при восстановлении из снимка), массив сортируется при следующем чтении.
+    private static final class UserLinks {
+        private final Set<ShortLink> live = new HashSet<>();
+        private ShortLink[] entries = new ShortLink[8];
+        private int size;
+        private boolean sorted = true;
+
+        synchronized void add(ShortLink link) {
+            if (!live.add(link)) {
+                return;
+            }
+            if (size == entries.length) {
+                // Перед ростом выбрасываем надгробия: если их много, места хватит и так
+                compact();
+                if (size == entries.length) {
+                    entries = Arrays.copyOf(entries, size * 2);
+                }
+            }
+            if (size > 0 && LinkCursor.LINK_ORDER.compare(entries[size - 1], link) > 0) {
+                sorted = false;
+            }
+            entries[size++] = link;
+        }
+
+        synchronized void remove(ShortLink link) {
+            if (live.remove(link) && size - live.size() > Math.max(32, live.size())) {
+                compact();
+            }
+        }
+
+        synchronized List<ShortLink> copy() {
+            return new ArrayList<>(live);
+        }
+
+        synchronized List<ShortLink> page(LinkCursor after, int limit) {
+            if (!sorted) {
+                compact();
+                Arrays.sort(entries, 0, size, LinkCursor.LINK_ORDER);
+                sorted = true;
+            }
+            List<ShortLink> page = new ArrayList<>(Math.min(limit, live.size()));
+            for (int i = after == null ? 0 : firstAfter(after); i < size && page.size() < limit; i++) {
+                if (live.contains(entries[i])) {
+                    page.add(entries[i]);
+                }
+            }
+            return page;
+        }
+
+        // Двоичный поиск первой позиции строго после курсора
+        private int firstAfter(LinkCursor after) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (after.isBefore(entries[mid])) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (live.contains(entries[i])) {
+                    entries[kept++] = entries[i];
+                }
+            }
+            Arrays.fill(entries, kept, size, null);
+            size = kept;
+        }
+    }
+}
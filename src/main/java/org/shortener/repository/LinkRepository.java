@@ -2,25 +2,44 @@ package org.shortener.repository;
 
 import org.shortener.model.ShortLink;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
-public class LinkRepository {
-    private final Map<String, ShortLink> shortUrlMap = new HashMap<>();
+// Хранилище ссылок по короткому URL
+public interface LinkRepository {
 
-    public void save(ShortLink link) {
-        shortUrlMap.put(link.getShortUrl(), link);
+    // Экземпляр строки URL, который стоит передать в новую ShortLink: хранилище, умеющее делить одинаковые
+    // URL между ссылками, возвращает уже хранящийся. Хранилища, копирующие URL к себе, возвращают url как есть.
+    default String internUrl(String url) {
+        return url;
     }
 
-    public ShortLink findByShortUrl(String shortUrl) {
-        return shortUrlMap.get(shortUrl);
-    }
+    void save(ShortLink link);
 
-    public void delete(ShortLink link) {
-        shortUrlMap.remove(link.getShortUrl());
-    }
+    // Сохраняет ссылку, только если такой короткий URL ещё не занят
+    boolean saveIfAbsent(ShortLink link);
 
-    public Map<String, ShortLink> findAll() {
-        return shortUrlMap;
+    // Пачка saveIfAbsent: saved[i] — сохранена ли links.get(i). Хранилища с обёрткой-локом
+    // переопределяют метод, чтобы брать его один раз на пачку.
+    default boolean[] saveAllIfAbsent(List<ShortLink> links) {
+        boolean[] saved = new boolean[links.size()];
+        for (int i = 0; i < saved.length; i++) {
+            saved[i] = saveIfAbsent(links.get(i));
+        }
+        return saved;
     }
-}
\ No newline at end of file
+
+    ShortLink findByShortUrl(String shortUrl);
+
+    // Удаляет именно эту ссылку, не задевая другую, уже сохранённую под тем же ключом.
+    // Возвращает false, если этой ссылки в хранилище уже нет.
+    boolean delete(ShortLink link);
+
+    Collection<ShortLink> findAll();
+
+    // Передаёт в consumer ссылки, срок действия которых истёк к моменту now.
+    // Стоимость пропорциональна числу истёкших ссылок; возвращает их число.
+    int drainExpired(Instant now, Consumer<ShortLink> consumer);
+}
@@ -0,0 +1,53 @@
+package org.shortener.repository;
+
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+// Ленивый обход списка по страницам: следующая порция запрашивается после последней выданной ссылки,
+// поэтому между порциями хранилище не держит локов и может меняться
+final class PagingIterator implements Iterator<ShortLink> {
+
+    static final int PAGE_SIZE = 64;
+
+    private final BiFunction<LinkCursor, Integer, List<ShortLink>> pageLoader;
+    private LinkCursor after;
+    private List<ShortLink> page = List.of();
+    private int position;
+    private boolean exhausted;
+
+    // pageLoader(after, limit) возвращает до limit ссылок строго после after в порядке LinkCursor.LINK_ORDER
+    PagingIterator(LinkCursor after, BiFunction<LinkCursor, Integer, List<ShortLink>> pageLoader) {
+        this.after = after;
+        this.pageLoader = pageLoader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (position < page.size()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        page = pageLoader.apply(after, PAGE_SIZE);
+        position = 0;
+        // Неполная страница ещё не значит конец: ссылку могли удалить, пока страница собиралась
+        exhausted = page.isEmpty();
+        return !exhausted;
+    }
+
+    @Override
+    public ShortLink next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ShortLink link = page.get(position++);
+        after = LinkCursor.of(link);
+        return link;
+    }
+}
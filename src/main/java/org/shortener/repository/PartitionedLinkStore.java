@@ -0,0 +1,194 @@
+package org.shortener.repository;
+
+import org.shortener.codegen.PartitionedCodeGenerator;
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Несколько секций в одном процессе. У каждой секции своё хранилище ссылок со своим индексом
+// истечения и свой индекс пользователей; секция ссылки определяется по первому символу кода
+// (PartitionedCodeGenerator), поэтому операции над одной ссылкой идут ровно в одну секцию без поиска.
+// Операции над всеми ссылками или ссылками пользователя опрашивают все секции и сливают ответы
+// (scatter-gather): у пользователя ссылки в разных секциях.
+public class PartitionedLinkStore implements LinkRepository, UserRepository {
+
+    private final String domain;
+    private final LinkRepository[] links;
+    private final UserRepository[] users;
+
+    // links[i] и users[i] — хранилища секции i
+    public PartitionedLinkStore(String domain, LinkRepository[] links, UserRepository[] users) {
+        if (links.length == 0 || links.length != users.length
+                || links.length > PartitionedCodeGenerator.MAX_PARTITIONS) {
+            throw new IllegalArgumentException("Неверное число секций: " + links.length);
+        }
+        this.domain = domain;
+        this.links = links.clone();
+        this.users = users.clone();
+    }
+
+    public int partitionCount() {
+        return links.length;
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        links[route(link.getShortUrl())].save(link);
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortLink link) {
+        return links[route(link.getShortUrl())].saveIfAbsent(link);
+    }
+
+    @Override
+    public ShortLink findByShortUrl(String shortUrl) {
+        int partition = PartitionedCodeGenerator.partitionOf(shortUrl, domain, links.length);
+        return partition < 0 ? null : links[partition].findByShortUrl(shortUrl);
+    }
+
+    @Override
+    public boolean delete(ShortLink link) {
+        return links[route(link.getShortUrl())].delete(link);
+    }
+
+    @Override
+    public Collection<ShortLink> findAll() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<ShortLink> iterator() {
+                return new Iterator<>() {
+                    private int partition;
+                    private Iterator<ShortLink> current = links[0].findAll().iterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!current.hasNext() && partition + 1 < links.length) {
+                            current = links[++partition].findAll().iterator();
+                        }
+                        return current.hasNext();
+                    }
+
+                    @Override
+                    public ShortLink next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return current.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (LinkRepository partition : links) {
+                    size += partition.findAll().size();
+                }
+                return size;
+            }
+        };
+    }
+
+    // Каждая секция снимает истёкшие ссылки по своему индексу
+    @Override
+    public int drainExpired(Instant now, Consumer<ShortLink> consumer) {
+        int drained = 0;
+        for (LinkRepository partition : links) {
+            drained += partition.drainExpired(now, consumer);
+        }
+        return drained;
+    }
+
+    @Override
+    public Collection<ShortLink> getUserLinks(UUID userId) {
+        List<ShortLink> result = new ArrayList<>();
+        for (UserRepository partition : users) {
+            result.addAll(partition.getUserLinks(userId));
+        }
+        return result;
+    }
+
+    // Слияние упорядоченных обходов всех секций: каждая отдаёт ссылки в LINK_ORDER, очередь
+    // держит по одной следующей ссылке от секции
+    @Override
+    public Iterator<ShortLink> iterateUserLinks(UUID userId, LinkCursor after) {
+        if (users.length == 1) {
+            return users[0].iterateUserLinks(userId, after);
+        }
+        List<Iterator<ShortLink>> sources = new ArrayList<>(users.length);
+        for (UserRepository partition : users) {
+            sources.add(partition.iterateUserLinks(userId, after));
+        }
+        return new MergingIterator(sources);
+    }
+
+    @Override
+    public void addLinkToUser(UUID userId, ShortLink link) {
+        users[route(link.getShortUrl())].addLinkToUser(userId, link);
+    }
+
+    @Override
+    public void removeLinkFromUser(UUID userId, ShortLink link) {
+        users[route(link.getShortUrl())].removeLinkFromUser(userId, link);
+    }
+
+    private int route(String shortUrl) {
+        int partition = PartitionedCodeGenerator.partitionOf(shortUrl, domain, links.length);
+        if (partition < 0) {
+            throw new IllegalArgumentException("Ссылка не относится ни к одной секции: " + shortUrl);
+        }
+        return partition;
+    }
+
+    private static final class MergingIterator implements Iterator<ShortLink> {
+        private record Head(ShortLink link, Iterator<ShortLink> source) {
+        }
+
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(
+                (left, right) -> LinkCursor.LINK_ORDER.compare(left.link(), right.link()));
+        private final List<Iterator<ShortLink>> pending;
+
+        MergingIterator(List<Iterator<ShortLink>> sources) {
+            // Первые страницы секций запрашиваются при первом обращении, а не при создании обхода
+            this.pending = sources;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!pending.isEmpty()) {
+                for (Iterator<ShortLink> source : pending) {
+                    advance(source);
+                }
+                pending.clear();
+            }
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public ShortLink next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Head head = heads.poll();
+            advance(head.source());
+            return head.link();
+        }
+
+        private void advance(Iterator<ShortLink> source) {
+            if (source.hasNext()) {
+                heads.add(new Head(source.next(), source));
+            }
+        }
+    }
+}
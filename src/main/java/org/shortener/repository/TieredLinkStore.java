@@ -0,0 +1,1106 @@
+package org.shortener.repository;
+
+import org.shortener.codegen.Base62;
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Двухуровневое хранилище ссылок: ограниченный горячий уровень на куче и холодный — в неизменяемых
+// отсортированных файлах-сегментах, отображённых в память (ColdSegment).
+//
+// Большинство ссылок открывают один-два раза, поэтому держать их все объектами на куче незачем.
+// Горячий уровень — хеш-таблица объектов ссылок с вытеснением W-TinyLFU (HotTierPolicy). Вытесненные
+// ссылки копятся в staging и фоновым потоком сбрасываются новым сегментом. Холодная ссылка, к которой
+// недавно обращались повторно, поднимается обратно в горячий уровень; единичное обращение обслуживается
+// прямо из сегмента — состояние кликов меняется CAS-ом в отображении.
+//
+// Каждая ссылка живёт ровно в одном месте: в горячем уровне, в staging или живой записью одного сегмента.
+// Переезд (подъём, сброс staging, уплотнение) выполняется под локом полосы ключа: состояние старого места
+// CAS-ом меняется на MOVED, затем публикуется новое. Читатель, увидевший MOVED и не нашедший ссылку
+// в другом месте, повторяет поиск; объект, выданный до переезда, переадресует операции над кликами
+// туда, где ссылка теперь.
+//
+// Фоновое уплотнение переписывает сегменты, где мёртвых записей (удалённых или переехавших) не меньше
+// половины, и сливает самые мелкие, когда сегментов больше MAX_SEGMENTS.
+//
+// На куче за каждой холодной ссылкой остаются её ключ в индексе истечения и ключ со временем создания
+// в списке пользователя. Индекс истечения содержит ключи всех ссылок, поэтому по нему же обходятся
+// findAll и снимок. Сегменты — кеш, а не хранилище: при запуске каталог очищается, ссылки
+// восстанавливаются из журнала. Ссылки с кодом, не укладывающимся в ключ, хранятся обычным образом.
+public class TieredLinkStore implements LinkRepository, UserRepository, AutoCloseable {
+
+    // Состояния кликов, недостижимые для живой ссылки: счётчик переходов не превышает 31-битный лимит,
+    // а удалённой ссылке для совпадения понадобилось бы больше 2^31 - 3 переходов
+    static final long MOVED = -1L;
+    static final long DELETED = -2L;
+    // Так выглядит для выданного объекта ссылка, которой больше нет
+    private static final long REMOVED_STATE = Long.MIN_VALUE;
+    // Результат поиска: живого места нет, но ссылка, возможно, переезжает
+    private static final Object MOVING = new Object();
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int MAX_SEGMENTS = 8;
+    // Больше не сливаем: размер отображения ограничен 2 ГБ
+    private static final long MAX_MERGED_BYTES = 1L << 30;
+    // Холодная ссылка поднимается в горячий уровень, если к ней недавно обращались хотя бы столько раз
+    private static final int PROMOTE_FREQUENCY = 2;
+    private static final int COMPACTION_INTERVAL_SECONDS = 10;
+    // Во столько раз staging может перерасти порог сброса, прежде чем запись начнёт сбрасывать его сама
+    private static final int STAGING_BACKLOG = 4;
+
+    private static final VarHandle RESIDENT_STATE;
+
+    static {
+        try {
+            RESIDENT_STATE = MethodHandles.lookup().findVarHandle(Resident.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String domain;
+    private final Path dir;
+    private final int segmentLinks;
+    private final HotTierPolicy policy;
+    private final Map<String, Resident> hot = new ConcurrentHashMap<>();
+    private final Map<String, Resident> staging = new ConcurrentHashMap<>();
+    // От новых сегментов к старым; массив заменяется целиком под монитором хранилища
+    private volatile ColdSegment[] segments = new ColdSegment[0];
+    private final AtomicLong segmentIds = new AtomicLong();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicInteger live = new AtomicInteger();
+
+    private final Map<UUID, UserLinks> users = new ConcurrentHashMap<>();
+
+    // Индекс истечения по ключам, устроен как ExpirationIndex
+    private final ConcurrentNavigableMap<Long, KeyList> expirations = new ConcurrentSkipListMap<>();
+    private final KeyList overdue = new KeyList();
+    private volatile long drainedUpTo = Long.MIN_VALUE;
+
+    // Ссылки, код которых не укладывается в long-ключ
+    private final InMemoryLinkRepository overflowLinks = new InMemoryLinkRepository();
+    private final InMemoryUserRepository overflowUsers = new InMemoryUserRepository();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "link-store-tiering");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // hotCapacity — ссылок в горячем уровне, segmentLinks — ссылок в staging, после которых пишется сегмент
+    public TieredLinkStore(String domain, int hotCapacity, Path dir, int segmentLinks) throws IOException {
+        this.domain = domain;
+        this.dir = dir;
+        this.segmentLinks = Math.max(1, segmentLinks);
+        this.policy = new HotTierPolicy(hotCapacity);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        Files.createDirectories(dir);
+        // Сегменты прошлого запуска не нужны: ссылки восстановятся из журнала
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(dir, "cold-*.seg")) {
+            for (Path file : old) {
+                Files.delete(file);
+            }
+        }
+        executor.scheduleWithFixedDelay(this::compactQuietly,
+                COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        put(link, true);
+    }
+
+    // Хранилище сохраняет копию полей ссылки (время — с точностью до миллисекунды): последующие изменения
+    // переданного объекта в него не попадают, для них нужно взять ссылку через findByShortUrl
+    @Override
+    public boolean saveIfAbsent(ShortLink link) {
+        return put(link, false);
+    }
+
+    private boolean put(ShortLink link, boolean replace) {
+        long key = keyOf(link.getShortUrl());
+        if (key < 0) {
+            if (replace) {
+                overflowLinks.save(link);
+                return true;
+            }
+            return overflowLinks.saveIfAbsent(link);
+        }
+        Resident resident = new Resident(link, key);
+        synchronized (lockFor(resident.hash)) {
+            Object existing = locate(key, link.getShortUrl());
+            if (existing != null) {
+                if (!replace) {
+                    return false;
+                }
+                deleteLocated(existing);
+            }
+            hot.put(resident.getShortUrl(), resident);
+            live.incrementAndGet();
+        }
+        users.computeIfAbsent(resident.getUserId(), UserLinks::new).add(key, resident.creationMillis);
+        addExpiration(key, resident.getExpirationTime().getEpochSecond());
+        // Обход findAll идёт по корзинам истечения: только теперь ссылка ему видна
+        resident.joinSnapshotEpoch();
+        admit(resident);
+        return true;
+    }
+
+    @Override
+    public ShortLink findByShortUrl(String shortUrl) {
+        // Попадание в горячий уровень — один поиск в хеш-таблице, как у InMemoryLinkRepository
+        Resident resident = hot.get(shortUrl);
+        if (resident != null && resident.isPresent()) {
+            touch(resident);
+            return resident;
+        }
+        long key = keyOf(shortUrl);
+        if (key < 0) {
+            return overflowLinks.findByShortUrl(shortUrl);
+        }
+        long hash = mix(key);
+        policy.recordAccess(hash);
+        while (true) {
+            Object found = locate(key, shortUrl);
+            if (found == null) {
+                return null;
+            }
+            boolean promote = policy.frequency(hash) >= PROMOTE_FREQUENCY;
+            if (found instanceof Resident staged) {
+                if (promote && staged != hot.get(shortUrl)) {
+                    unstage(staged);
+                }
+                return staged;
+            }
+            Slot slot = (Slot) found;
+            if (!promote) {
+                return new ColdView(slot.segment, slot.ordinal, key, shortUrl);
+            }
+            ShortLink promoted = promote(slot, key, shortUrl);
+            if (promoted != null) {
+                return promoted;
+            }
+            // Запись успела переехать — ищем заново
+        }
+    }
+
+    // Удаляет именно переданную ссылку (тот же владелец и время создания) там, где она сейчас живёт.
+    // Список пользователя чистится лениво, поэтому removeLinkFromUser для таких ссылок ничего не делает.
+    @Override
+    public boolean delete(ShortLink link) {
+        long key = keyOf(link.getShortUrl());
+        if (key < 0) {
+            return overflowLinks.delete(link);
+        }
+        long creationMillis = link.getCreationTime().toEpochMilli();
+        synchronized (lockFor(mix(key))) {
+            Object found = locate(key, link.getShortUrl());
+            if (found == null || !isSameLink(found, link.getUserId(), creationMillis)) {
+                return false;
+            }
+            deleteLocated(found);
+            return true;
+        }
+    }
+
+    // Обход по ключам индекса истечения: каждая ссылка ищется заново, поэтому переезды между уровнями
+    // во время обхода её не прячут
+    @Override
+    public Collection<ShortLink> findAll() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<ShortLink> iterator() {
+                return new AllLinksIterator();
+            }
+
+            @Override
+            public int size() {
+                return TieredLinkStore.this.size();
+            }
+        };
+    }
+
+    public int size() {
+        return live.get() + overflowLinks.findAll().size();
+    }
+
+    // Ссылок в горячем уровне (для метрик и проверок)
+    public int hotSize() {
+        return hot.size();
+    }
+
+    // Ссылок, ожидающих сброса в сегмент
+    public int stagedSize() {
+        return staging.size();
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    @Override
+    public int drainExpired(Instant now, Consumer<ShortLink> consumer) {
+        long nowSecond = now.getEpochSecond();
+        drainedUpTo = nowSecond;
+        int drained = overflowLinks.drainExpired(now, consumer);
+        KeyList keys = new KeyList();
+        overdue.drainTo(keys);
+        Map.Entry<Long, KeyList> entry;
+        while ((entry = expirations.firstEntry()) != null && entry.getKey() < nowSecond) {
+            KeyList bucket = expirations.remove(entry.getKey());
+            if (bucket != null) {
+                bucket.drainTo(keys);
+            }
+        }
+        for (int i = 0; i < keys.size; i++) {
+            ShortLink link = linkForKey(keys.values[i]);
+            // Код мог достаться новой ссылке с другим сроком — она лежит в своей корзине
+            if (link != null && link.getExpirationTime().getEpochSecond() < nowSecond) {
+                consumer.accept(link);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    @Override
+    public Collection<ShortLink> getUserLinks(UUID userId) {
+        Collection<ShortLink> overflow = overflowUsers.getUserLinks(userId);
+        UserLinks user = users.get(userId);
+        if (user == null) {
+            return overflow;
+        }
+        long[] keys;
+        long[] creations;
+        int size;
+        synchronized (user) {
+            keys = Arrays.copyOf(user.keys, user.size);
+            creations = Arrays.copyOf(user.creations, user.size);
+            size = user.size;
+        }
+        List<ShortLink> links = new ArrayList<>(size + overflow.size());
+        for (int i = 0; i < size; i++) {
+            ShortLink link = userLink(userId, keys[i], creations[i]);
+            if (link != null) {
+                links.add(link);
+            }
+        }
+        links.addAll(overflow);
+        return links;
+    }
+
+    @Override
+    public Iterator<ShortLink> iterateUserLinks(UUID userId, LinkCursor after) {
+        UserLinks user = users.get(userId);
+        if (user == null) {
+            return overflowUsers.iterateUserLinks(userId, after);
+        }
+        return new PagingIterator(after, (cursor, limit) -> userPage(user, cursor, limit));
+    }
+
+    // Ссылки с ключом попадают в список пользователя при сохранении
+    @Override
+    public void addLinkToUser(UUID userId, ShortLink link) {
+        if (keyOf(link.getShortUrl()) < 0) {
+            overflowUsers.addLinkToUser(userId, link);
+        }
+    }
+
+    @Override
+    public void removeLinkFromUser(UUID userId, ShortLink link) {
+        if (keyOf(link.getShortUrl()) < 0) {
+            overflowUsers.removeLinkFromUser(userId, link);
+        }
+    }
+
+    // Сбрасывает staging в сегмент сейчас же (для проверок и перед измерениями)
+    public void flush() throws IOException {
+        flushStaging();
+    }
+
+    // Уплотняет сегменты сейчас же
+    public void compact() throws IOException {
+        compactSegments();
+    }
+
+    // Останавливает фоновый поток и удаляет файлы сегментов
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        synchronized (this) {
+            for (ColdSegment segment : segments) {
+                segment.delete();
+            }
+        }
+    }
+
+    // --- Поиск и переезды ---
+
+    // Нынешнее место ссылки с ключом key: Resident (горячий уровень или staging) или Slot (запись сегмента).
+    // Удалённые места пропускаются. Если живого места нет, но по пути встретилась запись MOVED, ссылка
+    // может быть посреди переезда: поиск повторяется под локом полосы, где переездов не бывает, и там
+    // MOVED означает просто мёртвую запись.
+    private Object locate(long key, String shortUrl) {
+        Object found = scan(key, shortUrl);
+        if (found != MOVING) {
+            return found;
+        }
+        synchronized (lockFor(mix(key))) {
+            found = scan(key, shortUrl);
+            return found == MOVING ? null : found;
+        }
+    }
+
+    private Object scan(long key, String shortUrl) {
+        Resident resident = hot.get(shortUrl);
+        if (resident != null && resident.isPresent()) {
+            return resident;
+        }
+        boolean moving = resident != null && !resident.deleted;
+        resident = staging.get(shortUrl);
+        if (resident != null && resident.isPresent()) {
+            return resident;
+        }
+        moving |= resident != null && !resident.deleted;
+        for (ColdSegment segment : segments) {
+            int ordinal = segment.find(key);
+            if (ordinal < 0) {
+                continue;
+            }
+            long state = segment.state(ordinal);
+            if (state == MOVED) {
+                moving = true;
+            } else if (state != DELETED) {
+                return new Slot(segment, ordinal);
+            }
+        }
+        return moving ? MOVING : null;
+    }
+
+    private boolean isSameLink(Object found, UUID userId, long creationMillis) {
+        if (found instanceof Resident resident) {
+            return resident.creationMillis == creationMillis && resident.getUserId().equals(userId);
+        }
+        Slot slot = (Slot) found;
+        return slot.segment.isOwnedBy(slot.ordinal, userId, creationMillis);
+    }
+
+    // Ссылка по ключу без подъёма в горячий уровень
+    private ShortLink linkForKey(long key) {
+        String shortUrl = shortUrlOf(key);
+        Object found = locate(key, shortUrl);
+        if (found instanceof Slot slot) {
+            return new ColdView(slot.segment, slot.ordinal, key, shortUrl);
+        }
+        return (Resident) found;
+    }
+
+    // Вызывается под локом полосы ключа
+    private void deleteLocated(Object found) {
+        UUID userId;
+        if (found instanceof Resident resident) {
+            resident.deleted = true;
+            resident.markDeleted();
+            hot.remove(resident.getShortUrl(), resident);
+            staging.remove(resident.getShortUrl(), resident);
+            policy.remove(resident);
+            userId = resident.getUserId();
+        } else {
+            Slot slot = (Slot) found;
+            slot.segment.setState(slot.ordinal, DELETED);
+            slot.segment.dead.incrementAndGet();
+            userId = slot.segment.userId(slot.ordinal);
+        }
+        live.decrementAndGet();
+        UserLinks user = users.get(userId);
+        if (user != null) {
+            user.removed();
+        }
+    }
+
+    private void touch(Resident resident) {
+        if (!resident.referenced) {
+            resident.referenced = true;
+        }
+        policy.recordAccess(resident.hash);
+    }
+
+    // Холодная запись становится объектом горячего уровня; null, если запись уже переехала или удалена
+    private ShortLink promote(Slot slot, long key, String shortUrl) {
+        Resident resident;
+        synchronized (lockFor(mix(key))) {
+            long state;
+            do {
+                state = slot.segment.state(slot.ordinal);
+                if (state == MOVED || state == DELETED) {
+                    return null;
+                }
+                if (state < 0) {
+                    // Выставлен бит удаления: ссылку уже удаляют, поднимать незачем
+                    return new ColdView(slot.segment, slot.ordinal, key, shortUrl);
+                }
+            } while (!slot.segment.compareAndSetState(slot.ordinal, state, MOVED));
+            slot.segment.dead.incrementAndGet();
+            resident = new Resident(slot.segment, slot.ordinal, key, shortUrl, state);
+            hot.put(shortUrl, resident);
+        }
+        admit(resident);
+        return resident;
+    }
+
+    // Ссылка из staging, к которой снова обращаются, возвращается в горячий уровень тем же объектом
+    private void unstage(Resident resident) {
+        synchronized (lockFor(resident.hash)) {
+            if (!resident.isPresent() || staging.get(resident.getShortUrl()) != resident) {
+                return;
+            }
+            hot.put(resident.getShortUrl(), resident);
+            staging.remove(resident.getShortUrl(), resident);
+        }
+        admit(resident);
+    }
+
+    // Отдаёт ссылку политике вытеснения и переносит вытесненные в staging
+    private void admit(Resident resident) {
+        List<Resident> evicted = new ArrayList<>(2);
+        policy.add(resident, evicted);
+        for (Resident victim : evicted) {
+            synchronized (lockFor(victim.hash)) {
+                if (victim.deleted || hot.get(victim.getShortUrl()) != victim) {
+                    continue;
+                }
+                // Сначала в staging, потом из горячего уровня: читатель найдёт ссылку хотя бы в одном месте
+                staging.put(victim.getShortUrl(), victim);
+                hot.remove(victim.getShortUrl(), victim);
+            }
+        }
+        int staged = staging.size();
+        if (staged >= STAGING_BACKLOG * segmentLinks) {
+            // Фон не успевает — пишем сами, чтобы staging не съел кучу
+            try {
+                flushStaging();
+            } catch (IOException e) {
+                System.out.println("Не удалось записать сегмент холодного уровня: " + e.getMessage());
+            }
+        } else if (staged >= segmentLinks && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushScheduled.set(false);
+                try {
+                    flushStaging();
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Не удалось записать сегмент холодного уровня: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    // --- Сегменты ---
+
+    private synchronized void flushStaging() throws IOException {
+        List<Resident> batch = new ArrayList<>(staging.values());
+        if (batch.isEmpty()) {
+            return;
+        }
+        batch.sort(Comparator.comparingLong(resident -> resident.key));
+        byte[][] urls = new byte[batch.size()][];
+        long dataBytes = 0;
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = batch.get(i).getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+            dataBytes += ColdSegment.recordSize(urls[i].length);
+        }
+        ColdSegment.Writer writer = new ColdSegment.Writer(dir, segmentIds.incrementAndGet(),
+                batch.size(), dataBytes, MOVED);
+        ColdSegment segment;
+        try {
+            for (int i = 0; i < urls.length; i++) {
+                Resident resident = batch.get(i);
+                writer.add(resident.key, resident.getUserId(), resident.creationMillis,
+                        resident.getExpirationTime().toEpochMilli(), urls[i]);
+            }
+            segment = writer.finish();
+        } catch (RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        publish(segment, List.of());
+        // Сегмент уже виден, но все его записи MOVED: ссылка пока живёт в staging. Переносим по одной.
+        for (int i = 0; i < batch.size(); i++) {
+            Resident resident = batch.get(i);
+            synchronized (lockFor(resident.hash)) {
+                if (resident.deleted || staging.get(resident.getShortUrl()) != resident) {
+                    // Удалена или вернулась в горячий уровень
+                    segment.setState(i, DELETED);
+                    segment.dead.incrementAndGet();
+                } else {
+                    segment.setState(i, resident.moveOut());
+                    staging.remove(resident.getShortUrl(), resident);
+                }
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compactSegments();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ошибка уплотнения холодного уровня: " + e.getMessage());
+        }
+    }
+
+    private synchronized void compactSegments() throws IOException {
+        List<ColdSegment> victims = new ArrayList<>();
+        long victimBytes = 0;
+        List<ColdSegment> rest = new ArrayList<>();
+        for (ColdSegment segment : segments) {
+            if (segment.dead.get() * 2 >= segment.count) {
+                victims.add(segment);
+                victimBytes += segment.byteSize();
+            } else {
+                rest.add(segment);
+            }
+        }
+        // Слишком много сегментов — добавляем к слиянию самые мелкие
+        rest.sort(Comparator.comparingInt(segment -> segment.count - segment.dead.get()));
+        int remaining = rest.size() + (victims.isEmpty() ? 0 : 1);
+        for (ColdSegment segment : rest) {
+            if (remaining <= MAX_SEGMENTS || victimBytes + segment.byteSize() > MAX_MERGED_BYTES) {
+                break;
+            }
+            victims.add(segment);
+            victimBytes += segment.byteSize();
+            if (victims.size() > 1) {
+                remaining--;
+            }
+        }
+        if (victims.isEmpty() || victims.size() == 1 && victims.get(0).dead.get() == 0) {
+            return;
+        }
+
+        // Живые записи всех сегментов в порядке ключей: у живой ссылки ровно одна живая запись
+        List<long[]> selected = new ArrayList<>();
+        long dataBytes = 0;
+        int[] positions = new int[victims.size()];
+        while (true) {
+            int best = -1;
+            long bestKey = Long.MAX_VALUE;
+            for (int v = 0; v < victims.size(); v++) {
+                ColdSegment segment = victims.get(v);
+                while (positions[v] < segment.count && !isLiveState(segment.state(positions[v]))) {
+                    positions[v]++;
+                }
+                if (positions[v] < segment.count && segment.key(positions[v]) < bestKey) {
+                    best = v;
+                    bestKey = segment.key(positions[v]);
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            selected.add(new long[]{best, positions[best]});
+            dataBytes += victims.get(best).recordBytes(positions[best]);
+            positions[best]++;
+        }
+
+        ColdSegment merged = null;
+        if (!selected.isEmpty()) {
+            ColdSegment.Writer writer = new ColdSegment.Writer(dir, segmentIds.incrementAndGet(),
+                    selected.size(), dataBytes, MOVED);
+            try {
+                for (long[] record : selected) {
+                    writer.copy(victims.get((int) record[0]), (int) record[1]);
+                }
+                merged = writer.finish();
+            } catch (RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
+        }
+        // Пока состояния переносятся, старые сегменты остаются в списке: читатель, увидевший MOVED
+        // в новом сегменте, находит живую запись в старом
+        publish(merged, List.of());
+        for (int i = 0; i < selected.size(); i++) {
+            ColdSegment source = victims.get((int) selected.get(i)[0]);
+            int ordinal = (int) selected.get(i)[1];
+            synchronized (lockFor(mix(source.key(ordinal)))) {
+                long state;
+                do {
+                    state = source.state(ordinal);
+                } while (isLiveState(state) && !source.compareAndSetState(ordinal, state, MOVED));
+                if (isLiveState(state)) {
+                    merged.setState(i, state);
+                } else {
+                    // Поднята в горячий уровень или удалена, пока писался новый сегмент
+                    merged.setState(i, DELETED);
+                    merged.dead.incrementAndGet();
+                }
+            }
+        }
+        publish(null, victims);
+        for (ColdSegment victim : victims) {
+            victim.delete();
+        }
+    }
+
+    // Добавляет сегмент в начало списка и убирает заменённые им
+    private void publish(ColdSegment added, List<ColdSegment> removed) {
+        List<ColdSegment> next = new ArrayList<>(segments.length + 1);
+        if (added != null) {
+            next.add(added);
+        }
+        for (ColdSegment segment : segments) {
+            if (!removed.contains(segment)) {
+                next.add(segment);
+            }
+        }
+        segments = next.toArray(new ColdSegment[0]);
+    }
+
+    private static boolean isLiveState(long state) {
+        return state != MOVED && state != DELETED;
+    }
+
+    // --- Списки пользователей ---
+
+    // Ссылка пользователя по ключу, если она ещё жива и принадлежит ему
+    private ShortLink userLink(UUID userId, long key, long creationMillis) {
+        String shortUrl = shortUrlOf(key);
+        Object found = locate(key, shortUrl);
+        if (found == null || !isSameLink(found, userId, creationMillis)) {
+            return null;
+        }
+        if (found instanceof Slot slot) {
+            return new ColdView(slot.segment, slot.ordinal, key, shortUrl);
+        }
+        return (Resident) found;
+    }
+
+    // Страница списка пользователя: под монитором выбираются limit наименьших записей после курсора,
+    // затем каждая ищется в уровнях. Если все выбранные уже удалены, выбор повторяется дальше.
+    private List<ShortLink> userPage(UserLinks user, LinkCursor cursor, int limit) {
+        CodeOrder order = new CodeOrder();
+        List<ShortLink> page = new ArrayList<>(limit);
+        LinkCursor from = cursor;
+        while (true) {
+            long[] keys = new long[limit];
+            long[] creations = new long[limit];
+            int selected = user.select(from, order, keys, creations);
+            for (int i = 0; i < selected; i++) {
+                ShortLink link = userLink(user.id, keys[i], creations[i]);
+                if (link != null) {
+                    page.add(link);
+                }
+            }
+            if (!page.isEmpty() || selected < limit) {
+                break;
+            }
+            from = new LinkCursor(Instant.ofEpochMilli(creations[selected - 1]), shortUrlOf(keys[selected - 1]));
+        }
+        // Ссылки вне формата ключа подмешиваем своей страницей и обрезаем общий результат
+        Iterator<ShortLink> overflow = overflowUsers.iterateUserLinks(user.id, cursor);
+        for (int i = 0; i < limit && overflow.hasNext(); i++) {
+            page.add(overflow.next());
+        }
+        page.sort(LinkCursor.LINK_ORDER);
+        return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+    }
+
+    // --- Ключи ---
+
+    private long keyOf(String shortUrl) {
+        return shortUrl.startsWith(domain) ? Base62.toKey(shortUrl, domain.length()) : -1;
+    }
+
+    private String shortUrlOf(long key) {
+        char[] chars = new char[domain.length() + Base62.MAX_LENGTH];
+        domain.getChars(0, domain.length(), chars, 0);
+        int length = Base62.fromKey(key, chars, domain.length());
+        return new String(chars, 0, domain.length() + length);
+    }
+
+    private Object lockFor(long hash) {
+        return locks[(int) (hash >>> 58)];
+    }
+
+    private void addExpiration(long key, long second) {
+        expirations.computeIfAbsent(second, s -> new KeyList()).add(key);
+        if (second < drainedUpTo) {
+            // Корзину могли снять до того, как в неё попал ключ, — страхуемся
+            overdue.add(key);
+        }
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    // --- Объекты ссылок ---
+
+    // Ссылка, выданная наружу. Если её место сменилось (состояние MOVED), операции над кликами
+    // переадресуются туда, где ссылка теперь; если ссылки уже нет — она выглядит удалённой.
+    abstract class Incarnation extends ShortLink {
+        final long key;
+        final long creationMillis;
+
+        Incarnation(String originalUrl, String shortUrl, UUID userId, long creationMillis, long expirationMillis,
+                    long key) {
+            super(originalUrl, shortUrl, userId, Instant.ofEpochMilli(creationMillis),
+                    Instant.ofEpochMilli(expirationMillis), 0);
+            this.key = key;
+            this.creationMillis = creationMillis;
+        }
+
+        abstract long rawState();
+
+        abstract boolean rawCompareAndSet(long expected, long updated);
+
+        @Override
+        protected long loadClickState() {
+            long state = rawState();
+            if (state == MOVED) {
+                return forwardedState();
+            }
+            return state == DELETED ? REMOVED_STATE : state;
+        }
+
+        @Override
+        protected boolean compareAndSetClickState(long expected, long updated) {
+            if (rawCompareAndSet(expected, updated)) {
+                return true;
+            }
+            return rawState() == MOVED && forwardedCompareAndSet(expected, updated);
+        }
+
+        long state() {
+            return loadClickState();
+        }
+
+        boolean compareAndSetState(long expected, long updated) {
+            return compareAndSetClickState(expected, updated);
+        }
+
+        private long forwardedState() {
+            while (true) {
+                Object current = locate(key, getShortUrl());
+                if (current == null || !isSameLink(current, getUserId(), creationMillis)) {
+                    return REMOVED_STATE;
+                }
+                if (current instanceof Resident resident) {
+                    return resident.state();
+                }
+                Slot slot = (Slot) current;
+                long state = slot.segment.state(slot.ordinal);
+                if (state != MOVED) {
+                    return state == DELETED ? REMOVED_STATE : state;
+                }
+            }
+        }
+
+        private boolean forwardedCompareAndSet(long expected, long updated) {
+            Object current = locate(key, getShortUrl());
+            if (current == null || !isSameLink(current, getUserId(), creationMillis)) {
+                return false;
+            }
+            if (current instanceof Resident resident) {
+                return resident.compareAndSetState(expected, updated);
+            }
+            Slot slot = (Slot) current;
+            return slot.segment.compareAndSetState(slot.ordinal, expected, updated);
+        }
+    }
+
+    // Ссылка горячего уровня или staging: состояние кликов в поле объекта
+    final class Resident extends Incarnation {
+        final long hash;
+        private volatile long state;
+        // Поля политики вытеснения: region меняется под её монитором, referenced — без синхронизации
+        byte region;
+        boolean referenced;
+        volatile boolean deleted;
+
+        Resident(ShortLink link, long key) {
+            super(link.getOriginalUrl(), link.getShortUrl(), link.getUserId(),
+                    link.getCreationTime().toEpochMilli(), link.getExpirationTime().toEpochMilli(), key);
+            this.hash = mix(key);
+            this.state = packClickState(link.getClickLimit(), link.getClickCount());
+        }
+
+        Resident(ColdSegment segment, int ordinal, long key, String shortUrl, long state) {
+            super(segment.originalUrl(ordinal), shortUrl, segment.userId(ordinal),
+                    segment.creationMillis(ordinal), segment.expirationMillis(ordinal), key);
+            this.hash = mix(key);
+            this.state = state;
+        }
+
+        boolean isPresent() {
+            return !deleted && state != MOVED;
+        }
+
+        @Override
+        long rawState() {
+            return state;
+        }
+
+        @Override
+        boolean rawCompareAndSet(long expected, long updated) {
+            return RESIDENT_STATE.compareAndSet(this, expected, updated);
+        }
+
+        // Помечает удалённой, сохраняя лимит и счётчик
+        void markDeleted() {
+            long current;
+            do {
+                current = state;
+            } while (!isRemovedState(current) && !RESIDENT_STATE.compareAndSet(this, current, current | REMOVED_STATE));
+        }
+
+        // Забирает состояние при переезде в сегмент; объект дальше переадресует операции
+        long moveOut() {
+            return (long) RESIDENT_STATE.getAndSet(this, MOVED);
+        }
+    }
+
+    // Представление записи сегмента: состояние кликов читается и меняется прямо в отображении
+    private final class ColdView extends Incarnation {
+        private final ColdSegment segment;
+        private final int ordinal;
+
+        ColdView(ColdSegment segment, int ordinal, long key, String shortUrl) {
+            super(segment.originalUrl(ordinal), shortUrl, segment.userId(ordinal),
+                    segment.creationMillis(ordinal), segment.expirationMillis(ordinal), key);
+            this.segment = segment;
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        long rawState() {
+            return segment.state(ordinal);
+        }
+
+        @Override
+        boolean rawCompareAndSet(long expected, long updated) {
+            return segment.compareAndSetState(ordinal, expected, updated);
+        }
+    }
+
+    private record Slot(ColdSegment segment, int ordinal) {
+    }
+
+    // Ключи ссылок пользователя со временем создания, в порядке добавления. Удаление только уменьшает
+    // счётчик живых; мёртвые ключи выбрасываются, когда их становится больше, чем живых.
+    private final class UserLinks {
+        final UUID id;
+        long[] keys = new long[8];
+        long[] creations = new long[8];
+        int size;
+        // Уменьшается под локом полосы удаляемой ссылки, поэтому без монитора списка
+        final AtomicInteger liveCount = new AtomicInteger();
+
+        UserLinks(UUID id) {
+            this.id = id;
+        }
+
+        synchronized void add(long key, long creationMillis) {
+            if (size > 2 * liveCount.get() + 32) {
+                purge();
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                creations = Arrays.copyOf(creations, size * 2);
+            }
+            keys[size] = key;
+            creations[size] = creationMillis;
+            size++;
+            liveCount.incrementAndGet();
+        }
+
+        void removed() {
+            liveCount.decrementAndGet();
+        }
+
+        // Заполняет keys/creations наименьшими (по LINK_ORDER) записями после курсора, возвращает их число
+        synchronized int select(LinkCursor cursor, CodeOrder order, long[] outKeys, long[] outCreations) {
+            long cursorMillis = cursor == null ? Long.MIN_VALUE : cursor.creationTime().toEpochMilli();
+            // Время хранится с точностью до миллисекунды: курсор с остатком стоит после всей миллисекунды
+            boolean cursorInsideMilli = cursor != null && cursor.creationTime().getNano() % 1_000_000 != 0;
+            int selected = 0;
+            for (int i = 0; i < size; i++) {
+                long millis = creations[i];
+                long key = keys[i];
+                if (millis < cursorMillis || millis == cursorMillis
+                        && (cursorInsideMilli || order.compare(key, cursor.shortUrl()) <= 0)) {
+                    continue;
+                }
+                // Вставка в отсортированный хвост; обычно ключи добавлялись по времени, и сюда не доходит
+                if (selected == outKeys.length && compare(millis, key, outCreations[selected - 1],
+                        outKeys[selected - 1], order) >= 0) {
+                    continue;
+                }
+                int position = selected == outKeys.length ? selected - 1 : selected++;
+                while (position > 0 && compare(millis, key, outCreations[position - 1],
+                        outKeys[position - 1], order) < 0) {
+                    outKeys[position] = outKeys[position - 1];
+                    outCreations[position] = outCreations[position - 1];
+                    position--;
+                }
+                outKeys[position] = key;
+                outCreations[position] = millis;
+            }
+            return selected;
+        }
+
+        private int compare(long millis, long key, long otherMillis, long otherKey, CodeOrder order) {
+            int byTime = Long.compare(millis, otherMillis);
+            return byTime != 0 ? byTime : order.compare(key, otherKey);
+        }
+
+        // Оставляет только ключи ссылок, которые ещё живы и принадлежат пользователю
+        private void purge() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                Object found = locate(keys[i], shortUrlOf(keys[i]));
+                if (found != null && isSameLink(found, id, creations[i])) {
+                    keys[kept] = keys[i];
+                    creations[kept] = creations[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            liveCount.set(kept);
+        }
+    }
+
+    // Сравнение кодов в строковом порядке без создания строк (порядок ключей с ним не совпадает)
+    private final class CodeOrder {
+        private final char[] left = new char[domain.length() + Base62.MAX_LENGTH];
+        private final char[] right = new char[domain.length() + Base62.MAX_LENGTH];
+
+        CodeOrder() {
+            domain.getChars(0, domain.length(), left, 0);
+            domain.getChars(0, domain.length(), right, 0);
+        }
+
+        int compare(long leftKey, long rightKey) {
+            int leftLength = domain.length() + Base62.fromKey(leftKey, left, domain.length());
+            int rightLength = domain.length() + Base62.fromKey(rightKey, right, domain.length());
+            return Arrays.compare(left, 0, leftLength, right, 0, rightLength);
+        }
+
+        int compare(long key, String shortUrl) {
+            int length = domain.length() + Base62.fromKey(key, left, domain.length());
+            int common = Math.min(length, shortUrl.length());
+            for (int i = 0; i < common; i++) {
+                if (left[i] != shortUrl.charAt(i)) {
+                    return left[i] - shortUrl.charAt(i);
+                }
+            }
+            return length - shortUrl.length();
+        }
+    }
+
+    // Список ключей корзины истечения
+    private static final class KeyList {
+        long[] values = new long[4];
+        int size;
+
+        synchronized void add(long key) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = key;
+        }
+
+        synchronized void drainTo(KeyList target) {
+            for (int i = 0; i < size; i++) {
+                target.add(values[i]);
+            }
+            size = 0;
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Обход всех ссылок: сначала ссылки вне формата ключа, затем ключи корзин истечения
+    private final class AllLinksIterator implements Iterator<ShortLink> {
+        private final Iterator<ShortLink> overflow = overflowLinks.findAll().iterator();
+        private final Iterator<Map.Entry<Long, KeyList>> buckets = expirations.entrySet().iterator();
+        private long bucketSecond;
+        private long[] keys = overdue.snapshot();
+        private boolean overdueKeys = true;
+        private int position;
+        private ShortLink next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && overflow.hasNext()) {
+                next = overflow.next();
+            }
+            while (next == null) {
+                if (position == keys.length) {
+                    if (!buckets.hasNext()) {
+                        return false;
+                    }
+                    Map.Entry<Long, KeyList> bucket = buckets.next();
+                    bucketSecond = bucket.getKey();
+                    keys = bucket.getValue().snapshot();
+                    overdueKeys = false;
+                    position = 0;
+                    continue;
+                }
+                ShortLink link = linkForKey(keys[position++]);
+                // Ссылка с ключом, попавшим в несколько корзин, выдаётся из своей; из overdue — только
+                // если её корзина уже снята
+                if (link != null && (overdueKeys
+                        ? link.getExpirationTime().getEpochSecond() < drainedUpTo
+                        : link.getExpirationTime().getEpochSecond() == bucketSecond)) {
+                    next = link;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public ShortLink next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ShortLink result = next;
+            next = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.shortener.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Общие экземпляры строк исходных URL со счётчиком ссылок на каждый: все ссылки на одну страницу
+// держат одну строку, а ссылка на неё в объекте (4 байта при сжатых указателях) и служит компактным
+// идентификатором URL. Строка забывается, когда удалена последняя ссылка с этим URL.
+final class UrlInterner {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Общий экземпляр строки, если он уже есть, иначе сама url; счётчик не меняется
+    String canonical(String url) {
+        Entry entry = entries.get(url);
+        return entry != null ? entry.url : url;
+    }
+
+    // Учитывает ещё одну ссылку с этим URL
+    void acquire(String url) {
+        entries.compute(url, (key, entry) -> {
+            if (entry == null) {
+                return new Entry(url);
+            }
+            entry.refs++;
+            return entry;
+        });
+    }
+
+    void release(String url) {
+        entries.computeIfPresent(url, (key, entry) -> --entry.refs == 0 ? null : entry);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Поля меняются только внутри compute, под локом корзины ConcurrentHashMap
+    private static final class Entry {
+        final String url;
+        int refs = 1;
+
+        Entry(String url) {
+            this.url = url;
+        }
+    }
+}
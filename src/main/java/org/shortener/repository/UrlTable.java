@@ -0,0 +1,230 @@
+package org.shortener.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Таблица различных исходных URL компактного хранилища: запись ссылки держит только 4-байтовый номер URL,
+// а байты каждой страницы лежат в ByteArena один раз, сколько бы ссылок на неё ни вело.
+// У каждого URL счётчик ссылок; номер с нулевым счётчиком освобождается и выдаётся заново.
+//
+// Таблица разбита на полосы по хешу байтов, у каждой свой ReadWriteLock, ByteArena, колонки
+// offsets/lengths/refs/hashes и индекс с открытой адресацией (номер + 1, 0 — пусто).
+// Номер URL — (полоса << LOCAL_BITS) | номер в полосе. Локи хранилища берутся раньше локов таблицы.
+final class UrlTable {
+
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPE_COUNT = 1 << STRIPE_BITS;
+    private static final int LOCAL_BITS = 27;
+    private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    UrlTable(boolean offHeap) {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe(i, offHeap);
+        }
+    }
+
+    // Номер URL с такими байтами (новый, если такого ещё нет); счётчик ссылок увеличивается
+    int acquire(byte[] url) {
+        int hash = hash(url);
+        Stripe stripe = stripes[hash >>> (Integer.SIZE - STRIPE_BITS)];
+        stripe.lock.writeLock().lock();
+        try {
+            return (stripe.index << LOCAL_BITS) | stripe.acquire(url, hash);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    // Снимает одну ссылку с URL; последняя освобождает его номер и место
+    void release(int id) {
+        Stripe stripe = stripes[id >>> LOCAL_BITS];
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.release(id & LOCAL_MASK);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    String read(int id) {
+        Stripe stripe = stripes[id >>> LOCAL_BITS];
+        stripe.lock.readLock().lock();
+        try {
+            int local = id & LOCAL_MASK;
+            return stripe.bytes.read(stripe.offsets[local], stripe.lengths[local]);
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    // Число различных URL
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                size += stripe.live;
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    // Байты, занятые URL (включая ещё не перепакованный мусор)
+    long usedBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                bytes += stripe.bytes.usedBytes();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private static int hash(byte[] url) {
+        int h = Arrays.hashCode(url);
+        // fmix32 из MurmurHash3: старшие биты выбирают полосу, младшие — ячейку индекса
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    // Поля меняются под write-локом полосы, читаются под read-локом
+    private static final class Stripe {
+        final int index;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        ByteArena bytes;
+
+        int[] offsets = new int[64];
+        int[] lengths = new int[64];
+        int[] refs = new int[64];
+        int[] hashes = new int[64];
+        int count;
+        int live;
+        int[] free = new int[16];
+        int freeCount;
+
+        int[] slots = new int[128];
+
+        Stripe(int index, boolean offHeap) {
+            this.index = index;
+            this.bytes = new ByteArena(offHeap);
+        }
+
+        int acquire(byte[] url, int hash) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+                int local = slots[i] - 1;
+                if (hashes[local] == hash && bytes.matches(offsets[local], lengths[local], url)) {
+                    refs[local]++;
+                    return local;
+                }
+            }
+            int local = allocate();
+            offsets[local] = bytes.append(url);
+            lengths[local] = url.length;
+            refs[local] = 1;
+            hashes[local] = hash;
+            live++;
+            putSlot(local);
+            return local;
+        }
+
+        void release(int local) {
+            if (--refs[local] > 0) {
+                return;
+            }
+            removeSlot(local);
+            bytes.release(lengths[local]);
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = local;
+            live--;
+            if (bytes.needsCompaction()) {
+                compact();
+            }
+        }
+
+        private int allocate() {
+            if (freeCount > 0) {
+                return free[--freeCount];
+            }
+            if (count > LOCAL_MASK) {
+                throw new IllegalStateException("Таблица URL переполнена");
+            }
+            if (count == offsets.length) {
+                int capacity = count * 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                refs = Arrays.copyOf(refs, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+            }
+            return count++;
+        }
+
+        private void putSlot(int local) {
+            if (live * 4 > slots.length * 3) {
+                resize(slots.length * 2);
+            }
+            int mask = slots.length - 1;
+            int i = hashes[local] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = local + 1;
+        }
+
+        private void removeSlot(int local) {
+            int mask = slots.length - 1;
+            int i = hashes[local] & mask;
+            while (slots[i] != local + 1) {
+                i = (i + 1) & mask;
+            }
+            // Сдвигаем назад следующие элементы цепочки, как в таблице ключей хранилища
+            int hole = i;
+            for (int j = (hole + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+                int home = hashes[slots[j] - 1] & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    slots[hole] = slots[j];
+                    hole = j;
+                }
+            }
+            slots[hole] = 0;
+        }
+
+        private void resize(int capacity) {
+            int[] old = slots;
+            slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int slot : old) {
+                if (slot != 0) {
+                    int i = hashes[slot - 1] & mask;
+                    while (slots[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    slots[i] = slot;
+                }
+            }
+        }
+
+        // Переносит живые URL в новую область, выбрасывая место освобождённых
+        private void compact() {
+            ByteArena compacted = bytes.emptyCopy();
+            for (int local = 0; local < count; local++) {
+                if (refs[local] > 0) {
+                    offsets[local] = bytes.copyTo(compacted, offsets[local], lengths[local]);
+                }
+            }
+            bytes = compacted;
+        }
+    }
+}
@@ -1,24 +1,24 @@
 package org.shortener.repository;
 
+import org.shortener.model.LinkCursor;
 import org.shortener.model.ShortLink;
 
-import java.util.*;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.UUID;
 
-public class UserRepository {
+// Индекс ссылок по владельцу
+public interface UserRepository {
 
-    private final Map<UUID, List<ShortLink>> userLinksMap = new HashMap<>();
+    // Копия всех ссылок пользователя (для постраничного просмотра — iterateUserLinks)
+    Collection<ShortLink> getUserLinks(UUID userId);
 
-    public List<ShortLink> getUserLinks(UUID userId) {
-        userLinksMap.putIfAbsent(userId, new ArrayList<>());
-        return userLinksMap.get(userId);
-    }
+    // Ссылки пользователя в порядке LinkCursor.LINK_ORDER строго после after (null — с начала).
+    // Итератор ленивый и слабо согласованный: подгружает ссылки небольшими порциями, не копируя весь
+    // список, и может не увидеть изменений, сделанных во время обхода.
+    Iterator<ShortLink> iterateUserLinks(UUID userId, LinkCursor after);
 
-    public void addLinkToUser(UUID userId, ShortLink link) {
-        getUserLinks(userId).add(link);
-    }
+    void addLinkToUser(UUID userId, ShortLink link);
 
-    public void removeLinkFromUser(UUID userId, ShortLink link) {
-        List<ShortLink> list = getUserLinks(userId);
-        list.remove(link);
-    }
-}
\ No newline at end of file
+    void removeLinkFromUser(UUID userId, ShortLink link);
+}
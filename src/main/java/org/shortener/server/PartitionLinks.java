@@ -0,0 +1,198 @@
+package org.shortener.server;
+
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+import org.shortener.service.LinkService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+// Ссылки пользователя со всех секций, разнесённых по процессам (partition.nodes), слитые в порядке создания
+// (scatter-gather). Узлы отдают ссылки страницами через GET /_links?local=1&limit=..&after=..: первые
+// страницы запрашиваются у всех узлов сразу, следующая — когда слияние дошло до конца предыдущей. В памяти
+// не больше страницы на узел, сколько бы ссылок ни было у пользователя. Свою секцию читаем из LinkService.
+//
+// Строки — в формате /_links: "создана ссылка переходы/лимит истекает URL".
+public class PartitionLinks implements AutoCloseable {
+
+    static final String LINKS_PATH = "/_links";
+    static final Duration NODE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final List<String> nodes;
+    private final int localPartition;
+    private final LinkService linkService;
+    private final int pageSize;
+    private final HttpClient client;
+
+    // executor — потоки HTTP-клиента (null — свои потоки клиента)
+    public PartitionLinks(List<String> nodes, int localPartition, LinkService linkService, int pageSize,
+                          Executor executor) {
+        this.nodes = List.copyOf(nodes);
+        this.localPartition = localPartition;
+        this.linkService = linkService;
+        this.pageSize = Math.max(1, pageSize);
+        HttpClient.Builder builder = HttpClient.newBuilder().connectTimeout(NODE_TIMEOUT);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        this.client = builder.build();
+    }
+
+    // Строка списка ссылок для /_links
+    static String line(ShortLink link) {
+        return link.getCreationTime() + " " + link.getShortUrl() + " " + link.getClickCount() + "/"
+                + link.getClickLimit() + " " + link.getExpirationTime() + " " + link.getOriginalUrl();
+    }
+
+    // Курсор строки /_links: по нему узел продолжает список
+    static LinkCursor cursorOf(String line) {
+        String[] fields = line.split(" ", 3);
+        return new LinkCursor(Instant.parse(fields[0]), fields[1]);
+    }
+
+    // Курсор в параметре after: "<время создания>,<ссылка>"
+    static String formatCursor(LinkCursor cursor) {
+        return cursor.creationTime() + "," + cursor.shortUrl();
+    }
+
+    static LinkCursor parseCursor(String value) {
+        int comma = value.indexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Курсор без ссылки: " + value);
+        }
+        try {
+            return new LinkCursor(Instant.parse(value.substring(0, comma)), value.substring(comma + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Неверный курсор: " + value, e);
+        }
+    }
+
+    // Слитые ссылки пользователя со всех узлов после курсора (null — с начала). Первые страницы
+    // запрашиваются здесь: если узел не ответил, бросается IOException, пока ответ клиенту ещё не начат.
+    // Отказ узла на следующих страницах — UncheckedIOException из итератора.
+    public Iterator<String> userLinks(UUID userId, LinkCursor after) throws IOException {
+        List<CompletableFuture<List<String>>> first = new ArrayList<>(nodes.size());
+        for (int node = 0; node < nodes.size(); node++) {
+            first.add(page(node, userId, after));
+        }
+        PriorityQueue<NodePage> heads = new PriorityQueue<>(
+                Comparator.comparing((NodePage page) -> page.head.creationTime())
+                        .thenComparing(page -> page.head.shortUrl()));
+        for (int node = 0; node < nodes.size(); node++) {
+            NodePage page = new NodePage(node, await(first.get(node), node));
+            if (page.advance()) {
+                heads.add(page);
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public String next() {
+                NodePage page = heads.poll();
+                if (page == null) {
+                    throw new NoSuchElementException();
+                }
+                String line = page.lines.get(page.position - 1);
+                if (page.position == page.lines.size() && page.lines.size() == pageSize) {
+                    // Страница узла полная — за ней могут быть ещё ссылки
+                    try {
+                        page.next(await(page(page.node, userId, page.head), page.node));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                if (page.advance()) {
+                    heads.add(page);
+                }
+                return line;
+            }
+        };
+    }
+
+    private CompletableFuture<List<String>> page(int node, UUID userId, LinkCursor after) {
+        if (node == localPartition) {
+            List<String> lines = new ArrayList<>(pageSize);
+            for (ShortLink link : linkService.activeUserLinks(userId, after, pageSize)) {
+                lines.add(line(link));
+            }
+            return CompletableFuture.completedFuture(lines);
+        }
+        String uri = nodes.get(node) + LINKS_PATH + "?local=1&limit=" + pageSize + "&user=" + userId
+                + (after == null ? "" : "&after=" + URLEncoder.encode(formatCursor(after), StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .timeout(NODE_TIMEOUT)
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("ответ " + response.statusCode());
+                    }
+                    return response.body().lines().toList();
+                });
+    }
+
+    private List<String> await(CompletableFuture<List<String>> page, int node) throws IOException {
+        try {
+            return page.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Узел " + nodes.get(node) + " не ответил: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Опрос узла " + nodes.get(node) + " прерван", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    // Текущая страница узла и позиция слияния в ней; head — курсор строки, которую слияние отдаст следующей
+    private static final class NodePage {
+        final int node;
+        List<String> lines;
+        int position;
+        LinkCursor head;
+
+        NodePage(int node, List<String> lines) {
+            this.node = node;
+            this.lines = lines;
+        }
+
+        void next(List<String> page) {
+            lines = page;
+            position = 0;
+        }
+
+        // Переходит к следующей строке; false — строк больше нет
+        boolean advance() {
+            if (position == lines.size()) {
+                return false;
+            }
+            head = cursorOf(lines.get(position++));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package org.shortener.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.shortener.analytics.ClickAnalytics;
+import org.shortener.analytics.HotLink;
+import org.shortener.codegen.PartitionedCodeGenerator;
+import org.shortener.config.AppConfig;
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+import org.shortener.service.LinkService;
+import org.shortener.service.RedirectResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP-сервер переходов: GET /{code} -> 302 (или 301) с заголовком Location. HEAD /{code} отвечает так же,
+// но переход не засчитывает.
+// GET /_metrics отдаёт метрики в формате Prometheus ('_' не встречается в кодах, путь не пересечётся со ссылкой).
+// GET /_hot — горячие ссылки по ClickAnalytics: ?k=10&window=60 — общий топ, ?link=AbCdE1 — одна ссылка
+// с переходами по корзинам, ?user=<UUID> — ссылки пользователя. Ответ — строки "ссылка переходы переходов/с".
+// GET /_links?user=<UUID> — действующие ссылки пользователя строками "создана ссылка переходы/лимит истекает URL"
+// в порядке создания; &limit=N&after=<создана>,<ссылка> — страница после курсора. Ответ пишется потоком по мере
+// обхода, поэтому длинный список не собирается в памяти.
+// /_hot и /_links выдают ссылки пользователя любому, кто знает его UUID, поэтому по умолчанию отвечают только
+// на запросы с этой же машины (server.user.endpoints: loopback, any или off — тогда 404), остальным — 403.
+// В секционированном режиме с узлами в отдельных процессах (partition.nodes) переход по коду чужой секции
+// отвечает 307 на узел-владельца, а /_links сливает страницы всех узлов (PartitionLinks).
+// Переход сверх лимитов частоты (admission.*) получает 429 с Retry-After.
+// Каждый запрос обрабатывается в отдельном виртуальном потоке; keep-alive поддерживается JDK-сервером.
+public class RedirectServer implements AutoCloseable {
+
+    private static final int BACKLOG = 1024;
+    private static final String METRICS_PATH = "/_metrics";
+    private static final String HOT_PATH = "/_hot";
+    private static final String LINKS_PATH = PartitionLinks.LINKS_PATH;
+    private static final int LINKS_PAGE = 256;
+    private static final int DEFAULT_TOP = 10;
+
+    private final AppConfig config;
+    private final LinkService linkService;
+    private final ClickAnalytics analytics;
+    static {
+        // JDK-сервер пишет заголовки и тело ответа разными пакетами: без TCP_NODELAY тело ждёт подтверждения
+        // заголовков (Nagle и отложенный ACK клиента) — около 40 мс на каждый ответ с телом, в том числе
+        // на каждую страницу /_links между узлами. Значение, заданное при запуске, не трогаем.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Узлы секций, если секции работают в разных процессах; иначе пустой список
+    private final List<String> nodes;
+    // Слияние /_links со всех узлов; null без узлов
+    private final PartitionLinks partitionLinks;
+    private HttpServer server;
+
+    public RedirectServer(AppConfig config, LinkService linkService) {
+        this(config, linkService, null);
+    }
+
+    // analytics может быть null — тогда /_hot отвечает 404
+    public RedirectServer(AppConfig config, LinkService linkService, ClickAnalytics analytics) {
+        this.config = config;
+        this.linkService = linkService;
+        this.analytics = analytics;
+        this.nodes = config.getPartitionId() >= 0 ? config.getPartitionNodes() : List.of();
+        this.partitionLinks = nodes.isEmpty() ? null
+                : new PartitionLinks(nodes, config.getPartitionId(), linkService, LINKS_PAGE, executor);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(config.getServerPort()), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/", this::handleRedirect);
+        server.createContext(METRICS_PATH, this::handleMetrics);
+        server.createContext(HOT_PATH, this::handleHot);
+        server.createContext(LINKS_PATH, this::handleLinks);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleRedirect(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // Путь вида /AbCdE1 -> короткая ссылка test.ru/AbCdE1
+            String code = exchange.getRequestURI().getRawPath().substring(1);
+            if (code.isEmpty() || code.indexOf('/') >= 0) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String shortUrl = config.getShortLinkDomain() + code;
+            int partition = nodes.isEmpty()
+                    ? -1
+                    : PartitionedCodeGenerator.partitionOf(shortUrl, config.getShortLinkDomain(), nodes.size());
+            if (partition >= 0 && partition != config.getPartitionId()) {
+                // Ссылка чужой секции: отправляем на её узел, ничего не ища у себя
+                exchange.getResponseHeaders().set("Location", nodes.get(partition) + "/" + code);
+                exchange.sendResponseHeaders(307, -1);
+                return;
+            }
+
+            // HEAD шлют боты предпросмотра и проверки доступности: отвечаем тем же, но переход не засчитываем,
+            // иначе ссылка с лимитом в один клик исчезла бы до того, как её откроет человек
+            String clientKey = config.isAdmissionEnabled() ? clientKey(exchange) : null;
+            RedirectResult result = "HEAD".equals(method)
+                    ? linkService.peek(shortUrl, clientKey)
+                    : linkService.resolve(shortUrl, clientKey);
+            switch (result.outcome()) {
+                case HIT, LAST_HIT -> {
+                    exchange.getResponseHeaders().set("Location", result.link().getOriginalUrl());
+                    // Переходы ограничены по числу и времени, поэтому ответ нельзя кешировать
+                    exchange.getResponseHeaders().set("Cache-Control", "no-store");
+                    exchange.sendResponseHeaders(config.getServerRedirectStatus(), -1);
+                }
+                case EXPIRED, LIMIT_REACHED -> exchange.sendResponseHeaders(410, -1);
+                case NOT_FOUND -> exchange.sendResponseHeaders(404, -1);
+                case UNAVAILABLE -> {
+                    // Реплика без связи с первичным узлом не может засчитать переход, не рискуя превысить лимит
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    exchange.sendResponseHeaders(503, -1);
+                }
+                case THROTTLED -> {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    exchange.sendResponseHeaders(429, -1);
+                }
+            }
+        }
+    }
+
+    // Ключ клиента для лимитов частоты: заголовок от своего прокси (admission.client.header) или адрес соединения
+    private String clientKey(HttpExchange exchange) {
+        String header = config.getAdmissionClientHeader();
+        if (!header.isEmpty()) {
+            String value = exchange.getRequestHeaders().getFirst(header);
+            if (value != null && !value.isBlank()) {
+                return value.trim();
+            }
+        }
+        return exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = linkService.getMetrics().getPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private void handleHot(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!permitUserEndpoint(exchange)) {
+                return;
+            }
+            if (analytics == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            StringBuilder out = new StringBuilder();
+            try {
+                int window = Integer.parseInt(query.getOrDefault("window", String.valueOf(analytics.getWindowSeconds())));
+                if (query.containsKey("link")) {
+                    String link = query.get("link");
+                    String shortUrl = link.startsWith(config.getShortLinkDomain()) ? link : config.getShortLinkDomain() + link;
+                    appendHot(out, List.of(analytics.linkClicks(shortUrl, window)));
+                    out.append("series");
+                    for (long clicks : analytics.clickSeries(shortUrl)) {
+                        out.append(' ').append(clicks);
+                    }
+                    out.append('\n');
+                } else if (query.containsKey("user")) {
+                    appendHot(out, analytics.userLinks(UUID.fromString(query.get("user")), window));
+                } else {
+                    int k = Integer.parseInt(query.getOrDefault("k", String.valueOf(DEFAULT_TOP)));
+                    appendHot(out, analytics.topLinks(k, window));
+                }
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    // Сбой узла посреди ответа пробрасывается мимо exchange.close(): сервер рвёт соединение, и клиент видит
+    // незавершённый ответ, а не укороченный список
+    private void handleLinks(HttpExchange exchange) throws IOException {
+        writeLinks(exchange);
+        exchange.close();
+    }
+
+    private void writeLinks(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        if (!permitUserEndpoint(exchange)) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        UUID userId;
+        LinkCursor after;
+        int limit;
+        try {
+            userId = UUID.fromString(query.getOrDefault("user", ""));
+            after = query.containsKey("after") ? PartitionLinks.parseCursor(query.get("after")) : null;
+            limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : Integer.MAX_VALUE;
+        } catch (IllegalArgumentException e) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+        if (limit < 1) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+
+        Iterator<String> merged = null;
+        if (partitionLinks != null && !query.containsKey("local")) {
+            try {
+                merged = partitionLinks.userLinks(userId, after);
+            } catch (IOException e) {
+                // Без ответа хотя бы одного узла список был бы неполным
+                exchange.sendResponseHeaders(502, -1);
+                return;
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        if (merged != null) {
+            try {
+                for (int written = 0; written < limit && merged.hasNext(); written++) {
+                    out.write(merged.next());
+                    out.write('\n');
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else {
+            LinkCursor cursor = after;
+            int left = limit;
+            while (left > 0) {
+                int requested = Math.min(left, LINKS_PAGE);
+                List<ShortLink> page = linkService.activeUserLinks(userId, cursor, requested);
+                for (ShortLink link : page) {
+                    out.write(PartitionLinks.line(link));
+                    out.write('\n');
+                }
+                if (page.size() < requested) {
+                    break;
+                }
+                left -= requested;
+                cursor = LinkCursor.of(page.get(page.size() - 1));
+            }
+        }
+        out.flush();
+    }
+
+    // Пускает ли server.user.endpoints этот запрос к /_hot или /_links; если нет, ответ уже отправлен
+    private boolean permitUserEndpoint(HttpExchange exchange) throws IOException {
+        String access = config.getServerUserEndpoints();
+        if ("any".equalsIgnoreCase(access)) {
+            return true;
+        }
+        if ("loopback".equalsIgnoreCase(access) && exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+            return true;
+        }
+        exchange.sendResponseHeaders("loopback".equalsIgnoreCase(access) ? 403 : 404, -1);
+        return false;
+    }
+
+    private static void appendHot(StringBuilder out, List<HotLink> links) {
+        for (HotLink link : links) {
+            out.append(link.shortUrl()).append(' ').append(link.clicks()).append(' ')
+                    .append(String.format(Locale.ROOT, "%.3f", link.clicksPerSecond())).append('\n');
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (partitionLinks != null) {
+            partitionLinks.close();
+        }
+        executor.close();
+    }
+}
@@ -0,0 +1,31 @@
+package org.shortener.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Фоновая очистка просроченных ссылок с заданным интервалом
+public class CleanupScheduler implements AutoCloseable {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "link-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CleanupScheduler(LinkService linkService, int intervalSeconds) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                linkService.cleanupExpiredLinks();
+            } catch (RuntimeException e) {
+                // Не даём исключению остановить периодическую задачу
+                System.out.println("Ошибка очистки просроченных ссылок: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,9 @@
+package org.shortener.service;
+
+// Узел, который засчитывает переходы и следит за лимитами кликов. У реплики это первичный узел:
+// лимит общий для всех реплик, поэтому засчитать переход может только тот, у кого авторитетный счётчик.
+public interface ClickAuthority {
+
+    // Засчитывает переход по короткой ссылке и возвращает исход (UNAVAILABLE — узел не ответил)
+    RedirectOutcome consumeClick(String shortUrl);
+}
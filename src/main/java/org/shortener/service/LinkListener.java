@@ -0,0 +1,51 @@
+package org.shortener.service;
+
+import org.shortener.model.ShortLink;
+
+import java.util.List;
+
+// Подписчик на изменения ссылок в LinkService (журнал, репликация и т.п.).
+// Методы вызываются синхронно в потоке, выполнившем изменение, уже после того как оно применено.
+public interface LinkListener {
+
+    default void onCreate(ShortLink link) { }
+
+    // Пачка созданных ссылок (массовая загрузка). Журнал пишет её целиком за один group commit.
+    default void onCreateAll(List<ShortLink> links) {
+        for (ShortLink link : links) {
+            onCreate(link);
+        }
+    }
+
+    // Засчитан переход; актуальное число переходов — link.getClickCount()
+    default void onClick(ShortLink link) { }
+
+    default void onLimitChange(ShortLink link) { }
+
+    default void onDelete(ShortLink link) { }
+
+    // Подписчик, получающий все события, кроме переходов (переходы к нему идут пачками через ClickPipeline)
+    static LinkListener ignoringClicks(LinkListener listener) {
+        return new LinkListener() {
+            @Override
+            public void onCreate(ShortLink link) {
+                listener.onCreate(link);
+            }
+
+            @Override
+            public void onCreateAll(List<ShortLink> links) {
+                listener.onCreateAll(links);
+            }
+
+            @Override
+            public void onLimitChange(ShortLink link) {
+                listener.onLimitChange(link);
+            }
+
+            @Override
+            public void onDelete(ShortLink link) {
+                listener.onDelete(link);
+            }
+        };
+    }
+}
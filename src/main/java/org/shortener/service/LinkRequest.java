@@ -0,0 +1,7 @@
+package org.shortener.service;
+
+import java.util.UUID;
+
+// Запрос на создание ссылки: те же параметры, что у LinkService.createShortLink (для пачек)
+public record LinkRequest(UUID userId, String originalUrl, int hours, int clicks) {
+}
@@ -1,112 +1,436 @@
 package org.shortener.service;
 
+import org.shortener.admission.AdmissionControl;
+import org.shortener.admission.AdmissionLimit;
+import org.shortener.codegen.RandomCodeGenerator;
+import org.shortener.codegen.ShortCodeGenerator;
 import org.shortener.config.AppConfig;
+import org.shortener.metrics.LinkMetrics;
+import org.shortener.model.LinkCursor;
 import org.shortener.model.ShortLink;
 import org.shortener.repository.LinkRepository;
 import org.shortener.repository.UserRepository;
 
-import java.awt.Desktop;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
 
 public class LinkService {
 
+    // Размер страницы при выводе списка ссылок пользователя
+    public static final int PAGE_SIZE = 20;
+    // Ключ клиента для переходов из консольного меню
+    public static final String CONSOLE_CLIENT = "console";
+
+    private static final RedirectResult NOT_FOUND = new RedirectResult(RedirectOutcome.NOT_FOUND, null);
+    private static final RedirectResult THROTTLED = new RedirectResult(RedirectOutcome.THROTTLED, null);
+    private static final int PUBLISH_STRIPES = 256;
+
     private final AppConfig config;
     private final LinkRepository linkRepository;
     private final UserRepository userRepository;
+    private final ShortCodeGenerator codeGenerator;
+    private final List<LinkListener> listeners = new CopyOnWriteArrayList<>();
+    private final LinkMetrics metrics;
+    // Полосы локов по короткому URL. Создание держит полосу, пока ссылка сохраняется и слушатели узнают
+    // о ней, удаление — пока ссылка удаляется и слушатели узнают об этом. Переход или удаление могут найти
+    // ссылку сразу после сохранения, но запись DELETE в журнале и потоке репликации не опередит её LINK:
+    // иначе восстановление из журнала вернуло бы удалённую ссылку.
+    private final ReentrantLock[] publishLocks = new ReentrantLock[PUBLISH_STRIPES];
+    // Режим link.reuse.existing: (пользователь, канонический URL) -> короткий URL его действующей ссылки.
+    // Хранится короткий URL, а не объект: представления компактного хранилища нельзя держать долго.
+    private final Map<ReuseKey, String> reusableLinks;
+    private volatile UrlOpener urlOpener = UrlOpener.DESKTOP;
+    // Реплика: переходы засчитывает первичный узел; null — засчитываем сами
+    private volatile ClickAuthority clickAuthority;
+    // Ограничение частоты переходов и создания ссылок; null — без ограничений
+    private volatile AdmissionControl admissionControl;
+
+    private record ReuseKey(UUID userId, String originalUrl) {
+    }
+
+    // Проверенный запрос на создание: канонический URL, фактические срок и лимит. existing — действующая
+    // ссылка того же пользователя на тот же URL в режиме link.reuse.existing, её и нужно вернуть.
+    private record Draft(UUID userId, String originalUrl, Instant creationTime, Instant expirationTime,
+                         int clickLimit, ReuseKey reuseKey, ShortLink existing) {
+
+        ShortLink newLink(String shortUrl) {
+            return new ShortLink(originalUrl, shortUrl, userId, creationTime, expirationTime, clickLimit);
+        }
+    }
 
     public LinkService(AppConfig config, LinkRepository linkRepository, UserRepository userRepository) {
+        this(config, linkRepository, userRepository, new RandomCodeGenerator(config.getShortLinkDomain()));
+    }
+
+    public LinkService(AppConfig config, LinkRepository linkRepository, UserRepository userRepository,
+                       ShortCodeGenerator codeGenerator) {
         this.config = config;
         this.linkRepository = linkRepository;
         this.userRepository = userRepository;
+        this.codeGenerator = codeGenerator;
+        this.metrics = new LinkMetrics(() -> linkRepository.findAll().size());
+        for (int i = 0; i < PUBLISH_STRIPES; i++) {
+            publishLocks[i] = new ReentrantLock();
+        }
+        this.reusableLinks = config.isLinkReuseExisting() ? new ConcurrentHashMap<>() : null;
+        if (reusableLinks != null) {
+            // Ссылки, восстановленные из журнала до создания сервиса
+            for (ShortLink link : linkRepository.findAll()) {
+                if (link.isAvailable()) {
+                    reusableLinks.put(new ReuseKey(link.getUserId(), link.getOriginalUrl()), link.getShortUrl());
+                }
+            }
+        }
+    }
+
+    public LinkMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void addListener(LinkListener listener) {
+        listeners.add(listener);
     }
 
+    public void setUrlOpener(UrlOpener urlOpener) {
+        this.urlOpener = urlOpener;
+    }
+
+    public void setClickAuthority(ClickAuthority clickAuthority) {
+        this.clickAuthority = clickAuthority;
+    }
+
+    public void setAdmissionControl(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+        metrics.setAdmissionTrackedKeys(admissionControl::trackedKeys);
+    }
+
+    // Отклонённое ограничением частоты создание бросает IllegalStateException
     public ShortLink createShortLink(UUID userId, String originalUrl, int userHours, int userClicks) {
-        // 1. Приведение URL к формату (добавляем https:// если нужно)
-        if (!originalUrl.startsWith("http://") && !originalUrl.startsWith("https://")) {
-            originalUrl = "https://" + originalUrl;
+        long started = System.nanoTime();
+        Draft draft = draft(userId, originalUrl, userHours, userClicks, started);
+        if (draft.existing() != null) {
+            return draft.existing();
+        }
+
+        // 3. Генерация короткого URL и формирование объекта ShortLink
+        ShortLink link;
+        int collisions = -1; // первая попытка коллизией не считается
+        boolean saved;
+        do {
+            collisions++;
+            link = draft.newLink(codeGenerator.nextShortUrl());
+            // 4. Атомарно занимаем короткий URL (повтор, если код уже занят — возможно только у случайной стратегии)
+            // и оповещаем под той же полосой, что и удаление: удаление не опередит создание в журнале
+            ReentrantLock stripe = publishLock(link.getShortUrl());
+            stripe.lock();
+            try {
+                saved = linkRepository.saveIfAbsent(link);
+                if (saved) {
+                    for (LinkListener listener : listeners) {
+                        listener.onCreate(link);
+                    }
+                }
+            } finally {
+                stripe.unlock();
+            }
+        } while (!saved);
+
+        published(link, draft);
+        metrics.recordCreate(System.nanoTime() - started, collisions);
+        return link;
+    }
+
+    // Создание пачки ссылок (массовая загрузка): ссылки пачки сохраняются одним вызовом хранилища,
+    // а слушатели получают их одним onCreateAll — журнал пишет пачку одним group commit, а не по fsync
+    // на ссылку. Результат — ссылки в порядке запросов; на месте отклонённого запроса null, а причина
+    // передаётся в failures вместе с номером запроса.
+    //
+    // На время сохранения и оповещения пачка держит полосы всех своих ссылок (по возрастанию номера,
+    // поэтому пачки не блокируют друг друга намертво): как и одиночное создание, запись LINK в журнале
+    // не опередит DELETE той же ссылки. Одиночные создания и удаления ждут пачку.
+    public List<ShortLink> createShortLinks(List<LinkRequest> requests, ObjIntConsumer<RuntimeException> failures) {
+        long started = System.nanoTime();
+        ShortLink[] created = new ShortLink[requests.size()];
+        Draft[] drafts = new Draft[requests.size()];
+        List<Integer> pending = new ArrayList<>(requests.size());
+        for (int i = 0; i < created.length; i++) {
+            LinkRequest request = requests.get(i);
+            try {
+                Draft draft = draft(request.userId(), request.originalUrl(), request.hours(), request.clicks(),
+                        started);
+                if (draft.existing() != null) {
+                    created[i] = draft.existing();
+                } else {
+                    drafts[i] = draft;
+                    pending.add(i);
+                }
+            } catch (RuntimeException e) {
+                failures.accept(e, i);
+            }
+        }
+        int newLinks = pending.size();
+
+        int collisions = 0;
+        while (!pending.isEmpty()) {
+            List<ShortLink> batch = new ArrayList<>(pending.size());
+            for (int i : pending) {
+                batch.add(drafts[i].newLink(codeGenerator.nextShortUrl()));
+            }
+            List<Integer> retry = new ArrayList<>();
+            List<ShortLink> saved = new ArrayList<>(batch.size());
+            List<ReentrantLock> stripes = lockStripes(batch);
+            try {
+                boolean[] stored = linkRepository.saveAllIfAbsent(batch);
+                for (int j = 0; j < stored.length; j++) {
+                    if (stored[j]) {
+                        created[pending.get(j)] = batch.get(j);
+                        saved.add(batch.get(j));
+                    } else {
+                        retry.add(pending.get(j));
+                    }
+                }
+                for (LinkListener listener : listeners) {
+                    listener.onCreateAll(saved);
+                }
+            } finally {
+                for (int j = stripes.size() - 1; j >= 0; j--) {
+                    stripes.get(j).unlock();
+                }
+            }
+            collisions += retry.size();
+            pending = retry;
+        }
+
+        if (newLinks > 0) {
+            long nanos = (System.nanoTime() - started) / newLinks;
+            for (int i = 0; i < created.length; i++) {
+                if (drafts[i] != null) {
+                    published(created[i], drafts[i]);
+                    metrics.recordCreate(nanos, collisions);
+                    collisions = 0;
+                }
+            }
+        }
+        return Arrays.asList(created);
+    }
+
+    // Проверки до генерации кода: ограничение частоты, канонический URL, повторная выдача, срок и лимит
+    private Draft draft(UUID userId, String originalUrl, int userHours, int userClicks, long now) {
+        AdmissionControl admission = admissionControl;
+        if (admission != null) {
+            AdmissionLimit limit = admission.admitCreate(userId, now);
+            if (limit != null) {
+                metrics.recordAdmissionRejected(limit);
+                throw new IllegalStateException("Слишком много новых ссылок, повторите позже.");
+            }
+        }
+        // 1. Приведение URL к каноническому виду (в том числе добавляем https:// если нужно);
+        // одинаковые URL хранилище держит одним экземпляром
+        originalUrl = linkRepository.internUrl(UrlCanonicalizer.canonicalize(originalUrl));
+        ReuseKey reuseKey = null;
+        if (reusableLinks != null) {
+            reuseKey = new ReuseKey(userId, originalUrl);
+            ShortLink existing = findReusable(reuseKey);
+            if (existing != null) {
+                return new Draft(userId, originalUrl, null, null, 0, reuseKey, existing);
+            }
         }
 
         // 2. Фактическое время жизни / лимит кликов
         int actualHours = Math.min(userHours, config.getDefaultLinkLifetimeHours());
         int actualClicks = Math.max(userClicks, config.getDefaultClickLimit());
+        Instant creationTime = Instant.now();
+        return new Draft(userId, originalUrl, creationTime, creationTime.plus(Duration.ofHours(actualHours)),
+                actualClicks, reuseKey, null);
+    }
 
-        // 3. Генерация короткого URL
-        String shortUrl = generateShortUrl();
-
-        // 4. Формирование объекта ShortLink
-        Instant now = Instant.now();
-        Instant expirationTime = now.plus(Duration.ofHours(actualHours));
-        ShortLink link = new ShortLink(
-                originalUrl,
-                shortUrl,
-                userId,
-                now,
-                expirationTime,
-                actualClicks
-        );
-
-        // 5. Сохраняем в LinkRepository и UserRepository
-        linkRepository.save(link);
-        userRepository.addLinkToUser(userId, link);
+    // Шаги после сохранения ссылки и оповещения слушателей
+    private void published(ShortLink link, Draft draft) {
+        // 5. Привязываем ссылку к пользователю
+        userRepository.addLinkToUser(link.getUserId(), link);
+        if (draft.reuseKey() != null) {
+            // Два одновременных создания одного URL одним пользователем могут дать две ссылки —
+            // повторно выдаваться будет последняя; это не нарушает ничьих лимитов
+            reusableLinks.put(draft.reuseKey(), link.getShortUrl());
+        }
+        // Ссылка с нулевым временем жизни истекает сразу
+        if (link.isExpired()) {
+            deleteLink(link);
+        }
+    }
 
+    // Действующая ссылка пользователя на тот же URL или null
+    private ShortLink findReusable(ReuseKey key) {
+        String shortUrl = reusableLinks.get(key);
+        if (shortUrl == null) {
+            return null;
+        }
+        ShortLink link = linkRepository.findByShortUrl(shortUrl);
+        if (link == null || !link.getUserId().equals(key.userId())
+                || !link.getOriginalUrl().equals(key.originalUrl()) || !link.isAvailable()) {
+            return null;
+        }
         return link;
     }
 
-    private String generateShortUrl() {
-        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        int length = 6;
-        while (true) {
-            StringBuilder sb = new StringBuilder(length);
-            for (int i = 0; i < length; i++) {
-                int randIndex = ThreadLocalRandom.current().nextInt(chars.length());
-                sb.append(chars.charAt(randIndex));
-            }
-            String path = sb.toString();
-            // Добавляем домен из конфигурации
-            String candidate = config.getShortLinkDomain() + path;
+    // Разрешает короткую ссылку без побочных эффектов ввода-вывода: проверяет срок действия,
+    // атомарно засчитывает переход и удаляет ссылку, если она больше недоступна
+    // Ограничение частоты здесь не действует: это переходы, уже допущенные в другом месте (пересланные
+    // репликой) или внутренние
+    public RedirectResult resolve(String shortUrl) {
+        long started = System.nanoTime();
+        RedirectResult result = resolveLink(shortUrl, null, started);
+        metrics.recordRedirect(result.outcome(), System.nanoTime() - started);
+        return result;
+    }
+
+    // Переход внешнего клиента (clientKey — его адрес) через ограничение частоты: лимиты клиента и общий
+    // проверяются до поиска ссылки, лимит владельца — когда ссылка найдена, но до того, как переход засчитан
+    public RedirectResult resolve(String shortUrl, String clientKey) {
+        AdmissionControl admission = admissionControl;
+        if (admission == null) {
+            return resolve(shortUrl);
+        }
+        long started = System.nanoTime();
+        AdmissionLimit limit = admission.admitRedirect(clientKey, started);
+        RedirectResult result;
+        if (limit != null) {
+            metrics.recordAdmissionRejected(limit);
+            result = THROTTLED;
+        } else {
+            result = resolveLink(shortUrl, admission, started);
+        }
+        metrics.recordRedirect(result.outcome(), System.nanoTime() - started);
+        return result;
+    }
 
-            // Проверка на уникальность
-            if (linkRepository.findByShortUrl(candidate) == null) {
-                return candidate;
+    // Куда вёл бы переход, без его учёта: для HEAD-запросов (предпросмотр ссылок, проверки доступности).
+    // Переход не засчитывается и ссылка не удаляется; лимит частоты клиента действует, как у перехода.
+    public RedirectResult peek(String shortUrl, String clientKey) {
+        AdmissionControl admission = admissionControl;
+        if (admission != null) {
+            AdmissionLimit limit = admission.admitRedirect(clientKey, System.nanoTime());
+            if (limit != null) {
+                metrics.recordAdmissionRejected(limit);
+                return THROTTLED;
             }
         }
+        ShortLink link = linkRepository.findByShortUrl(shortUrl);
+        if (link == null || link.isRemoved()) {
+            return NOT_FOUND;
+        }
+        if (link.isExpired()) {
+            return new RedirectResult(RedirectOutcome.EXPIRED, link);
+        }
+        if (link.isClickLimitReached()) {
+            return new RedirectResult(RedirectOutcome.LIMIT_REACHED, link);
+        }
+        return new RedirectResult(RedirectOutcome.HIT, link);
     }
 
-    public void redirectToOriginalUrl(String shortUrl) {
+    private RedirectResult resolveLink(String shortUrl, AdmissionControl admission, long now) {
         ShortLink link = linkRepository.findByShortUrl(shortUrl);
         if (link == null) {
-            System.out.println("Ссылка не найдена или уже удалена.");
-            return;
+            return NOT_FOUND;
         }
 
         // Проверка на срок действия
         if (link.isExpired()) {
-            System.out.println("Срок действия ссылки истёк! Ссылка будет автоматически удалена.");
             deleteLink(link);
-            return;
+            return new RedirectResult(RedirectOutcome.EXPIRED, link);
         }
 
-        // Проверка лимита кликов
-        if (link.isClickLimitReached()) {
-            System.out.println("Лимит переходов исчерпан! Ссылка будет автоматически удалена.");
-            deleteLink(link);
-            return;
+        if (admission != null) {
+            AdmissionLimit limit = admission.admitRedirectToOwner(link.getUserId(), now);
+            if (limit != null) {
+                metrics.recordAdmissionRejected(limit);
+                return THROTTLED;
+            }
         }
 
-        // Увеличиваем счётчик и пытаемся открыть URL в браузере
-        link.incrementClickCount();
+        ClickAuthority authority = clickAuthority;
+        if (authority != null) {
+            return resolveRemotely(authority, link);
+        }
+
+        // Атомарно проверяем лимит и увеличиваем счётчик
+        return switch (link.tryConsumeClick()) {
+            case REMOVED -> NOT_FOUND;
+            case LIMIT_REACHED -> {
+                deleteLink(link);
+                yield new RedirectResult(RedirectOutcome.LIMIT_REACHED, link);
+            }
+            case LAST_CLICK -> {
+                notifyClick(link);
+                // Последний переход: удаляем ссылку сразу, а не ждём очистки
+                deleteLink(link);
+                yield new RedirectResult(RedirectOutcome.LAST_HIT, link);
+            }
+            case CONSUMED -> {
+                notifyClick(link);
+                yield new RedirectResult(RedirectOutcome.HIT, link);
+            }
+        };
+    }
+
+    // Локальная копия счётчика у реплики отстаёт от первичного узла только в меньшую сторону, поэтому
+    // удалённую или исчерпанную здесь ссылку можно отклонить, не спрашивая его. Ссылку удалит запись DELETE
+    // из потока репликации.
+    private RedirectResult resolveRemotely(ClickAuthority authority, ShortLink link) {
+        if (link.isRemoved()) {
+            return NOT_FOUND;
+        }
         if (link.isClickLimitReached()) {
-            System.out.println("Внимание! Это был последний доступный переход. Ссылка блокируется.");
+            return new RedirectResult(RedirectOutcome.LIMIT_REACHED, link);
+        }
+        RedirectOutcome outcome = authority.consumeClick(link.getShortUrl());
+        return outcome == RedirectOutcome.NOT_FOUND ? NOT_FOUND : new RedirectResult(outcome, link);
+    }
+
+    private void notifyClick(ShortLink link) {
+        for (LinkListener listener : listeners) {
+            listener.onClick(link);
+        }
+    }
+
+    public void redirectToOriginalUrl(String shortUrl) {
+        RedirectResult result = resolve(shortUrl, CONSOLE_CLIENT);
+        switch (result.outcome()) {
+            case NOT_FOUND -> {
+                System.out.println("Ссылка не найдена или уже удалена.");
+                return;
+            }
+            case EXPIRED -> {
+                System.out.println("Срок действия ссылки истёк! Ссылка будет автоматически удалена.");
+                return;
+            }
+            case LIMIT_REACHED -> {
+                System.out.println("Лимит переходов исчерпан! Ссылка будет автоматически удалена.");
+                return;
+            }
+            case UNAVAILABLE -> {
+                System.out.println("Первичный узел недоступен, переход не засчитан. Повторите позже.");
+                return;
+            }
+            case THROTTLED -> {
+                System.out.println("Слишком много переходов, повторите позже.");
+                return;
+            }
+            case LAST_HIT -> System.out.println("Внимание! Это был последний доступный переход. Ссылка блокируется.");
+            case HIT -> { }
         }
 
+        // Пытаемся открыть URL в браузере
+        String originalUrl = result.link().getOriginalUrl();
         try {
-            Desktop.getDesktop().browse(new URI(link.getOriginalUrl()));
-            System.out.println("Переход по ссылке " + link.getOriginalUrl() + " успешно выполнен!");
+            urlOpener.open(new URI(originalUrl));
+            System.out.println("Переход по ссылке " + originalUrl + " успешно выполнен!");
         } catch (Exception e) {
             System.out.println("Не удалось открыть браузер: " + e.getMessage());
         }
@@ -122,13 +446,58 @@ public class LinkService {
             System.out.println("Вы не являетесь владельцем данной ссылки!");
             return;
         }
-        deleteLink(link);
+        if (!deleteLink(link)) {
+            System.out.println("Ссылка не найдена.");
+            return;
+        }
         System.out.println("Ссылка успешно удалена.");
     }
 
-    private void deleteLink(ShortLink link) {
-        linkRepository.delete(link);
-        userRepository.removeLinkFromUser(link.getUserId(), link);
+    // Удаляет ссылку из хранилищ; возвращает false, если её уже удалил другой поток
+    private boolean deleteLink(ShortLink link) {
+        ReentrantLock stripe = publishLock(link.getShortUrl());
+        stripe.lock();
+        try {
+            if (!link.markRemoved()) {
+                return false;
+            }
+            linkRepository.delete(link);
+            userRepository.removeLinkFromUser(link.getUserId(), link);
+            if (reusableLinks != null) {
+                reusableLinks.remove(new ReuseKey(link.getUserId(), link.getOriginalUrl()), link.getShortUrl());
+            }
+            for (LinkListener listener : listeners) {
+                listener.onDelete(link);
+            }
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private ReentrantLock publishLock(String shortUrl) {
+        return publishLocks[stripe(shortUrl)];
+    }
+
+    private static int stripe(String shortUrl) {
+        int hash = shortUrl.hashCode();
+        return (hash ^ (hash >>> 16)) & (PUBLISH_STRIPES - 1);
+    }
+
+    // Захватывает полосы ссылок пачки по возрастанию номера и возвращает их в порядке захвата
+    private List<ReentrantLock> lockStripes(List<ShortLink> links) {
+        boolean[] used = new boolean[PUBLISH_STRIPES];
+        for (ShortLink link : links) {
+            used[stripe(link.getShortUrl())] = true;
+        }
+        List<ReentrantLock> locked = new ArrayList<>();
+        for (int i = 0; i < PUBLISH_STRIPES; i++) {
+            if (used[i]) {
+                publishLocks[i].lock();
+                locked.add(publishLocks[i]);
+            }
+        }
+        return locked;
     }
 
     public void editClickLimit(String shortUrl, UUID userId, int newLimit) {
@@ -146,49 +515,90 @@ public class LinkService {
             deleteLink(link);
             return;
         }
-        if (link.isClickLimitReached()) {
-            System.out.println("Лимит кликов уже достигнут, ссылка будет удалена.");
-            deleteLink(link);
-            return;
-        }
 
         int actualNewLimit = Math.max(newLimit, config.getDefaultClickLimit());
-        link.setClickLimit(actualNewLimit);
+        // Лимит меняется одним CAS вместе с проверкой счётчика, поэтому параллельный переход
+        // не может проскочить между проверкой и записью
+        if (!link.updateClickLimit(actualNewLimit)) {
+            if (link.isRemoved()) {
+                System.out.println("Ссылка не найдена.");
+            } else {
+                System.out.println("Лимит кликов уже достигнут, ссылка будет удалена.");
+                deleteLink(link);
+            }
+            return;
+        }
+        for (LinkListener listener : listeners) {
+            listener.onLimitChange(link);
+        }
         System.out.println("Новый лимит кликов: " + actualNewLimit);
+        if (link.isClickLimitReached()) {
+            System.out.println("Новый лимит уже исчерпан, ссылка удалена.");
+            deleteLink(link);
+        }
     }
 
     public void listUserLinks(UUID userId) {
-        List<ShortLink> links = userRepository.getUserLinks(userId);
-        // Удалим просроченные
-        List<ShortLink> toRemove = links.stream()
-                .filter(ShortLink::isExpired)
-                .collect(Collectors.toList());
-        toRemove.forEach(this::deleteLink);
-
-        if (links.isEmpty()) {
-            System.out.println("У вас нет созданных ссылок (или все уже удалены).");
-            return;
+        LinkCursor cursor = listUserLinks(userId, null, PAGE_SIZE);
+        while (cursor != null) {
+            cursor = listUserLinks(userId, cursor, PAGE_SIZE);
         }
+    }
 
-        System.out.println("Ваши ссылки:");
-        for (ShortLink link : links) {
+    // Печатает до pageSize ссылок пользователя после курсора (null — с начала) в порядке создания.
+    // Список обходится лениво, истёкшие и удалённые ссылки пропускаются — их снимет фоновая очистка.
+    // Возвращает курсор следующей страницы или null, если ссылок больше нет.
+    public LinkCursor listUserLinks(UUID userId, LinkCursor after, int pageSize) {
+        Iterator<ShortLink> links = userRepository.iterateUserLinks(userId, after);
+        LinkCursor last = null;
+        int printed = 0;
+        while (printed < pageSize && links.hasNext()) {
+            ShortLink link = links.next();
+            last = LinkCursor.of(link);
+            if (link.isExpired() || link.isRemoved()) {
+                continue;
+            }
+            if (printed == 0 && after == null) {
+                System.out.println("Ваши ссылки:");
+            }
+            printed++;
             System.out.printf("ShortUrl: %s -> %s\n", link.getShortUrl(), link.getOriginalUrl());
             System.out.printf("  Лимит кликов: %d, Переходов: %d, Истекает: %s\n",
                     link.getClickLimit(), link.getClickCount(), link.getExpirationTime());
             System.out.printf("  Доступна: %s\n", link.isAvailable() ? "да" : "нет");
         }
+        if (printed == 0 && after == null) {
+            System.out.println("У вас нет созданных ссылок (или все уже удалены).");
+        }
+        return links.hasNext() ? last : null;
     }
 
-    public void cleanupExpiredLinks() {
-        Map<String, ShortLink> all = linkRepository.findAll();
-        List<ShortLink> toRemove = new ArrayList<>();
-        for (ShortLink link : all.values()) {
-            if (link.isExpired() || link.isClickLimitReached()) {
-                toRemove.add(link);
+    // Страница действующих ссылок пользователя для HTTP-выдачи списка: до limit ссылок после курсора
+    // (null — с начала) в порядке создания. Меньше limit — дальше ссылок нет.
+    public List<ShortLink> activeUserLinks(UUID userId, LinkCursor after, int limit) {
+        List<ShortLink> page = new ArrayList<>(Math.min(limit, PAGE_SIZE));
+        Iterator<ShortLink> links = userRepository.iterateUserLinks(userId, after);
+        while (page.size() < limit && links.hasNext()) {
+            ShortLink link = links.next();
+            if (link.isAvailable()) {
+                page.add(link);
             }
         }
-        for (ShortLink link : toRemove) {
-            deleteLink(link);
-        }
+        return page;
+    }
+
+    // Удаляет ссылки, срок действия которых истёк. Ссылки с исчерпанным лимитом удаляются сразу
+    // при последнем переходе, поэтому здесь снимаются только наступившие корзины индекса истечения.
+    // Возвращает число удалённых ссылок.
+    public int cleanupExpiredLinks() {
+        long started = System.nanoTime();
+        int[] removed = new int[1];
+        linkRepository.drainExpired(Instant.now(), link -> {
+            if (deleteLink(link)) {
+                removed[0]++;
+            }
+        });
+        metrics.recordCleanup(removed[0], System.nanoTime() - started);
+        return removed[0];
     }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package org.shortener.service;
+
+// Исход попытки перехода по короткой ссылке
+public enum RedirectOutcome {
+    HIT,            // переход разрешён
+    LAST_HIT,       // переход разрешён, и он был последним доступным
+    NOT_FOUND,      // ссылки нет или она уже удалена
+    EXPIRED,        // срок действия истёк, ссылка удалена
+    LIMIT_REACHED,  // лимит переходов исчерпан, ссылка удалена
+    UNAVAILABLE,    // реплика не смогла засчитать переход: первичный узел не ответил
+    THROTTLED       // отклонён ограничением частоты (AdmissionControl)
+}
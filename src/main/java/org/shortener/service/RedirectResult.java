@@ -0,0 +1,11 @@
+package org.shortener.service;
+
+import org.shortener.model.ShortLink;
+
+// Результат разрешения короткой ссылки: исход и сама ссылка (null, если ссылка не найдена)
+public record RedirectResult(RedirectOutcome outcome, ShortLink link) {
+
+    public boolean isRedirect() {
+        return outcome == RedirectOutcome.HIT || outcome == RedirectOutcome.LAST_HIT;
+    }
+}
@@ -0,0 +1,105 @@
+package org.shortener.service;
+
+// Приведение исходного URL к каноническому виду, чтобы одна и та же страница, записанная по-разному,
+// хранилась один раз:
+//   - без схемы дописывается https:// (как и раньше), схема http/https приводится к нижнему регистру;
+//   - хост — к нижнему регистру, порт по умолчанию (:80 для http, :443 для https) убирается;
+//   - пустой путь становится "/";
+//   - в %XX шестнадцатеричные цифры переводятся в верхний регистр, а закодированные незарезервированные
+//     символы (буквы, цифры, "-._~") раскодируются (RFC 3986, 6.2.2).
+// Путь, запрос и фрагмент в остальном не трогаются: от них зависит, какую страницу покажет сайт.
+public final class UrlCanonicalizer {
+
+    private static final String HEX = "0123456789ABCDEF";
+
+    private UrlCanonicalizer() {
+    }
+
+    public static String canonicalize(String url) {
+        url = url.trim();
+        String scheme;
+        int rest;
+        if (url.regionMatches(true, 0, "https://", 0, 8)) {
+            scheme = "https";
+            rest = 8;
+        } else if (url.regionMatches(true, 0, "http://", 0, 7)) {
+            scheme = "http";
+            rest = 7;
+        } else {
+            scheme = "https";
+            url = "https://" + url;
+            rest = 8;
+        }
+
+        int authorityEnd = rest;
+        while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        StringBuilder out = new StringBuilder(url.length() + 1);
+        out.append(scheme).append("://");
+        appendAuthority(out, url, rest, authorityEnd, scheme);
+        if (authorityEnd == url.length() || url.charAt(authorityEnd) != '/') {
+            out.append('/');
+        }
+        appendNormalizedEscapes(out, url, authorityEnd);
+        String canonical = out.toString();
+        // Уже канонический URL возвращаем тем же экземпляром
+        return canonical.equals(url) ? url : canonical;
+    }
+
+    private static void appendAuthority(StringBuilder out, String url, int from, int to, String scheme) {
+        // Данные пользователя (до '@') чувствительны к регистру, хост — нет
+        int hostStart = url.lastIndexOf('@', to - 1) + 1;
+        if (hostStart > from) {
+            out.append(url, from, hostStart);
+        } else {
+            hostStart = from;
+        }
+        // Порт — после последнего ':' вне квадратных скобок IPv6-адреса
+        int colon = url.lastIndexOf(':', to - 1);
+        if (colon < hostStart || colon < url.lastIndexOf(']', to - 1)) {
+            colon = to;
+        }
+        for (int i = hostStart; i < colon; i++) {
+            char c = url.charAt(i);
+            out.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        int portStart = Math.min(colon + 1, to);
+        int portLength = to - portStart;
+        boolean defaultPort = portLength == 0
+                || "http".equals(scheme) && portLength == 2 && url.startsWith("80", portStart)
+                || "https".equals(scheme) && portLength == 3 && url.startsWith("443", portStart);
+        if (!defaultPort) {
+            out.append(url, colon, to);
+        }
+    }
+
+    private static void appendNormalizedEscapes(StringBuilder out, String url, int from) {
+        int i = from;
+        for (int escape = url.indexOf('%', i); escape >= 0; escape = url.indexOf('%', i)) {
+            out.append(url, i, escape);
+            i = escape + 1;
+            if (escape + 2 < url.length() && isHex(url.charAt(escape + 1)) && isHex(url.charAt(escape + 2))) {
+                int decoded = Character.digit(url.charAt(escape + 1), 16) * 16 + Character.digit(url.charAt(escape + 2), 16);
+                if (isUnreserved(decoded)) {
+                    out.append((char) decoded);
+                } else {
+                    out.append('%').append(HEX.charAt(decoded >>> 4)).append(HEX.charAt(decoded & 0xF));
+                }
+                i = escape + 3;
+            } else {
+                out.append('%');
+            }
+        }
+        out.append(url, i, url.length());
+    }
+
+    private static boolean isHex(char c) {
+        return Character.digit(c, 16) >= 0 && c < 128;
+    }
+
+    private static boolean isUnreserved(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+}
@@ -0,0 +1,15 @@
+package org.shortener.service;
+
+import java.awt.Desktop;
+import java.io.IOException;
+import java.net.URI;
+
+// Открывает исходный URL после успешного перехода из консоли. По умолчанию — системный браузер;
+// бенчмарки подменяют его заглушкой, чтобы не запускать браузер на каждый переход.
+@FunctionalInterface
+public interface UrlOpener {
+
+    UrlOpener DESKTOP = uri -> Desktop.getDesktop().browse(uri);
+
+    void open(URI uri) throws IOException;
+}
@@ -0,0 +1,74 @@
+package org.shortener.admission;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.shortener.config.AppConfig;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Порядок проверок: лишние запросы клиента отклоняет его корзина, не тратя общий лимит; владелец
+// и создание ссылок проверяются своими лимитами, лимит с нулевой частотой выключен
+class AdmissionControlTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final Map<String, String> LIMITS = Map.of(
+            "admission.redirect.client.rate", "1",
+            "admission.redirect.client.burst", "2",
+            "admission.redirect.owner.rate", "1",
+            "admission.redirect.owner.burst", "1",
+            "admission.redirect.global.rate", "1",
+            "admission.redirect.global.burst", "3",
+            "admission.create.user.rate", "1",
+            "admission.create.user.burst", "1",
+            "admission.create.global.rate", "0");
+
+    @AfterEach
+    void clearLimits() {
+        LIMITS.keySet().forEach(System::clearProperty);
+    }
+
+    @Test
+    void clientLimitIsCheckedBeforeTheGlobalOne() {
+        AdmissionControl admission = create();
+        // Общие корзины созданы полными к моменту создания; дальше время задаёт тест
+        long now = System.nanoTime();
+        assertNull(admission.admitRedirect("a", now));
+        assertNull(admission.admitRedirect("a", now));
+        assertEquals(AdmissionLimit.REDIRECT_CLIENT, admission.admitRedirect("a", now));
+        assertEquals(AdmissionLimit.REDIRECT_CLIENT, admission.admitRedirect("a", now));
+        // Отказы клиента a общий лимит не потратили: третий запрос проходит
+        assertNull(admission.admitRedirect("b", now));
+        assertEquals(AdmissionLimit.REDIRECT_GLOBAL, admission.admitRedirect("b", now));
+        assertEquals(AdmissionLimit.REDIRECT_GLOBAL, admission.admitRedirect(null, now));
+        assertNull(admission.admitRedirect(null, now + SECOND));
+    }
+
+    @Test
+    void ownersAndCreatorsHaveTheirOwnLimits() {
+        AdmissionControl admission = create();
+        long now = System.nanoTime();
+        UUID owner = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        assertNull(admission.admitRedirectToOwner(owner, now));
+        assertEquals(AdmissionLimit.REDIRECT_OWNER, admission.admitRedirectToOwner(owner, now));
+        assertNull(admission.admitRedirectToOwner(other, now));
+
+        // Общий лимит создания выключен (частота 0): пользователи упираются только в свой
+        assertNull(admission.admitCreate(owner, now));
+        assertEquals(AdmissionLimit.CREATE_USER, admission.admitCreate(owner, now));
+        for (int i = 0; i < 100; i++) {
+            assertNull(admission.admitCreate(UUID.randomUUID(), now));
+        }
+        assertNull(admission.admitCreate(owner, now + SECOND));
+        assertEquals(2 + 101, admission.trackedKeys());
+    }
+
+    private static AdmissionControl create() {
+        LIMITS.forEach(System::setProperty);
+        return new AdmissionControl(new AppConfig());
+    }
+}
@@ -0,0 +1,73 @@
+package org.shortener.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// GCRA по заданному времени: всплеск до burst запросов, затем ровно один запрос за интервал;
+// отказ не сдвигает TAT
+class GcraTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long T0 = 123 * SECOND;
+
+    @Test
+    void burstThenSteadyRate() {
+        Gcra gcra = new Gcra(10, 5);
+        AtomicLong tat = new AtomicLong(T0);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(gcra.tryAcquire(tat, T0), "запрос " + i);
+        }
+        assertFalse(gcra.tryAcquire(tat, T0));
+        assertFalse(gcra.tryAcquire(tat, T0 + SECOND / 10 - 1));
+
+        // Дальше — по запросу каждые 100 мс, лишний в том же интервале отклоняется
+        for (int i = 1; i <= 20; i++) {
+            long now = T0 + i * SECOND / 10;
+            assertTrue(gcra.tryAcquire(tat, now), "интервал " + i);
+            assertFalse(gcra.tryAcquire(tat, now), "интервал " + i);
+        }
+    }
+
+    @Test
+    void rejectionDoesNotMoveTat() {
+        Gcra gcra = new Gcra(1, 1);
+        AtomicLong tat = new AtomicLong(T0);
+        assertTrue(gcra.tryAcquire(tat, T0));
+        long full = tat.get();
+        for (int i = 0; i < 100; i++) {
+            assertFalse(gcra.tryAcquire(tat, T0 + i));
+        }
+        assertEquals(full, tat.get());
+        assertTrue(gcra.tryAcquire(tat, T0 + SECOND));
+    }
+
+    @Test
+    void idleBucketRefillsToBurstOnly() {
+        Gcra gcra = new Gcra(2, 3);
+        AtomicLong tat = new AtomicLong(T0);
+        assertTrue(gcra.tryAcquire(tat, T0));
+        assertFalse(Gcra.isIdle(tat.get(), T0));
+        assertTrue(Gcra.isIdle(tat.get(), T0 + SECOND / 2));
+        assertEquals(3 * SECOND / 2, gcra.refillNanos());
+
+        // После часа простоя — снова не больше burst подряд
+        long later = T0 + 3600 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(gcra.tryAcquire(tat, later));
+        }
+        assertFalse(gcra.tryAcquire(tat, later));
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new Gcra(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Gcra(Double.NaN, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Gcra(1, 0));
+    }
+}
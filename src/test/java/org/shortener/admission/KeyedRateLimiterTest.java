@@ -0,0 +1,86 @@
+package org.shortener.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Лимиты по ключам по заданному времени, обход таблицы — в том же потоке: у каждого ключа своя корзина,
+// сверх maxKeys новые ключи делят одну общую, простаивающие ключи удаляются обходом
+class KeyedRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long T0 = 77 * SECOND;
+
+    @Test
+    void everyKeyHasItsOwnBurstAndRate() {
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(2, 3, 100, T0, Runnable::run);
+        for (String key : new String[] {"a", "b"}) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(limiter.tryAcquire(key, T0), key + " " + i);
+            }
+            assertFalse(limiter.tryAcquire(key, T0), key);
+        }
+        assertTrue(limiter.tryAcquire("a", T0 + SECOND / 2));
+        assertFalse(limiter.tryAcquire("a", T0 + SECOND / 2));
+        assertFalse(limiter.tryAcquire("b", T0 + SECOND / 2 - 1));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void keysBeyondTheTableShareOneBucket() {
+        // Обход начинается с трёх ключей из четырёх, но занятые корзины он не трогает
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(1, 1, 4, T0, Runnable::run);
+        for (String key : new String[] {"a", "b", "c", "d"}) {
+            assertTrue(limiter.tryAcquire(key, T0), key);
+        }
+        assertEquals(4, limiter.size());
+
+        assertTrue(limiter.tryAcquire("e", T0));
+        assertFalse(limiter.tryAcquire("f", T0));
+        assertFalse(limiter.tryAcquire("g", T0 + SECOND / 2));
+        assertEquals(4, limiter.size());
+        // Ключи из таблицы общую корзину не делят
+        assertTrue(limiter.tryAcquire("a", T0 + SECOND));
+    }
+
+    @Test
+    void idleKeysAreSweptAndNewKeysGetTheirOwnBuckets() {
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(1, 1, 4, T0, Runnable::run);
+        for (String key : new String[] {"a", "b", "c", "d"}) {
+            assertTrue(limiter.tryAcquire(key, T0), key);
+        }
+        assertTrue(limiter.tryAcquire("overflow", T0));
+
+        // Через секунду корзины полны: следующий новый ключ запускает обход, таблица пустеет
+        long later = T0 + SECOND;
+        assertTrue(limiter.tryAcquire("e", later));
+        assertEquals(1, limiter.size());
+        assertTrue(limiter.tryAcquire("f", later));
+        assertEquals(2, limiter.size());
+        assertFalse(limiter.tryAcquire("e", later));
+        // Забытый ключ начинает с полной корзины
+        assertTrue(limiter.tryAcquire("a", later));
+    }
+
+    @Test
+    void sweepRunsAtMostOncePerInterval() {
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(1, 1, 4, T0, Runnable::run);
+        for (String key : new String[] {"a", "b", "c"}) {
+            assertTrue(limiter.tryAcquire(key, T0), key);
+        }
+        // Обход на ключе d ничего не удалил; до следующего обхода простаивающие ключи остаются
+        assertTrue(limiter.tryAcquire("d", T0));
+        assertTrue(limiter.tryAcquire("e", T0 + SECOND - 1));
+        assertEquals(4, limiter.size());
+        assertTrue(limiter.tryAcquire("f", T0 + SECOND));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void rejectsEmptyTable() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyedRateLimiter<String>(1, 1, 0));
+    }
+}
@@ -0,0 +1,134 @@
+package org.shortener.bulk;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.shortener.config.AppConfig;
+import org.shortener.model.ShortLink;
+import org.shortener.persistence.FsyncPolicy;
+import org.shortener.persistence.LinkJournal;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.service.LinkListener;
+import org.shortener.service.LinkService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Загрузка файла с испорченными строками: итог, файл результатов в порядке строк и выгрузка после
+// восстановления из журнала, куда ссылки попали пачками
+class BulkImporterTest {
+
+    private static final int VALID = 2500;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void malformedLinesAreReportedAndTheRestIsJournaledInBatches() throws Exception {
+        UUID owner = UUID.randomUUID();
+        List<String> input = new ArrayList<>();
+        input.add(BulkRecords.IMPORT_HEADER);
+        // Номер строки файла -> ожидаемая ошибка (фрагмент сообщения)
+        Map<Integer, String> malformed = new TreeMap<>();
+        for (int i = 0; i < VALID; i++) {
+            input.add(owner + ",https://example.com/page?id=" + i + ",12,5");
+            if (i % 500 == 7) {
+                input.add(owner + ",https://example.com/short,12");
+                malformed.put(input.size(), "ожидается 4 поля");
+                input.add("not-a-uuid,https://example.com/,12,5");
+                malformed.put(input.size(), "UUID");
+                input.add(owner + ",https://example.com/,twelve,5");
+                malformed.put(input.size(), "twelve");
+                input.add(owner + ",\"https://example.com/unclosed,12,5");
+                malformed.put(input.size(), "незакрытая кавычка");
+                input.add("");
+            }
+        }
+        Path source = dir.resolve("links.csv");
+        Path results = dir.resolve("results.csv");
+        Files.write(source, input, StandardCharsets.UTF_8);
+
+        InMemoryLinkRepository links = new InMemoryLinkRepository();
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        LinkJournal journal = new LinkJournal(dir.resolve("journal"), FsyncPolicy.ALWAYS, 100);
+        journal.open(links, users);
+        LinkService linkService = new LinkService(new AppConfig(), links, users);
+        AtomicInteger singles = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+        linkService.addListener(new LinkListener() {
+            @Override
+            public void onCreate(ShortLink link) {
+                singles.incrementAndGet();
+            }
+
+            @Override
+            public void onCreateAll(List<ShortLink> created) {
+                batches.incrementAndGet();
+            }
+        });
+        linkService.addListener(journal);
+
+        BulkImporter.Summary summary = new BulkImporter(linkService, 4).importLinks(source, results);
+        journal.close();
+        assertEquals(VALID, summary.created());
+        assertEquals(malformed.size(), summary.failed());
+        assertEquals(0, singles.get());
+        int lines = input.size() - 1;
+        assertEquals((lines + 1023) / 1024, batches.get());
+
+        // Результаты в порядке строк: ссылка на каждую корректную строку, ошибка с номером — на испорченную
+        List<String> output = Files.readAllLines(results, StandardCharsets.UTF_8);
+        assertEquals(BulkRecords.RESULT_HEADER, output.get(0));
+        assertEquals(VALID + malformed.size(), output.size() - 1);
+        Set<String> shortUrls = new HashSet<>();
+        int valid = 0;
+        List<Integer> errorLines = new ArrayList<>();
+        for (String line : output.subList(1, output.size())) {
+            List<String> fields = BulkRecords.splitCsv(line);
+            if (fields.get(0).isEmpty()) {
+                String error = fields.get(4);
+                int lineNumber = Integer.parseInt(error.substring("строка ".length(), error.indexOf(':')));
+                assertTrue(error.contains(malformed.get(lineNumber)), error);
+                errorLines.add(lineNumber);
+                continue;
+            }
+            assertEquals(owner.toString(), fields.get(0));
+            assertEquals("https://example.com/page?id=" + valid, fields.get(1));
+            assertTrue(shortUrls.add(fields.get(2)), "код выдан дважды: " + fields.get(2));
+            valid++;
+        }
+        assertEquals(VALID, valid);
+        assertEquals(new ArrayList<>(malformed.keySet()), errorLines);
+
+        // Журнал восстанавливает ровно созданные ссылки, выгрузка отдаёт их все
+        InMemoryLinkRepository restored = new InMemoryLinkRepository();
+        LinkJournal reopened = new LinkJournal(dir.resolve("journal"), FsyncPolicy.ALWAYS, 100);
+        assertEquals(VALID, reopened.open(restored, new InMemoryUserRepository()));
+        reopened.close();
+        Path export = dir.resolve("export.csv");
+        assertEquals(VALID, new BulkExporter(restored).exportLinks(export));
+        List<String> exported = Files.readAllLines(export, StandardCharsets.UTF_8);
+        assertEquals(BulkRecords.EXPORT_HEADER, exported.get(0));
+        Set<String> exportedUrls = new HashSet<>();
+        for (String line : exported.subList(1, exported.size())) {
+            List<String> fields = BulkRecords.splitCsv(line);
+            assertEquals(owner.toString(), fields.get(0));
+            assertEquals("5", fields.get(5));
+            assertEquals("0", fields.get(6));
+            exportedUrls.add(fields.get(2));
+        }
+        assertEquals(shortUrls, exportedUrls);
+    }
+}
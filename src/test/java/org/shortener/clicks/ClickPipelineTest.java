@@ -0,0 +1,144 @@
+package org.shortener.clicks;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.metrics.LinkMetrics;
+import org.shortener.model.ClickResult;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.CompactLinkStore;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.LinkRepository;
+import org.shortener.repository.TieredLinkStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+// Свёртка переходов в одну дельту на ссылку за окно, в том числе у хранилищ, выдающих на каждый поиск
+// новое представление ссылки
+class ClickPipelineTest {
+
+    private static final String DOMAIN = "test.ru/";
+    private static final int CLICK_LIMIT = 1_000_000;
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "compact", "tiered"})
+    void clicksOnOneLinkCoalesceAcrossLookups(String kind) throws IOException {
+        LinkRepository links = store(kind);
+        String shortUrl = save(links, 1).get(0);
+        if (links instanceof TieredLinkStore tiered) {
+            tiered.flush();
+        }
+        if ("compact".equals(kind)) {
+            assertNotSame(links.findByShortUrl(shortUrl), links.findByShortUrl(shortUrl));
+        }
+
+        LinkMetrics metrics = new LinkMetrics(() -> 0);
+        ConcurrentLinkedQueue<ClickDelta> deltas = new ConcurrentLinkedQueue<>();
+        // Окно длиннее теста: все переходы сворачиваются при закрытии
+        ClickPipeline pipeline = new ClickPipeline(1024, 60_000, BackpressurePolicy.BLOCK, metrics);
+        pipeline.addSink(deltas::addAll);
+        pipeline.start();
+        for (int i = 0; i < 500; i++) {
+            ShortLink view = links.findByShortUrl(shortUrl);
+            assertEquals(ClickResult.CONSUMED, view.tryConsumeClick());
+            pipeline.onClick(view);
+        }
+        pipeline.close();
+        close(links);
+
+        assertEquals(1, deltas.size());
+        ClickDelta delta = deltas.peek();
+        assertEquals(shortUrl, delta.link().getShortUrl());
+        assertEquals(500, delta.clicks());
+        assertEquals(500, delta.link().getClickCount());
+        assertEquals(500, metrics.getClickEventsFlushed());
+        assertEquals(1, metrics.getClickDeltasFlushed());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"compact", "tiered"})
+    void concurrentClicksKeepExactTotalsPerLink(String kind) throws Exception {
+        LinkRepository links = store(kind);
+        List<String> shortUrls = save(links, 16);
+        LinkMetrics metrics = new LinkMetrics(() -> 0);
+        ConcurrentLinkedQueue<ClickDelta> deltas = new ConcurrentLinkedQueue<>();
+        // Маленький буфер и короткое окно: производители упираются в BLOCK, окна сбрасываются много раз
+        ClickPipeline pipeline = new ClickPipeline(64, 1, BackpressurePolicy.BLOCK, metrics);
+        pipeline.addSink(deltas::addAll);
+        pipeline.start();
+
+        int threads = 4;
+        int clicksPerThread = 20_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < clicksPerThread; i++) {
+                    ShortLink view = links.findByShortUrl(shortUrls.get((i + offset) % shortUrls.size()));
+                    view.tryConsumeClick();
+                    pipeline.onClick(view);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        pipeline.close();
+
+        Map<String, Integer> clicks = new HashMap<>();
+        for (ClickDelta delta : deltas) {
+            clicks.merge(delta.link().getShortUrl(), delta.clicks(), Integer::sum);
+        }
+        for (String shortUrl : shortUrls) {
+            assertEquals(links.findByShortUrl(shortUrl).getClickCount(), clicks.get(shortUrl));
+        }
+        assertEquals(threads * clicksPerThread, clicks.values().stream().mapToInt(Integer::intValue).sum());
+        close(links);
+    }
+
+    private LinkRepository store(String kind) throws IOException {
+        return switch (kind) {
+            case "compact" -> new CompactLinkStore(DOMAIN, false);
+            case "tiered" -> new TieredLinkStore(DOMAIN, 4, dir, 8);
+            default -> new InMemoryLinkRepository();
+        };
+    }
+
+    private static List<String> save(LinkRepository links, int count) throws IOException {
+        SequentialCodeGenerator codes = new SequentialCodeGenerator(DOMAIN, new CodeSequence(null), 64, null);
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        List<String> shortUrls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ShortLink link = new ShortLink("https://example.com/" + i, codes.nextShortUrl(), owner,
+                    now, now.plus(Duration.ofHours(1)), CLICK_LIMIT);
+            links.saveIfAbsent(link);
+            shortUrls.add(link.getShortUrl());
+        }
+        return shortUrls;
+    }
+
+    private static void close(LinkRepository links) {
+        if (links instanceof TieredLinkStore tiered) {
+            tiered.close();
+        }
+    }
+}
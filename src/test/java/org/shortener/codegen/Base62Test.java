@@ -0,0 +1,43 @@
+package org.shortener.codegen;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Ключ кода и код по ключу взаимно обратны на всех длинах, ключи разных длин не пересекаются
+class Base62Test {
+
+    private static final String DOMAIN = "test.ru/";
+
+    @ParameterizedTest
+    @ValueSource(ints = {6, 7, 8, 9, 10})
+    void keyRoundTripsForEveryLength(int length) {
+        long first = 0;
+        for (int l = Base62.MIN_LENGTH; l < length; l++) {
+            first += Base62.POW[l];
+        }
+        long last = first + Base62.POW[length] - 1;
+        // Первый и последний код этой длины
+        assertEquals(first, Base62.toKey(DOMAIN + "a".repeat(length), DOMAIN.length()));
+        assertEquals(last, Base62.toKey(DOMAIN + "9".repeat(length), DOMAIN.length()));
+
+        SplittableRandom random = new SplittableRandom(length);
+        char[] chars = new char[DOMAIN.length() + Base62.MAX_LENGTH];
+        DOMAIN.getChars(0, DOMAIN.length(), chars, 0);
+        for (int i = 0; i < 10_000; i++) {
+            long key = i < 2 ? (i == 0 ? first : last) : random.nextLong(first, last + 1);
+            assertEquals(length, Base62.fromKey(key, chars, DOMAIN.length()));
+            String shortUrl = new String(chars, 0, DOMAIN.length() + length);
+            assertEquals(key, Base62.toKey(shortUrl, DOMAIN.length()), shortUrl);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "abcde", "abcdefghijk", "abc-ef", "abcdeф"})
+    void rejectsCodesOutsideTheFormat(String code) {
+        assertEquals(-1, Base62.toKey(DOMAIN + code, DOMAIN.length()));
+    }
+}
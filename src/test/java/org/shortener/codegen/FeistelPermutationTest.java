@@ -0,0 +1,52 @@
+package org.shortener.codegen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Перестановка остаётся в диапазоне кодов своей длины и не склеивает значения. Диапазоны слишком велики
+// для полного перебора, поэтому проверяются подряд идущие значения у начала и у конца диапазона:
+// у конца сеть чаще выходит за 62^length и значения проходят её повторно
+class FeistelPermutationTest {
+
+    private static final int SAMPLE = 200_000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {6, 7, 8, 9, 10})
+    void permutesWithinTheRangeWithoutCollisions(int length) {
+        FeistelPermutation permutation = new FeistelPermutation(0x5DEECE66DL);
+        long domain = Base62.POW[length];
+        Set<Long> images = new HashSet<>();
+        for (long start : new long[]{0, domain - SAMPLE}) {
+            for (long value = start; value < start + SAMPLE; value++) {
+                long image = permutation.permute(value, length);
+                assertTrue(image >= 0 && image < domain, value + " -> " + image);
+                assertTrue(images.add(image), "два значения дали " + image);
+            }
+        }
+    }
+
+    @Test
+    void dependsOnKeyAndIsDeterministic() {
+        FeistelPermutation first = new FeistelPermutation(1);
+        FeistelPermutation same = new FeistelPermutation(1);
+        FeistelPermutation other = new FeistelPermutation(2);
+        int differing = 0;
+        for (long value = 0; value < 1000; value++) {
+            assertEquals(first.permute(value, 6), same.permute(value, 6));
+            if (first.permute(value, 6) != other.permute(value, 6)) {
+                differing++;
+            }
+        }
+        assertTrue(differing > 990, "ключи почти не различаются: " + differing);
+        // Соседние значения расходятся далеко
+        assertNotEquals(first.permute(0, 6) + 1, first.permute(1, 6));
+    }
+}
@@ -0,0 +1,52 @@
+package org.shortener.codegen;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Секция определяется по первому символу кода — и у новых кодов, и у созданных до включения секций
+class PartitionedCodeGeneratorTest {
+
+    private static final String DOMAIN = "test.ru/";
+
+    @Test
+    void newCodesCarryTheirPartition() throws IOException {
+        SequentialCodeGenerator inner = new SequentialCodeGenerator(DOMAIN, new CodeSequence(null), 16, 7L);
+        PartitionedCodeGenerator codes = new PartitionedCodeGenerator(DOMAIN, new int[]{1, 3}, inner);
+        for (int i = 0; i < 100; i++) {
+            String shortUrl = codes.nextShortUrl();
+            assertEquals(DOMAIN.length() + 7, shortUrl.length());
+            assertEquals(i % 2 == 0 ? 1 : 3, PartitionedCodeGenerator.partitionOf(shortUrl, DOMAIN, 4), shortUrl);
+        }
+    }
+
+    // Старые коды начинаются с любого символа: номер символа берётся по модулю числа секций
+    @Test
+    void legacyCodesAreSpreadByFirstCharacter() {
+        assertEquals(0, PartitionedCodeGenerator.partitionOf(DOMAIN + "aBcDeF", DOMAIN, 4));
+        assertEquals(3, PartitionedCodeGenerator.partitionOf(DOMAIN + "dBcDeF", DOMAIN, 4));
+        // 'e' — символ 4, 'Z' — 51, '9' — 61
+        assertEquals(0, PartitionedCodeGenerator.partitionOf(DOMAIN + "eBcDeF", DOMAIN, 4));
+        assertEquals(51 % 4, PartitionedCodeGenerator.partitionOf(DOMAIN + "ZBcDeF", DOMAIN, 4));
+        assertEquals(61 % 3, PartitionedCodeGenerator.partitionOf(DOMAIN + "9BcDeF", DOMAIN, 3));
+        assertEquals(0, PartitionedCodeGenerator.partitionOf(DOMAIN + "9BcDeF", DOMAIN, 1));
+    }
+
+    @Test
+    void codesWithoutPartitionCharacterHaveNoPartition() {
+        assertEquals(-1, PartitionedCodeGenerator.partitionOf(DOMAIN, DOMAIN, 4));
+        assertEquals(-1, PartitionedCodeGenerator.partitionOf(DOMAIN + "-BcDeF", DOMAIN, 4));
+    }
+
+    @Test
+    void rejectsPartitionsOutOfRange() {
+        SequentialCodeGenerator inner = null;
+        assertThrows(IllegalArgumentException.class,
+                () -> new PartitionedCodeGenerator(DOMAIN, new int[]{62}, inner));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PartitionedCodeGenerator(DOMAIN, new int[0], inner));
+    }
+}
@@ -0,0 +1,99 @@
+package org.shortener.codegen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Коды из счётчика: блоки не пересекаются между потоками и перезапусками, ключ перестановки переживает перезапуск
+class SequentialCodeGeneratorTest {
+
+    private static final String DOMAIN = "test.ru/";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void leasesDisjointBlocks() throws IOException {
+        CodeSequence sequence = new CodeSequence(null);
+        assertEquals(0, sequence.lease(16));
+        assertEquals(16, sequence.lease(1024));
+        assertEquals(1040, sequence.lease(1));
+    }
+
+    @Test
+    void threadsNeverShareCodes() throws Exception {
+        SequentialCodeGenerator codes = new SequentialCodeGenerator(DOMAIN, new CodeSequence(null), 64, 42L);
+        Set<String> all = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    String shortUrl = codes.nextShortUrl();
+                    assertTrue(all.add(shortUrl), "код выдан дважды: " + shortUrl);
+                    assertTrue(Base62.toKey(shortUrl, DOMAIN.length()) >= 0, shortUrl);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80_000, all.size());
+    }
+
+    @Test
+    void unscrambledCodesGoInOrderAndGrowInLength() throws IOException {
+        CodeSequence sequence = new CodeSequence(null);
+        // Пропускаем все 6-символьные коды, кроме двух последних
+        for (long skip = Base62.POW[6] - 2; skip > 0; ) {
+            int step = (int) Math.min(skip, Integer.MAX_VALUE);
+            sequence.lease(step);
+            skip -= step;
+        }
+        SequentialCodeGenerator codes = new SequentialCodeGenerator(DOMAIN, sequence, 4, null);
+        assertEquals(DOMAIN + "999998", codes.nextShortUrl());
+        assertEquals(DOMAIN + "999999", codes.nextShortUrl());
+        assertEquals(DOMAIN + "aaaaaaa", codes.nextShortUrl());
+    }
+
+    // После перезапуска счёт продолжается с сохранённой отметки, а не с нуля
+    @Test
+    void resumesAfterRestartWithoutRepeatingCodes() throws IOException {
+        Path sequenceFile = dir.resolve("code-sequence");
+        Path keyFile = dir.resolve("code-scramble-key");
+        long key = CodeSequence.scrambleKey(keyFile);
+        assertTrue(Files.exists(keyFile));
+        Set<String> issued = new HashSet<>();
+        SequentialCodeGenerator first = new SequentialCodeGenerator(DOMAIN, new CodeSequence(sequenceFile), 64, key);
+        for (int i = 0; i < 1000; i++) {
+            issued.add(first.nextShortUrl());
+        }
+
+        long restartedKey = CodeSequence.scrambleKey(keyFile);
+        assertEquals(key, restartedKey);
+        CodeSequence restarted = new CodeSequence(sequenceFile);
+        assertTrue(restarted.lease(1) >= 1000);
+        SequentialCodeGenerator second = new SequentialCodeGenerator(DOMAIN, restarted, 64, restartedKey);
+        for (int i = 0; i < 1000; i++) {
+            String shortUrl = second.nextShortUrl();
+            assertFalse(issued.contains(shortUrl), "код повторился после перезапуска: " + shortUrl);
+        }
+    }
+
+    @Test
+    void generatedKeysDiffer() throws IOException {
+        assertNotEquals(CodeSequence.scrambleKey(dir.resolve("a")), CodeSequence.scrambleKey(dir.resolve("b")));
+    }
+}
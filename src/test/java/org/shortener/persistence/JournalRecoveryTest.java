@@ -0,0 +1,67 @@
+package org.shortener.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.shortener.config.AppConfig;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.service.LinkListener;
+import org.shortener.service.LinkService;
+import org.shortener.service.RedirectOutcome;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Восстановление из журнала, когда ссылку удалили сразу после сохранения, пока о создании узнавали слушатели
+class JournalRecoveryTest {
+
+    @TempDir
+    Path dir;
+
+    // Последний переход приходит в окно между сохранением ссылки и записью LINK в журнал. Его DELETE
+    // не должен попасть в журнал раньше LINK: иначе восстановление вернёт удалённую ссылку.
+    @Test
+    void deleteRacingWithCreateIsNotUndoneByRecovery() throws Exception {
+        InMemoryLinkRepository links = new InMemoryLinkRepository();
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        LinkJournal journal = new LinkJournal(dir, FsyncPolicy.NEVER, 100);
+        journal.open(links, users);
+        LinkService linkService = new LinkService(new AppConfig(), links, users);
+        AtomicReference<RedirectOutcome> outcome = new AtomicReference<>();
+        AtomicReference<Thread> racer = new AtomicReference<>();
+        // Слушатель перед журналом: ссылка уже видна, LINK ещё не записан
+        linkService.addListener(new LinkListener() {
+            @Override
+            public void onCreate(ShortLink link) {
+                Thread thread = Thread.ofVirtual().start(
+                        () -> outcome.set(linkService.resolve(link.getShortUrl()).outcome()));
+                racer.set(thread);
+                try {
+                    // Без упорядочивания переход успевает засчитать клик и записать DELETE
+                    thread.join(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        linkService.addListener(journal);
+
+        ShortLink link = linkService.createShortLink(UUID.randomUUID(), "https://example.com/race", 1, 1);
+        racer.get().join();
+        assertEquals(RedirectOutcome.LAST_HIT, outcome.get());
+        assertNull(links.findByShortUrl(link.getShortUrl()));
+        journal.close();
+
+        InMemoryLinkRepository restored = new InMemoryLinkRepository();
+        LinkJournal reopened = new LinkJournal(dir, FsyncPolicy.NEVER, 100);
+        reopened.open(restored, new InMemoryUserRepository());
+        assertNull(restored.findByShortUrl(link.getShortUrl()), "удалённая ссылка вернулась после восстановления");
+        reopened.close();
+    }
+}
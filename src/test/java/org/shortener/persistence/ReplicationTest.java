@@ -0,0 +1,180 @@
+package org.shortener.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.CompactLinkStore;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.repository.LinkRepository;
+import org.shortener.service.RedirectOutcome;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Повторная синхронизация реплики снимком: поверх уже заполненного хранилища и при снимке,
+// за время которого очередь первичного узла переполняется
+class ReplicationTest {
+
+    private static final String DOMAIN = "test.ru/";
+    private static final int HEARTBEAT_MILLIS = 20;
+    private static final long TIMEOUT_MILLIS = 20_000;
+
+    // Первичный узел перезапущен (реплика подключается к новому запуску заново): она получает снимок
+    // поверх своих ссылок. Не изменившиеся ссылки
+    // остаются на месте (время создания у компактной реплики хранится с точностью до секунды),
+    // удалённая пропадает, у ссылки с переходами обновляется счётчик.
+    @Test
+    void resyncKeepsUnchangedLinksOfCompactReplica() throws Exception {
+        InMemoryLinkRepository primary = new InMemoryLinkRepository();
+        SequentialCodeGenerator codes = codes();
+        UUID owner = UUID.randomUUID();
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // Время создания с миллисекундами, которые компактное хранилище отбрасывает
+            links.add(link(codes.nextShortUrl(), owner, "https://example.com/" + i,
+                    Instant.now().plusMillis(1 + i % 999)));
+        }
+        links.forEach(primary::saveIfAbsent);
+
+        ReplicationSource first = startSource(primary);
+        CompactLinkStore replicaStore = new CompactLinkStore(DOMAIN, false);
+        ReplicaClient replica = startReplica(first, replicaStore);
+        await(() -> replicaStore.size() == links.size() && replica.getLagRecords() == 0);
+        List<ShortLink> views = new ArrayList<>();
+        for (ShortLink link : links) {
+            views.add(replicaStore.findByShortUrl(link.getShortUrl()));
+        }
+        replica.close();
+        first.close();
+
+        ShortLink deleted = links.get(0);
+        assertTrue(deleted.markRemoved());
+        primary.delete(deleted);
+        ShortLink clicked = links.get(1);
+        clicked.tryConsumeClick();
+        clicked.tryConsumeClick();
+        // Новый запуск первичного узла: номера записей прежнего реплике не подходят, нужен снимок
+        ReplicationSource second = startSource(primary);
+        ReplicaClient resynced = startReplica(second, replicaStore);
+        try {
+            await(() -> replicaStore.findByShortUrl(deleted.getShortUrl()) == null
+                    && replicaStore.findByShortUrl(clicked.getShortUrl()).getClickCount() == 2);
+
+            assertEquals(links.size() - 1, replicaStore.size());
+            // Представления, взятые до снимка, указывают на те же записи: ссылки не пересоздавались
+            for (int i = 1; i < links.size(); i++) {
+                assertFalse(views.get(i).isRemoved(), links.get(i).getShortUrl());
+            }
+            assertEquals(2, views.get(1).getClickCount());
+        } finally {
+            resynced.close();
+            second.close();
+        }
+    }
+
+    // Пока снимок отправляется, первичный узел успевает записать больше, чем вмещает очередь.
+    // Блок, с которого поток продолжится, закреплён: реплика получает один снимок и догоняет поток.
+    @Test
+    void queueOverflowDuringSnapshotDoesNotRestartIt() throws Exception {
+        SequentialCodeGenerator codes = codes();
+        UUID owner = UUID.randomUUID();
+        AtomicInteger snapshots = new AtomicInteger();
+        Queue<ShortLink> created = new ConcurrentLinkedQueue<>();
+        ReplicationSource[] source = new ReplicationSource[1];
+        InMemoryLinkRepository primary = new InMemoryLinkRepository() {
+            @Override
+            public Collection<ShortLink> findAll() {
+                Collection<ShortLink> all = super.findAll();
+                return new AbstractCollection<>() {
+                    @Override
+                    public Iterator<ShortLink> iterator() {
+                        // Снимок начат: прежде чем отдать ссылки, создаём их на объём больше очереди
+                        snapshots.incrementAndGet();
+                        String padding = "x".repeat(1000);
+                        for (int i = 0; i < 1500; i++) {
+                            ShortLink link = link(codes.nextShortUrl(), owner,
+                                    "https://example.com/" + padding + i, Instant.now());
+                            saveIfAbsent(link);
+                            created.add(link);
+                            source[0].onCreate(link);
+                        }
+                        return all.iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return all.size();
+                    }
+                };
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            ShortLink link = link(codes.nextShortUrl(), owner, "https://example.com/" + i, Instant.now());
+            primary.saveIfAbsent(link);
+            created.add(link);
+        }
+
+        source[0] = startSource(primary);
+        InMemoryLinkRepository replicaLinks = new InMemoryLinkRepository();
+        ReplicaClient replica = new ReplicaClient("localhost:" + source[0].getPort(), replicaLinks,
+                new InMemoryUserRepository(), HEARTBEAT_MILLIS, 1000);
+        replica.start();
+        try {
+            await(() -> replicaLinks.findAll().size() == 1600 && replica.getLagRecords() == 0);
+            assertEquals(1, snapshots.get());
+            for (ShortLink link : created) {
+                assertNotNull(replicaLinks.findByShortUrl(link.getShortUrl()));
+            }
+        } finally {
+            replica.close();
+            source[0].close();
+        }
+    }
+
+    private static ReplicationSource startSource(LinkRepository links) throws IOException {
+        ReplicationSource source = new ReplicationSource("127.0.0.1", 0, 0, HEARTBEAT_MILLIS, links,
+                shortUrl -> RedirectOutcome.UNAVAILABLE);
+        source.start();
+        return source;
+    }
+
+    private static ReplicaClient startReplica(ReplicationSource source, CompactLinkStore store) {
+        ReplicaClient replica = new ReplicaClient("localhost:" + source.getPort(), store, store, HEARTBEAT_MILLIS, 1000);
+        replica.start();
+        return replica;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "реплика не догнала первичный узел");
+            Thread.sleep(10);
+        }
+    }
+
+    private static ShortLink link(String shortUrl, UUID owner, String originalUrl, Instant creation) {
+        return new ShortLink(originalUrl, shortUrl, owner, creation, creation.plus(Duration.ofHours(1)), 1000);
+    }
+
+    private static SequentialCodeGenerator codes() throws IOException {
+        return new SequentialCodeGenerator(DOMAIN, new CodeSequence(null), 64, null);
+    }
+}
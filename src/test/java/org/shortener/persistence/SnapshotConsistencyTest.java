@@ -0,0 +1,290 @@
+package org.shortener.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.codegen.ShortCodeGenerator;
+import org.shortener.model.ClickResult;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.CompactLinkStore;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.repository.LinkRepository;
+import org.shortener.repository.TieredLinkStore;
+import org.shortener.repository.UserRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Снимок "на момент начала" (SnapshotEpoch): ссылка, сохранённая во время снимка, не теряется следующим,
+// а каждый снимок под параллельными созданиями, переходами и удалениями совпадает с состоянием после
+// некоторого префикса потока изменений
+class SnapshotConsistencyTest {
+
+    private static final String DOMAIN = "test.ru/";
+    private static final String STREAM_URL = "https://stream.example/";
+    private static final String STATIC_URL = "https://static.example/";
+    private static final int STREAM_OPERATIONS = 30_000;
+    private static final int STATIC_LINKS = 200;
+    private static final int CLICK_LIMIT = 1_000_000;
+
+    @TempDir
+    Path dir;
+
+    // Ссылка создана до начала снимка, а сохранена после того, как обход хранилища прошёл её место.
+    // Снимок её не содержит, поэтому следующий обязан её забрать: он удаляет сегмент с её записью LINK.
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "compact", "tiered"})
+    void linkSavedDuringSnapshotSurvivesNextCheckpoint(String kind) throws IOException {
+        Stores stores = stores(kind, dir.resolve("cold"));
+        LinkJournal journal = new LinkJournal(dir.resolve("journal"), FsyncPolicy.NEVER, 100);
+        journal.open(stores.links(), stores.users());
+        ShortCodeGenerator codes = codes();
+        UUID owner = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            create(stores, journal, link(codes.nextShortUrl(), owner, STREAM_URL + i));
+        }
+
+        ShortLink late = link(codes.nextShortUrl(), owner, STREAM_URL + "late");
+        journal.checkpoint(new AbstractCollection<>() {
+            @Override
+            public Iterator<ShortLink> iterator() {
+                // Обход уже позади — только теперь ссылка попадает в хранилище и журнал
+                List<ShortLink> passed = new ArrayList<>(stores.links().findAll());
+                create(stores, journal, late);
+                return passed.iterator();
+            }
+
+            @Override
+            public int size() {
+                return stores.links().findAll().size();
+            }
+        });
+        journal.checkpoint(stores.links().findAll());
+        journal.close();
+        close(stores);
+
+        Stores restored = stores(kind, dir.resolve("cold-restored"));
+        LinkJournal reopened = new LinkJournal(dir.resolve("journal"), FsyncPolicy.NEVER, 100);
+        assertEquals(11, reopened.open(restored.links(), restored.users()));
+        assertNotNull(restored.links().findByShortUrl(late.getShortUrl()));
+        reopened.close();
+        close(restored);
+    }
+
+    @Test
+    void preImageOfLinkChangedAheadOfWriterIsWritten() throws IOException {
+        InMemoryLinkRepository links = new InMemoryLinkRepository();
+        ShortLink link = link(codes().nextShortUrl(), UUID.randomUUID(), STREAM_URL);
+        links.saveIfAbsent(link);
+        Path file = dir.resolve("snapshot");
+        SnapshotWriter.write(new AbstractCollection<>() {
+            @Override
+            public Iterator<ShortLink> iterator() {
+                // Переход после начала снимка, до того как писатель дошёл до ссылки
+                link.tryConsumeClick();
+                return links.findAll().iterator();
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        }, file, 4096);
+        assertEquals(1, link.getClickCount());
+        assertEquals(Map.of(link.getShortUrl(), 0), readCounts(file, ""));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "compact", "tiered"})
+    void snapshotsMatchPrefixOfConcurrentStream(String kind) throws Exception {
+        Stores stores = stores(kind, dir.resolve("cold"));
+        ShortCodeGenerator codes = codes();
+        UUID owner = UUID.randomUUID();
+        List<ShortLink> staticLinks = new ArrayList<>();
+        for (int i = 0; i < STATIC_LINKS; i++) {
+            ShortLink link = link(codes.nextShortUrl(), owner, STATIC_URL + i);
+            stores.links().saveIfAbsent(link);
+            staticLinks.add(link);
+        }
+
+        // Поток изменений: создания, переходы по кругу и удаления, с журналом операций для сверки
+        byte[] types = new byte[STREAM_OPERATIONS];
+        String[] targets = new String[STREAM_OPERATIONS];
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread stream = new Thread(() -> {
+            try {
+                SplittableRandom random = new SplittableRandom(42);
+                List<String> live = new ArrayList<>();
+                for (int i = 0; i < STREAM_OPERATIONS; i++) {
+                    int dice = random.nextInt(10);
+                    if (live.isEmpty() || dice < 3) {
+                        ShortLink link = link(codes.nextShortUrl(), owner, STREAM_URL + i);
+                        stores.links().saveIfAbsent(link);
+                        live.add(link.getShortUrl());
+                        types[i] = JournalCodec.LINK;
+                        targets[i] = link.getShortUrl();
+                    } else if (dice < 9) {
+                        String shortUrl = live.get(i % live.size());
+                        assertEquals(ClickResult.CONSUMED, stores.links().findByShortUrl(shortUrl).tryConsumeClick());
+                        types[i] = JournalCodec.CLICK;
+                        targets[i] = shortUrl;
+                    } else {
+                        String shortUrl = live.remove(random.nextInt(live.size()));
+                        ShortLink link = stores.links().findByShortUrl(shortUrl);
+                        assertTrue(link.markRemoved());
+                        stores.links().delete(link);
+                        types[i] = JournalCodec.DELETE;
+                        targets[i] = shortUrl;
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            } finally {
+                done.set(true);
+            }
+        });
+        // Посторонние переходы по другим ссылкам гоняют медленный путь с копиями прежнего вида
+        List<Thread> clickers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int seed = t;
+            clickers.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                while (!done.get()) {
+                    String shortUrl = staticLinks.get(random.nextInt(staticLinks.size())).getShortUrl();
+                    stores.links().findByShortUrl(shortUrl).tryConsumeClick();
+                }
+            }));
+        }
+        stream.start();
+        clickers.forEach(Thread::start);
+
+        List<Map<String, Integer>> snapshots = new ArrayList<>();
+        while (!done.get() || snapshots.size() < 4) {
+            Path file = dir.resolve("snapshot-" + snapshots.size());
+            // Маленький буфер: копии изменённых ссылок выбираются много раз за снимок
+            SnapshotWriter.write(stores.links().findAll(), file, 512);
+            snapshots.add(readCounts(file, STREAM_URL));
+        }
+        stream.join();
+        for (Thread clicker : clickers) {
+            clicker.join();
+        }
+        close(stores);
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        // Проигрываем поток на модели и ищем для каждого снимка префикс, после которого они совпадают
+        Map<String, Integer> model = new HashMap<>();
+        int[] mismatches = new int[snapshots.size()];
+        boolean[] matched = new boolean[snapshots.size()];
+        for (int s = 0; s < snapshots.size(); s++) {
+            mismatches[s] = snapshots.get(s).size();
+            matched[s] = mismatches[s] == 0;
+        }
+        for (int i = 0; i < STREAM_OPERATIONS; i++) {
+            String shortUrl = targets[i];
+            boolean[] before = new boolean[snapshots.size()];
+            for (int s = 0; s < snapshots.size(); s++) {
+                before[s] = Objects.equals(model.get(shortUrl), snapshots.get(s).get(shortUrl));
+            }
+            switch (types[i]) {
+                case JournalCodec.LINK -> model.put(shortUrl, 0);
+                case JournalCodec.CLICK -> model.merge(shortUrl, 1, Integer::sum);
+                default -> model.remove(shortUrl);
+            }
+            for (int s = 0; s < snapshots.size(); s++) {
+                boolean after = Objects.equals(model.get(shortUrl), snapshots.get(s).get(shortUrl));
+                mismatches[s] += (before[s] ? 0 : -1) + (after ? 0 : 1);
+                matched[s] |= mismatches[s] == 0;
+            }
+        }
+        for (int s = 0; s < snapshots.size(); s++) {
+            assertTrue(matched[s], "снимок " + s + " (" + kind + ") не совпал ни с одним префиксом потока");
+        }
+    }
+
+    // Число переходов по каждой ссылке снимка с URL, начинающимся с urlPrefix; повтор ссылки — ошибка
+    private static Map<String, Integer> readCounts(Path file, String urlPrefix) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        boolean[] complete = new boolean[1];
+        JournalReader.read(file, body -> {
+            if (body.get() == JournalCodec.END) {
+                complete[0] = true;
+                return;
+            }
+            String shortUrl = JournalCodec.getString(body);
+            String originalUrl = JournalCodec.getString(body);
+            body.position(body.position() + 4 * Long.BYTES);
+            JournalCodec.getVarInt(body);
+            int clickCount = JournalCodec.getVarInt(body);
+            if (originalUrl.startsWith(urlPrefix)) {
+                assertNull(counts.put(shortUrl, clickCount), "ссылка дважды в снимке: " + shortUrl);
+            }
+        });
+        assertTrue(complete[0], "снимок не завершён");
+        return counts;
+    }
+
+    private static void create(Stores stores, LinkJournal journal, ShortLink link) {
+        assertTrue(stores.links().saveIfAbsent(link));
+        stores.users().addLinkToUser(link.getUserId(), link);
+        journal.onCreate(link);
+    }
+
+    private static ShortLink link(String shortUrl, UUID owner, String originalUrl) {
+        Instant now = Instant.now();
+        return new ShortLink(originalUrl, shortUrl, owner, now, now.plus(Duration.ofHours(1)), CLICK_LIMIT);
+    }
+
+    private static ShortCodeGenerator codes() throws IOException {
+        return new SequentialCodeGenerator(DOMAIN, new CodeSequence(null), 64, null);
+    }
+
+    private record Stores(LinkRepository links, UserRepository users) {
+    }
+
+    private static Stores stores(String kind, Path coldDir) throws IOException {
+        return switch (kind) {
+            case "compact" -> {
+                CompactLinkStore store = new CompactLinkStore(DOMAIN, false);
+                yield new Stores(store, store);
+            }
+            // Маленький горячий уровень: ссылки переезжают в сегменты и обратно прямо во время снимков
+            case "tiered" -> {
+                TieredLinkStore store = new TieredLinkStore(DOMAIN, 64, coldDir, 256);
+                yield new Stores(store, store);
+            }
+            default -> new Stores(new InMemoryLinkRepository(), new InMemoryUserRepository());
+        };
+    }
+
+    private static void close(Stores stores) {
+        if (stores.links() instanceof TieredLinkStore tiered) {
+            tiered.close();
+        }
+    }
+}
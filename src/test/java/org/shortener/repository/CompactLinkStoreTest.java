@@ -0,0 +1,219 @@
+package org.shortener.repository;
+
+import org.junit.jupiter.api.Test;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.model.ClickResult;
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Переиспользование освобождённых записей, пока представления прежних ссылок ещё у кого-то в руках,
+// и постраничный обход ссылок пользователя
+class CompactLinkStoreTest {
+
+    private static final String DOMAIN = "test.ru/";
+    private static final int LINKS = 256;
+    private static final int CLICK_LIMIT = 1_000_000;
+
+    @Test
+    void staleViewDoesNotTouchRecordReusedByAnotherLink() throws IOException {
+        CompactLinkStore store = new CompactLinkStore(DOMAIN, false);
+        SequentialCodeGenerator codes = codes();
+        List<ShortLink> stale = new ArrayList<>();
+        for (ShortLink link : save(store, codes, LINKS)) {
+            ShortLink view = store.findByShortUrl(link.getShortUrl());
+            assertEquals(ClickResult.CONSUMED, view.tryConsumeClick());
+            stale.add(view);
+        }
+        for (ShortLink view : stale) {
+            assertTrue(view.markRemoved());
+            assertTrue(store.delete(view));
+        }
+        recycle(store);
+        // Те же места занимают новые ссылки, ещё без переходов
+        List<ShortLink> fresh = save(store, codes, LINKS);
+
+        for (ShortLink view : stale) {
+            assertTrue(view.isRemoved());
+            assertNotEquals(ClickResult.CONSUMED, view.tryConsumeClick());
+            assertFalse(view.markRemoved());
+            assertFalse(store.delete(view));
+        }
+        for (ShortLink link : fresh) {
+            ShortLink view = store.findByShortUrl(link.getShortUrl());
+            assertFalse(view.isRemoved());
+            assertEquals(0, view.getClickCount());
+        }
+        assertEquals(LINKS, store.size());
+    }
+
+    @Test
+    void staleViewCannotDeleteLinkSavedUnderSameCode() throws IOException {
+        CompactLinkStore store = new CompactLinkStore(DOMAIN, false);
+        ShortLink link = save(store, codes(), 1).get(0);
+        ShortLink stale = store.findByShortUrl(link.getShortUrl());
+        assertTrue(stale.markRemoved());
+        assertTrue(store.delete(stale));
+        recycle(store);
+
+        assertTrue(store.saveIfAbsent(copy(link)));
+        assertFalse(store.delete(stale));
+        ShortLink current = store.findByShortUrl(link.getShortUrl());
+        assertNotNull(current);
+        assertEquals(ClickResult.CONSUMED, current.tryConsumeClick());
+        assertEquals(1, current.getClickCount());
+    }
+
+    // Переходы по устаревшим представлениям идут всё время, пока записи освобождаются и занимаются снова:
+    // у новых ссылок число переходов совпадает с засчитанными через их собственные представления
+    @Test
+    void clicksThroughStaleViewsDuringReuseAreNotCounted() throws Exception {
+        CompactLinkStore store = new CompactLinkStore(DOMAIN, false);
+        SequentialCodeGenerator codes = codes();
+        List<ShortLink> stale = new ArrayList<>();
+        for (ShortLink link : save(store, codes, LINKS)) {
+            stale.add(store.findByShortUrl(link.getShortUrl()));
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> clickers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            clickers.add(new Thread(() -> {
+                for (int i = offset; !done.get(); i++) {
+                    stale.get(i % LINKS).tryConsumeClick();
+                }
+            }));
+        }
+        clickers.forEach(Thread::start);
+
+        for (ShortLink view : stale) {
+            view.markRemoved();
+            store.delete(view);
+        }
+        recycle(store);
+        List<ShortLink> fresh = save(store, codes, LINKS);
+        int freshClicks = 0;
+        for (int round = 0; round < 50; round++) {
+            for (ShortLink link : fresh) {
+                assertEquals(ClickResult.CONSUMED, store.findByShortUrl(link.getShortUrl()).tryConsumeClick());
+                freshClicks++;
+            }
+        }
+        done.set(true);
+        for (Thread clicker : clickers) {
+            clicker.join();
+        }
+
+        long counted = 0;
+        for (ShortLink link : fresh) {
+            counted += store.findByShortUrl(link.getShortUrl()).getClickCount();
+        }
+        assertEquals(freshClicks, counted);
+        for (ShortLink view : stale) {
+            assertTrue(view.isRemoved());
+        }
+    }
+
+    // Ссылки сохраняются не по порядку времени (как при восстановлении из снимка), часть — в одну секунду,
+    // часть удаляется между страницами: обход идёт в порядке LINK_ORDER, без повторов и пропусков живых
+    @Test
+    void pagingLargeUserKeepsOrderWithoutDuplicates() throws IOException {
+        CompactLinkStore store = new CompactLinkStore(DOMAIN, false);
+        SequentialCodeGenerator codes = codes();
+        UUID owner = UUID.randomUUID();
+        Instant base = Instant.ofEpochSecond(Instant.now().getEpochSecond());
+        SplittableRandom random = new SplittableRandom(7);
+        List<ShortLink> expected = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Instant creation = base.plusSeconds(random.nextInt(2_000));
+            ShortLink link = new ShortLink("https://example.com/" + i, codes.nextShortUrl(), owner,
+                    creation, creation.plus(Duration.ofHours(1)), CLICK_LIMIT);
+            assertTrue(store.saveIfAbsent(link));
+            expected.add(link);
+        }
+        expected.sort(LinkCursor.LINK_ORDER);
+
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < expected.size(); i++) {
+            positions.put(expected.get(i).getShortUrl(), i);
+        }
+        Set<String> deleted = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        List<String> listed = new ArrayList<>();
+        Iterator<ShortLink> links = store.iterateUserLinks(owner, null);
+        while (links.hasNext()) {
+            ShortLink link = links.next();
+            assertTrue(seen.add(link.getShortUrl()), "ссылка выдана дважды: " + link.getShortUrl());
+            listed.add(link.getShortUrl());
+            // Удаляем ссылку далеко впереди курсора
+            int position = positions.get(link.getShortUrl());
+            if (listed.size() % 10 == 0 && position + 500 < expected.size()) {
+                ShortLink ahead = store.findByShortUrl(expected.get(position + 500).getShortUrl());
+                if (ahead != null && ahead.markRemoved()) {
+                    assertTrue(store.delete(ahead));
+                    deleted.add(ahead.getShortUrl());
+                }
+            }
+        }
+
+        List<ShortLink> live = expected.stream().filter(link -> !deleted.contains(link.getShortUrl())).toList();
+        assertEquals(live.stream().map(ShortLink::getShortUrl).toList(), listed);
+        assertEquals(live.size(), store.getUserLinks(owner).size());
+
+        // Обход с курсора в середине списка начинается ровно после него
+        LinkCursor middle = LinkCursor.of(expected.get(expected.size() / 2));
+        ShortLink expectedFirst = live.stream().filter(middle::isBefore).findFirst().orElseThrow();
+        assertEquals(expectedFirst.getShortUrl(), store.iterateUserLinks(owner, middle).next().getShortUrl());
+    }
+
+    // Два прохода drainExpired переводят освобождённые записи в список свободных
+    private static void recycle(CompactLinkStore store) {
+        for (int i = 0; i < 3; i++) {
+            store.drainExpired(Instant.now(), link -> {
+            });
+        }
+    }
+
+    private static List<ShortLink> save(CompactLinkStore store, SequentialCodeGenerator codes, int count) {
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ShortLink link = new ShortLink("https://example.com/" + i, codes.nextShortUrl(), owner,
+                    now, now.plus(Duration.ofHours(1)), CLICK_LIMIT);
+            assertTrue(store.saveIfAbsent(link));
+            links.add(link);
+        }
+        return links;
+    }
+
+    private static ShortLink copy(ShortLink link) {
+        return new ShortLink(link.getOriginalUrl(), link.getShortUrl(), link.getUserId(),
+                link.getCreationTime(), link.getExpirationTime(), link.getClickLimit());
+    }
+
+    private static SequentialCodeGenerator codes() throws IOException {
+        return new SequentialCodeGenerator(DOMAIN, new CodeSequence(null), 64, null);
+    }
+}
@@ -0,0 +1,63 @@
+package org.shortener.repository;
+
+import org.junit.jupiter.api.Test;
+import org.shortener.model.ClickResult;
+import org.shortener.model.ShortLink;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Ссылки, удалённые раньше срока, не остаются в корзинах индекса истечения до его наступления
+class ExpirationIndexTest {
+
+    private static final String DOMAIN = "test.ru/";
+
+    @Test
+    void deletedAndExhaustedLinksLeaveTheirBuckets() {
+        InMemoryLinkRepository links = new InMemoryLinkRepository();
+        Instant now = Instant.now();
+        UUID owner = UUID.randomUUID();
+        ShortLink deleted = link("deleted", owner, now, 5);
+        ShortLink exhausted = link("exhausted", owner, now, 1);
+        ShortLink kept = link("kept", owner, now, 5);
+        for (ShortLink link : List.of(deleted, exhausted, kept)) {
+            assertTrue(links.saveIfAbsent(link));
+        }
+
+        assertTrue(deleted.markRemoved());
+        assertTrue(links.delete(deleted));
+        assertEquals(ClickResult.LAST_CLICK, exhausted.tryConsumeClick());
+        assertTrue(exhausted.markRemoved());
+        assertTrue(links.delete(exhausted));
+
+        List<ShortLink> drained = new ArrayList<>();
+        assertEquals(1, links.drainExpired(now.plus(Duration.ofHours(2)), drained::add));
+        assertEquals(List.of(kept), drained);
+    }
+
+    @Test
+    void replacedLinkLeavesItsBucket() {
+        InMemoryLinkRepository links = new InMemoryLinkRepository();
+        Instant now = Instant.now();
+        UUID owner = UUID.randomUUID();
+        ShortLink first = link("same", owner, now, 5);
+        ShortLink second = link("same", owner, now.plusSeconds(10), 5);
+        links.save(first);
+        links.save(second);
+
+        List<ShortLink> drained = new ArrayList<>();
+        assertEquals(1, links.drainExpired(now.plus(Duration.ofHours(2)), drained::add));
+        assertEquals(List.of(second), drained);
+    }
+
+    private static ShortLink link(String code, UUID owner, Instant creation, int clickLimit) {
+        return new ShortLink("https://example.com/" + code, DOMAIN + code, owner,
+                creation, creation.plus(Duration.ofHours(1)), clickLimit);
+    }
+}
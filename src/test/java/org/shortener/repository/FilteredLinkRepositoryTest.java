@@ -0,0 +1,64 @@
+package org.shortener.repository;
+
+import org.junit.jupiter.api.Test;
+import org.shortener.metrics.LinkMetrics;
+import org.shortener.model.ShortLink;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Фильтр не теряет сохранённые ссылки, а его отсечения и заполнение видны в метриках
+class FilteredLinkRepositoryTest {
+
+    private static final String DOMAIN = "test.ru/";
+
+    @Test
+    void rejectedLookupsAndFillReachMetrics() {
+        InMemoryLinkRepository store = new InMemoryLinkRepository();
+        FilteredLinkRepository links = new FilteredLinkRepository(store, 1000, 0.01, 0);
+        LinkMetrics metrics = new LinkMetrics(() -> store.findAll().size());
+        assertEquals(-1, metrics.getLinkFilterRejectedLookups());
+        assertEquals(-1, metrics.getLinkFilterFill());
+        metrics.setLinkFilter(links::getRejectedLookups, links::getFill, links::getEstimatedFalsePositiveRate);
+        assertEquals(0.0, metrics.getLinkFilterFill());
+
+        Instant now = Instant.now();
+        UUID owner = UUID.randomUUID();
+        for (int i = 0; i < 500; i++) {
+            ShortLink link = new ShortLink("https://example.com/" + i, DOMAIN + "code" + i, owner,
+                    now, now.plus(Duration.ofHours(1)), 5);
+            assertTrue(links.saveIfAbsent(link));
+            assertSame(link, links.findByShortUrl(link.getShortUrl()));
+        }
+
+        int misses = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (links.findByShortUrl(DOMAIN + "missing" + i) == null) {
+                misses++;
+            }
+        }
+        assertEquals(1000, misses);
+        assertTrue(metrics.getLinkFilterRejectedLookups() >= 950, "фильтр отсёк слишком мало");
+        double fill = metrics.getLinkFilterFill();
+        assertTrue(fill > 0 && fill < 0.5, "заполнение " + fill);
+        // Заполнен наполовину от расчёта — оценка не выше заданной доли ложных срабатываний
+        assertTrue(metrics.getLinkFilterFalsePositiveRate() < 0.01);
+
+        String text = metrics.getPrometheusText();
+        assertTrue(text.contains("shortener_link_filter_rejected_total " + links.getRejectedLookups()), text);
+        assertTrue(text.contains("shortener_link_filter_fill "), text);
+        assertTrue(text.contains("shortener_link_filter_false_positive_rate "), text);
+
+        // Перестройка не теряет сохранённое
+        links.rebuild();
+        assertNull(links.findByShortUrl(DOMAIN + "missing0"));
+        assertTrue(links.findByShortUrl(DOMAIN + "code0") != null);
+        links.close();
+    }
+}
@@ -0,0 +1,141 @@
+package org.shortener.repository;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.shortener.codegen.CodeSequence;
+import org.shortener.codegen.SequentialCodeGenerator;
+import org.shortener.model.ClickResult;
+import org.shortener.model.ShortLink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Переезды между уровнями (подъём, вытеснение в staging, сброс в сегмент, уплотнение) наперегонки
+// с удалениями и переходами: удалённая ссылка не воскресает, живая не теряется и не раздваивается,
+// переходы по объектам, выданным до переезда, засчитываются там, где ссылка теперь
+class TieredLinkStoreTest {
+
+    private static final String DOMAIN = "test.ru/";
+    private static final int LINKS = 2000;
+    private static final int CLICK_LIMIT = 1_000_000;
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3})
+    void movesRacingWithDeletesKeepEveryLinkInOnePlace(int seed) throws Exception {
+        TieredLinkStore store = new TieredLinkStore(DOMAIN, 16, dir, 32);
+        SequentialCodeGenerator codes = new SequentialCodeGenerator(DOMAIN, new CodeSequence(null), 64, null);
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        List<String> shortUrls = new ArrayList<>();
+        for (int i = 0; i < LINKS; i++) {
+            ShortLink link = new ShortLink("https://example.com/" + i, codes.nextShortUrl(), owner,
+                    now, now.plus(Duration.ofHours(1)), CLICK_LIMIT);
+            assertTrue(store.saveIfAbsent(link));
+            shortUrls.add(link.getShortUrl());
+        }
+        store.flush();
+
+        // Удаляется каждая вторая ссылка; объекты, взятые до удаления, остаются у читателей
+        List<ShortLink> held = new ArrayList<>();
+        for (String shortUrl : shortUrls) {
+            held.add(store.findByShortUrl(shortUrl));
+        }
+        AtomicIntegerArray clicks = new AtomicIntegerArray(LINKS);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            SplittableRandom random = new SplittableRandom(seed * 31L + t);
+            threads.add(new Thread(() -> {
+                while (!done.get()) {
+                    // Частые обращения к узкому кругу ссылок поднимают их, прочие вытесняются обратно
+                    int i = random.nextInt(4) == 0 ? random.nextInt(LINKS) : random.nextInt(64);
+                    ShortLink link = random.nextBoolean() ? store.findByShortUrl(shortUrls.get(i)) : held.get(i);
+                    if (link != null && link.tryConsumeClick() == ClickResult.CONSUMED) {
+                        clicks.incrementAndGet(i);
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    store.flush();
+                    store.compact();
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }));
+        Thread deleter = new Thread(() -> {
+            try {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < LINKS; i += 2) {
+                    ShortLink link = random.nextBoolean() ? store.findByShortUrl(shortUrls.get(i)) : held.get(i);
+                    assertTrue(link.markRemoved(), shortUrls.get(i));
+                    assertTrue(store.delete(link), shortUrls.get(i));
+                    if (i % 64 == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        threads.forEach(Thread::start);
+        deleter.start();
+        deleter.join();
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        // Ещё один сброс и уплотнение после гонки: удалённое не возвращается и из сегментов
+        store.flush();
+        store.compact();
+        for (int i = 0; i < LINKS; i++) {
+            ShortLink link = store.findByShortUrl(shortUrls.get(i));
+            if (i % 2 == 0) {
+                assertNull(link, shortUrls.get(i));
+                assertTrue(held.get(i).isRemoved(), shortUrls.get(i));
+            } else {
+                assertNotNull(link, shortUrls.get(i));
+                assertFalse(link.isRemoved(), shortUrls.get(i));
+                assertEquals(clicks.get(i), link.getClickCount(), shortUrls.get(i));
+                assertEquals(clicks.get(i), held.get(i).getClickCount(), shortUrls.get(i));
+            }
+        }
+        assertEquals(LINKS / 2, store.size());
+        Set<String> all = new HashSet<>();
+        for (ShortLink link : store.findAll()) {
+            assertTrue(all.add(link.getShortUrl()), "ссылка дважды в обходе: " + link.getShortUrl());
+        }
+        assertEquals(LINKS / 2, all.size());
+        assertEquals(LINKS / 2, store.getUserLinks(owner).size());
+        store.close();
+    }
+}
@@ -0,0 +1,133 @@
+package org.shortener.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shortener.config.AppConfig;
+import org.shortener.model.LinkCursor;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.service.LinkService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Список ссылок пользователя со своей секции и с узла другого процесса: страницы узлов сливаются
+// в порядке создания, узел отдаёт длинный список потоком и страницами после курсора
+class PartitionLinksTest {
+
+    private static final int LOCAL_LINKS = 10;
+    private static final int REMOTE_LINKS = 300;
+
+    private final UUID owner = UUID.randomUUID();
+    private final List<ShortLink> expected = new ArrayList<>();
+    private LinkService local;
+    private RedirectServer remote;
+
+    @BeforeEach
+    void start() throws IOException {
+        // Свободный порт; системные свойства читает AppConfig
+        System.setProperty("server.port", "0");
+        LinkService remoteService;
+        try {
+            AppConfig config = new AppConfig();
+            local = new LinkService(config, new InMemoryLinkRepository(), new InMemoryUserRepository());
+            remoteService = new LinkService(config, new InMemoryLinkRepository(), new InMemoryUserRepository());
+            remote = new RedirectServer(config, remoteService);
+            remote.start();
+        } finally {
+            System.clearProperty("server.port");
+        }
+        // Ссылки секций перемежаются по времени создания; ссылки другого пользователя в список не попадают
+        for (int i = 0; i < REMOTE_LINKS; i++) {
+            if (i < LOCAL_LINKS) {
+                expected.add(local.createShortLink(owner, "https://example.com/local/" + i, 1, 5));
+            }
+            expected.add(remoteService.createShortLink(owner, "https://example.com/remote/" + i, 1, 5));
+            remoteService.createShortLink(UUID.randomUUID(), "https://example.com/other/" + i, 1, 5);
+        }
+        expected.sort(LinkCursor.LINK_ORDER);
+    }
+
+    @AfterEach
+    void stop() {
+        remote.close();
+    }
+
+    @Test
+    void pagesOfAllNodesAreMergedInCreationOrder() throws IOException {
+        try (PartitionLinks links = partitionLinks(3)) {
+            assertEquals(lines(expected), drain(links.userLinks(owner, null)));
+
+            LinkCursor middle = LinkCursor.of(expected.get(expected.size() / 2));
+            assertEquals(lines(expected.subList(expected.size() / 2 + 1, expected.size())),
+                    drain(links.userLinks(owner, middle)));
+            assertEquals(List.of(), drain(links.userLinks(UUID.randomUUID(), null)));
+        }
+    }
+
+    @Test
+    void nodeServesItsWholeListAndPagesAfterCursor() throws Exception {
+        List<ShortLink> remoteLinks = new ArrayList<>();
+        for (ShortLink link : expected) {
+            if (link.getOriginalUrl().contains("/remote/")) {
+                remoteLinks.add(link);
+            }
+        }
+        String base = "http://127.0.0.1:" + remote.getPort() + "/_links?user=" + owner;
+        assertEquals(lines(remoteLinks), get(base));
+        LinkCursor cursor = LinkCursor.of(remoteLinks.get(99));
+        assertEquals(lines(remoteLinks.subList(100, 150)),
+                get(base + "&limit=50&after=" + PartitionLinks.formatCursor(cursor).replace("/", "%2F")));
+    }
+
+    @Test
+    void unreachableNodeFailsBeforeTheAnswerStarts() {
+        int port = remote.getPort();
+        remote.close();
+        try (PartitionLinks links = new PartitionLinks(
+                List.of("http://127.0.0.1:1", "http://127.0.0.1:" + port), 0, local, 3, null)) {
+            assertThrows(IOException.class, () -> links.userLinks(owner, null));
+        }
+    }
+
+    private PartitionLinks partitionLinks(int pageSize) {
+        // Узел 0 — этот процесс, его адрес не запрашивается
+        return new PartitionLinks(List.of("http://127.0.0.1:1", "http://127.0.0.1:" + remote.getPort()),
+                0, local, pageSize, null);
+    }
+
+    private static List<String> lines(List<ShortLink> links) {
+        List<String> lines = new ArrayList<>();
+        for (ShortLink link : links) {
+            lines.add(PartitionLinks.line(link));
+        }
+        return lines;
+    }
+
+    private static List<String> drain(Iterator<String> lines) {
+        List<String> result = new ArrayList<>();
+        lines.forEachRemaining(result::add);
+        return result;
+    }
+
+    private static List<String> get(String uri) throws Exception {
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(uri)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            return response.body().lines().toList();
+        }
+    }
+}
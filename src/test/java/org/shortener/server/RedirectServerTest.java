@@ -0,0 +1,80 @@
+package org.shortener.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shortener.config.AppConfig;
+import org.shortener.model.ShortLink;
+import org.shortener.repository.InMemoryLinkRepository;
+import org.shortener.repository.InMemoryUserRepository;
+import org.shortener.service.LinkService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// HEAD по короткой ссылке отвечает как переход, но переход не засчитывает
+class RedirectServerTest {
+
+    private InMemoryLinkRepository links;
+    private LinkService linkService;
+    private RedirectServer server;
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @BeforeEach
+    void start() throws IOException {
+        // Свободный порт; системные свойства читает AppConfig
+        System.setProperty("server.port", "0");
+        try {
+            AppConfig config = new AppConfig();
+            links = new InMemoryLinkRepository();
+            linkService = new LinkService(config, links, new InMemoryUserRepository());
+            server = new RedirectServer(config, linkService);
+            server.start();
+        } finally {
+            System.clearProperty("server.port");
+        }
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void headDoesNotConsumeClick() throws Exception {
+        ShortLink link = linkService.createShortLink(UUID.randomUUID(), "https://example.com/page", 1, 1);
+        assertEquals(1, link.getClickLimit());
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<Void> head = send("HEAD", link);
+            assertEquals(302, head.statusCode());
+            assertEquals("https://example.com/page", head.headers().firstValue("Location").orElseThrow());
+        }
+        assertEquals(0, link.getClickCount());
+        assertNotNull(links.findByShortUrl(link.getShortUrl()));
+
+        // Единственный переход достаётся GET; после него ссылки нет и для HEAD
+        assertEquals(302, send("GET", link).statusCode());
+        assertEquals(1, link.getClickCount());
+        assertNull(links.findByShortUrl(link.getShortUrl()));
+        assertEquals(404, send("HEAD", link).statusCode());
+    }
+
+    private HttpResponse<Void> send(String method, ShortLink link) throws Exception {
+        String code = link.getShortUrl().substring(link.getShortUrl().indexOf('/') + 1);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/" + code))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+}
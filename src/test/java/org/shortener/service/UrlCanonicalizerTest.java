@@ -0,0 +1,56 @@
+package org.shortener.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// Канонический вид URL: схема, регистр хоста, порт по умолчанию, %XX-последовательности; путь, запрос
+// и фрагмент в остальном остаются как были
+class UrlCanonicalizerTest {
+
+    @ParameterizedTest(name = "{0} -> {1}")
+    @CsvSource(delimiter = '|', value = {
+            // Схема и пустой путь
+            "example.com                                | https://example.com/",
+            "HTTP://Example.COM                         | http://example.com/",
+            "HtTpS://example.com/a                      | https://example.com/a",
+            "'  https://example.com/a  '                | https://example.com/a",
+            "https://example.com?q=1                    | https://example.com/?q=1",
+            // Регистр: хост — нет, данные пользователя и путь — да
+            "https://User:Pw@EXAMPLE.com/Path           | https://User:Pw@example.com/Path",
+            "https://[2001:DB8::1]/x                    | https://[2001:db8::1]/x",
+            // Порты по умолчанию
+            "https://example.com:443/a                  | https://example.com/a",
+            "http://example.com:80/a                    | http://example.com/a",
+            "http://example.com:443/a                   | http://example.com:443/a",
+            "https://example.com:80/a                   | https://example.com:80/a",
+            "https://example.com:8443                   | https://example.com:8443/",
+            "https://example.com:/a                     | https://example.com/a",
+            "https://[2001:db8::1]:443/x                | https://[2001:db8::1]/x",
+            // Percent-encoding: незарезервированные раскодируются, остальные — в верхнем регистре
+            "https://example.com/%7euser/%41%2d%5F      | https://example.com/~user/A-_",
+            "https://example.com/a%2fb%2F               | https://example.com/a%2Fb%2F",
+            "https://example.com/%e2%82%ac              | https://example.com/%E2%82%AC",
+            "https://example.com/100%                   | https://example.com/100%",
+            "https://example.com/a%2                    | https://example.com/a%2",
+            "https://example.com/a%zz                   | https://example.com/a%zz",
+            // Запрос и фрагмент: те же правила для %XX, остальное как есть
+            "https://Example.com#Frag                   | https://example.com/#Frag",
+            "https://example.com/p?Q=%7e&x=%3d#%7eTop   | https://example.com/p?Q=~&x=%3D#~Top",
+            "https://example.com:443#%2f                | https://example.com/#%2F",
+    })
+    void canonicalizes(String url, String expected) {
+        assertEquals(expected, UrlCanonicalizer.canonicalize(url));
+        // Канонический вид не меняется при повторном приведении
+        assertEquals(expected, UrlCanonicalizer.canonicalize(expected));
+    }
+
+    @Test
+    void canonicalUrlIsReturnedAsIs() {
+        String url = "https://example.com/path?q=1#top";
+        assertSame(url, UrlCanonicalizer.canonicalize(url));
+    }
+}